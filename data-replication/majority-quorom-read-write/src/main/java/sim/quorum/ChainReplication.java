@@ -0,0 +1,235 @@
+package sim.quorum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Chain replication over a {@link Cluster}'s link mesh: a write goes from the entry node to the head, then node to
+ * node down the chain; the tail commits it and the acknowledgement unwinds back up, committing it at every node on
+ * the way. Each node sends a write once, so write bandwidth is spread over the chain instead of all leaving the entry
+ * node.
+ * <p>
+ * Reads go to the tail. With {@code craq} they are answered by the entry node itself when it holds no dirty version of
+ * the key (one it has passed on but that is not acknowledged yet); for a dirty key it asks the tail for the committed
+ * version number and returns its own copy of that version. Either way a read sees the last acknowledged write.
+ * <p>
+ * A hop that fails {@value #HOP_ATTEMPTS} times in a row takes the target node out of the chain: its predecessor
+ * forwards to its successor from then on, a new head is the old second node, and a new tail commits every write it
+ * holds (they passed everyone before it). Removed nodes do not come back: rejoining would need a state transfer.
+ */
+final class ChainReplication {
+    static final int HOP_ATTEMPTS = 5;
+
+    private final List<Node> nodes;
+    private final Link[][] mesh;
+    private final EventLog log;
+    private final boolean craq;
+    private final AtomicLong versions = new AtomicLong();
+    private final Counter writeBytes;
+    private final Counter readBytes;
+    private final Counter[] bytesOut;
+    private final Counter reconfigurations;
+    private final Counter craqCleanReads;
+    private final Counter craqVersionQueries;
+    // node indexes, head first; replaced as a whole on reconfiguration
+    private volatile List<Integer> chain;
+
+    ChainReplication(List<Node> nodes, Link[][] mesh, boolean craq, EventLog log, Metrics metrics) {
+        this.nodes = List.copyOf(nodes);
+        this.mesh = Objects.requireNonNull(mesh);
+        this.log = Objects.requireNonNull(log);
+        this.craq = craq;
+        List<Integer> initial = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            initial.add(i);
+        }
+        this.chain = List.copyOf(initial);
+        this.writeBytes = metrics.counter("cluster.write.bytes");
+        this.readBytes = metrics.counter("cluster.read.bytes");
+        this.bytesOut = new Counter[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            bytesOut[i] = metrics.counter("cluster.node-" + i + ".bytes-out");
+        }
+        this.reconfigurations = metrics.counter("cluster.chain.reconfigurations");
+        this.craqCleanReads = metrics.counter("cluster.chain.clean-reads");
+        this.craqVersionQueries = metrics.counter("cluster.chain.version-queries");
+        metrics.gauge("cluster.chain.length", () -> chain.size());
+    }
+
+    List<Integer> chain() {
+        return chain;
+    }
+
+    /**
+     * Writes {@code key} through the chain and returns the chain length when the tail acknowledged it.
+     *
+     * @throws QuorumException if every node has been taken out of the chain
+     */
+    int put(String key, String value, int entryNode, Deadline deadline) {
+        long version = versions.incrementAndGet();
+        int bytes = value.getBytes(StandardCharsets.UTF_8).length;
+        if (head() == entryNode) {
+            forward(entryNode, key, value, version, bytes, deadline);
+        } else {
+            hop(entryNode, this::head, "chain-put", key, deadline, head -> {
+                bytesOut[entryNode].add(bytes);
+                writeBytes.add(bytes);
+                forward(head, key, value, version, bytes, deadline);
+                return Boolean.TRUE;
+            });
+        }
+        log.event("cluster", "chain-commit").str("key", key).str("value", value).num("version", version)
+                .num("length", chain.size()).emit();
+        return chain.size();
+    }
+
+    Optional<String> get(String key, int entryNode, Deadline deadline) {
+        if (craq && chain.contains(entryNode)) {
+            Node.ChainRead local = nodes.get(entryNode).chainRead(key);
+            if (local.clean()) {
+                craqCleanReads.increment();
+                return local.committed();
+            }
+            craqVersionQueries.increment();
+            long version = entryNode == tail() ? nodes.get(entryNode).chainCommittedVersion(key)
+                    : hop(entryNode, this::tail, "chain-version", key, deadline, tail -> nodes.get(tail).chainCommittedVersion(key));
+            Optional<String> value = version == 0 ? Optional.empty() : nodes.get(entryNode).chainValue(key, version);
+            if (version == 0 || value.isPresent()) {
+                return value;
+            }
+            // the node no longer holds that version (a newer one committed meanwhile): fall back to the tail
+        }
+        if (entryNode == tail()) {
+            return nodes.get(entryNode).chainRead(key).committed();
+        }
+        return hop(entryNode, this::tail, "chain-get", key, deadline, tail -> {
+            Optional<String> value = nodes.get(tail).chainRead(key).committed();
+            readBytes.add(value.map(v -> v.getBytes(StandardCharsets.UTF_8).length).orElse(0));
+            return value;
+        });
+    }
+
+    /**
+     * Up to {@code limit} committed values of a key range, read at the tail. CRAQ scans go to the tail as well: a page
+     * spans many keys, and asking for the committed version of each dirty one would cost a hop apiece.
+     */
+    List<Node.Versioned> scan(String startKey, String endKey, int limit, int entryNode, Deadline deadline) {
+        if (entryNode == tail()) {
+            return nodes.get(entryNode).chainScan(startKey, endKey, limit);
+        }
+        return hop(entryNode, this::tail, "chain-scan", startKey, deadline, tail -> {
+            List<Node.Versioned> page = nodes.get(tail).chainScan(startKey, endKey, limit);
+            for (Node.Versioned entry : page) {
+                readBytes.add(entry.value().getBytes(StandardCharsets.UTF_8).length);
+            }
+            return page;
+        });
+    }
+
+    // Applies the write at node `at`, passes it to its successor and commits it once the rest of the chain has.
+    private void forward(int at, String key, String value, long version, int bytes, Deadline deadline) {
+        if (!chain.contains(at)) {
+            // taken out while the write was on its way: the sender re-routes to the new successor
+            throw new LinkFailureException(nodeId(at) + " is no longer in the chain");
+        }
+        Node node = nodes.get(at);
+        node.chainWrite(key, version, value);
+        hop(at, () -> successor(at), "chain-forward", key, deadline, next -> {
+            bytesOut[at].add(bytes);
+            writeBytes.add(bytes);
+            forward(next, key, value, version, bytes, deadline);
+            return Boolean.TRUE;
+        });
+        node.chainCommit(key, version);
+    }
+
+    /**
+     * Delivers {@code action} from {@code from} to the node {@code target} names, re-picked before every attempt as
+     * the chain may change meanwhile; returns null without sending once {@code target} answers -1 (no such node).
+     * Drops are retried, and after {@value #HOP_ATTEMPTS} failures in a row to the same node it leaves the chain.
+     */
+    private <T> T hop(int from, IntSupplier target, String desc, String key, Deadline deadline, IntFunction<T> action) {
+        int failures = 0;
+        int previous = -1;
+        while (true) {
+            int to = target.getAsInt();
+            if (to < 0) {
+                return null;
+            }
+            if (to != previous) {
+                failures = 0;
+                previous = to;
+            }
+            Link link = mesh[from][to];
+            try {
+                var meta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(from), "to", nodeId(to), "key", key) : null;
+                return link.deliver(desc, () -> action.apply(to), meta, deadline);
+            } catch (LinkFailureException e) {
+                if (++failures >= HOP_ATTEMPTS) {
+                    remove(to, desc + " failed " + failures + " times from " + nodeId(from));
+                }
+            }
+        }
+    }
+
+    private synchronized void remove(int node, String reason) {
+        List<Integer> current = chain;
+        if (!current.contains(node)) {
+            return;
+        }
+        boolean wasTail = current.get(current.size() - 1) == node;
+        List<Integer> next = new ArrayList<>(current);
+        next.remove(Integer.valueOf(node));
+        chain = List.copyOf(next);
+        reconfigurations.increment();
+        log.event("cluster", "chain-reconfigured").str("removed", nodeId(node)).str("reason", reason)
+                .str("chain", describe(next)).emit();
+        if (wasTail && !next.isEmpty()) {
+            nodes.get(next.get(next.size() - 1)).chainCommitAll();
+        }
+    }
+
+    private int head() {
+        List<Integer> current = chain;
+        if (current.isEmpty()) {
+            throw new QuorumException("Chain is empty: every node has been taken out");
+        }
+        return current.get(0);
+    }
+
+    private int tail() {
+        List<Integer> current = chain;
+        if (current.isEmpty()) {
+            throw new QuorumException("Chain is empty: every node has been taken out");
+        }
+        return current.get(current.size() - 1);
+    }
+
+    // -1 for the tail; the forward() membership check covers a node that has left
+    private int successor(int node) {
+        List<Integer> current = chain;
+        int index = current.indexOf(node);
+        if (index < 0) {
+            throw new LinkFailureException(nodeId(node) + " is no longer in the chain");
+        }
+        return index + 1 < current.size() ? current.get(index + 1) : -1;
+    }
+
+    private static String describe(List<Integer> chain) {
+        StringBuilder out = new StringBuilder();
+        for (int node : chain) {
+            out.append(out.isEmpty() ? "" : ">").append(nodeId(node));
+        }
+        return out.toString();
+    }
+
+    private static String nodeId(int i) {
+        return "node-" + i;
+    }
+}
@@ -1,52 +1,312 @@
 package sim.quorum;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
 
+/**
+ * Sends each request to one entry node, picked by an {@link EntrySelector}. With {@link Hedging} enabled, a get that
+ * has not been answered within the running {@code quantile} of get latency is also sent to a second entry node; the
+ * first answer wins and the other request is interrupted, which makes its link stop at the next delivery.
+ */
 final class Client {
+    /**
+     * When to hedge gets: after {@code warmup} gets have been measured, once a get is slower than the {@code quantile}
+     * latency, as long as hedges stay below {@code budget} (0..1) of all gets.
+     */
+    record Hedging(double budget, double quantile, int warmup) {
+        Hedging {
+            if (budget < 0 || budget > 1) {
+                throw new IllegalArgumentException("budget must be 0..1");
+            }
+            if (quantile <= 0 || quantile >= 1) {
+                throw new IllegalArgumentException("quantile must be between 0 and 1");
+            }
+        }
+
+        static Hedging off() {
+            return new Hedging(0, 0.95, 0);
+        }
+
+        /**
+         * Hedges at the running p95 after 20 gets.
+         */
+        static Hedging withBudget(double budget) {
+            return new Hedging(budget, 0.95, 20);
+        }
+
+        boolean enabled() {
+            return budget > 0;
+        }
+    }
+
+    /**
+     * How a client picks entry nodes, bounds requests and reads; start from {@link #DEFAULTS} (random entry nodes, no
+     * hedging, no timeout, quorum reads) and change what differs. {@code timeout} bounds every request end to end (see
+     * {@link Deadline}); null means requests never time out.
+     */
+    record Options(EntrySelector.Strategy selection, Hedging hedging, Duration timeout, Cluster.Consistency consistency) {
+        static final Options DEFAULTS = new Options(EntrySelector.Strategy.RANDOM, Hedging.off(), null, Cluster.Consistency.QUORUM);
+
+        Options {
+            Objects.requireNonNull(selection);
+            Objects.requireNonNull(hedging);
+            Objects.requireNonNull(consistency);
+        }
+
+        Options withSelection(EntrySelector.Strategy selection) {
+            return new Options(selection, hedging, timeout, consistency);
+        }
+
+        Options withHedging(Hedging hedging) {
+            return new Options(selection, hedging, timeout, consistency);
+        }
+
+        Options withTimeout(Duration timeout) {
+            return new Options(selection, hedging, timeout, consistency);
+        }
+
+        Options withConsistency(Cluster.Consistency consistency) {
+            return new Options(selection, hedging, timeout, consistency);
+        }
+    }
+
+    // recomputing the hedge delay walks the histogram, so it is refreshed every few gets
+    private static final int HEDGE_DELAY_REFRESH = 16;
+
     private final Cluster cluster;
     private final EventLog log;
     private final String id;
     private final Link[] clientLinks;
-    private final Random random;
+    private final EntrySelector selector;
+    private final Hedging hedging;
+    private final Duration timeout;
+    private final Cluster.Consistency consistency;
+    private final Counter failures;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter deadlinesExceeded;
+    private final Histogram latencyMicros;
+    private final Histogram getLatencyMicros;
+    private final AtomicLong gets = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private volatile long hedgeAfterMicros;
 
-    Client(String id, Cluster cluster, Link[] clientLinks, Random random, EventLog log) {
+    Client(String id, Cluster cluster, Link[] clientLinks, RandomGenerator random, EventLog log, Metrics metrics,
+           Options options) {
         this.id = Objects.requireNonNull(id);
         this.cluster = Objects.requireNonNull(cluster);
         this.clientLinks = Objects.requireNonNull(clientLinks);
-        this.random = Objects.requireNonNull(random);
+        this.selector = new EntrySelector(options.selection(), clientLinks.length, random);
+        this.hedging = options.hedging();
         this.log = Objects.requireNonNull(log);
+        this.timeout = options.timeout();
+        this.consistency = options.consistency();
+        this.failures = metrics.counter("client." + id + ".failures");
+        this.hedges = metrics.counter("client." + id + ".hedges");
+        this.hedgeWins = metrics.counter("client." + id + ".hedge-wins");
+        this.deadlinesExceeded = metrics.counter("client." + id + ".deadline-exceeded");
+        this.latencyMicros = metrics.histogram("client." + id + ".latency-us");
+        this.getLatencyMicros = metrics.histogram("client." + id + ".get-latency-us");
     }
 
     void put(String key, String value) {
-        int entry = chooseNode();
+        put(key, value, null);
+    }
+
+    /**
+     * Puts {@code value} to expire after {@code ttl}, or never if it is null.
+     */
+    void put(String key, String value, Duration ttl) {
+        int entry = selector.choose();
         Link link = clientLinks[entry];
-        var meta = MapBuilder.of("entry", Integer.toString(entry), "key", key, "value", value);
+        var meta = link.logsDeliveries() ? MapBuilder.of("entry", Integer.toString(entry), "key", key, "value", value) : null;
+        long start = System.nanoTime();
+        Deadline deadline = newDeadline();
         try {
-            cluster.put(key, value, entry, link, meta);
-            log.info(id, "put-ok", MapBuilder.of("key", key, "value", value, "entry", Integer.toString(entry)));
+            cluster.put(key, value, ttl, entry, link, meta, deadline);
+            latencyMicros.record((System.nanoTime() - start) / 1_000);
+            log.event(id, "put-ok").str("key", key).str("value", value).num("entry", entry).emit();
         } catch (RuntimeException e) {
-            log.info(id, "put-failed", MapBuilder.of("key", key, "value", value, "reason", e.getMessage(), "entry", Integer.toString(entry)));
+            failed(e, deadline, log.event(id, "put-failed").str("key", key).str("value", value).str("reason", e.getMessage())
+                    .num("entry", entry));
             throw e;
+        } finally {
+            selector.record(entry, (System.nanoTime() - start) / 1_000);
         }
     }
 
     Optional<String> get(String key) {
-        int entry = chooseNode();
+        int entry = selector.choose();
+        long start = System.nanoTime();
+        long count = gets.incrementAndGet();
+        Deadline deadline = newDeadline();
+        try {
+            Attempt winner = hedging.enabled() && count > hedging.warmup() ? hedgedGet(key, entry, deadline) : attempt(key, entry, deadline);
+            if (winner.failure != null) {
+                throw winner.failure;
+            }
+            long micros = (System.nanoTime() - start) / 1_000;
+            latencyMicros.record(micros);
+            getLatencyMicros.record(micros);
+            if (count % HEDGE_DELAY_REFRESH == 0) {
+                hedgeAfterMicros = getLatencyMicros.percentile(hedging.quantile());
+            }
+            log.event(id, "get-ok").str("key", key).str("value", winner.value.orElse("null")).num("entry", winner.entry).emit();
+            return winner.value;
+        } catch (RuntimeException e) {
+            failed(e, deadline, log.event(id, "get-failed").str("key", key).str("reason", e.getMessage()).num("entry", entry));
+            throw e;
+        }
+    }
+
+    /**
+     * One page of {@link Cluster#scan}, through one entry node; not hedged.
+     */
+    ScanPage scan(String startKey, String endKey, int limit) {
+        int entry = selector.choose();
         Link link = clientLinks[entry];
-        var meta = MapBuilder.of("entry", Integer.toString(entry), "key", key);
+        var meta = link.logsDeliveries() ? MapBuilder.of("entry", Integer.toString(entry), "start", startKey) : null;
+        long start = System.nanoTime();
+        Deadline deadline = newDeadline();
         try {
-            Optional<String> value = cluster.get(key, entry, link, meta);
-            log.info(id, "get-ok", MapBuilder.of("key", key, "value", value.orElse("null"), "entry", Integer.toString(entry)));
-            return value;
+            ScanPage page = cluster.scan(startKey, endKey, limit, entry, link, meta, deadline);
+            latencyMicros.record((System.nanoTime() - start) / 1_000);
+            log.event(id, "scan-ok").str("start", startKey).num("entries", page.entries().size()).num("entry", entry).emit();
+            return page;
         } catch (RuntimeException e) {
-            log.info(id, "get-failed", MapBuilder.of("key", key, "reason", e.getMessage(), "entry", Integer.toString(entry)));
+            failed(e, deadline, log.event(id, "scan-failed").str("start", startKey).str("reason", e.getMessage()).num("entry", entry));
             throw e;
+        } finally {
+            selector.record(entry, (System.nanoTime() - start) / 1_000);
         }
     }
 
-    private int chooseNode() {
-        return random.nextInt(clientLinks.length);
+    private Deadline newDeadline() {
+        return timeout == null ? Deadline.none() : Deadline.after(timeout);
+    }
+
+    // Failures report how much of the deadline was left (negative: how late), to tell slow hops from quick refusals.
+    private void failed(RuntimeException e, Deadline deadline, Event event) {
+        failures.increment();
+        if (e instanceof DeadlineExceededException) {
+            deadlinesExceeded.increment();
+        }
+        if (deadline.isBounded()) {
+            event.num("remainingMs", deadline.remainingMillis());
+        }
+        event.emit();
+    }
+
+    private Attempt attempt(String key, int entry, Deadline deadline) {
+        Attempt attempt = new Attempt(key, entry, deadline, null);
+        attempt.run();
+        return attempt;
+    }
+
+    private Attempt hedgedGet(String key, int entry, Deadline deadline) {
+        BlockingQueue<Attempt> done = new ArrayBlockingQueue<>(2);
+        Attempt primary = new Attempt(key, entry, deadline, done).start();
+        Attempt hedge = null;
+        try {
+            Attempt winner = done.poll(hedgeAfterMicros, TimeUnit.MICROSECONDS);
+            if (winner == null && hedged.get() < hedging.budget() * gets.get()) {
+                int other = selector.chooseOther(entry);
+                if (other != entry) {
+                    hedged.incrementAndGet();
+                    hedges.increment();
+                    log.event(id, "get-hedged").str("key", key).num("entry", entry).num("hedge", other)
+                            .num("afterUs", hedgeAfterMicros).emit();
+                    hedge = new Attempt(key, other, deadline, done).start();
+                }
+            }
+            if (winner == null) {
+                winner = done.take();
+            }
+            if (winner.failure != null && hedge != null) {
+                winner = done.take();
+            }
+            if (winner == hedge && winner.failure == null) {
+                hedgeWins.increment();
+            }
+            return winner;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for get " + key);
+        } finally {
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    /**
+     * One get through one entry node, on the caller's thread or, when hedging, on its own virtual thread that reports
+     * to {@code done}. Fields are written before the attempt is queued, so whoever takes it sees them.
+     */
+    private final class Attempt implements Runnable {
+        private final String key;
+        private final int entry;
+        private final Deadline deadline;
+        private final BlockingQueue<Attempt> done;
+        private Thread thread;
+        private Optional<String> value;
+        private RuntimeException failure;
+
+        Attempt(String key, int entry, Deadline deadline, BlockingQueue<Attempt> done) {
+            this.key = key;
+            this.entry = entry;
+            this.deadline = deadline;
+            this.done = done;
+        }
+
+        Attempt start() {
+            thread = Thread.ofVirtual().name(id + "-get-" + entry).start(this);
+            return this;
+        }
+
+        @Override
+        public void run() {
+            Link link = clientLinks[entry];
+            var meta = link.logsDeliveries() ? MapBuilder.of("entry", Integer.toString(entry), "key", key) : null;
+            long start = System.nanoTime();
+            try {
+                value = cluster.get(key, entry, link, meta, deadline, consistency);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                selector.record(entry, (System.nanoTime() - start) / 1_000);
+                if (done != null) {
+                    done.add(this);
+                }
+            }
+        }
+
+        /**
+         * Interrupts the attempt if it is still running and waits for it to unwind, so its links are idle again before
+         * the next request.
+         */
+        void cancel() {
+            thread.interrupt();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
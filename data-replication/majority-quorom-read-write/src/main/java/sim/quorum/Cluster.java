@@ -1,107 +1,830 @@
 package sim.quorum;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 /**
  * Cluster orchestrates quorum reads/writes across nodes.
+ * <p>
+ * By default every node stores the full value and quorums are majorities. With {@link ErasureCoding} node {@code i}
+ * stores fragment {@code i} of a Reed–Solomon code instead, so each write moves and stores about {@code n / k} times
+ * the value rather than {@code n} times; {@code cluster.write.bytes}, {@code cluster.read.bytes} and
+ * {@code cluster.stored-bytes} show the difference. {@link Replication#CHAIN} and {@link Replication#CRAQ} replace the
+ * fan-out with {@link ChainReplication}. With {@link Rejoin.Settings} nodes can crash and restart, rejoining by snapshot
+ * transfer, and with {@link ReadCache.Settings} entry nodes answer repeated {@link Consistency#CACHED} reads from a
+ * {@link ReadCache}. Quorum writes may carry a time to live, which the entry node turns into one expiry for every
+ * replica.
+ * <p>
+ * A {@link #scan} returns a key range in pages, one request per page: each replica answers with its first keys of the
+ * range from its ordered index, and the entry node merges those sorted pages, the newest version of a key winning.
  */
 final class Cluster {
+    /**
+     * How writes reach the nodes: fanned out by the entry node to majority quorums, or passed down a chain.
+     */
+    enum Replication {
+        QUORUM,
+        /** Writes down the chain, reads at the tail. */
+        CHAIN,
+        /** Writes down the chain, reads at any node holding the key clean (chain replication with apportioned queries). */
+        CRAQ;
+
+        static Replication named(String name) {
+            return switch (name.toLowerCase(Locale.ROOT)) {
+                case "quorum" -> QUORUM;
+                case "chain" -> CHAIN;
+                case "craq" -> CRAQ;
+                default -> throw new IllegalArgumentException("Unknown replication " + name + " (expected quorum, chain or craq)");
+            };
+        }
+    }
+
+    /**
+     * How fresh a read under quorum replication must be. Other replication modes read the same way at every level.
+     */
+    enum Consistency {
+        /** Decided by a read quorum; the entry node's {@link ReadCache} is refreshed but never answers. */
+        QUORUM,
+        /** May be answered from the entry node's {@link ReadCache} within its lease and validation; a quorum read otherwise. */
+        CACHED;
+
+        static Consistency named(String name) {
+            return switch (name.toLowerCase(Locale.ROOT)) {
+                case "quorum" -> QUORUM;
+                case "cached" -> CACHED;
+                default -> throw new IllegalArgumentException("Unknown consistency " + name + " (expected quorum or cached)");
+            };
+        }
+    }
+
+    /**
+     * Latency and fault model of one mesh link.
+     */
+    record LinkSpec(LatencyModel latency, FaultModel faults) {
+        /**
+         * 5-40 ms uniform latency and plain drops.
+         */
+        static LinkSpec uniform(double dropProbability) {
+            return new LinkSpec(LatencyModel.uniform(Duration.ofMillis(5), Duration.ofMillis(40)), FaultModel.drop(dropProbability));
+        }
+    }
+
+    /**
+     * Reed–Solomon {@code dataFragments} + {@code parityFragments} over all nodes (their sum must be the node count).
+     * A write needs {@code dataFragments + margin} fragment acks and a read {@code nodes - margin} answers, so every
+     * read overlaps every acknowledged write in at least {@code dataFragments} fragments; {@code margin} may be
+     * 0..{@code parityFragments}, trading write availability for read availability.
+     */
+    record ErasureCoding(int dataFragments, int parityFragments, int margin) {
+        ErasureCoding {
+            if (dataFragments < 1 || parityFragments < 0) {
+                throw new IllegalArgumentException("need dataFragments >= 1 and parityFragments >= 0");
+            }
+            if (margin < 0 || margin > parityFragments) {
+                throw new IllegalArgumentException("margin must be 0.." + parityFragments);
+            }
+        }
+
+        /**
+         * {@code <k>+<m>} or {@code <k>+<m>:<margin>}, e.g. {@code 3+2}; the margin defaults to half the parity.
+         */
+        static ErasureCoding parse(String spec) {
+            String[] parts = spec.trim().split("[+:]");
+            if (parts.length != 2 && parts.length != 3) {
+                throw new IllegalArgumentException("Expected <k>+<m>[:<margin>], got " + spec);
+            }
+            int k = Integer.parseInt(parts[0]);
+            int m = Integer.parseInt(parts[1]);
+            return new ErasureCoding(k, m, parts.length == 3 ? Integer.parseInt(parts[2]) : m / 2);
+        }
+
+        int nodes() {
+            return dataFragments + parityFragments;
+        }
+
+        int writeQuorum() {
+            return dataFragments + margin;
+        }
+
+        int readQuorum() {
+            return nodes() - margin;
+        }
+    }
+
+    /**
+     * What a cluster runs beyond plain majority quorums; null settings are off. Start from {@link #DEFAULTS} (quorum
+     * replication of full values, nothing else) and change what differs.
+     * <p>
+     * Erasure coding and hinted handoff only apply to {@link Replication#QUORUM}. With {@code hints}, quorum writes a
+     * replica misses are handed off to it later (see {@link HintedHandoff}); with {@code rejoin}, nodes can
+     * {@link #crash} and {@link #restart} (see {@link Rejoin}); with {@code cache}, {@link Consistency#CACHED} reads may
+     * be answered from the entry node's {@link ReadCache}. The last two need quorum replication of full values, as one
+     * node's values stand in for another's.
+     */
+    record Options(Replication replication, ErasureCoding coding, HintedHandoff.Settings hints, Rejoin.Settings rejoin,
+                   ReadCache.Settings cache) {
+        static final Options DEFAULTS = new Options(Replication.QUORUM, null, null, null, null);
+
+        Options {
+            Objects.requireNonNull(replication);
+            if (coding != null && replication != Replication.QUORUM) {
+                throw new IllegalArgumentException("erasure coding needs quorum replication, not " + replication);
+            }
+            if (hints != null && replication != Replication.QUORUM) {
+                throw new IllegalArgumentException("hinted handoff needs quorum replication, not " + replication);
+            }
+            if (rejoin != null && (replication != Replication.QUORUM || coding != null)) {
+                throw new IllegalArgumentException("snapshot rejoin needs quorum replication of full values");
+            }
+            if (cache != null && (replication != Replication.QUORUM || coding != null)) {
+                throw new IllegalArgumentException("read cache needs quorum replication of full values");
+            }
+        }
+
+        Options withReplication(Replication replication) {
+            return new Options(replication, coding, hints, rejoin, cache);
+        }
+
+        Options withCoding(ErasureCoding coding) {
+            return new Options(replication, coding, hints, rejoin, cache);
+        }
+
+        Options withHints(HintedHandoff.Settings hints) {
+            return new Options(replication, coding, hints, rejoin, cache);
+        }
+
+        Options withRejoin(Rejoin.Settings rejoin) {
+            return new Options(replication, coding, hints, rejoin, cache);
+        }
+
+        Options withCache(ReadCache.Settings cache) {
+            return new Options(replication, coding, hints, rejoin, cache);
+        }
+    }
+
     private final List<Node> nodes;
     private final Link[][] mesh; // client-to-node link is provided externally; mesh is node-to-node
     private final EventLog log;
     private final int quorumSize;
+    private final Counter writeCommits;
+    private final Counter writeFailures;
+    private final Counter readCommits;
+    private final Counter readFailures;
+    private final Histogram writeAcks;
+    private final Histogram readAcks;
+    private final Counter scanCommits;
+    private final Counter scanFailures;
+    private final Histogram scanEntries;
+    private final Counter writeBytes;
+    private final Counter readBytes;
+    // null: full replication
+    private final ErasureCoding coding;
+    private final ReedSolomon codec;
+    // null: quorum fan-out
+    private final ChainReplication chain;
+    // null: missed writes are not handed off
+    private final HintedHandoff hints;
+    // null: nodes never crash
+    private final Rejoin rejoin;
+    private final AtomicLong requests = new AtomicLong();
+    // null: every read goes to a quorum
+    private final ReadCache cache;
+    private final Counter[] bytesOut;
+    // stands in for coordinator timestamps: one process, so a shared counter orders all writes
+    private final AtomicLong versions = new AtomicLong();
 
-    Cluster(List<Node> nodes, Link[][] mesh, EventLog log) {
+    Cluster(List<Node> nodes, Link[][] mesh, EventLog log, Metrics metrics, Options options) {
         if (mesh.length != nodes.size()) {
             throw new IllegalArgumentException("mesh size must match nodes");
         }
+        ErasureCoding coding = options.coding();
+        if (coding != null && coding.nodes() != nodes.size()) {
+            throw new IllegalArgumentException("erasure coding " + coding.dataFragments() + "+" + coding.parityFragments()
+                    + " needs " + coding.nodes() + " nodes, got " + nodes.size());
+        }
         this.nodes = List.copyOf(nodes);
         this.mesh = mesh;
         this.log = Objects.requireNonNull(log);
         this.quorumSize = nodes.size() / 2 + 1;
+        this.writeCommits = metrics.counter("cluster.write.quorum-ok");
+        this.writeFailures = metrics.counter("cluster.write.quorum-failed");
+        this.readCommits = metrics.counter("cluster.read.quorum-ok");
+        this.readFailures = metrics.counter("cluster.read.quorum-failed");
+        this.writeAcks = metrics.histogram("cluster.write.acks");
+        this.readAcks = metrics.histogram("cluster.read.acks");
+        this.scanCommits = metrics.counter("cluster.scan.quorum-ok");
+        this.scanFailures = metrics.counter("cluster.scan.quorum-failed");
+        this.scanEntries = metrics.histogram("cluster.scan.entries");
+        this.writeBytes = metrics.counter("cluster.write.bytes");
+        this.readBytes = metrics.counter("cluster.read.bytes");
+        this.coding = coding;
+        this.codec = coding == null ? null : new ReedSolomon(coding.dataFragments(), coding.parityFragments());
+        metrics.gauge("cluster.stored-bytes", () -> this.nodes.stream().mapToLong(Node::storedBytes).sum());
+        this.bytesOut = new Counter[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            bytesOut[i] = metrics.counter("cluster." + nodeId(i) + ".bytes-out");
+        }
+        this.hints = options.hints() == null ? null : new HintedHandoff(this.nodes, mesh, options.hints(), log, metrics);
+        this.rejoin = options.rejoin() == null ? null : new Rejoin(this.nodes, mesh, options.rejoin(), log, metrics);
+        this.cache = options.cache() == null ? null : new ReadCache(nodes.size(), options.cache(), metrics);
+        this.chain = options.replication() == Replication.QUORUM ? null
+                : new ChainReplication(this.nodes, mesh, options.replication() == Replication.CRAQ, log, metrics);
     }
 
     void put(String key, String value, int entryNode, Link clientLink, Map<String, String> meta) {
-        clientLink.deliver("client-put", () -> {
-            replicatePut(key, value, entryNode, meta);
+        put(key, value, entryNode, clientLink, meta, Deadline.none());
+    }
+
+    /**
+     * Writes through {@code entryNode}, which fans out to every node. Every hop carries {@code deadline}; once it
+     * passes, the remaining replicas are skipped (with hinted handoff they get hints) and the write fails with
+     * {@link DeadlineExceededException}.
+     */
+    void put(String key, String value, int entryNode, Link clientLink, Map<String, String> meta, Deadline deadline) {
+        put(key, value, null, entryNode, clientLink, meta, deadline);
+    }
+
+    /**
+     * As {@link #put(String, String, int, Link, Map, Deadline)}, for a value that expires on every replica after
+     * {@code ttl} (never if null). Only plain quorum replication carries expiries.
+     */
+    void put(String key, String value, Duration ttl, int entryNode, Link clientLink, Map<String, String> meta, Deadline deadline) {
+        if (ttl != null && (chain != null || coding != null)) {
+            throw new IllegalStateException("TTL writes need quorum replication without erasure coding");
+        }
+        foreground(() -> clientLink.deliver("client-put", () -> {
+            if (chain == null) {
+                replicatePut(key, value, ttl == null ? 0 : System.currentTimeMillis() + ttl.toMillis(), entryNode, meta, deadline);
+            } else {
+                chainPut(key, value, entryNode, deadline);
+            }
             return null;
-        }, meta);
+        }, meta, deadline), deadline);
+    }
+
+    private void chainPut(String key, String value, int entryNode, Deadline deadline) {
+        int length;
+        try {
+            length = chain.put(key, value, entryNode, deadline);
+        } catch (QuorumException | DeadlineExceededException e) {
+            writeFailures.increment();
+            throw e;
+        }
+        writeAcks.record(length);
+        writeCommits.increment();
+        log.event("cluster", "write-commit").str("key", key).str("value", value).num("acks", length).emit();
     }
 
-    private void replicatePut(String key, String value, int entryNode, Map<String, String> meta) {
+    // expiresAtMillis is 0 for a value that never expires
+    private void replicatePut(String key, String value, long expiresAtMillis, int entryNode, Map<String, String> meta,
+                              Deadline deadline) {
+        requireUp(entryNode);
+        if (cache != null) {
+            cache.invalidate(entryNode, key);
+        }
+        var event = new FlightEvents.QuorumWrite();
+        event.begin();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[][] fragments = coding == null ? null : codec.encode(bytes);
+        long version = versions.incrementAndGet();
+        int needed = coding == null ? quorumSize : coding.writeQuorum();
         int successes = 0;
         List<String> failures = new ArrayList<>();
+        List<Integer> reached = new ArrayList<>();
+        // once the deadline has passed, the replicas not tried yet are not sent to but get hints like the failed ones
+        DeadlineExceededException expired = null;
         for (int target = 0; target < nodes.size(); target++) {
             int nodeIdx = target;
             Link link = mesh[entryNode][target];
             if (link == null) continue;
-            try {
-                link.deliver("put", () -> {
-                    nodes.get(nodeIdx).put(key, value);
-                    return null;
-                }, MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "key", key, "value", value));
-                successes++;
-            } catch (LinkFailureException e) {
-                failures.add(nodeId(nodeIdx));
+            Node.Fragment fragment = fragments == null ? null : new Node.Fragment(version, nodeIdx, bytes.length, fragments[nodeIdx]);
+            if (expired == null) {
+                try {
+                    var linkMeta = link.logsDeliveries()
+                            ? MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "key", key, "value", value) : null;
+                    link.deliver("put", () -> {
+                        if (fragment == null) {
+                            nodes.get(nodeIdx).put(key, value, version, expiresAtMillis);
+                        } else {
+                            nodes.get(nodeIdx).putFragment(key, fragment);
+                        }
+                        return null;
+                    }, linkMeta, deadline);
+                    successes++;
+                    reached.add(nodeIdx);
+                    int sent = fragments == null ? bytes.length : fragments[nodeIdx].length;
+                    writeBytes.add(sent);
+                    bytesOut[entryNode].add(sent);
+                    continue;
+                } catch (LinkFailureException e) {
+                    // hinted below
+                } catch (DeadlineExceededException e) {
+                    expired = e;
+                }
+            }
+            failures.add(nodeId(nodeIdx));
+            if (hints != null) {
+                hints.store(entryNode, new HintedHandoff.Hint(nodeIdx, key, version, fragment == null ? value : null, fragment,
+                        expiresAtMillis));
             }
         }
-        if (successes < quorumSize) {
-            throw new QuorumException("Write quorum failed (success=" + successes + ", need=" + quorumSize + ", failures=" + failures + ")");
+        if (hints != null) {
+            for (int target : reached) {
+                hints.delivered(entryNode, target, key, version);
+                hints.linkUp(entryNode, target);
+            }
+        }
+        writeAcks.record(successes);
+        if (event.shouldCommit()) {
+            event.entry = nodeId(entryNode);
+            event.keyLength = key.length();
+            event.acks = successes;
+            event.quorum = needed;
+            event.committed = expired == null && successes >= needed;
+            event.commit();
+        }
+        if (expired != null) {
+            writeFailures.increment();
+            throw expired;
         }
-        log.info("cluster", "write-commit", MapBuilder.of("key", key, "value", value, "acks", Integer.toString(successes)));
+        if (successes < needed) {
+            writeFailures.increment();
+            throw new QuorumException("Write quorum failed (success=" + successes + ", need=" + needed + ", failures=" + failures + ")");
+        }
+        writeCommits.increment();
+        log.event("cluster", "write-commit").str("key", key).str("value", value).num("acks", successes).emit();
     }
 
     Optional<String> get(String key, int entryNode, Link clientLink, Map<String, String> meta) {
-        return clientLink.deliver("client-get", () -> replicateGet(key, entryNode), meta);
+        return get(key, entryNode, clientLink, meta, Deadline.none());
     }
 
-    private Optional<String> replicateGet(String key, int entryNode) {
+    /**
+     * Reads through {@code entryNode} like {@link #put(String, String, int, Link, Map, Deadline)}, with the same
+     * deadline handling, at {@link Consistency#QUORUM}.
+     */
+    Optional<String> get(String key, int entryNode, Link clientLink, Map<String, String> meta, Deadline deadline) {
+        return get(key, entryNode, clientLink, meta, deadline, Consistency.QUORUM);
+    }
+
+    /**
+     * As {@link #get(String, int, Link, Map, Deadline)}; at {@link Consistency#CACHED} the entry node's cache may
+     * answer without a quorum.
+     */
+    Optional<String> get(String key, int entryNode, Link clientLink, Map<String, String> meta, Deadline deadline,
+                         Consistency consistency) {
+        Objects.requireNonNull(consistency);
+        return foreground(() -> clientLink.deliver("client-get", () -> {
+            if (chain != null) {
+                return chainGet(key, entryNode, deadline);
+            }
+            return coding == null ? replicateGet(key, entryNode, deadline, consistency) : reconstructGet(key, entryNode, deadline);
+        }, meta, deadline), deadline);
+    }
+
+    /**
+     * Up to {@code limit} keys from {@code startKey} (inclusive) to {@code endKey} (exclusive; null for no bound) with
+     * their values, in key order, read through {@code entryNode} with the deadline handling of
+     * {@link #get(String, int, Link, Map, Deadline)}. Pass the page's {@link ScanPage#next()} back as {@code startKey}
+     * for the next page.
+     * <p>
+     * Under quorum replication a page needs answers from a majority and returns the newest version any of them holds,
+     * so unlike a read it may show a write that reached fewer than a quorum. Under erasure coding it needs a read
+     * quorum and decodes the newest version of each key that enough fragments carry; chain scans read the tail.
+     */
+    ScanPage scan(String startKey, String endKey, int limit, int entryNode, Link clientLink, Map<String, String> meta,
+                  Deadline deadline) {
+        Objects.requireNonNull(startKey);
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be >= 1");
+        }
+        if (endKey != null && startKey.compareTo(endKey) > 0) {
+            throw new IllegalArgumentException("startKey must not be after endKey");
+        }
+        return foreground(() -> clientLink.deliver("client-scan", () -> {
+            if (chain != null) {
+                return chainScan(startKey, endKey, limit, entryNode, deadline);
+            }
+            return coding == null ? replicateScan(startKey, endKey, limit, entryNode, deadline)
+                    : reconstructScan(startKey, endKey, limit, entryNode, deadline);
+        }, meta, deadline), deadline);
+    }
+
+    /**
+     * Takes {@code node} down, losing its state. Needs {@link Rejoin.Settings}.
+     */
+    void crash(int node, String reason) {
+        requireRejoin().crash(node, reason);
+    }
+
+    /**
+     * Brings {@code node} back empty; it serves reads again once its snapshot transfer is done.
+     */
+    void restart(int node) {
+        requireRejoin().restart(node);
+    }
+
+    /**
+     * Crashes and restarts a node at the given cluster request counts (puts, gets and scans, from 1).
+     */
+    void schedule(Rejoin.Crash crash) {
+        requireRejoin().schedule(crash);
+    }
+
+    private Rejoin requireRejoin() {
+        if (rejoin == null) {
+            throw new IllegalStateException("cluster was built without Rejoin.Settings");
+        }
+        return rejoin;
+    }
+
+    // Runs a client request, then lets pending snapshot transfers send their next chunk on its time.
+    private <T> T foreground(Supplier<T> request, Deadline deadline) {
+        if (rejoin == null) {
+            return request.get();
+        }
+        rejoin.beforeRequest(requests.incrementAndGet());
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            rejoin.afterRequest(start, deadline);
+        }
+    }
+
+    private Optional<String> chainGet(String key, int entryNode, Deadline deadline) {
+        Optional<String> value;
+        try {
+            value = chain.get(key, entryNode, deadline);
+        } catch (QuorumException | DeadlineExceededException e) {
+            readFailures.increment();
+            throw e;
+        }
+        readAcks.record(1);
+        readCommits.increment();
+        log.event("cluster", "read-commit").str("key", key).str("value", value.orElse(null)).num("acks", 1).emit();
+        return value;
+    }
+
+    /**
+     * Waits for hint batches still being replayed in the background; returns at once without hinted handoff.
+     */
+    void awaitHintReplay() {
+        if (hints != null) {
+            hints.awaitReplays();
+        }
+    }
+
+    /**
+     * Node indexes of the current chain, head first; empty under quorum replication.
+     */
+    List<Integer> chain() {
+        return chain == null ? List.of() : chain.chain();
+    }
+
+    private Optional<String> replicateGet(String key, int entryNode, Deadline deadline, Consistency consistency) {
+        requireUp(entryNode);
+        Node entry = nodes.get(entryNode);
+        // a rejoining replica's versions say nothing yet
+        boolean cached = cache != null && entry.isServing();
+        long localVersion = cached ? entry.versionOf(key) : 0;
+        if (cached && consistency == Consistency.CACHED) {
+            ReadCache.Entry hit = cache.lookup(entryNode, key, localVersion, entry.incarnation());
+            if (hit != null) {
+                cache.served(hit, () -> newestVersion(key));
+                log.event("cluster", "cache-hit").str("key", key).str("value", hit.value())
+                        .num("ageMs", (System.nanoTime() - hit.cachedNanos()) / 1_000_000).emit();
+                return Optional.ofNullable(hit.value());
+            }
+        }
+        long token = cached ? cache.readStarted(entryNode) : 0;
+        long newestVersion = cached ? newestVersion(key) : 0;
+        var event = new FlightEvents.QuorumRead();
+        event.begin();
         Map<String, Integer> votes = new HashMap<>();
         int successes = 0;
+        DeadlineExceededException expired = null;
         for (int target = 0; target < nodes.size(); target++) {
             int nodeIdx = target;
             Link link = mesh[entryNode][target];
             if (link == null) continue;
             try {
-                Optional<String> value = link.deliver("get", () -> nodes.get(nodeIdx).get(key), MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "key", key));
+                var linkMeta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "key", key) : null;
+                Optional<String> value = link.deliver("get", () -> nodes.get(nodeIdx).get(key), linkMeta, deadline);
                 String val = value.orElse(null);
                 votes.merge(val, 1, Integer::sum);
                 successes++;
+                readBytes.add(val == null ? 0 : val.getBytes(StandardCharsets.UTF_8).length);
+                if (hints != null) {
+                    hints.linkUp(entryNode, nodeIdx);
+                }
             } catch (LinkFailureException e) {
                 // skip failed node
+            } catch (DeadlineExceededException e) {
+                expired = e;
+                break;
             }
         }
+        readAcks.record(successes);
         var majority = majorityValue(votes, quorumSize);
+        if (event.shouldCommit()) {
+            event.entry = nodeId(entryNode);
+            event.keyLength = key.length();
+            event.acks = successes;
+            event.quorum = quorumSize;
+            event.versions = votes.size();
+            event.committed = expired == null && majority.isPresent() && successes >= quorumSize;
+            event.commit();
+        }
+        if (expired != null) {
+            readFailures.increment();
+            throw expired;
+        }
         if (majority.isPresent() && successes >= quorumSize) {
             String decided = majority.get();
-            log.info("cluster", "read-commit", MapBuilder.of("key", key, "value", decided, "acks", Integer.toString(successes)));
+            if (cached) {
+                cache.store(entryNode, token, key, new ReadCache.Entry(decided, localVersion, newestVersion, entry.incarnation(),
+                        System.nanoTime()));
+            }
+            readCommits.increment();
+            log.event("cluster", "read-commit").str("key", key).str("value", decided).num("acks", successes).emit();
             return Optional.ofNullable(decided);
         }
+        readFailures.increment();
         throw new QuorumException("Read quorum failed (acks=" + successes + ", need=" + quorumSize + ", votes=" + votes + ")");
     }
 
-    static Cluster demo(int nodeCount, double dropProbability, Random random, EventLog log) {
+    // Highest version of key on any serving replica, read without messages: only the cache's staleness check uses it.
+    private long newestVersion(String key) {
+        long newest = 0;
+        for (Node node : nodes) {
+            if (node.isServing()) {
+                newest = Math.max(newest, node.versionOf(key));
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Collects fragments from every reachable node and decodes the newest version that at least k of them carry. A
+     * newer version with fewer fragments belongs to a write that did not reach its quorum and is passed over.
+     */
+    private Optional<String> reconstructGet(String key, int entryNode, Deadline deadline) {
+        var event = new FlightEvents.QuorumRead();
+        event.begin();
+        Map<Long, byte[][]> byVersion = new HashMap<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        Map<Long, Integer> lengths = new HashMap<>();
+        int successes = 0;
+        DeadlineExceededException expired = null;
+        for (int target = 0; target < nodes.size(); target++) {
+            int nodeIdx = target;
+            Link link = mesh[entryNode][target];
+            if (link == null) continue;
+            try {
+                var linkMeta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "key", key) : null;
+                Optional<Node.Fragment> answer = link.deliver("get", () -> nodes.get(nodeIdx).getFragment(key), linkMeta, deadline);
+                successes++;
+                if (answer.isPresent()) {
+                    Node.Fragment fragment = answer.get();
+                    byVersion.computeIfAbsent(fragment.version(), v -> new byte[coding.nodes()][])[fragment.index()] = fragment.bytes();
+                    counts.merge(fragment.version(), 1, Integer::sum);
+                    lengths.put(fragment.version(), fragment.length());
+                    readBytes.add(fragment.bytes().length);
+                }
+                if (hints != null) {
+                    hints.linkUp(entryNode, nodeIdx);
+                }
+            } catch (LinkFailureException e) {
+                // skip failed node
+            } catch (DeadlineExceededException e) {
+                expired = e;
+                break;
+            }
+        }
+        readAcks.record(successes);
+        long decodable = -1;
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() >= coding.dataFragments() && entry.getKey() > decodable) {
+                decodable = entry.getKey();
+            }
+        }
+        boolean committed = expired == null && successes >= coding.readQuorum() && (decodable >= 0 || counts.isEmpty());
+        if (event.shouldCommit()) {
+            event.entry = nodeId(entryNode);
+            event.keyLength = key.length();
+            event.acks = successes;
+            event.quorum = coding.readQuorum();
+            event.versions = counts.size();
+            event.committed = committed;
+            event.commit();
+        }
+        if (expired != null) {
+            readFailures.increment();
+            throw expired;
+        }
+        if (!committed) {
+            readFailures.increment();
+            throw new QuorumException("Read quorum failed (acks=" + successes + ", need=" + coding.readQuorum() + ", fragments by version="
+                    + counts + ", need " + coding.dataFragments() + " of one version)");
+        }
+        readCommits.increment();
+        String decided = decodable < 0 ? null
+                : new String(codec.decode(byVersion.get(decodable), lengths.get(decodable)), StandardCharsets.UTF_8);
+        log.event("cluster", "read-commit").str("key", key).str("value", decided).num("acks", successes).num("version", decodable).emit();
+        return Optional.ofNullable(decided);
+    }
+
+    private ScanPage chainScan(String startKey, String endKey, int limit, int entryNode, Deadline deadline) {
+        List<Node.Versioned> entries;
+        try {
+            entries = chain.scan(startKey, endKey, limit, entryNode, deadline);
+        } catch (QuorumException | DeadlineExceededException e) {
+            scanFailures.increment();
+            throw e;
+        }
+        NavigableMap<String, String> values = new TreeMap<>();
+        for (Node.Versioned entry : entries) {
+            values.put(entry.key(), entry.value());
+        }
+        // a full page from the tail may have stopped short of the range's end
+        return page(startKey, values, entries.size() == limit ? entries.get(limit - 1).key() : null, limit, 1);
+    }
+
+    // Every replica offers its first `limit` keys of the range. Past the last key of a full page that replica's keys
+    // are unknown, so the merged page ends at the smallest such key; up to there every answer is complete.
+    private ScanPage replicateScan(String startKey, String endKey, int limit, int entryNode, Deadline deadline) {
+        requireUp(entryNode);
+        Map<String, Node.Versioned> newest = new HashMap<>();
+        String bound = null;
+        int successes = 0;
+        for (int target = 0; target < nodes.size(); target++) {
+            int nodeIdx = target;
+            Link link = mesh[entryNode][target];
+            if (link == null) continue;
+            try {
+                var linkMeta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "start", startKey) : null;
+                List<Node.Versioned> page = link.deliver("scan", () -> nodes.get(nodeIdx).scan(startKey, endKey, limit), linkMeta, deadline);
+                successes++;
+                for (Node.Versioned entry : page) {
+                    newest.merge(entry.key(), entry, (current, offered) -> offered.version() > current.version() ? offered : current);
+                    readBytes.add(entry.value().getBytes(StandardCharsets.UTF_8).length);
+                }
+                if (page.size() == limit) {
+                    bound = min(bound, page.get(limit - 1).key());
+                }
+                if (hints != null) {
+                    hints.linkUp(entryNode, nodeIdx);
+                }
+            } catch (LinkFailureException e) {
+                // skip failed node
+            } catch (DeadlineExceededException e) {
+                scanFailures.increment();
+                throw e;
+            }
+        }
+        if (successes < quorumSize) {
+            scanFailures.increment();
+            throw new QuorumException("Scan quorum failed (acks=" + successes + ", need=" + quorumSize + ")");
+        }
+        NavigableMap<String, String> values = new TreeMap<>();
+        for (Node.Versioned entry : newest.values()) {
+            values.put(entry.key(), entry.value());
+        }
+        return page(startKey, values, bound, limit, successes);
+    }
+
+    // As replicateScan, with fragments: a key is decoded from the newest version at least k fragments carry.
+    private ScanPage reconstructScan(String startKey, String endKey, int limit, int entryNode, Deadline deadline) {
+        requireUp(entryNode);
+        Map<String, Map<Long, List<Node.Fragment>>> byKey = new HashMap<>();
+        String bound = null;
+        int successes = 0;
+        for (int target = 0; target < nodes.size(); target++) {
+            int nodeIdx = target;
+            Link link = mesh[entryNode][target];
+            if (link == null) continue;
+            try {
+                var linkMeta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(entryNode), "to", nodeId(nodeIdx), "start", startKey) : null;
+                NavigableMap<String, Node.Fragment> page = link.deliver("scan",
+                        () -> nodes.get(nodeIdx).scanFragments(startKey, endKey, limit), linkMeta, deadline);
+                successes++;
+                for (Map.Entry<String, Node.Fragment> entry : page.entrySet()) {
+                    byKey.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                            .computeIfAbsent(entry.getValue().version(), v -> new ArrayList<>()).add(entry.getValue());
+                    readBytes.add(entry.getValue().bytes().length);
+                }
+                if (page.size() == limit) {
+                    bound = min(bound, page.lastKey());
+                }
+                if (hints != null) {
+                    hints.linkUp(entryNode, nodeIdx);
+                }
+            } catch (LinkFailureException e) {
+                // skip failed node
+            } catch (DeadlineExceededException e) {
+                scanFailures.increment();
+                throw e;
+            }
+        }
+        if (successes < coding.readQuorum()) {
+            scanFailures.increment();
+            throw new QuorumException("Scan quorum failed (acks=" + successes + ", need=" + coding.readQuorum() + ")");
+        }
+        NavigableMap<String, String> values = new TreeMap<>();
+        for (Map.Entry<String, Map<Long, List<Node.Fragment>>> keyed : byKey.entrySet()) {
+            if (bound != null && keyed.getKey().compareTo(bound) > 0) {
+                continue;
+            }
+            List<Node.Fragment> decodable = null;
+            for (List<Node.Fragment> fragments : keyed.getValue().values()) {
+                if (fragments.size() >= coding.dataFragments()
+                        && (decodable == null || fragments.get(0).version() > decodable.get(0).version())) {
+                    decodable = fragments;
+                }
+            }
+            if (decodable == null) {
+                scanFailures.increment();
+                throw new QuorumException("Scan quorum failed (fragments of " + keyed.getKey() + " by version="
+                        + keyed.getValue().keySet() + ", need " + coding.dataFragments() + " of one version)");
+            }
+            byte[][] shards = new byte[coding.nodes()][];
+            for (Node.Fragment fragment : decodable) {
+                shards[fragment.index()] = fragment.bytes();
+            }
+            values.put(keyed.getKey(), new String(codec.decode(shards, decodable.get(0).length()), StandardCharsets.UTF_8));
+        }
+        return page(startKey, values, bound, limit, successes);
+    }
+
+    // The first `limit` values up to `bound` (inclusive; null for none); the page goes on after them if values are
+    // left or a replica may hold keys past the bound.
+    private ScanPage page(String startKey, NavigableMap<String, String> values, String bound, int limit, int acks) {
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        String next = null;
+        for (Map.Entry<String, String> entry : (bound == null ? values : values.headMap(bound, true)).entrySet()) {
+            if (entries.size() == limit) {
+                next = ScanPage.after(entries.get(limit - 1).getKey());
+                break;
+            }
+            entries.add(entry);
+        }
+        if (next == null && bound != null) {
+            next = ScanPage.after(bound);
+        }
+        scanCommits.increment();
+        scanEntries.record(entries.size());
+        log.event("cluster", "scan-commit").str("start", startKey).str("next", next).num("entries", entries.size())
+                .num("acks", acks).emit();
+        return new ScanPage(entries, next);
+    }
+
+    private static String min(String a, String b) {
+        return a == null || b.compareTo(a) < 0 ? b : a;
+    }
+
+    /**
+     * Full mesh of {@code nodeCount} nodes, every link drawing from its own stream, named after the link. {@code links}
+     * gives the models of the link from node {@code from} to node {@code to}, e.g. {@link LinkSpec#uniform} everywhere,
+     * or a partition of one node for a while, or a heavier tail on one replica.
+     */
+    static Cluster demo(int nodeCount, RandomStreams streams, EventLog log, Metrics metrics, BiFunction<Integer, Integer, LinkSpec> links,
+                        Options options) {
         List<Node> nodes = new ArrayList<>();
         for (int i = 0; i < nodeCount; i++) {
-            nodes.add(new Node(nodeId(i), log));
+            nodes.add(new Node(nodeId(i), log, metrics));
         }
         Link[][] mesh = new Link[nodeCount][nodeCount];
         for (int from = 0; from < nodeCount; from++) {
             for (int to = 0; to < nodeCount; to++) {
-                mesh[from][to] = new Link("link-" + nodeId(from) + "-" + nodeId(to), Duration.ofMillis(5), Duration.ofMillis(40), dropProbability, random, log);
+                String id = "link-" + nodeId(from) + "-" + nodeId(to);
+                LinkSpec spec = links.apply(from, to);
+                mesh[from][to] = new Link(id, spec.latency(), spec.faults(), streams.stream(id), log, metrics);
             }
         }
-        return new Cluster(nodes, mesh, log);
+        return new Cluster(nodes, mesh, log, metrics, options);
+    }
+
+    // a down entry node cannot coordinate; it looks unreachable to the client
+    private void requireUp(int entryNode) {
+        if (!nodes.get(entryNode).isUp()) {
+            throw new LinkFailureException(nodeId(entryNode) + " is down");
+        }
     }
 
-    private Optional<String> majorityValue(Map<String, Integer> votes, int quorum) {
+    static Optional<String> majorityValue(Map<String, Integer> votes, int quorum) {
         for (Map.Entry<String, Integer> entry : votes.entrySet()) {
             if (entry.getValue() >= quorum) {
                 return Optional.ofNullable(entry.getKey());
@@ -0,0 +1,31 @@
+package sim.quorum;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free monotonically increasing count, striped across threads so hot-path increments do not contend.
+ */
+final class Counter {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    void increment() {
+        count.increment();
+    }
+
+    void add(long delta) {
+        count.add(delta);
+    }
+
+    long sum() {
+        return count.sum();
+    }
+
+    String name() {
+        return name;
+    }
+}
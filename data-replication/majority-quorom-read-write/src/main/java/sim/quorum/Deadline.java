@@ -0,0 +1,46 @@
+package sim.quorum;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which a request has to be answered. The client sets it once per request and it travels with the
+ * request through {@link Cluster} and every {@link Link} hop, so a hop whose deadline has passed is skipped instead of
+ * doing work nobody waits for.
+ */
+final class Deadline {
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long expiresAtNanos;
+    private final boolean bounded;
+
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos(), true);
+    }
+
+    /**
+     * A deadline that never expires.
+     */
+    static Deadline none() {
+        return NONE;
+    }
+
+    boolean isBounded() {
+        return bounded;
+    }
+
+    boolean expired() {
+        return bounded && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * Milliseconds left, negative once expired; {@link Long#MAX_VALUE} when unbounded.
+     */
+    long remainingMillis() {
+        return bounded ? Math.floorDiv(expiresAtNanos - System.nanoTime(), 1_000_000L) : Long.MAX_VALUE;
+    }
+}
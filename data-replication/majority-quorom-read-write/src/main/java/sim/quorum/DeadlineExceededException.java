@@ -0,0 +1,7 @@
+package sim.quorum;
+
+final class DeadlineExceededException extends RuntimeException {
+    DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,93 @@
+package sim.quorum;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks the entry node for a client request, either uniformly at random or by "power of two choices": draw two
+ * distinct nodes and take the one whose client link has the lower exponentially weighted moving average latency.
+ * <p>
+ * Two random candidates are enough to steer most traffic away from a slow link without herding every request onto the
+ * single fastest node. Nodes that have never been measured average 0, so each is tried early. The averages are
+ * updated lock-free and may be fed from several threads; the random generator is only used by the caller's thread.
+ */
+final class EntrySelector {
+    enum Strategy {
+        RANDOM,
+        POWER_OF_TWO
+    }
+
+    static final double ALPHA = 0.2;
+
+    private final Strategy strategy;
+    private final RandomGenerator random;
+    private final AtomicLongArray ewmaBits;
+    private final int nodeCount;
+
+    EntrySelector(Strategy strategy, int nodeCount, RandomGenerator random) {
+        if (nodeCount < 1) {
+            throw new IllegalArgumentException("nodeCount must be >= 1");
+        }
+        this.strategy = Objects.requireNonNull(strategy);
+        this.random = Objects.requireNonNull(random);
+        this.nodeCount = nodeCount;
+        this.ewmaBits = new AtomicLongArray(nodeCount);
+    }
+
+    int choose() {
+        if (strategy == Strategy.RANDOM) {
+            return random.nextInt(nodeCount);
+        }
+        int a = random.nextInt(nodeCount);
+        if (nodeCount == 1) {
+            return a;
+        }
+        int b = random.nextInt(nodeCount - 1);
+        if (b >= a) {
+            b++;
+        }
+        return ewmaMicros(b) < ewmaMicros(a) ? b : a;
+    }
+
+    /**
+     * Like {@link #choose} but never returns {@code excluded}; for the second leg of a hedged request. Returns
+     * {@code excluded} only when it is the sole node.
+     */
+    int chooseOther(int excluded) {
+        if (nodeCount == 1) {
+            return excluded;
+        }
+        int a = other(excluded, random.nextInt(nodeCount - 1));
+        if (strategy == Strategy.RANDOM || nodeCount == 2) {
+            return a;
+        }
+        int b = random.nextInt(nodeCount - 2);
+        if (b >= Math.min(a, excluded)) {
+            b++;
+        }
+        if (b >= Math.max(a, excluded)) {
+            b++;
+        }
+        return ewmaMicros(b) < ewmaMicros(a) ? b : a;
+    }
+
+    void record(int node, long micros) {
+        while (true) {
+            long bits = ewmaBits.get(node);
+            double current = Double.longBitsToDouble(bits);
+            double next = bits == 0 ? micros : current + ALPHA * (micros - current);
+            if (ewmaBits.compareAndSet(node, bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    double ewmaMicros(int node) {
+        return Double.longBitsToDouble(ewmaBits.get(node));
+    }
+
+    private static int other(int excluded, int draw) {
+        return draw >= excluded ? draw + 1 : draw;
+    }
+}
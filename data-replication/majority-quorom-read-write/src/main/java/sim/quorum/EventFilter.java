@@ -0,0 +1,23 @@
+package sim.quorum;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Decides which events an {@link EventLog} emits. Checked before any event detail is built.
+ */
+@FunctionalInterface
+interface EventFilter {
+    EventFilter ALL = (actor, event) -> true;
+    EventFilter NONE = (actor, event) -> false;
+
+    boolean accepts(String actor, String event);
+
+    /**
+     * Rejects events whose actor or event name is in {@code names}.
+     */
+    static EventFilter excluding(String... names) {
+        Set<String> excluded = Set.copyOf(Arrays.asList(names));
+        return (actor, event) -> !excluded.contains(actor) && !excluded.contains(event);
+    }
+}
@@ -0,0 +1,202 @@
+package sim.quorum;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary event sink: records in memory-mapped, rolling segment files plus a string table.
+ * <p>
+ * Actors, event names and field keys come from small, fixed sets, so each is interned once into {@code strings.bin}
+ * ({@code [int length][utf-8 bytes]}, ids in file order) and records refer to them by id. Text values (keys, values,
+ * reasons) are mostly distinct and are written into the record itself, so the table stays small however long the
+ * run. Record layout (little endian, padded to 8 bytes, at most {@value #MAX_RECORD_SIZE} bytes):
+ * <pre>
+ *   0  long  timestamp, epoch nanos (0 marks the end of a segment)
+ *   8  int   record length in bytes
+ *  12  int   actor id
+ *  16  int   event id
+ *  20  byte  field count
+ *  21  byte  flags (bit 0: text was cut to fit the record)
+ *  24  field count x (int kind << 30 | key id, long value), then the text bytes: value is a number, or for text
+ *      (offset in the record << 32 | utf-8 length), -1 for null
+ * </pre>
+ * A new string reaches {@code strings.bin} before the first record that refers to it is published, so a reader never
+ * sees an id the table lacks unless the table itself was cut short. Read it back with {@link JournalReader}.
+ */
+final class EventJournal implements AutoCloseable {
+    static final int MAX_RECORD_SIZE = 1024;
+    static final int HEADER_SIZE = 24;
+    static final int FIELD_SIZE = 12;
+    static final int KIND_TEXT = 0;
+    static final int KIND_NUMBER = 1;
+    static final int KIND_META_TEXT = 2;
+    static final int KIND_META_NUMBER = 3;
+    static final int FLAG_TRUNCATED = 1;
+    static final long NULL_TEXT = -1;
+    static final String STRINGS_FILE = "strings.bin";
+    static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final FileChannel strings;
+    private final byte[][] texts = new byte[Event.MAX_FIELDS][];
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private long records;
+
+    EventJournal(Path dir) {
+        this(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    EventJournal(Path dir, long segmentBytes) {
+        if (segmentBytes < MAX_RECORD_SIZE || segmentBytes % 8 != 0 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentBytes must be a multiple of 8 from " + MAX_RECORD_SIZE + " to 2 GiB");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(dir);
+            for (int i = 0; Files.deleteIfExists(segmentPath(dir, i)); i++) {
+                // drop segments left by a previous run so readers do not mix journals
+            }
+            this.strings = FileChannel.open(dir.resolve(STRINGS_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to initialize event journal at " + dir, e);
+        }
+    }
+
+    static Path segmentPath(Path dir, int index) {
+        return dir.resolve(String.format("events-%05d.bin", index));
+    }
+
+    synchronized void append(Event event) {
+        int fields = event.size();
+        int size = HEADER_SIZE + fields * FIELD_SIZE;
+        boolean truncated = false;
+        for (int i = 0; i < fields; i++) {
+            String text = event.isNumber(i) ? null : event.text(i);
+            if (text == null) {
+                texts[i] = null;
+                continue;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > MAX_RECORD_SIZE) {
+                bytes = cut(bytes, MAX_RECORD_SIZE - size);
+                truncated = true;
+            }
+            texts[i] = bytes;
+            size += bytes.length;
+        }
+        int length = (size + 7) & ~7;
+        if (segment == null || segment.remaining() < length) {
+            roll();
+        }
+        int base = segment.position();
+        segment.putInt(base + 8, length);
+        segment.putInt(base + 12, intern(event.actor()));
+        segment.putInt(base + 16, intern(event.name()));
+        segment.put(base + 20, (byte) fields);
+        segment.put(base + 21, (byte) (truncated ? FLAG_TRUNCATED : 0));
+        int textOffset = HEADER_SIZE + fields * FIELD_SIZE;
+        for (int i = 0; i < fields; i++) {
+            int offset = base + HEADER_SIZE + i * FIELD_SIZE;
+            int kind = (event.isMeta(i) ? KIND_META_TEXT : KIND_TEXT) + (event.isNumber(i) ? 1 : 0);
+            segment.putInt(offset, kind << 30 | intern(event.key(i)));
+            if (event.isNumber(i)) {
+                segment.putLong(offset + 4, event.number(i));
+            } else if (texts[i] == null) {
+                segment.putLong(offset + 4, NULL_TEXT);
+            } else {
+                segment.putLong(offset + 4, (long) textOffset << 32 | texts[i].length);
+                segment.put(base + textOffset, texts[i]);
+                textOffset += texts[i].length;
+            }
+        }
+        // Timestamp last: a non-zero timestamp is what marks the record as present.
+        segment.putLong(base, event.epochNanos());
+        segment.position(base + length);
+        records++;
+    }
+
+    synchronized long records() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() {
+        try (strings) {
+            strings.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close event journal " + dir, e);
+        }
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    // Written straight to the file, not buffered: the record that needs the id is published right after.
+    private int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        int newId = stringIds.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).flip();
+        try {
+            while (entry.hasRemaining()) {
+                strings.write(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write event journal strings in " + dir, e);
+        }
+        stringIds.put(value, newId);
+        return newId;
+    }
+
+    // The longest prefix of utf-8 bytes that fits in max bytes without splitting a character.
+    private static byte[] cut(byte[] bytes, int max) {
+        int end = Math.max(max, 0);
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+
+    private void roll() {
+        try {
+            // the segment about to be flushed may refer to any string written so far
+            strings.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to flush event journal strings in " + dir, e);
+        }
+        if (segment != null) {
+            segment.force();
+        }
+        segmentIndex++;
+        try (FileChannel channel = FileChannel.open(segmentPath(dir, segmentIndex),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll event journal segment in " + dir, e);
+        }
+    }
+}
@@ -1,42 +1,172 @@
 package sim.quorum;
 
+import java.io.OutputStream;
 import java.io.PrintStream;
-import java.time.Instant;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Map;
-import java.util.StringJoiner;
+import java.util.Objects;
+
+/**
+ * Structured key=value event log shared by every actor in the simulation.
+ * <p>
+ * Hot paths use the typed API: {@code log.event(actor, name).str(..).num(..).emit()} fills a preallocated
+ * {@link Event} and formats it only if it is written; when the {@link EventFilter} rejects the event nothing is built
+ * at all. The {@code info(..)} map overloads remain for cold paths.
+ * <p>
+ * By default every event is formatted and printed on the caller's thread. {@link #async} instead hands events to a
+ * preallocated ring buffer drained by a background writer; the output is identical, but callers must {@link #close}
+ * the log to flush what is still buffered. {@link #journal} writes compact binary records instead of text, to be
+ * rendered later with {@link JournalReader}.
+ */
+final class EventLog implements AutoCloseable {
+    /**
+     * What async producers do when the ring buffer is full.
+     */
+    enum OverflowPolicy {
+        /** Wait for the writer to free a slot; nothing is lost. */
+        BLOCK,
+        /** Discard the event. */
+        DROP,
+        /** Keep one in every {@code sampleEvery} overflowing events (waiting for it), discard the rest. */
+        SAMPLE
+    }
 
-final class EventLog {
     private final PrintStream out;
+    private final AsyncEventWriter async;
+    private final EventJournal journal;
+    private final ThreadLocal<Event> events = ThreadLocal.withInitial(() -> new Event(this));
+    private final ThreadLocal<StringBuilder> lines = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private volatile EventFilter filter;
+    private volatile boolean closed;
 
     EventLog(PrintStream out) {
+        this(out, EventFilter.ALL);
+    }
+
+    EventLog(PrintStream out, EventFilter filter) {
+        this(out, filter, null, null);
+    }
+
+    private EventLog(PrintStream out, EventFilter filter, AsyncEventWriter async, EventJournal journal) {
         this.out = out;
+        this.filter = Objects.requireNonNull(filter, "filter");
+        this.async = async;
+        this.journal = journal;
+    }
+
+    /**
+     * A log that emits nothing; every {@link #isEnabled} check fails.
+     */
+    static EventLog off() {
+        return new EventLog(new PrintStream(OutputStream.nullOutputStream()), EventFilter.NONE);
+    }
+
+    static EventLog async(PrintStream out, int capacity, OverflowPolicy policy) {
+        return async(out, capacity, policy, 16);
+    }
+
+    static EventLog async(PrintStream out, int capacity, OverflowPolicy policy, int sampleEvery) {
+        return new EventLog(out, EventFilter.ALL, new AsyncEventWriter(out, capacity, policy, sampleEvery), null);
+    }
+
+    /**
+     * Writes events to a binary {@link EventJournal} in {@code dir}; {@code out} only receives events logged after
+     * {@link #close}.
+     */
+    static EventLog journal(PrintStream out, Path dir) {
+        return new EventLog(out, EventFilter.ALL, null, new EventJournal(dir));
+    }
+
+    /**
+     * Builds a log from {@code -Dsim.log.mode=sync|async|journal|off}, {@code -Dsim.log.overflow=block|drop|sample},
+     * {@code -Dsim.log.journal=<dir>} (default {@code journal}),
+     * {@code -Dsim.log.capacity=<power of two>} and {@code -Dsim.log.exclude=<actors or events, comma separated>};
+     * synchronous and unfiltered when nothing is set.
+     */
+    static EventLog fromSystemProperties(PrintStream out) {
+        String mode = System.getProperty("sim.log.mode", "sync").toLowerCase(Locale.ROOT);
+        EventLog log = switch (mode) {
+            case "off" -> off();
+            case "async" -> async(out, Integer.parseInt(System.getProperty("sim.log.capacity", "8192")),
+                    OverflowPolicy.valueOf(System.getProperty("sim.log.overflow", "block").toUpperCase(Locale.ROOT)));
+            case "journal" -> journal(out, Path.of(System.getProperty("sim.log.journal", "journal")));
+            default -> new EventLog(out);
+        };
+        String exclude = System.getProperty("sim.log.exclude", "");
+        if (!exclude.isBlank() && !"off".equals(mode)) {
+            log.filter(EventFilter.excluding(exclude.split(",")));
+        }
+        return log;
+    }
+
+    void filter(EventFilter filter) {
+        this.filter = Objects.requireNonNull(filter, "filter");
+    }
+
+    boolean isEnabled(String actor, String event) {
+        return filter.accepts(actor, event);
+    }
+
+    /**
+     * Starts a typed event. Returns an inert event (whose setters and {@code emit} do nothing) when filtered out.
+     */
+    Event event(String actor, String event) {
+        if (!filter.accepts(actor, event)) {
+            return Event.DISABLED;
+        }
+        return events.get().begin(actor, event);
     }
 
     void info(String actor, String event, Map<String, String> details) {
         info(actor, event, details, null);
     }
 
-    void info(String actor, String event, Map<String, String> details, Map<String, String> meta) {
-        var ts = DateTimeFormatter.ISO_INSTANT.format(Instant.now());
-        var joiner = new StringJoiner(" ");
-        if (details != null) {
-            details.forEach((k, v) -> joiner.add(k + "=" + v));
+    void info(String actor, String event, Map<String, String> details, Map<String, String> metadata) {
+        event(actor, event).details(details).meta(metadata).emit();
+    }
+
+    /**
+     * Events dropped by the async overflow policy so far; always 0 in synchronous mode.
+     */
+    long dropped() {
+        return async == null ? 0 : async.dropped();
+    }
+
+    /**
+     * Drains buffered events in async mode, closes the journal and flushes the stream; the stream itself is left open.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (async != null) {
+            async.close();
+            long dropped = async.dropped();
+            if (dropped > 0) {
+                event("event-log", "dropped").num("count", dropped).emit();
+            }
         }
-        String suffix = joiner.toString();
-        String metaStr = formatMeta(meta);
-        if (!metaStr.isEmpty()) {
-            suffix = (suffix + " " + metaStr).trim();
+        if (journal != null) {
+            journal.close();
         }
-        out.printf("[%s] actor=%s event=%s %s%n", ts, actor, event, suffix);
+        out.flush();
     }
 
-    private String formatMeta(Map<String, String> meta) {
-        if (meta == null || meta.isEmpty()) {
-            return "";
+    void write(Event event) {
+        if (async != null && !closed) {
+            async.publish(event);
+            return;
+        }
+        if (journal != null && !closed) {
+            journal.append(event);
+            return;
         }
-        var joiner = new StringJoiner(", ");
-        meta.forEach((k, v) -> joiner.add(k + ": " + v));
-        return "{" + joiner + "}";
+        StringBuilder line = lines.get();
+        line.setLength(0);
+        event.appendLine(line);
+        out.print(line);
     }
 }
@@ -0,0 +1,129 @@
+package sim.quorum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides what a {@link Link} does with a delivery after its delay: deliver it, drop it, deliver it twice, hold it
+ * back, or drop it because the link is inside a scheduled partition window.
+ * <p>
+ * Probabilistic faults share a single uniform draw per delivery, so adding duplicate or reorder probabilities does not
+ * shift the drop pattern of a seed. Partition windows are ranges of the link's own delivery sequence numbers (0 is its
+ * first delivery) rather than wall-clock time, so they replay exactly for a seed. Sampling returns an enum constant
+ * and allocates nothing.
+ */
+@FunctionalInterface
+interface FaultModel {
+    enum Fault {
+        DELIVER,
+        /** Lost in transit; the sender sees a {@link LinkFailureException}. */
+        DROP,
+        /** Delivered twice; the sender only sees the first response. */
+        DUPLICATE,
+        /** Held back for another latency sample, so messages sent after it can overtake it. */
+        REORDER,
+        /** Dropped because the link is partitioned at this point of its sequence. */
+        PARTITIONED
+    }
+
+    Fault sample(RandomGenerator random, long sequence);
+
+    /**
+     * Never fails and draws nothing from the generator.
+     */
+    static FaultModel none() {
+        return (random, sequence) -> Fault.DELIVER;
+    }
+
+    /**
+     * Drops with {@code probability}; the draw sequence of the original {@link Link} failure probability.
+     */
+    static FaultModel drop(double probability) {
+        return of(probability, 0.0, 0.0);
+    }
+
+    static FaultModel of(double drop, double duplicate, double reorder) {
+        requireProbability(drop, "drop");
+        requireProbability(duplicate, "duplicate");
+        requireProbability(reorder, "reorder");
+        if (drop + duplicate + reorder > 1.0) {
+            throw new IllegalArgumentException("drop + duplicate + reorder must be <= 1");
+        }
+        double duplicateBound = drop + duplicate;
+        double reorderBound = duplicateBound + reorder;
+        return (random, sequence) -> {
+            double u = random.nextDouble();
+            if (u <= drop) {
+                return Fault.DROP;
+            }
+            if (u < duplicateBound) {
+                return Fault.DUPLICATE;
+            }
+            return u < reorderBound ? Fault.REORDER : Fault.DELIVER;
+        };
+    }
+
+    /**
+     * Drops deliveries {@code from} (inclusive) to {@code until} (exclusive) of this link's sequence. Outside the
+     * windows this model decides as before; inside them it still draws, so a window does not shift later outcomes.
+     */
+    default FaultModel withPartition(long from, long until) {
+        if (from < 0 || until < from) {
+            throw new IllegalArgumentException("partition window must satisfy 0 <= from <= until");
+        }
+        return (random, sequence) -> {
+            Fault fault = sample(random, sequence);
+            return sequence >= from && sequence < until ? Fault.PARTITIONED : fault;
+        };
+    }
+
+    /**
+     * Parses comma separated {@code drop=<p>}, {@code duplicate=<p>}, {@code reorder=<p>} and any number of
+     * {@code partition=<from>-<until>} entries, e.g. {@code drop=0.05,duplicate=0.01,partition=20-40}; missing
+     * probabilities are 0.
+     */
+    static FaultModel parse(String spec) {
+        double drop = 0.0;
+        double duplicate = 0.0;
+        double reorder = 0.0;
+        List<long[]> windows = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] pair = entry.trim().split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected name=value in fault model " + spec);
+            }
+            switch (pair[0].toLowerCase(Locale.ROOT)) {
+                case "drop" -> drop = Double.parseDouble(pair[1]);
+                case "duplicate" -> duplicate = Double.parseDouble(pair[1]);
+                case "reorder" -> reorder = Double.parseDouble(pair[1]);
+                case "partition" -> {
+                    String[] range = pair[1].split("-", 2);
+                    windows.add(new long[]{Long.parseLong(range[0]), Long.parseLong(range[1])});
+                }
+                default -> throw new IllegalArgumentException("Unknown fault " + pair[0]
+                        + " (expected drop, duplicate, reorder or partition)");
+            }
+        }
+        FaultModel model = of(drop, duplicate, reorder);
+        for (long[] window : windows) {
+            model = model.withPartition(window[0], window[1]);
+        }
+        return model;
+    }
+
+    /**
+     * {@code -Dsim.link.faults=<spec>} (see {@link #parse}) when set, otherwise {@code fallback}.
+     */
+    static FaultModel fromSystemProperties(FaultModel fallback) {
+        String spec = System.getProperty("sim.link.faults", "");
+        return spec.isBlank() ? fallback : parse(spec);
+    }
+
+    private static void requireProbability(double value, String name) {
+        if (value < 0 || value > 1) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1");
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package sim.quorum;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hinted handoff for {@link Cluster} quorum writes: when the entry node cannot reach a replica, it keeps the missed
+ * write as a hint for that replica and hands it over once a later delivery on the same link gets through.
+ * <p>
+ * Each entry node holds at most {@code capacity} hints. A newer write of a key replaces the pending hint for the same
+ * replica, and a write that reaches the replica directly cancels it; once the store is full, hints for further keys
+ * are dropped and those replicas are left to read repair. Replay sends up to {@code batchSize} hints, oldest first, as
+ * one delivery, and at most one batch per {@code interval} to each replica, so a replica coming back is not flooded.
+ * A batch goes out in the background: the request that finds the link up only triggers it. Hints carry the write version and nodes ignore versions older than what they hold, so a replayed hint never rolls a
+ * replica back.
+ * <p>
+ * Hints live in the entry node's memory, which is as durable as anything a quorum node has: they survive link
+ * failures, not the simulation.
+ */
+final class HintedHandoff {
+    // a batch is nobody's request, so it gets a deadline of its own
+    private static final Duration REPLAY_TIMEOUT = Duration.ofSeconds(2);
+
+    /**
+     * A write {@code target} missed: the full value, or its fragment under erasure coding, and when it expires (0 for
+     * never).
+     */
+    record Hint(int target, String key, long version, String value, Node.Fragment fragment, long expiresAtMillis) {
+    }
+
+    /**
+     * At most {@code capacity} hints per entry node, replayed {@code batchSize} at a time, one batch per
+     * {@code interval} and replica.
+     */
+    record Settings(int capacity, int batchSize, Duration interval) {
+        Settings {
+            if (capacity < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("capacity and batchSize must be >= 1");
+            }
+            Objects.requireNonNull(interval);
+        }
+
+        /**
+         * Batches of 16, one every 50 ms per replica.
+         */
+        static Settings withCapacity(int capacity) {
+            return new Settings(capacity, 16, Duration.ofMillis(50));
+        }
+    }
+
+    /**
+     * Hints one entry node keeps, per target in the order they were stored. Guarded by the instance.
+     */
+    private static final class Store {
+        private final Map<Integer, LinkedHashMap<String, Hint>> byTarget = new HashMap<>();
+        private final Map<Integer, Long> nextReplayNanos = new HashMap<>();
+        private final Map<Integer, Boolean> replaying = new HashMap<>();
+        private int size;
+    }
+
+    private final List<Node> nodes;
+    private final Link[][] mesh;
+    private final EventLog log;
+    private final int capacity;
+    private final int batchSize;
+    private final long intervalNanos;
+    private final Store[] stores;
+    private final Counter stored;
+    private final Counter dropped;
+    private final Counter replayed;
+    private final Counter batches;
+    private final Set<Thread> replayers = ConcurrentHashMap.newKeySet();
+
+    HintedHandoff(List<Node> nodes, Link[][] mesh, Settings settings, EventLog log, Metrics metrics) {
+        this.nodes = List.copyOf(nodes);
+        this.mesh = Objects.requireNonNull(mesh);
+        this.log = Objects.requireNonNull(log);
+        this.capacity = settings.capacity();
+        this.batchSize = settings.batchSize();
+        this.intervalNanos = settings.interval().toNanos();
+        this.stores = new Store[nodes.size()];
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = new Store();
+        }
+        this.stored = metrics.counter("cluster.hints.stored");
+        this.dropped = metrics.counter("cluster.hints.dropped");
+        this.replayed = metrics.counter("cluster.hints.replayed");
+        this.batches = metrics.counter("cluster.hints.replay-batches");
+        metrics.gauge("cluster.hints.pending", this::pending);
+    }
+
+    /**
+     * Keeps {@code hint} at {@code entry}; returns false if the store was full and it was dropped.
+     */
+    boolean store(int entry, Hint hint) {
+        Store store = stores[entry];
+        synchronized (store) {
+            LinkedHashMap<String, Hint> hints = store.byTarget.computeIfAbsent(hint.target(), t -> new LinkedHashMap<>());
+            Hint previous = hints.get(hint.key());
+            if (previous == null && store.size >= capacity) {
+                dropped.increment();
+                log.event(nodeId(entry), "hint-dropped").str("target", nodeId(hint.target())).str("key", hint.key())
+                        .num("version", hint.version()).num("pending", store.size).emit();
+                return false;
+            }
+            if (previous != null && previous.version() >= hint.version()) {
+                return true;
+            }
+            hints.put(hint.key(), hint);
+            if (previous == null) {
+                store.size++;
+            }
+        }
+        stored.increment();
+        log.event(nodeId(entry), "hint-stored").str("target", nodeId(hint.target())).str("key", hint.key())
+                .num("version", hint.version()).emit();
+        return true;
+    }
+
+    /**
+     * {@code target} took version {@code version} of {@code key} directly: an older hint for it is moot.
+     */
+    void delivered(int entry, int target, String key, long version) {
+        Store store = stores[entry];
+        synchronized (store) {
+            LinkedHashMap<String, Hint> hints = store.byTarget.get(target);
+            if (hints != null) {
+                Hint pending = hints.get(key);
+                if (pending != null && pending.version() <= version) {
+                    hints.remove(key);
+                    store.size--;
+                }
+            }
+        }
+    }
+
+    /**
+     * The link from {@code entry} to {@code target} just delivered: if hints are waiting for {@code target} and its
+     * replay interval has passed, starts sending the next batch on a virtual thread of its own, so the request that
+     * found the link up neither waits for the batch nor spends its deadline on it. A failed batch stays queued.
+     */
+    void linkUp(int entry, int target) {
+        Store store = stores[entry];
+        List<Hint> batch = new ArrayList<>();
+        synchronized (store) {
+            LinkedHashMap<String, Hint> hints = store.byTarget.get(target);
+            long now = System.nanoTime();
+            if (hints == null || hints.isEmpty() || store.replaying.getOrDefault(target, false)
+                    || now - store.nextReplayNanos.getOrDefault(target, now) < 0) {
+                return;
+            }
+            Iterator<Hint> oldest = hints.values().iterator();
+            while (oldest.hasNext() && batch.size() < batchSize) {
+                batch.add(oldest.next());
+            }
+            store.replaying.put(target, true);
+            store.nextReplayNanos.put(target, now + intervalNanos);
+        }
+        Thread replayer = Thread.ofVirtual().name(nodeId(entry) + "-hints-" + nodeId(target))
+                .unstarted(() -> replay(entry, target, batch));
+        replayers.add(replayer);
+        replayer.start();
+    }
+
+    /**
+     * Waits for the batches being replayed; for tests and the end of a run.
+     */
+    void awaitReplays() {
+        for (Thread replayer : List.copyOf(replayers)) {
+            try {
+                replayer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void replay(int entry, int target, List<Hint> batch) {
+        Store store = stores[entry];
+        boolean sent = false;
+        try {
+            Link link = mesh[entry][target];
+            var meta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(entry), "to", nodeId(target), "hints",
+                    Integer.toString(batch.size())) : null;
+            link.deliver("hint-replay", () -> {
+                Node node = nodes.get(target);
+                for (Hint hint : batch) {
+                    if (hint.fragment() == null) {
+                        node.put(hint.key(), hint.value(), hint.version(), hint.expiresAtMillis());
+                    } else {
+                        node.putFragment(hint.key(), hint.fragment());
+                    }
+                }
+                return null;
+            }, meta, Deadline.after(REPLAY_TIMEOUT));
+            sent = true;
+        } catch (LinkFailureException | DeadlineExceededException e) {
+            log.event(nodeId(entry), "hint-replay-failed").str("target", nodeId(target)).num("hints", batch.size())
+                    .str("reason", e.getMessage()).emit();
+        } finally {
+            int remaining;
+            synchronized (store) {
+                store.replaying.put(target, false);
+                LinkedHashMap<String, Hint> hints = store.byTarget.get(target);
+                if (sent) {
+                    for (Hint hint : batch) {
+                        // a newer hint for the key may have replaced this one meanwhile
+                        if (hints.remove(hint.key(), hint)) {
+                            store.size--;
+                        }
+                    }
+                }
+                remaining = hints.size();
+            }
+            if (sent) {
+                replayed.add(batch.size());
+                batches.increment();
+                log.event(nodeId(entry), "hints-replayed").str("target", nodeId(target)).num("hints", batch.size())
+                        .num("remaining", remaining).emit();
+            }
+            replayers.remove(Thread.currentThread());
+        }
+    }
+
+    long pending() {
+        long total = 0;
+        for (Store store : stores) {
+            synchronized (store) {
+                total += store.size;
+            }
+        }
+        return total;
+    }
+
+    private static String nodeId(int i) {
+        return "node-" + i;
+    }
+}
@@ -3,48 +3,151 @@ package sim.quorum;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 /**
  * Simulated link with latency and drop probability.
+ * <p>
+ * Delays come from a {@link LatencyModel} and failures from a {@link FaultModel}; the duration/probability
+ * constructors are uniform latency with plain drops. A delivery whose thread is interrupted during its delay (a
+ * cancelled hedge) is not delivered and throws {@link CancellationException}.
  */
 final class Link {
     private final String id;
-    private final Duration minLatency;
-    private final Duration maxLatency;
-    private final double dropProbability;
-    private final Random random;
+    private final LatencyModel latency;
+    private final FaultModel faults;
+    private final RandomGenerator random;
     private final EventLog log;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter deliveries;
+    private final Counter drops;
+    private final Counter duplicates;
+    private final Counter reorders;
+    private final Histogram delays;
 
-    Link(String id, Duration minLatency, Duration maxLatency, double dropProbability, Random random, EventLog log) {
-        if (dropProbability < 0 || dropProbability > 1) {
-            throw new IllegalArgumentException("dropProbability must be 0..1");
-        }
+    Link(String id, Duration minLatency, Duration maxLatency, double dropProbability, RandomGenerator random, EventLog log) {
+        this(id, minLatency, maxLatency, dropProbability, random, log, new Metrics());
+    }
+
+    Link(String id, Duration minLatency, Duration maxLatency, double dropProbability, RandomGenerator random, EventLog log, Metrics metrics) {
+        this(id, LatencyModel.uniform(minLatency, maxLatency), dropModel(dropProbability), random, log, metrics);
+    }
+
+    /**
+     * A link whose delays come from {@code latency} and whose drops, duplicates, reorders and partitions come from
+     * {@code faults}, both sampled from {@code random}.
+     */
+    Link(String id, LatencyModel latency, FaultModel faults, RandomGenerator random, EventLog log, Metrics metrics) {
         this.id = Objects.requireNonNull(id);
-        this.minLatency = Objects.requireNonNull(minLatency);
-        this.maxLatency = Objects.requireNonNull(maxLatency);
-        this.dropProbability = dropProbability;
+        this.latency = Objects.requireNonNull(latency);
+        this.faults = Objects.requireNonNull(faults);
         this.random = Objects.requireNonNull(random);
         this.log = Objects.requireNonNull(log);
+        this.deliveries = metrics.counter("link." + id + ".deliveries");
+        this.drops = metrics.counter("link." + id + ".drops");
+        this.duplicates = metrics.counter("link." + id + ".duplicates");
+        this.reorders = metrics.counter("link." + id + ".reorders");
+        this.delays = metrics.histogram("link." + id + ".delay-ms");
     }
 
     <T> T deliver(String desc, Supplier<T> action, Map<String, String> meta) {
-        long delay = jitterMillis();
-        log.info(id, "deliver", MapBuilder.of("desc", desc, "delayMs", Long.toString(delay)), meta);
-        sleep(delay);
-        if (random.nextDouble() <= dropProbability) {
-            log.info(id, "deliver-failed", MapBuilder.of("desc", desc, "reason", "link-drop"), meta);
-            throw new LinkFailureException("Link " + id + " dropped " + desc);
+        return deliver(desc, action, meta, Deadline.none());
+    }
+
+    /**
+     * Delivers unless {@code deadline} passes first: an expired delivery is not sent, and one whose delay outlasts the
+     * deadline is abandoned when it expires; both throw {@link DeadlineExceededException} without running the action.
+     */
+    <T> T deliver(String desc, Supplier<T> action, Map<String, String> meta, Deadline deadline) {
+        if (deadline.expired()) {
+            throw expired(desc, meta, deadline, "expired-before-send");
+        }
+        long delay = latency.sampleMillis(random);
+        log.event(id, "deliver").str("desc", desc).num("delayMs", delay).meta(meta).emit();
+        delays.record(delay);
+        var event = new FlightEvents.LinkDeliver();
+        event.begin();
+        event.link = id;
+        event.desc = desc;
+        event.delay = delay;
+        try {
+            long remaining = deadline.remainingMillis();
+            if (delay >= remaining) {
+                sleep(Math.max(0, remaining));
+                throw expired(desc, meta, deadline, "expired-in-flight");
+            }
+            sleep(delay);
+            if (Thread.currentThread().isInterrupted()) {
+                log.event(id, "deliver-cancelled").str("desc", desc).meta(meta).emit();
+                throw new CancellationException("Link " + id + " cancelled " + desc);
+            }
+            FaultModel.Fault fault = faults.sample(random, sequence.getAndIncrement());
+            switch (fault) {
+                case DROP -> fail(desc, meta, event, "link-drop");
+                case PARTITIONED -> fail(desc, meta, event, "partition");
+                case REORDER -> holdBack(desc, meta, event);
+                default -> {
+                }
+            }
+            deliveries.increment();
+            T result = action.get();
+            if (fault == FaultModel.Fault.DUPLICATE) {
+                deliverDuplicate(desc, action, meta);
+            }
+            return result;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Whether delivery events on this link pass the log filter, i.e. whether callers need to build metadata.
+     */
+    boolean logsDeliveries() {
+        return log.isEnabled(id, "deliver") || log.isEnabled(id, "deliver-failed") || log.isEnabled(id, "deliver-expired")
+                || log.isEnabled(id, "deliver-duplicate") || log.isEnabled(id, "deliver-reordered");
+    }
+
+    private static FaultModel dropModel(double dropProbability) {
+        if (dropProbability < 0 || dropProbability > 1) {
+            throw new IllegalArgumentException("dropProbability must be 0..1");
         }
-        return action.get();
+        return FaultModel.drop(dropProbability);
+    }
+
+    private void fail(String desc, Map<String, String> meta, FlightEvents.LinkDeliver event, String reason) {
+        drops.increment();
+        event.dropped = true;
+        log.event(id, "deliver-failed").str("desc", desc).str("reason", reason).meta(meta).emit();
+        throw new LinkFailureException("Link " + id + " dropped " + desc);
     }
 
-    private long jitterMillis() {
-        long min = minLatency.toMillis();
-        long max = maxLatency.toMillis();
-        if (max == min) return min;
-        return min + Math.abs(random.nextLong()) % (max - min + 1);
+    private DeadlineExceededException expired(String desc, Map<String, String> meta, Deadline deadline, String reason) {
+        long remaining = deadline.remainingMillis();
+        log.event(id, "deliver-expired").str("desc", desc).str("reason", reason).num("remainingMs", remaining).meta(meta).emit();
+        return new DeadlineExceededException("Link " + id + " gave up on " + desc + " (" + reason + ", remainingMs=" + remaining + ")");
+    }
+
+    private void holdBack(String desc, Map<String, String> meta, FlightEvents.LinkDeliver event) {
+        long extra = latency.sampleMillis(random);
+        reorders.increment();
+        event.delay += extra;
+        log.event(id, "deliver-reordered").str("desc", desc).num("extraDelayMs", extra).meta(meta).emit();
+        sleep(extra);
+    }
+
+    // The sender already has its response; whatever the copy returns or throws never reaches it.
+    private <T> void deliverDuplicate(String desc, Supplier<T> action, Map<String, String> meta) {
+        duplicates.increment();
+        log.event(id, "deliver-duplicate").str("desc", desc).meta(meta).emit();
+        try {
+            action.get();
+        } catch (RuntimeException e) {
+            log.event(id, "duplicate-failed").str("desc", desc).str("reason", e.getClass().getSimpleName()).meta(meta).emit();
+        }
     }
 
     private void sleep(long millis) {
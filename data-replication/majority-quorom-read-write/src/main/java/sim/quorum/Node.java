@@ -1,31 +1,684 @@
 package sim.quorum;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
 
 /**
- * Simple in-memory node; no WAL here to keep focus on quorum logic.
+ * Simple in-memory node; no WAL here to keep focus on quorum logic. Under erasure coding it holds one
+ * {@link Fragment} per key instead of the value.
+ * <p>
+ * A crash wipes everything and the node stops answering until restarted. It comes back empty and rejoining: it takes
+ * writes, including {@link #install installed} snapshot entries, but refuses reads until {@link #joined()}.
+ * <p>
+ * A versioned put may carry an expiry in wall-clock milliseconds, which the entry node computes once so every replica
+ * expires the key at the same moment. Expiries are scheduled on a {@link TimingWheel}: reads stop returning the key at
+ * its expiry, and the next versioned put or read that finds the wheel due removes every expired key it still holds at
+ * the version that expires. Snapshots leave expired keys out and carry the expiry of the rest.
+ * <p>
+ * Next to the hash maps the node keeps every key it holds in a skip list, so {@link #scan} and its fragment and chain
+ * counterparts return a key range in order, a page at a time.
  */
 final class Node {
+    /**
+     * Fragment {@code index} of version {@code version} of a value that was {@code length} bytes before coding.
+     */
+    record Fragment(long version, int index, int length, byte[] bytes) {
+        Fragment {
+            Objects.requireNonNull(bytes);
+        }
+    }
+
+    /**
+     * What a chain node knows about a key locally: its committed value, which is current when {@code clean}.
+     */
+    record ChainRead(boolean clean, Optional<String> committed) {
+    }
+
+    /**
+     * A replicated value with the version it was written at; what snapshots are made of.
+     */
+    record Versioned(String key, long version, String value, long expiresAtMillis) {
+        /**
+         * A value that never expires.
+         */
+        Versioned(String key, long version, String value) {
+            this(key, version, value, 0);
+        }
+    }
+
+    // what a timer removes when it fires: the key, if still held at this version
+    private record Expiring(String key, long version) {
+    }
+
+    private static final long WHEEL_TICK_MILLIS = 10;
+
+    /**
+     * Chain replication state of one key: the newest version acknowledged by the tail as far as this node knows, and
+     * newer versions it has passed down the chain without an acknowledgement yet (dirty, in CRAQ terms). Guarded by
+     * the instance.
+     */
+    private static final class Chained {
+        private long committedVersion;
+        private String committedValue;
+        private final NavigableMap<Long, String> dirty = new TreeMap<>();
+    }
+
     private final String id;
     private final Map<String, String> data = new ConcurrentHashMap<>();
+    private final Map<String, Fragment> fragments = new ConcurrentHashMap<>();
+    private final Map<String, Chained> chained = new ConcurrentHashMap<>();
+    // version of each value in data written through put(key, value, version)
+    private final Map<String, Long> dataVersions = new ConcurrentHashMap<>();
+    // keys of data, fragments and chained, sorted; a key stays while any of them holds it
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    private final AtomicLong highestVersion = new AtomicLong();
+    // pending expiry of every key in data that has one; it and the wheel change under expiryLock
+    private final Map<String, TimingWheel.Timer<Expiring>> timers = new ConcurrentHashMap<>();
+    private final Object expiryLock = new Object();
+    // writes to data, fragments and the expiry state hold the read side and check up under it; crash holds the write
+    // side while it clears, so a write that got past ensureUp before the crash cannot land in the wiped node
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final Lock writing = stateLock.readLock();
+    private final LongSupplier clock;
+    private TimingWheel<Expiring> wheel;
     private final EventLog log;
+    private final Counter puts;
+    private final Counter gets;
+    private final Counter scans;
+    private final Counter expired;
+    private volatile boolean up = true;
+    private volatile boolean joining;
+    private volatile long incarnation;
 
     Node(String id, EventLog log) {
+        this(id, log, new Metrics());
+    }
+
+    Node(String id, EventLog log, Metrics metrics) {
+        this(id, log, metrics, System::currentTimeMillis);
+    }
+
+    /**
+     * Expiries are judged against {@code clock}, in milliseconds.
+     */
+    Node(String id, EventLog log, Metrics metrics, LongSupplier clock) {
         this.id = Objects.requireNonNull(id);
         this.log = Objects.requireNonNull(log);
+        this.clock = Objects.requireNonNull(clock);
+        this.wheel = new TimingWheel<>(WHEEL_TICK_MILLIS, clock.getAsLong());
+        this.puts = metrics.counter("node." + id + ".puts");
+        this.gets = metrics.counter("node." + id + ".gets");
+        this.scans = metrics.counter("node." + id + ".scans");
+        this.expired = metrics.counter("node." + id + ".expired");
+        metrics.gauge("node." + id + ".expiring-keys", timers::size);
     }
 
     void put(String key, String value) {
-        data.put(key, value);
-        log.info(id, "put", MapBuilder.of("key", key, "value", value));
+        ensureUp();
+        var event = new FlightEvents.NodeOp();
+        event.begin();
+        writing.lock();
+        try {
+            ensureUp();
+            data.put(key, value);
+            keys.add(key);
+            if (!timers.isEmpty()) {
+                synchronized (expiryLock) {
+                    TimingWheel.Timer<Expiring> previous = timers.remove(key);
+                    if (previous != null) {
+                        wheel.cancel(previous);
+                    }
+                }
+            }
+        } finally {
+            writing.unlock();
+        }
+        puts.increment();
+        log.event(id, "put").str("key", key).str("value", value).emit();
+        commit(event, "put", key, value);
+    }
+
+    /**
+     * Stores {@code value} unless the node already holds {@code version} or a newer one of the key, so a late or
+     * replayed write cannot roll it back; returns whether it was stored.
+     */
+    boolean put(String key, String value, long version) {
+        return put(key, value, version, 0);
+    }
+
+    /**
+     * As {@link #put(String, String, long)}, for a value that expires after {@code ttl}.
+     */
+    boolean put(String key, String value, long version, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        return put(key, value, version, clock.getAsLong() + ttl.toMillis());
+    }
+
+    /**
+     * As {@link #put(String, String, long)}, for a value that expires at {@code expiresAtMillis} (0 for never). A
+     * value that has already expired is not stored.
+     */
+    boolean put(String key, String value, long version, long expiresAtMillis) {
+        ensureUp();
+        var event = new FlightEvents.NodeOp();
+        event.begin();
+        expireDue();
+        boolean stored = store(key, value, version, expiresAtMillis);
+        puts.increment();
+        if (stored) {
+            log.event(id, "put").str("key", key).str("value", value).emit();
+        } else {
+            log.event(id, "put-stale").str("key", key).str("value", value).num("version", version).emit();
+        }
+        commit(event, "put", key, value);
+        return stored;
     }
 
     Optional<String> get(String key) {
+        ensureServing();
+        var event = new FlightEvents.NodeOp();
+        event.begin();
         String value = data.get(key);
-        log.info(id, "get", MapBuilder.of("key", key, "value", value));
+        if (value != null && isExpired(key, clock.getAsLong())) {
+            value = null;
+            expireDue();
+        }
+        gets.increment();
+        log.event(id, "get").str("key", key).str("value", value).emit();
+        commit(event, "get", key, value);
         return Optional.ofNullable(value);
     }
+
+    /**
+     * Stores {@code fragment} unless the node already holds a newer version of the key.
+     */
+    void putFragment(String key, Fragment fragment) {
+        ensureUp();
+        var event = new FlightEvents.NodeOp();
+        event.begin();
+        Fragment stored;
+        writing.lock();
+        try {
+            ensureUp();
+            stored = fragments.merge(key, fragment, (current, offered) -> offered.version() > current.version() ? offered : current);
+            keys.add(key);
+        } finally {
+            writing.unlock();
+        }
+        puts.increment();
+        log.event(id, "put-fragment").str("key", key).num("version", fragment.version()).num("index", fragment.index())
+                .num("bytes", fragment.bytes().length).num("stale", stored == fragment ? 0 : 1).emit();
+        commitFragment(event, "put-fragment", key, fragment);
+    }
+
+    Optional<Fragment> getFragment(String key) {
+        ensureServing();
+        var event = new FlightEvents.NodeOp();
+        event.begin();
+        Fragment fragment = fragments.get(key);
+        gets.increment();
+        log.event(id, "get-fragment").str("key", key).num("version", fragment == null ? 0 : fragment.version()).emit();
+        commitFragment(event, "get-fragment", key, fragment);
+        return Optional.ofNullable(fragment);
+    }
+
+    /**
+     * Records {@code version} of {@code key} as passing through this node on its way down the chain.
+     */
+    void chainWrite(String key, long version, String value) {
+        Chained entry = chained.computeIfAbsent(key, k -> new Chained());
+        keys.add(key);
+        synchronized (entry) {
+            if (version > entry.committedVersion) {
+                entry.dirty.put(version, value);
+            }
+        }
+        puts.increment();
+        log.event(id, "chain-write").str("key", key).str("value", value).num("version", version).emit();
+    }
+
+    /**
+     * The tail acknowledged {@code version}: it and every older version of the key become clean.
+     */
+    void chainCommit(String key, long version) {
+        Chained entry = chained.get(key);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (version > entry.committedVersion && entry.dirty.containsKey(version)) {
+                entry.committedVersion = version;
+                entry.committedValue = entry.dirty.get(version);
+            }
+            entry.dirty.headMap(version, true).clear();
+        }
+    }
+
+    /**
+     * Commits every dirty version, newest last; for a node that has just become the tail.
+     */
+    void chainCommitAll() {
+        for (Map.Entry<String, Chained> keyed : chained.entrySet()) {
+            Chained entry = keyed.getValue();
+            synchronized (entry) {
+                if (!entry.dirty.isEmpty()) {
+                    entry.committedVersion = entry.dirty.lastKey();
+                    entry.committedValue = entry.dirty.lastEntry().getValue();
+                    entry.dirty.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * The committed value and whether the key is clean; a CRAQ node must ask the tail which version to return for a
+     * dirty key.
+     */
+    ChainRead chainRead(String key) {
+        gets.increment();
+        Chained entry = chained.get(key);
+        if (entry == null) {
+            return new ChainRead(true, Optional.empty());
+        }
+        synchronized (entry) {
+            return new ChainRead(entry.dirty.isEmpty(), Optional.ofNullable(entry.committedValue));
+        }
+    }
+
+    /**
+     * Newest committed version of the key (0 if none); what a tail answers to a CRAQ version query.
+     */
+    long chainCommittedVersion(String key) {
+        Chained entry = chained.get(key);
+        if (entry == null) {
+            return 0;
+        }
+        synchronized (entry) {
+            return entry.committedVersion;
+        }
+    }
+
+    /**
+     * The value of {@code version} if this node holds it, committed or dirty.
+     */
+    Optional<String> chainValue(String key, long version) {
+        Chained entry = chained.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        synchronized (entry) {
+            return Optional.ofNullable(version == entry.committedVersion ? entry.committedValue : entry.dirty.get(version));
+        }
+    }
+
+    /**
+     * Every replicated value, sorted by key. Each entry is read together with its version, so a write racing the copy
+     * shows up whole or not at all; entries may be newer than {@link #highestVersion()} read before the call.
+     */
+    List<Versioned> snapshot() {
+        ensureServing();
+        List<Versioned> entries = new ArrayList<>();
+        long now = clock.getAsLong();
+        for (String key : data.keySet()) {
+            dataVersions.compute(key, (k, version) -> {
+                String value = data.get(k);
+                long expiresAtMillis = expiresAt(k);
+                if (value != null && (expiresAtMillis == 0 || expiresAtMillis > now)) {
+                    entries.add(new Versioned(k, version == null ? 0 : version, value, expiresAtMillis));
+                }
+                return version;
+            });
+        }
+        entries.sort(Comparator.comparing(Versioned::key));
+        return entries;
+    }
+
+    /**
+     * Up to {@code limit} values with keys from {@code startKey} (inclusive) to {@code endKey} (exclusive; null for no
+     * bound), in key order and with their versions, each read whole like a {@link #snapshot()} entry. Fewer than
+     * {@code limit} means the node holds nothing more in the range.
+     */
+    List<Versioned> scan(String startKey, String endKey, int limit) {
+        ensureServing();
+        expireDue();
+        List<Versioned> entries = new ArrayList<>();
+        long now = clock.getAsLong();
+        Iterator<String> candidates = range(startKey, endKey).iterator();
+        while (entries.size() < limit && candidates.hasNext()) {
+            dataVersions.compute(candidates.next(), (k, version) -> {
+                String value = data.get(k);
+                long expiresAtMillis = expiresAt(k);
+                if (value != null && (expiresAtMillis == 0 || expiresAtMillis > now)) {
+                    entries.add(new Versioned(k, version == null ? 0 : version, value, expiresAtMillis));
+                }
+                return version;
+            });
+        }
+        scans.increment();
+        log.event(id, "scan").str("start", startKey).str("end", endKey).num("entries", entries.size()).emit();
+        return entries;
+    }
+
+    /**
+     * As {@link #scan}, for the fragments an erasure-coded node holds, keyed and sorted by key.
+     */
+    NavigableMap<String, Fragment> scanFragments(String startKey, String endKey, int limit) {
+        ensureServing();
+        NavigableMap<String, Fragment> page = new TreeMap<>();
+        Iterator<String> candidates = range(startKey, endKey).iterator();
+        while (page.size() < limit && candidates.hasNext()) {
+            String key = candidates.next();
+            Fragment fragment = fragments.get(key);
+            if (fragment != null) {
+                page.put(key, fragment);
+            }
+        }
+        scans.increment();
+        log.event(id, "scan-fragments").str("start", startKey).str("end", endKey).num("entries", page.size()).emit();
+        return page;
+    }
+
+    /**
+     * As {@link #scan}, for the committed values of a chain node; what the tail answers to a chain scan.
+     */
+    List<Versioned> chainScan(String startKey, String endKey, int limit) {
+        List<Versioned> entries = new ArrayList<>();
+        Iterator<String> candidates = range(startKey, endKey).iterator();
+        while (entries.size() < limit && candidates.hasNext()) {
+            String key = candidates.next();
+            Chained entry = chained.get(key);
+            if (entry == null) {
+                continue;
+            }
+            synchronized (entry) {
+                if (entry.committedValue != null) {
+                    entries.add(new Versioned(key, entry.committedVersion, entry.committedValue));
+                }
+            }
+        }
+        scans.increment();
+        log.event(id, "chain-scan").str("start", startKey).str("end", endKey).num("entries", entries.size()).emit();
+        return entries;
+    }
+
+    /**
+     * Values written at a version newer than {@code version}, oldest first.
+     */
+    List<Versioned> writtenSince(long version) {
+        ensureServing();
+        List<Versioned> entries = new ArrayList<>();
+        long now = clock.getAsLong();
+        for (Map.Entry<String, Long> entry : dataVersions.entrySet()) {
+            if (entry.getValue() > version) {
+                String value = data.get(entry.getKey());
+                long expiresAtMillis = expiresAt(entry.getKey());
+                if (value != null && (expiresAtMillis == 0 || expiresAtMillis > now)) {
+                    entries.add(new Versioned(entry.getKey(), entry.getValue(), value, expiresAtMillis));
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(Versioned::version));
+        return entries;
+    }
+
+    /**
+     * Version of the value held for {@code key}, 0 if none or unversioned; a local lookup, no event.
+     */
+    long versionOf(String key) {
+        return dataVersions.getOrDefault(key, 0L);
+    }
+
+    /**
+     * How many times the node has restarted.
+     */
+    long incarnation() {
+        return incarnation;
+    }
+
+    /**
+     * Newest version this node has stored, 0 before the first versioned write.
+     */
+    long highestVersion() {
+        return highestVersion.get();
+    }
+
+    /**
+     * Stores snapshot entries like {@link #put(String, String, long)} without logging each one; returns how many were
+     * newer than what the node held.
+     */
+    int install(List<Versioned> entries) {
+        ensureUp();
+        int applied = 0;
+        for (Versioned entry : entries) {
+            if (store(entry.key(), entry.value(), entry.version(), entry.expiresAtMillis())) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Loses every value and stops answering until {@link #restart()}.
+     */
+    void crash(String reason) {
+        // waits for writes in flight; any that start later find the node down
+        stateLock.writeLock().lock();
+        try {
+            up = false;
+            joining = false;
+            data.clear();
+            dataVersions.clear();
+            fragments.clear();
+            chained.clear();
+            keys.clear();
+            synchronized (expiryLock) {
+                timers.clear();
+                wheel = new TimingWheel<>(WHEEL_TICK_MILLIS, clock.getAsLong());
+            }
+            highestVersion.set(0);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        log.event(id, "crashed").str("reason", reason).str("state", "lost").emit();
+    }
+
+    /**
+     * Comes back empty and rejoining: writes are taken, reads refused until {@link #joined()}.
+     */
+    void restart() {
+        incarnation++;
+        joining = true;
+        up = true;
+        log.event(id, "restarted").str("state", "empty").emit();
+    }
+
+    void joined() {
+        joining = false;
+    }
+
+    boolean isUp() {
+        return up;
+    }
+
+    /**
+     * Up and not rejoining, i.e. fit to answer reads and to donate a snapshot.
+     */
+    boolean isServing() {
+        return up && !joining;
+    }
+
+    /**
+     * Bytes of values and fragments held, keys excluded; walks every entry.
+     */
+    long storedBytes() {
+        long bytes = 0;
+        for (String value : data.values()) {
+            bytes += value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        for (Fragment fragment : fragments.values()) {
+            bytes += fragment.bytes().length;
+        }
+        for (Chained entry : chained.values()) {
+            synchronized (entry) {
+                bytes += entry.committedValue == null ? 0 : entry.committedValue.getBytes(StandardCharsets.UTF_8).length;
+                for (String value : entry.dirty.values()) {
+                    bytes += value.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // The expiry changes inside the key's compute, so it always matches the version held; expireDue takes the key's
+    // lock only after releasing expiryLock, which keeps the two from deadlocking. Locks nest as stateLock, key,
+    // expiryLock.
+    private boolean store(String key, String value, long version, long expiresAtMillis) {
+        writing.lock();
+        try {
+            ensureUp();
+            return storeLocked(key, value, version, expiresAtMillis);
+        } finally {
+            writing.unlock();
+        }
+    }
+
+    private boolean storeLocked(String key, String value, long version, long expiresAtMillis) {
+        boolean[] stored = new boolean[1];
+        dataVersions.compute(key, (k, current) -> {
+            if (current != null && current >= version || expiresAtMillis > 0 && expiresAtMillis <= clock.getAsLong()) {
+                return current;
+            }
+            data.put(k, value);
+            keys.add(k);
+            if (expiresAtMillis > 0 || !timers.isEmpty()) {
+                synchronized (expiryLock) {
+                    if (timers.isEmpty()) {
+                        // nothing was pending, so the wheel's clock may lag far behind: catch it up in one step
+                        wheel.advance(clock.getAsLong(), expiring -> {
+                        });
+                    }
+                    TimingWheel.Timer<Expiring> previous = expiresAtMillis > 0
+                            ? timers.put(k, wheel.schedule(new Expiring(k, version), expiresAtMillis))
+                            : timers.remove(k);
+                    if (previous != null) {
+                        wheel.cancel(previous);
+                    }
+                }
+            }
+            stored[0] = true;
+            return version;
+        });
+        if (stored[0]) {
+            highestVersion.accumulateAndGet(version, Math::max);
+        }
+        return stored[0];
+    }
+
+    // Removes every key whose expiry the wheel has passed, unless a newer version replaced it meanwhile.
+    private void expireDue() {
+        if (timers.isEmpty()) {
+            return;
+        }
+        List<Expiring> due = new ArrayList<>();
+        long seen;
+        synchronized (expiryLock) {
+            seen = incarnation;
+            wheel.advance(clock.getAsLong(), expiring -> {
+                // a put cancels the timer it replaces, so a fired timer is still its key's current one
+                timers.remove(expiring.key());
+                due.add(expiring);
+            });
+        }
+        for (Expiring expiring : due) {
+            boolean[] removed = new boolean[1];
+            writing.lock();
+            try {
+                // a crash since the wheel fired dropped the key, and the node may hold it again at the same version
+                if (!up || incarnation != seen) {
+                    return;
+                }
+                dataVersions.computeIfPresent(expiring.key(), (k, version) -> {
+                    if (version != expiring.version()) {
+                        return version;
+                    }
+                    data.remove(k);
+                    keys.remove(k);
+                    removed[0] = true;
+                    return null;
+                });
+            } finally {
+                writing.unlock();
+            }
+            if (removed[0]) {
+                expired.increment();
+                log.event(id, "expired").str("key", expiring.key()).num("version", expiring.version()).emit();
+            }
+        }
+    }
+
+    private NavigableSet<String> range(String startKey, String endKey) {
+        return endKey == null ? keys.tailSet(startKey, true) : keys.subSet(startKey, true, endKey, false);
+    }
+
+    private boolean isExpired(String key, long nowMillis) {
+        long expiresAtMillis = expiresAt(key);
+        return expiresAtMillis > 0 && expiresAtMillis <= nowMillis;
+    }
+
+    private long expiresAt(String key) {
+        TimingWheel.Timer<Expiring> timer = timers.get(key);
+        return timer == null ? 0 : timer.deadlineMillis();
+    }
+
+    // a down node looks like an unreachable one to whoever sent the request
+    private void ensureUp() {
+        if (!up) {
+            throw new LinkFailureException(id + " is down");
+        }
+    }
+
+    private void ensureServing() {
+        ensureUp();
+        if (joining) {
+            throw new LinkFailureException(id + " is rejoining");
+        }
+    }
+
+    private void commitFragment(FlightEvents.NodeOp event, String op, String key, Fragment fragment) {
+        if (event.shouldCommit()) {
+            event.node = id;
+            event.op = op;
+            event.keyLength = key.length();
+            event.valueLength = fragment == null ? 0 : fragment.bytes().length;
+            event.commit();
+        }
+    }
+
+    private void commit(FlightEvents.NodeOp event, String op, String key, String value) {
+        if (event.shouldCommit()) {
+            event.node = id;
+            event.op = op;
+            event.keyLength = key.length();
+            event.valueLength = value == null ? 0 : value.length();
+            event.commit();
+        }
+    }
 }
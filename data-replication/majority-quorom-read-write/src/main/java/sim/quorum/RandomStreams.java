@@ -0,0 +1,44 @@
+package sim.quorum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Derives an independent random stream per component (link, crash injector, client) from one master seed.
+ * <p>
+ * A stream depends only on the seed and the component's name, so what one link draws never depends on how calls to
+ * other components interleave, and adding a component does not shift anybody else's stream. Streams are
+ * {@link SplittableRandom}s: fast, but not thread-safe, so each belongs to the one component it was made for.
+ */
+final class RandomStreams {
+    private final long seed;
+
+    RandomStreams(long seed) {
+        this.seed = seed;
+    }
+
+    RandomGenerator stream(String name) {
+        return new SplittableRandom(mix(seed ^ mix(fnv(name))));
+    }
+
+    long seed() {
+        return seed;
+    }
+
+    private static long fnv(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3 finalizer: spreads nearby seeds and similar names over the whole 64-bit space.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
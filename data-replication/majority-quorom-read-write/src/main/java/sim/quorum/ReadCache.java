@@ -0,0 +1,229 @@
+package sim.quorum;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded read cache at each {@link Cluster} entry node, so hot keys stop fanning out to every replica on every read.
+ * <p>
+ * Each entry node caches the values its quorum reads decided, at most {@code capacity} keys, evicting by segmented
+ * LRU: a key read once sits in a probation segment, and a second hit promotes it to a protected segment of 80% of the
+ * capacity. Keys read once are evicted first, so a scan of cold keys does not flush the hot ones. A write through the
+ * entry node invalidates its entry for the key, and a read that raced such a write is not cached.
+ * <p>
+ * Writes through other entry nodes do not invalidate, so a hit is a weaker read than a quorum read, and only reads at
+ * {@link Cluster.Consistency#CACHED} are served one; quorum reads still fill the cache. A hit is served only while
+ * the entry is younger than {@code lease}, and under {@link Validation#VERSION} only while the entry node's own replica
+ * still holds the version it held when the value was cached. That check needs no messages and catches every write that
+ * reached this replica. An entry node that restarted has lost its cache.
+ */
+final class ReadCache {
+    /**
+     * What a hit must pass besides the lease.
+     */
+    enum Validation {
+        /** Nothing: every entry younger than the lease is served. */
+        LEASE,
+        /** The entry node's replica still holds the version of the key it held when the value was cached. */
+        VERSION;
+
+        static Validation named(String name) {
+            return switch (name.toLowerCase(Locale.ROOT)) {
+                case "lease" -> LEASE;
+                case "version" -> VERSION;
+                default -> throw new IllegalArgumentException("Unknown cache validation " + name + " (expected lease or version)");
+            };
+        }
+    }
+
+    record Settings(int capacity, Duration lease, Validation validation) {
+        Settings {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be >= 1");
+            }
+            Objects.requireNonNull(lease);
+            Objects.requireNonNull(validation);
+        }
+
+        /**
+         * {@code <capacity>[:<leaseMs>[:lease|version]]}, e.g. {@code 256:500:version}; the lease defaults to a
+         * second and validation to {@code version}.
+         */
+        static Settings parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            if (parts.length > 3) {
+                throw new IllegalArgumentException("Expected <capacity>[:<leaseMs>[:lease|version]], got " + spec);
+            }
+            return new Settings(Integer.parseInt(parts[0]), Duration.ofMillis(parts.length > 1 ? Long.parseLong(parts[1]) : 1_000),
+                    parts.length > 2 ? Validation.named(parts[2]) : Validation.VERSION);
+        }
+    }
+
+    /**
+     * A cached read: {@code value} is null for a key the quorum found absent. {@code newestVersion} is the highest
+     * version of the key any replica held when the read started, which sampled hits are checked against.
+     */
+    record Entry(String value, long localVersion, long newestVersion, long incarnation, long cachedNanos) {
+    }
+
+    // one served hit in this many is checked for staleness; the check looks at every replica
+    private static final int STALENESS_SAMPLE = 16;
+
+    /**
+     * Both segments of one entry node, least recently used first. Guarded by the instance.
+     */
+    private static final class Segments {
+        private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        // bumped by every invalidation, so a read that started before one does not cache what it decided
+        private long invalidations;
+    }
+
+    private final int capacity;
+    private final int protectedCapacity;
+    private final long leaseNanos;
+    private final Validation validation;
+    private final Segments[] segments;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expired;
+    private final Counter evictions;
+    private final Counter invalidated;
+    private final Counter staleHits;
+    private final Counter checkedHits;
+    private final AtomicLong served = new AtomicLong();
+    private final Histogram hitAge;
+
+    ReadCache(int nodeCount, Settings settings, Metrics metrics) {
+        this.capacity = settings.capacity();
+        this.protectedCapacity = Math.max(1, settings.capacity() * 4 / 5);
+        this.leaseNanos = settings.lease().toNanos();
+        this.validation = settings.validation();
+        this.segments = new Segments[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            segments[i] = new Segments();
+        }
+        this.hits = metrics.counter("cluster.cache.hits");
+        this.misses = metrics.counter("cluster.cache.misses");
+        this.expired = metrics.counter("cluster.cache.expired");
+        this.evictions = metrics.counter("cluster.cache.evictions");
+        this.invalidated = metrics.counter("cluster.cache.invalidations");
+        this.staleHits = metrics.counter("cluster.cache.stale-hits");
+        this.checkedHits = metrics.counter("cluster.cache.checked-hits");
+        this.hitAge = metrics.histogram("cluster.cache.hit-age-ms");
+        metrics.gauge("cluster.cache.hit-rate-pct", () -> {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0 : h * 100 / total;
+        });
+    }
+
+    /**
+     * The entry {@code node} may serve for {@code key}, or null; {@code localVersion} and {@code incarnation} are its
+     * replica's current version of the key and its restart count.
+     */
+    Entry lookup(int node, String key, long localVersion, long incarnation) {
+        Segments segment = segments[node];
+        synchronized (segment) {
+            Entry entry = segment.protectedSegment.get(key);
+            boolean promoted = false;
+            if (entry == null) {
+                entry = segment.probation.get(key);
+                promoted = entry != null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (entry.incarnation() != incarnation || System.nanoTime() - entry.cachedNanos() >= leaseNanos
+                    || validation == Validation.VERSION && entry.localVersion() != localVersion) {
+                segment.probation.remove(key);
+                segment.protectedSegment.remove(key);
+                expired.increment();
+                misses.increment();
+                return null;
+            }
+            if (promoted) {
+                segment.probation.remove(key);
+                segment.protectedSegment.put(key, entry);
+                demote(segment);
+            }
+            hits.increment();
+            return entry;
+        }
+    }
+
+    /**
+     * Records a served hit. Every {@value #STALENESS_SAMPLE}th hit, starting with the first, is checked: it was stale
+     * if {@code newestVersion} (the highest version of the key any replica holds now) passed the entry's.
+     */
+    void served(Entry entry, LongSupplier newestVersion) {
+        hitAge.record((System.nanoTime() - entry.cachedNanos()) / 1_000_000);
+        if (served.getAndIncrement() % STALENESS_SAMPLE == 0) {
+            checkedHits.increment();
+            if (newestVersion.getAsLong() > entry.newestVersion()) {
+                staleHits.increment();
+            }
+        }
+    }
+
+    /**
+     * Token for {@link #store}: taken before a read fans out.
+     */
+    long readStarted(int node) {
+        Segments segment = segments[node];
+        synchronized (segment) {
+            return segment.invalidations;
+        }
+    }
+
+    /**
+     * Caches what a quorum read that started at {@code token} decided, unless a write invalidated the node's cache
+     * meanwhile.
+     */
+    void store(int node, long token, String key, Entry entry) {
+        Segments segment = segments[node];
+        synchronized (segment) {
+            if (segment.invalidations != token) {
+                return;
+            }
+            if (segment.protectedSegment.containsKey(key)) {
+                segment.protectedSegment.put(key, entry);
+                return;
+            }
+            segment.probation.put(key, entry);
+            Iterator<String> oldest = segment.probation.keySet().iterator();
+            while (segment.probation.size() + segment.protectedSegment.size() > capacity && oldest.hasNext()) {
+                oldest.next();
+                oldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    void invalidate(int node, String key) {
+        Segments segment = segments[node];
+        synchronized (segment) {
+            segment.invalidations++;
+            if (segment.probation.remove(key) != null | segment.protectedSegment.remove(key) != null) {
+                invalidated.increment();
+            }
+        }
+    }
+
+    // Moves the protected segment's least recently used keys back to probation once it is over its share.
+    private void demote(Segments segment) {
+        Iterator<Map.Entry<String, Entry>> oldest = segment.protectedSegment.entrySet().iterator();
+        while (segment.protectedSegment.size() > protectedCapacity && oldest.hasNext()) {
+            Map.Entry<String, Entry> entry = oldest.next();
+            oldest.remove();
+            segment.probation.put(entry.getKey(), entry.getValue());
+        }
+    }
+}
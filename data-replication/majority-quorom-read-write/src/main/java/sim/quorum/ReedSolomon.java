@@ -0,0 +1,205 @@
+package sim.quorum;
+
+import java.util.Arrays;
+
+/**
+ * Systematic Reed–Solomon code over GF(256): {@code dataFragments} (k) slices of the value plus {@code parityFragments}
+ * (m) parity fragments, any k of which give the value back.
+ * <p>
+ * The encoding matrix is the k x k identity stacked on an m x k Cauchy matrix ({@code 1 / (x_i + y_j)} with distinct
+ * {@code x_i = k + i}, {@code y_j = j}); every k x k submatrix of it is invertible, so any k fragments decode. Field
+ * arithmetic uses log/exp tables for the polynomial {@code x^8 + x^4 + x^3 + x^2 + 1} (0x11d), expanded into a full
+ * 64 KiB product table for the per-byte loops. Instances are immutable and may be shared between threads.
+ */
+final class ReedSolomon {
+    private static final int FIELD_SIZE = 256;
+    private static final byte[] EXP = new byte[2 * FIELD_SIZE];
+    private static final int[] LOG = new int[FIELD_SIZE];
+    // MUL[a][b] = a * b: one lookup per byte on the encode/decode path
+    private static final byte[][] MUL = new byte[FIELD_SIZE][FIELD_SIZE];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < FIELD_SIZE - 1; i++) {
+            EXP[i] = (byte) x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= FIELD_SIZE) {
+                x ^= 0x11d;
+            }
+        }
+        for (int i = FIELD_SIZE - 1; i < EXP.length; i++) {
+            EXP[i] = EXP[i - (FIELD_SIZE - 1)];
+        }
+        for (int a = 1; a < FIELD_SIZE; a++) {
+            for (int b = 1; b < FIELD_SIZE; b++) {
+                MUL[a][b] = EXP[LOG[a] + LOG[b]];
+            }
+        }
+    }
+
+    private final int dataFragments;
+    private final int parityFragments;
+    // (k + m) x k; row i produces fragment i
+    private final byte[][] matrix;
+
+    ReedSolomon(int dataFragments, int parityFragments) {
+        if (dataFragments < 1 || parityFragments < 0 || dataFragments + parityFragments > FIELD_SIZE) {
+            throw new IllegalArgumentException("need 1 <= dataFragments and dataFragments + parityFragments <= " + FIELD_SIZE);
+        }
+        this.dataFragments = dataFragments;
+        this.parityFragments = parityFragments;
+        this.matrix = new byte[dataFragments + parityFragments][dataFragments];
+        for (int i = 0; i < dataFragments; i++) {
+            matrix[i][i] = 1;
+        }
+        for (int i = 0; i < parityFragments; i++) {
+            for (int j = 0; j < dataFragments; j++) {
+                matrix[dataFragments + i][j] = inverse((byte) ((dataFragments + i) ^ j));
+            }
+        }
+    }
+
+    int dataFragments() {
+        return dataFragments;
+    }
+
+    int parityFragments() {
+        return parityFragments;
+    }
+
+    int totalFragments() {
+        return dataFragments + parityFragments;
+    }
+
+    /**
+     * Bytes per fragment for a value of {@code length} bytes; the last data fragment is zero padded.
+     */
+    int fragmentLength(int length) {
+        return Math.max(1, (length + dataFragments - 1) / dataFragments);
+    }
+
+    /**
+     * Splits {@code value} into k data fragments and computes m parity fragments, in that order.
+     */
+    byte[][] encode(byte[] value) {
+        int size = fragmentLength(value.length);
+        byte[][] fragments = new byte[totalFragments()][size];
+        for (int i = 0; i < dataFragments; i++) {
+            int from = i * size;
+            if (from < value.length) {
+                System.arraycopy(value, from, fragments[i], 0, Math.min(size, value.length - from));
+            }
+        }
+        for (int i = dataFragments; i < fragments.length; i++) {
+            for (int j = 0; j < dataFragments; j++) {
+                multiplyAdd(matrix[i][j], fragments[j], fragments[i]);
+            }
+        }
+        return fragments;
+    }
+
+    /**
+     * Rebuilds a value of {@code length} bytes from {@code fragments}, indexed by fragment number with null for the
+     * missing ones.
+     *
+     * @throws IllegalArgumentException if fewer than k fragments are present or they differ in length
+     */
+    byte[] decode(byte[][] fragments, int length) {
+        if (fragments.length != totalFragments()) {
+            throw new IllegalArgumentException("expected " + totalFragments() + " fragment slots, got " + fragments.length);
+        }
+        int[] rows = new int[dataFragments];
+        int present = 0;
+        for (int i = 0; i < fragments.length && present < dataFragments; i++) {
+            if (fragments[i] != null) {
+                rows[present++] = i;
+            }
+        }
+        if (present < dataFragments) {
+            throw new IllegalArgumentException("need " + dataFragments + " fragments, got " + present);
+        }
+        int size = fragments[rows[0]].length;
+        for (int row : rows) {
+            if (fragments[row].length != size) {
+                throw new IllegalArgumentException("fragments differ in length");
+            }
+        }
+        byte[][] decoding = invert(rows);
+        byte[] value = new byte[length];
+        byte[] slice = new byte[size];
+        for (int i = 0; i < dataFragments && i * size < length; i++) {
+            byte[] data;
+            if (rows[i] == i) {
+                // a data fragment that arrived: decoding row i of the identity part is a unit vector
+                data = fragments[i];
+            } else {
+                Arrays.fill(slice, (byte) 0);
+                for (int j = 0; j < dataFragments; j++) {
+                    multiplyAdd(decoding[i][j], fragments[rows[j]], slice);
+                }
+                data = slice;
+            }
+            System.arraycopy(data, 0, value, i * size, Math.min(size, length - i * size));
+        }
+        return value;
+    }
+
+    // Inverse of the k x k submatrix made of the given encoding rows, by Gauss-Jordan elimination.
+    private byte[][] invert(int[] rows) {
+        int k = dataFragments;
+        byte[][] work = new byte[k][2 * k];
+        for (int i = 0; i < k; i++) {
+            System.arraycopy(matrix[rows[i]], 0, work[i], 0, k);
+            work[i][k + i] = 1;
+        }
+        for (int col = 0; col < k; col++) {
+            int pivot = col;
+            while (work[pivot][col] == 0) {
+                pivot++;
+            }
+            byte[] swap = work[pivot];
+            work[pivot] = work[col];
+            work[col] = swap;
+            byte scale = inverse(work[col][col]);
+            for (int j = 0; j < 2 * k; j++) {
+                work[col][j] = multiply(work[col][j], scale);
+            }
+            for (int i = 0; i < k; i++) {
+                if (i != col && work[i][col] != 0) {
+                    byte factor = work[i][col];
+                    for (int j = 0; j < 2 * k; j++) {
+                        work[i][j] ^= multiply(factor, work[col][j]);
+                    }
+                }
+            }
+        }
+        byte[][] inverse = new byte[k][k];
+        for (int i = 0; i < k; i++) {
+            System.arraycopy(work[i], k, inverse[i], 0, k);
+        }
+        return inverse;
+    }
+
+    // target ^= factor * source, element-wise
+    private static void multiplyAdd(byte factor, byte[] source, byte[] target) {
+        if (factor == 0) {
+            return;
+        }
+        byte[] row = MUL[factor & 0xff];
+        for (int i = 0; i < source.length; i++) {
+            target[i] ^= row[source[i] & 0xff];
+        }
+    }
+
+    static byte multiply(byte a, byte b) {
+        return MUL[a & 0xff][b & 0xff];
+    }
+
+    static byte inverse(byte a) {
+        if (a == 0) {
+            throw new ArithmeticException("0 has no inverse in GF(256)");
+        }
+        return EXP[FIELD_SIZE - 1 - LOG[a & 0xff]];
+    }
+}
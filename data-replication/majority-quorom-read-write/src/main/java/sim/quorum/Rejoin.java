@@ -0,0 +1,318 @@
+package sim.quorum;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Crash and restart for {@link Cluster} nodes, and the state transfer that brings a restarted node back.
+ * <p>
+ * A restarted node is empty. It takes writes straight away but answers no reads while a healthy peer, the donor,
+ * streams it a snapshot: every value the donor held when the transfer started, in key order, in chunks of about
+ * {@code chunkBytes} over the donor's mesh link. Then one catch-up pass sends whatever the donor stored at a newer
+ * version than the snapshot, which covers writes the node missed while it was receiving; writes that reached it
+ * directly are newer and win over the snapshot entries, since installing is versioned like any other write. After
+ * that the node serves reads again ({@code rejoined}, with the time and bytes it took).
+ * <p>
+ * Chunks ride on foreground requests: after a request the cluster sends at most one chunk per transfer, under that
+ * request's deadline, and the request's latency includes it. When a request takes longer than {@code latencyBudget}
+ * the gap between chunks doubles (from 10 ms up to a second); each request within budget shortens it by 10 ms, so the
+ * transfer runs as fast as foreground latency allows. A chunk that fails is sent again; a donor that goes down is
+ * replaced by another, starting over.
+ */
+final class Rejoin {
+    private static final long MIN_BACKOFF_NANOS = Duration.ofMillis(10).toNanos();
+    private static final long MAX_BACKOFF_NANOS = Duration.ofSeconds(1).toNanos();
+
+    /**
+     * Snapshot chunks of about {@code chunkBytes} of values, throttled to keep requests within {@code latencyBudget}.
+     */
+    record Settings(int chunkBytes, Duration latencyBudget) {
+        Settings {
+            if (chunkBytes < 1) {
+                throw new IllegalArgumentException("chunkBytes must be >= 1");
+            }
+            Objects.requireNonNull(latencyBudget);
+        }
+
+        /**
+         * 4 KiB chunks, requests kept within {@code latencyBudget}.
+         */
+        static Settings withBudget(Duration latencyBudget) {
+            return new Settings(4096, latencyBudget);
+        }
+    }
+
+    /**
+     * {@code node} goes down at the {@code crashAt}-th cluster request and restarts at the {@code restartAt}-th.
+     */
+    record Crash(int node, long crashAt, long restartAt) {
+        Crash {
+            if (crashAt < 1 || restartAt <= crashAt) {
+                throw new IllegalArgumentException("need 1 <= crashAt < restartAt");
+            }
+        }
+
+        /**
+         * {@code <node>:<crashAt>:<restartAt>}, e.g. {@code 1:40:80}.
+         */
+        static Crash parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected <node>:<crashAt>:<restartAt>, got " + spec);
+            }
+            return new Crash(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        }
+    }
+
+    /**
+     * One node receiving state. Guarded by the instance.
+     */
+    private static final class Transfer {
+        private final int target;
+        private final long startNanos = System.nanoTime();
+        private int donor;
+        private List<Node.Versioned> pending;
+        private int position;
+        // the donor's newest version when the current snapshot was taken
+        private long snapshotVersion;
+        private boolean catchingUp;
+        private boolean sending;
+        private long nextChunkNanos;
+        private long bytes;
+        private long chunks;
+        private long entries;
+
+        private Transfer(int target) {
+            this.target = target;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final Link[][] mesh;
+    private final EventLog log;
+    private final int chunkBytes;
+    private final long budgetNanos;
+    private final Map<Integer, Transfer> transfers = new TreeMap<>();
+    private final List<Crash> schedule = new ArrayList<>();
+    private final Counter crashes;
+    private final Counter restarts;
+    private final Counter rejoins;
+    private final Counter chunks;
+    private final Counter bytes;
+    private final Counter throttled;
+    private final Histogram rejoinMillis;
+    // gap between chunks of one transfer; adjusted after every request. Guarded by the instance.
+    private long backoffNanos;
+
+    Rejoin(List<Node> nodes, Link[][] mesh, Settings settings, EventLog log, Metrics metrics) {
+        this.nodes = List.copyOf(nodes);
+        this.mesh = Objects.requireNonNull(mesh);
+        this.log = Objects.requireNonNull(log);
+        this.chunkBytes = settings.chunkBytes();
+        this.budgetNanos = settings.latencyBudget().toNanos();
+        this.crashes = metrics.counter("cluster.crashes");
+        this.restarts = metrics.counter("cluster.restarts");
+        this.rejoins = metrics.counter("cluster.rejoin.completed");
+        this.chunks = metrics.counter("cluster.rejoin.chunks");
+        this.bytes = metrics.counter("cluster.rejoin.bytes");
+        this.throttled = metrics.counter("cluster.rejoin.throttled");
+        this.rejoinMillis = metrics.histogram("cluster.rejoin.ms");
+        metrics.gauge("cluster.rejoin.active", this::active);
+    }
+
+    synchronized void schedule(Crash crash) {
+        if (crash.node() < 0 || crash.node() >= nodes.size()) {
+            throw new IllegalArgumentException("no node " + crash.node());
+        }
+        schedule.add(crash);
+    }
+
+    void crash(int node, String reason) {
+        synchronized (this) {
+            transfers.remove(node);
+        }
+        nodes.get(node).crash(reason);
+        crashes.increment();
+        lifecycle(node, "crash", reason, 0);
+    }
+
+    void restart(int node) {
+        nodes.get(node).restart();
+        restarts.increment();
+        synchronized (this) {
+            transfers.put(node, new Transfer(node));
+        }
+        lifecycle(node, "restart", null, 0);
+    }
+
+    /**
+     * Applies scheduled crashes and restarts due at the {@code request}-th cluster request.
+     */
+    void beforeRequest(long request) {
+        List<Crash> due = new ArrayList<>();
+        synchronized (this) {
+            for (Crash crash : schedule) {
+                if (crash.crashAt() == request || crash.restartAt() == request) {
+                    due.add(crash);
+                }
+            }
+        }
+        for (Crash crash : due) {
+            if (crash.crashAt() == request) {
+                crash(crash.node(), "scheduled at request " + request);
+            } else {
+                restart(crash.node());
+            }
+        }
+    }
+
+    /**
+     * A foreground request that started at {@code startNanos} is done: sends the next chunk of each transfer whose
+     * gap has passed, then adjusts the gap to the request's latency, chunks included.
+     */
+    void afterRequest(long startNanos, Deadline deadline) {
+        List<Transfer> due = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Transfer transfer : transfers.values()) {
+                if (transfer.sending) {
+                    continue;
+                }
+                if (now - transfer.nextChunkNanos < 0) {
+                    throttled.increment();
+                    continue;
+                }
+                transfer.sending = true;
+                due.add(transfer);
+            }
+        }
+        for (Transfer transfer : due) {
+            try {
+                step(transfer, deadline);
+            } finally {
+                synchronized (this) {
+                    transfer.sending = false;
+                    transfer.nextChunkNanos = System.nanoTime() + backoffNanos;
+                }
+            }
+        }
+        long latency = System.nanoTime() - startNanos;
+        synchronized (this) {
+            backoffNanos = latency > budgetNanos ? Math.min(MAX_BACKOFF_NANOS, Math.max(MIN_BACKOFF_NANOS, backoffNanos * 2))
+                    : Math.max(0, backoffNanos - MIN_BACKOFF_NANOS);
+        }
+    }
+
+    // Runs with transfer.sending set, so no other thread touches the transfer's progress.
+    private void step(Transfer transfer, Deadline deadline) {
+        Node target = nodes.get(transfer.target);
+        if (!target.isUp()) {
+            return;
+        }
+        if (transfer.pending == null || !nodes.get(transfer.donor).isServing()) {
+            if (!snapshot(transfer)) {
+                return;
+            }
+        }
+        if (transfer.position == transfer.pending.size()) {
+            if (!transfer.catchingUp) {
+                transfer.catchingUp = true;
+                transfer.pending = nodes.get(transfer.donor).writtenSince(transfer.snapshotVersion);
+                transfer.position = 0;
+                log.event(nodeId(transfer.target), "rejoin-catch-up").str("donor", nodeId(transfer.donor))
+                        .num("since", transfer.snapshotVersion).num("entries", transfer.pending.size()).emit();
+            }
+            if (transfer.position == transfer.pending.size()) {
+                finish(transfer);
+                return;
+            }
+        }
+        List<Node.Versioned> chunk = new ArrayList<>();
+        int size = 0;
+        while (transfer.position + chunk.size() < transfer.pending.size() && (chunk.isEmpty() || size < chunkBytes)) {
+            Node.Versioned entry = transfer.pending.get(transfer.position + chunk.size());
+            chunk.add(entry);
+            size += entry.key().length() + entry.value().getBytes(StandardCharsets.UTF_8).length + Long.BYTES;
+        }
+        Link link = mesh[transfer.donor][transfer.target];
+        String phase = transfer.catchingUp ? "catch-up" : "snapshot";
+        try {
+            var meta = link.logsDeliveries() ? MapBuilder.of("from", nodeId(transfer.donor), "to", nodeId(transfer.target),
+                    "phase", phase) : null;
+            int applied = link.deliver("snapshot-chunk", () -> target.install(chunk), meta, deadline);
+            transfer.position += chunk.size();
+            transfer.bytes += size;
+            transfer.chunks++;
+            transfer.entries += chunk.size();
+            chunks.increment();
+            bytes.add(size);
+            log.event(nodeId(transfer.target), "snapshot-chunk").str("donor", nodeId(transfer.donor)).str("phase", phase)
+                    .num("entries", chunk.size()).num("applied", applied).num("bytes", size)
+                    .num("remaining", transfer.pending.size() - transfer.position).emit();
+        } catch (LinkFailureException | DeadlineExceededException e) {
+            log.event(nodeId(transfer.target), "snapshot-chunk-failed").str("donor", nodeId(transfer.donor)).str("phase", phase)
+                    .str("reason", e.getMessage()).emit();
+        }
+    }
+
+    // Takes a fresh snapshot from the next serving node after the target; false if there is none right now.
+    private boolean snapshot(Transfer transfer) {
+        for (int i = 1; i < nodes.size(); i++) {
+            int donor = (transfer.target + i) % nodes.size();
+            Node node = nodes.get(donor);
+            if (!node.isServing()) {
+                continue;
+            }
+            long version = node.highestVersion();
+            transfer.donor = donor;
+            transfer.snapshotVersion = version;
+            transfer.pending = node.snapshot();
+            transfer.position = 0;
+            transfer.catchingUp = false;
+            log.event(nodeId(transfer.target), "rejoin-snapshot").str("donor", nodeId(donor)).num("version", version)
+                    .num("entries", transfer.pending.size()).emit();
+            return true;
+        }
+        return false;
+    }
+
+    private void finish(Transfer transfer) {
+        synchronized (this) {
+            if (transfers.get(transfer.target) != transfer) {
+                return;
+            }
+            transfers.remove(transfer.target);
+        }
+        nodes.get(transfer.target).joined();
+        long millis = (System.nanoTime() - transfer.startNanos) / 1_000_000;
+        rejoins.increment();
+        rejoinMillis.record(millis);
+        log.event(nodeId(transfer.target), "rejoined").str("donor", nodeId(transfer.donor)).num("ms", millis)
+                .num("bytes", transfer.bytes).num("chunks", transfer.chunks).num("entries", transfer.entries).emit();
+        lifecycle(transfer.target, "rejoined", "snapshot from " + nodeId(transfer.donor), transfer.entries);
+    }
+
+    private static void lifecycle(int node, String transition, String reason, long entries) {
+        var event = new FlightEvents.NodeLifecycle();
+        if (event.shouldCommit()) {
+            event.node = nodeId(node);
+            event.transition = transition;
+            event.reason = reason;
+            event.entries = entries;
+            event.commit();
+        }
+    }
+
+    synchronized long active() {
+        return transfers.size();
+    }
+
+    private static String nodeId(int i) {
+        return "node-" + i;
+    }
+}
@@ -1,6 +1,9 @@
 package sim.quorum;
 
-import java.util.Random;
+import jdk.jfr.Recording;
+
+import java.time.Duration;
+import java.util.Locale;
 
 /**
  * Demonstrates majority quorum writes and reads with link drops.
@@ -10,15 +13,43 @@ public final class Simulation {
         int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
         double dropProbability = args.length > 1 ? Double.parseDouble(args[1]) : 0.2;
         long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        String workload = args.length > 3 ? args[3] : null;
+
+        try (Recording recording = FlightEvents.startRecording();
+             EventLog log = EventLog.fromSystemProperties(System.out)) {
+            run(nodeCount, dropProbability, seed, workload, log);
+        }
+    }
 
-        EventLog log = new EventLog(System.out);
-        Random random = new Random(seed);
-        Cluster cluster = Cluster.demo(nodeCount, dropProbability, random, log);
+    private static void run(int nodeCount, double dropProbability, long seed, String workload, EventLog log) {
+        RandomStreams streams = new RandomStreams(seed);
+        Metrics metrics = new Metrics();
+        LatencyModel latency = LatencyModel.fromSystemProperties(LatencyModel.uniform(Duration.ofMillis(5), Duration.ofMillis(40)));
+        FaultModel faults = FaultModel.fromSystemProperties(FaultModel.drop(dropProbability));
+        Cluster.LinkSpec spec = new Cluster.LinkSpec(latency, faults);
+        Rejoin.Crash crash = crash();
+        Rejoin.Settings rejoin = crash == null ? null
+                : Rejoin.Settings.withBudget(Duration.ofMillis(Long.getLong("sim.cluster.rejoin.budgetMs", 250)));
+        Cluster.Options options = Cluster.Options.DEFAULTS.withReplication(replication()).withCoding(erasureCoding())
+                .withHints(hintedHandoff()).withRejoin(rejoin).withCache(readCache());
+        Cluster cluster = Cluster.demo(nodeCount, streams, log, metrics, (from, to) -> spec, options);
+        if (crash != null) {
+            cluster.schedule(crash);
+        }
         Link[] clientLinks = new Link[nodeCount];
         for (int i = 0; i < nodeCount; i++) {
-            clientLinks[i] = new Link("client-link-node-" + i, java.time.Duration.ofMillis(5), java.time.Duration.ofMillis(40), dropProbability, random, log);
+            String id = "client-link-node-" + i;
+            clientLinks[i] = new Link(id, latency, faults, streams.stream(id), log, metrics);
+        }
+        Client client = new Client("client-1", cluster, clientLinks, streams.stream("client-1"), log, metrics,
+                new Client.Options(selection(), hedging(), Duration.ofMillis(Long.getLong("sim.client.timeout", 2_000)), consistency()));
+
+        if (workload != null) {
+            runWorkload(WorkloadProfile.named(workload), seed, client, log);
+            cluster.awaitHintReplay();
+            metrics.report(log);
+            return;
         }
-        Client client = new Client("client-1", cluster, clientLinks, random, log);
 
         for (int i = 0; i < 5; i++) {
             String key = "k" + i;
@@ -31,6 +62,90 @@ public final class Simulation {
             }
         }
 
+        cluster.awaitHintReplay();
         log.info("simulation", "finished", MapBuilder.of("nodes", Integer.toString(nodeCount), "dropProb", Double.toString(dropProbability)));
+        metrics.report(log);
+    }
+
+    /**
+     * {@code -Dsim.client.selection=random|p2c}; random by default, which keeps a seed's entry nodes independent of timing.
+     */
+    private static EntrySelector.Strategy selection() {
+        return switch (System.getProperty("sim.client.selection", "random").toLowerCase(Locale.ROOT)) {
+            case "random" -> EntrySelector.Strategy.RANDOM;
+            case "p2c" -> EntrySelector.Strategy.POWER_OF_TWO;
+            default -> throw new IllegalArgumentException("Unknown sim.client.selection (expected random or p2c)");
+        };
+    }
+
+    /**
+     * {@code -Dsim.client.hedge=<budget>} hedges at most that fraction of gets; off by default.
+     */
+    private static Client.Hedging hedging() {
+        String budget = System.getProperty("sim.client.hedge", "");
+        return budget.isBlank() ? Client.Hedging.off() : Client.Hedging.withBudget(Double.parseDouble(budget));
+    }
+
+    /**
+     * {@code -Dsim.client.consistency=quorum|cached}; quorum reads by default, so a read cache only answers when asked to.
+     */
+    private static Cluster.Consistency consistency() {
+        return Cluster.Consistency.named(System.getProperty("sim.client.consistency", "quorum"));
+    }
+
+    /**
+     * {@code -Dsim.cluster.replication=quorum|chain|craq}; majority quorums by default.
+     */
+    private static Cluster.Replication replication() {
+        return Cluster.Replication.named(System.getProperty("sim.cluster.replication", "quorum"));
+    }
+
+    /**
+     * {@code -Dsim.cluster.erasure=<k>+<m>[:<margin>]} stores Reed–Solomon fragments instead of full values (k + m
+     * must equal the node count); full replication by default.
+     */
+    private static Cluster.ErasureCoding erasureCoding() {
+        String spec = System.getProperty("sim.cluster.erasure", "");
+        return spec.isBlank() ? null : Cluster.ErasureCoding.parse(spec);
+    }
+
+    /**
+     * {@code -Dsim.cluster.hints=<capacity>} keeps up to that many hints per entry node for replicas that missed a
+     * write (see {@link HintedHandoff.Settings#withCapacity}); off by default.
+     */
+    private static HintedHandoff.Settings hintedHandoff() {
+        String capacity = System.getProperty("sim.cluster.hints", "");
+        return capacity.isBlank() ? null : HintedHandoff.Settings.withCapacity(Integer.parseInt(capacity));
+    }
+
+    /**
+     * {@code -Dsim.cluster.crash=<node>:<crashAt>:<restartAt>} crashes a node at that cluster request and restarts it
+     * at the other, to rejoin by snapshot transfer within {@code -Dsim.cluster.rejoin.budgetMs} (250 by default) of
+     * request latency; off by default.
+     */
+    private static Rejoin.Crash crash() {
+        String spec = System.getProperty("sim.cluster.crash", "");
+        return spec.isBlank() ? null : Rejoin.Crash.parse(spec);
+    }
+
+    /**
+     * {@code -Dsim.cluster.cache=<capacity>[:<leaseMs>[:lease|version]]} gives every entry node a read cache (see
+     * {@link ReadCache.Settings#parse}); off by default.
+     */
+    private static ReadCache.Settings readCache() {
+        String spec = System.getProperty("sim.cluster.cache", "");
+        return spec.isBlank() ? null : ReadCache.Settings.parse(spec);
+    }
+
+    /**
+     * {@code -Dsim.workload.ttlMs} gives every write of the workload that time to live.
+     */
+    private static void runWorkload(WorkloadProfile profile, long seed, Client client, EventLog log) {
+        Long ttlMillis = Long.getLong("sim.workload.ttlMs");
+        Workload workload = new Workload(profile, 50, seed, log, ttlMillis == null ? null : Duration.ofMillis(ttlMillis));
+        workload.load(client);
+        Workload.Result result = workload.run(client, 100);
+        log.info("simulation", "finished", MapBuilder.of("workload", result.profile(), "ops", Long.toString(result.operations()),
+                "failures", Long.toString(result.failures())));
     }
 }
@@ -0,0 +1,39 @@
+package sim.quorum;
+
+import java.util.Random;
+
+/**
+ * Draws value sizes (in characters) for inserts and updates.
+ */
+@FunctionalInterface
+interface ValueSizeDistribution {
+    int next();
+
+    static ValueSizeDistribution constant(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be >= 1");
+        }
+        return () -> size;
+    }
+
+    static ValueSizeDistribution uniform(int min, int max, Random random) {
+        checkRange(min, max);
+        return () -> min + random.nextInt(max - min + 1);
+    }
+
+    /**
+     * Small values are common, large values rare.
+     */
+    static ValueSizeDistribution zipfian(int min, int max, double skew, Random random) {
+        checkRange(min, max);
+        var zipf = new ZipfianGenerator(skew, random);
+        long span = max - min + 1;
+        return () -> min + (int) zipf.next(span);
+    }
+
+    private static void checkRange(int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("value sizes must satisfy 1 <= min <= max");
+        }
+    }
+}
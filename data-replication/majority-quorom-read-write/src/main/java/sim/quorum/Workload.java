@@ -0,0 +1,141 @@
+package sim.quorum;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * YCSB-style workload driver: loads {@code recordCount} keys, then issues operations following a
+ * {@link WorkloadProfile}. Every random choice comes from streams derived from one seed, so a run is reproducible.
+ * With a {@code ttl}, every write expires that long after it was made.
+ */
+final class Workload {
+    enum Operation { READ, UPDATE, INSERT, SCAN, READ_MODIFY_WRITE }
+
+    record Result(String profile, long reads, long updates, long inserts, long scans, long readModifyWrites,
+                  long failures) {
+        long operations() {
+            return reads + updates + inserts + scans + readModifyWrites;
+        }
+    }
+
+    private final WorkloadProfile profile;
+    private final EventLog log;
+    private final Random opRandom;
+    private final Random valueRandom;
+    private final Random scanRandom;
+    private final KeyDistribution keys;
+    private final ValueSizeDistribution valueSizes;
+    private final long recordCount;
+    private final Duration ttl;
+    private final long[] counts = new long[Operation.values().length];
+    private long keyCount;
+    private long failures;
+
+    Workload(WorkloadProfile profile, long recordCount, long seed, EventLog log) {
+        this(profile, recordCount, seed, log, null);
+    }
+
+    /**
+     * @param ttl time to live of every write, or null for none
+     */
+    Workload(WorkloadProfile profile, long recordCount, long seed, EventLog log, Duration ttl) {
+        if (recordCount < 1) {
+            throw new IllegalArgumentException("recordCount must be >= 1");
+        }
+        this.profile = Objects.requireNonNull(profile, "profile");
+        this.log = Objects.requireNonNull(log, "log");
+        Random master = new Random(seed);
+        this.opRandom = new Random(master.nextLong());
+        this.valueRandom = new Random(master.nextLong());
+        this.scanRandom = new Random(master.nextLong());
+        this.keys = profile.keyDistribution(new Random(master.nextLong()));
+        this.valueSizes = profile.valueSizeDistribution(new Random(master.nextLong()));
+        this.recordCount = recordCount;
+        this.keyCount = recordCount;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Inserts the initial records {@code k0 .. k(recordCount-1)}.
+     */
+    void load(Client client) {
+        for (long i = 0; i < recordCount; i++) {
+            try {
+                client.put(key(i), nextValue(), ttl);
+            } catch (QuorumException | LinkFailureException e) {
+                failures++;
+            }
+        }
+        log.info("workload", "loaded", MapBuilder.of("profile", profile.name(), "records", Long.toString(recordCount)));
+    }
+
+    Result run(Client client, int operations) {
+        for (int i = 0; i < operations; i++) {
+            Operation op = nextOperation();
+            counts[op.ordinal()]++;
+            try {
+                execute(client, op);
+            } catch (QuorumException | LinkFailureException e) {
+                failures++;
+            }
+        }
+        Result result = result();
+        log.info("workload", "finished", MapBuilder.of("profile", profile.name(), "ops", Long.toString(result.operations()),
+                "failures", Long.toString(failures), "keys", Long.toString(keyCount)));
+        return result;
+    }
+
+    Operation nextOperation() {
+        double p = opRandom.nextDouble();
+        if ((p -= profile.readProportion()) < 0) return Operation.READ;
+        if ((p -= profile.updateProportion()) < 0) return Operation.UPDATE;
+        if ((p -= profile.insertProportion()) < 0) return Operation.INSERT;
+        if ((p -= profile.scanProportion()) < 0) return Operation.SCAN;
+        if (profile.readModifyWriteProportion() > 0) return Operation.READ_MODIFY_WRITE;
+        return Operation.READ;
+    }
+
+    String nextKey() {
+        return key(keys.next(keyCount));
+    }
+
+    private void execute(Client client, Operation op) {
+        switch (op) {
+            case READ -> client.get(nextKey());
+            case UPDATE -> client.put(nextKey(), nextValue(), ttl);
+            case INSERT -> client.put(key(keyCount++), nextValue(), ttl);
+            case SCAN -> scan(client);
+            case READ_MODIFY_WRITE -> {
+                String key = nextKey();
+                client.get(key);
+                client.put(key, nextValue(), ttl);
+            }
+        }
+    }
+
+    // One range request for up to the scan length, in key order from a chosen record's key, as YCSB scans do.
+    private void scan(Client client) {
+        long start = keys.next(keyCount);
+        int length = 1 + scanRandom.nextInt(profile.maxScanLength());
+        client.scan(key(start), null, length);
+    }
+
+    private String nextValue() {
+        char[] chars = new char[valueSizes.next()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + valueRandom.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String key(long index) {
+        return "k" + index;
+    }
+
+    private Result result() {
+        return new Result(profile.name(), counts[Operation.READ.ordinal()], counts[Operation.UPDATE.ordinal()],
+                counts[Operation.INSERT.ordinal()], counts[Operation.SCAN.ordinal()],
+                counts[Operation.READ_MODIFY_WRITE.ordinal()], failures);
+    }
+}
@@ -0,0 +1,121 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+final class ChainReplicationTest {
+    // node `unreachable` (-1 for none) drops every delivery sent to it
+    private Cluster cluster(int n, Cluster.Replication replication, int unreachable, List<Node> nodes, Metrics metrics) {
+        return TestClusters.cluster(n, Cluster.Options.DEFAULTS.withReplication(replication),
+                (from, to) -> to == unreachable ? FaultModel.drop(1.0) : FaultModel.none(), nodes, metrics);
+    }
+
+    @Test
+    void writesPassEveryNodeOnceAndReadsSeeThemFromAnyEntry() {
+        for (Cluster.Replication replication : new Cluster.Replication[]{Cluster.Replication.CHAIN, Cluster.Replication.CRAQ}) {
+            List<Node> nodes = new ArrayList<>();
+            Metrics metrics = new Metrics();
+            Cluster cluster = cluster(4, replication, -1, nodes, metrics);
+            Link client = TestClusters.clientLink();
+
+            cluster.put("k", "v1", 2, client, null);
+            cluster.put("k", "v2", 0, client, null);
+            for (int entry = 0; entry < 4; entry++) {
+                assertEquals(Optional.of("v2"), cluster.get("k", entry, client, null), replication + " via node-" + entry);
+            }
+            for (Node node : nodes) {
+                assertEquals(2, node.chainCommittedVersion("k"));
+            }
+            Map<String, Long> counters = metrics.counterSnapshot();
+            // v1 entered at node-2, which sent it to the head; then head -> 1 -> 2 -> 3 for both writes
+            assertEquals(2 + 2, counters.get("cluster.node-0.bytes-out"));
+            assertEquals(2 + 2, counters.get("cluster.node-1.bytes-out"));
+            assertEquals(2 + 2 + 2, counters.get("cluster.node-2.bytes-out"));
+            assertEquals(0, counters.get("cluster.node-3.bytes-out"));
+        }
+    }
+
+    @Test
+    void unreachableMiddleNodeIsBypassed() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(4, Cluster.Replication.CHAIN, 1, nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v", 0, client, null);
+        assertEquals(List.of(0, 2, 3), cluster.chain());
+        assertEquals(Optional.of("v"), cluster.get("k", 2, client, null));
+        assertEquals(Optional.of("v"), nodes.get(3).chainRead("k").committed());
+        assertEquals(Optional.empty(), nodes.get(1).chainRead("k").committed());
+        assertEquals(1, metrics.counterSnapshot().get("cluster.chain.reconfigurations"));
+    }
+
+    @Test
+    void unreachableTailIsReplacedByItsPredecessor() {
+        List<Node> nodes = new ArrayList<>();
+        Cluster cluster = cluster(3, Cluster.Replication.CRAQ, 2, nodes, new Metrics());
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v", 0, client, null);
+        assertEquals(List.of(0, 1), cluster.chain());
+        assertEquals(Optional.of("v"), cluster.get("k", 0, client, null));
+        assertEquals(Optional.of("v"), cluster.get("k", 2, client, null), "a removed node forwards reads to the tail");
+    }
+
+    @Test
+    void writeFailsOnceEveryNodeIsGone() {
+        EventLog log = TestClusters.log();
+        List<Node> nodes = List.of(new Node("node-0", log), new Node("node-1", log));
+        Link[][] mesh = new Link[2][2];
+        Random random = new Random(1);
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, 1.0, random, log);
+            }
+        }
+        Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(), Cluster.Options.DEFAULTS.withReplication(Cluster.Replication.CHAIN));
+
+        assertThrows(QuorumException.class, () -> cluster.put("k", "v", 1, TestClusters.clientLink(), null));
+        assertEquals(List.of(), cluster.chain());
+    }
+
+    @Test
+    void erasureCodingNeedsQuorumReplication() {
+        EventLog log = TestClusters.log();
+        Link[][] mesh = {{new Link("link-0-0", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log)}};
+        assertThrows(IllegalArgumentException.class, () -> new Cluster(List.of(new Node("node-0", log)), mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withReplication(Cluster.Replication.CHAIN).withCoding(new Cluster.ErasureCoding(1, 0, 0))));
+    }
+
+    @Test
+    void scansReadCommittedValuesAtTheTail() {
+        for (Cluster.Replication replication : new Cluster.Replication[]{Cluster.Replication.CHAIN, Cluster.Replication.CRAQ}) {
+            List<Node> nodes = new ArrayList<>();
+            Cluster cluster = cluster(3, replication, -1, nodes, new Metrics());
+            Link client = TestClusters.clientLink();
+            for (int i = 0; i < 5; i++) {
+                cluster.put("k" + i, "v" + i, i % 3, client, null);
+            }
+            cluster.put("k1", "newer", 0, client, null);
+            // passed on by the head but never acknowledged: not committed anywhere
+            nodes.get(0).chainWrite("k2", 100, "dirty");
+
+            ScanPage first = cluster.scan("k", null, 3, 0, client, null, Deadline.none());
+            assertEquals(List.of(Map.entry("k0", "v0"), Map.entry("k1", "newer"), Map.entry("k2", "v2")), first.entries(),
+                    replication.toString());
+            assertEquals(ScanPage.after("k2"), first.next());
+            ScanPage rest = cluster.scan(first.next(), null, 3, 1, client, null, Deadline.none());
+            assertEquals(List.of(Map.entry("k3", "v3"), Map.entry("k4", "v4")), rest.entries());
+            assertEquals(null, rest.next());
+        }
+    }
+}
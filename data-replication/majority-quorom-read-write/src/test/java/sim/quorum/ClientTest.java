@@ -7,8 +7,10 @@ import java.io.PrintStream;
 import java.time.Duration;
 import java.util.List;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 final class ClientTest {
     private EventLog log() {
@@ -19,14 +21,40 @@ final class ClientTest {
     void clientUsesRandomEntryNodeAndStillReadsWrittenValue() {
         EventLog log = log();
         int n = 3;
-        Cluster cluster = Cluster.demo(n, 0.0, new Random(2), log);
+        Cluster cluster = Cluster.demo(n, new RandomStreams(2), log, new Metrics(), (from, to) -> Cluster.LinkSpec.uniform(0.0),
+                Cluster.Options.DEFAULTS);
         Link[] clientLinks = new Link[n];
         for (int i = 0; i < n; i++) {
             clientLinks[i] = new Link("client-" + i, Duration.ZERO, Duration.ZERO, 0.0, new Random(3 + i), log);
         }
-        Client client = new Client("client-1", cluster, clientLinks, new Random(4), log);
+        Client client = new Client("client-1", cluster, clientLinks, new Random(4), log, new Metrics(), Client.Options.DEFAULTS);
 
         client.put("k", "v");
         assertEquals("v", client.get("k").orElseThrow());
     }
+
+    @Test
+    void hedgedGetAnswersFromSecondNodeWhenFirstIsSlow() {
+        EventLog log = log();
+        Metrics metrics = new Metrics();
+        int n = 3;
+        Cluster cluster = Cluster.demo(n, new RandomStreams(2), log, new Metrics(), (from, to) -> Cluster.LinkSpec.uniform(0.0),
+                Cluster.Options.DEFAULTS);
+        Link[] clientLinks = new Link[n];
+        for (int i = 0; i < n; i++) {
+            LatencyModel latency = LatencyModel.fixed(i == 0 ? 5_000 : 0);
+            clientLinks[i] = new Link("client-" + i, latency, FaultModel.none(), new Random(3 + i), log, metrics);
+        }
+        cluster.put("k", "v", 1, clientLinks[1], null);
+        // always picks node 0 first, so every get starts on the slow link
+        RandomGenerator first = () -> 0L;
+        Client client = new Client("client-1", cluster, clientLinks, first, log, metrics,
+                Client.Options.DEFAULTS.withHedging(new Client.Hedging(1.0, 0.5, 0)));
+
+        long start = System.nanoTime();
+        assertEquals("v", client.get("k").orElseThrow());
+        assertTrue(System.nanoTime() - start < 2_000_000_000L, "hedge should not wait for the slow link");
+        assertEquals(1L, metrics.counterSnapshot().get("client.client-1.hedge-wins"));
+        assertEquals(0L, metrics.counterSnapshot().get("link.client-0.deliveries"));
+    }
 }
@@ -6,11 +6,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 final class ClusterTest {
     private EventLog log() {
@@ -32,7 +37,7 @@ final class ClusterTest {
                 mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, 0.0, random, log);
             }
         }
-        Cluster cluster = new Cluster(nodes, mesh, log);
+        Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(), Cluster.Options.DEFAULTS);
         Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, random, log);
 
         cluster.put("k", "v", 0, clientLink, MapBuilder.of("key", "k", "value", "v"));
@@ -56,10 +61,232 @@ final class ClusterTest {
                 mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, drop, random, log);
             }
         }
-        Cluster cluster = new Cluster(nodes, mesh, log);
+        Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(), Cluster.Options.DEFAULTS);
         Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, random, log);
 
         assertThrows(QuorumException.class, () ->
                 cluster.put("k", "v", 0, clientLink, MapBuilder.of("key", "k", "value", "v")));
     }
+
+    @Test
+    void expiredDeadlineSkipsRemainingReplicas() {
+        EventLog log = log();
+        int n = 3;
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // the hop to node-1 outlasts the deadline; node-2 comes after it in the fan-out
+                LatencyModel latency = LatencyModel.fixed(j == 1 ? 5_000 : 0);
+                mesh[i][j] = new Link("link-" + i + "-" + j, latency, FaultModel.none(), new Random(i * n + j), log, new Metrics());
+            }
+        }
+        Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(), Cluster.Options.DEFAULTS);
+        Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log);
+
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () ->
+                cluster.put("k", "v", 0, clientLink, null, Deadline.after(Duration.ofMillis(50))));
+        assertTrue(System.nanoTime() - start < 2_000_000_000L, "should give up at the deadline, not after the delay");
+        assertEquals(Optional.of("v"), nodes.get(0).get("k"));
+        assertEquals(Optional.empty(), nodes.get(1).get("k"));
+        assertEquals(Optional.empty(), nodes.get(2).get("k"));
+    }
+
+    @Test
+    void readThatRunsOutOfTimeCountsAsAFailedRead() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        // only the hop from node-0 to node-1 outlasts the deadline
+        Cluster cluster = TestClusters.cluster(3, Cluster.Options.DEFAULTS, nodes, metrics,
+                (from, to) -> new Cluster.LinkSpec(LatencyModel.fixed(from == 0 && to == 1 ? 5_000 : 0), FaultModel.none()));
+        Link clientLink = TestClusters.clientLink();
+        cluster.put("k", "v", 2, clientLink, null);
+
+        assertThrows(DeadlineExceededException.class, () -> cluster.get("k", 0, clientLink, null, Deadline.after(Duration.ofMillis(50))));
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(1, counters.get("cluster.read.quorum-failed"));
+        assertEquals(0, counters.get("cluster.read.quorum-ok"));
+        assertEquals(1, counters.get("node.node-0.gets"));
+        assertEquals(0, counters.get("node.node-2.gets"), "no replica is asked after the deadline");
+        assertTrue(metrics.histogramSnapshot().stream().anyMatch(h -> h.name().equals("cluster.read.acks") && h.max() == 1));
+    }
+
+    @Test
+    void passedDeadlineIsNotSent() {
+        EventLog log = log();
+        Link link = new Link("link", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log);
+        Deadline passed = Deadline.after(Duration.ZERO);
+        assertTrue(passed.remainingMillis() <= 0);
+        assertThrows(DeadlineExceededException.class, () -> link.deliver("d", () -> {
+            throw new AssertionError("expired delivery must not run");
+        }, null, passed));
+    }
+
+    @Test
+    void erasureCodedWriteIsReadBackWithOneNodeUnreachable() {
+        EventLog log = log();
+        int n = 5;
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[n][n];
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // node-1 (a data fragment) is cut off from everyone
+                mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, j == 1 ? 1.0 : 0.0, random, log);
+            }
+        }
+        Metrics metrics = new Metrics();
+        Cluster cluster = new Cluster(nodes, mesh, log, metrics, Cluster.Options.DEFAULTS.withCoding(Cluster.ErasureCoding.parse("3+2")));
+        Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        String value = "x".repeat(300);
+
+        cluster.put("k", "old", 0, clientLink, null);
+        cluster.put("k", value, 0, clientLink, null);
+        assertEquals(value, cluster.get("k", 2, clientLink, null).orElseThrow());
+        assertEquals(Optional.empty(), cluster.get("missing", 3, clientLink, null));
+        assertEquals(Optional.empty(), nodes.get(0).get("k"), "nodes hold fragments, not values");
+        assertEquals(100, nodes.get(0).getFragment("k").orElseThrow().bytes().length);
+        assertEquals(4 * 100 + 4 * 1, metrics.counterSnapshot().get("cluster.write.bytes"));
+    }
+
+    @Test
+    void erasureCodingStoresAFractionOfFullReplication() {
+        EventLog log = log();
+        String value = "v".repeat(3_000);
+        long[] stored = new long[2];
+        for (int mode = 0; mode < 2; mode++) {
+            List<Node> nodes = new ArrayList<>();
+            Link[][] mesh = new Link[5][5];
+            Random random = new Random(1);
+            for (int i = 0; i < 5; i++) {
+                nodes.add(new Node("node-" + i, log));
+                for (int j = 0; j < 5; j++) {
+                    mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, 0.0, random, log);
+                }
+            }
+            Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(),
+                    Cluster.Options.DEFAULTS.withCoding(mode == 0 ? null : new Cluster.ErasureCoding(3, 2, 1)));
+            cluster.put("k", value, 0, new Link("client", Duration.ZERO, Duration.ZERO, 0.0, random, log), null);
+            stored[mode] = nodes.stream().mapToLong(Node::storedBytes).sum();
+        }
+        assertEquals(5 * 3_000, stored[0]);
+        assertEquals(5 * 1_000, stored[1]);
+    }
+
+    @Test
+    void erasureCodedReadFailsWithoutEnoughAnswers() {
+        EventLog log = log();
+        int n = 5;
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[n][n];
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // entry node 4 reaches only nodes 0-2: three fragments, but a read needs four answers at margin 1
+                mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, i == 4 && j >= 3 ? 1.0 : 0.0, random, log);
+            }
+        }
+        Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withCoding(Cluster.ErasureCoding.parse("3+2")));
+        Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+
+        cluster.put("k", "value", 0, clientLink, null);
+        assertThrows(QuorumException.class, () -> cluster.get("k", 4, clientLink, null));
+        assertThrows(IllegalArgumentException.class, () -> new Cluster(nodes, mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withCoding(Cluster.ErasureCoding.parse("2+1"))));
+    }
+
+    @Test
+    void scanPagesThroughThousandsOfKeysWithTheNewestVersionOfEach() {
+        EventLog log = log();
+        int n = 3;
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[n][n];
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, 0.0, random, log);
+            }
+        }
+        Metrics metrics = new Metrics();
+        Cluster cluster = new Cluster(nodes, mesh, log, metrics, Cluster.Options.DEFAULTS);
+        Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        for (int i = 0; i < 2_500; i++) {
+            cluster.put(String.format("user%04d", i), "v" + i, 0, clientLink, null);
+        }
+        cluster.put("other", "x", 0, clientLink, null);
+        // one replica missed a newer write, another holds a key the others lack
+        nodes.get(1).put("user0042", "fresh", 10_000);
+        nodes.get(2).put("user2500", "lone", 10_001);
+
+        List<String> keys = new ArrayList<>();
+        Map<String, String> values = new HashMap<>();
+        int pages = 0;
+        String start = "user";
+        do {
+            ScanPage page = cluster.scan(start, ScanPage.prefixEnd("user"), 1_000, pages % n, clientLink, null, Deadline.none());
+            for (Map.Entry<String, String> entry : page.entries()) {
+                keys.add(entry.getKey());
+                values.put(entry.getKey(), entry.getValue());
+            }
+            pages++;
+            start = page.next();
+        } while (start != null);
+
+        assertEquals(3, pages);
+        assertEquals(2_501, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(String.format("user%04d", i), keys.get(i));
+        }
+        assertEquals("fresh", values.get("user0042"));
+        assertEquals("lone", values.get("user2500"));
+        assertEquals("v7", values.get("user0007"));
+        assertEquals(3, metrics.counterSnapshot().get("cluster.scan.quorum-ok"));
+    }
+
+    @Test
+    void erasureCodedScanDecodesEachKeyAndNeedsAReadQuorum() {
+        EventLog log = log();
+        int n = 5;
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[n][n];
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // node-1 is cut off from everyone, and entry node 4 also cannot reach node-3
+                double drop = j == 1 || i == 4 && j == 3 ? 1.0 : 0.0;
+                mesh[i][j] = new Link("link-" + i + "-" + j, Duration.ZERO, Duration.ZERO, drop, random, log);
+            }
+        }
+        Cluster cluster = new Cluster(nodes, mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withCoding(Cluster.ErasureCoding.parse("3+2")));
+        Link clientLink = new Link("client-0", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        for (int i = 0; i < 10; i++) {
+            cluster.put("k" + i, "value-" + i, 0, clientLink, null);
+        }
+
+        ScanPage first = cluster.scan("k", null, 4, 2, clientLink, null, Deadline.none());
+        assertEquals(List.of("k0", "k1", "k2", "k3"), first.entries().stream().map(Map.Entry::getKey).toList());
+        assertEquals("value-3", first.entries().get(3).getValue());
+        ScanPage rest = cluster.scan(first.next(), null, 10, 2, clientLink, null, Deadline.none());
+        assertEquals(6, rest.entries().size());
+        assertFalse(rest.hasMore());
+        assertThrows(QuorumException.class, () -> cluster.scan("k", null, 4, 4, clientLink, null, Deadline.none()));
+    }
 }
@@ -0,0 +1,50 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class EntrySelectorTest {
+    @Test
+    void powerOfTwoAvoidsTheSlowNode() {
+        EntrySelector selector = new EntrySelector(EntrySelector.Strategy.POWER_OF_TWO, 3, new SplittableRandom(1));
+        selector.record(0, 50_000);
+        selector.record(1, 1_000);
+        selector.record(2, 1_200);
+        int slow = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (selector.choose() == 0) {
+                slow++;
+            }
+        }
+        assertEquals(0, slow);
+    }
+
+    @Test
+    void ewmaFollowsRecentLatency() {
+        EntrySelector selector = new EntrySelector(EntrySelector.Strategy.POWER_OF_TWO, 2, new SplittableRandom(1));
+        selector.record(0, 1_000);
+        assertEquals(1_000, selector.ewmaMicros(0));
+        for (int i = 0; i < 50; i++) {
+            selector.record(0, 10_000);
+        }
+        assertTrue(selector.ewmaMicros(0) > 9_900, "ewma " + selector.ewmaMicros(0));
+    }
+
+    @Test
+    void chooseOtherNeverReturnsTheExcludedNode() {
+        for (EntrySelector.Strategy strategy : EntrySelector.Strategy.values()) {
+            EntrySelector selector = new EntrySelector(strategy, 5, new SplittableRandom(2));
+            for (int i = 0; i < 1000; i++) {
+                int excluded = i % 5;
+                int other = selector.chooseOther(excluded);
+                assertNotEquals(excluded, other);
+                assertTrue(other >= 0 && other < 5);
+            }
+        }
+    }
+}
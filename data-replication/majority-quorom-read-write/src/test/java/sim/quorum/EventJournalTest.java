@@ -0,0 +1,143 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class EventJournalTest {
+    @TempDir
+    Path dir;
+
+    private static List<String> render(JournalReader reader, String actor, String key, Long requestId) {
+        List<String> lines = new ArrayList<>();
+        var line = new StringBuilder();
+        reader.scan(actor, key, requestId, event -> {
+            line.setLength(0);
+            event.appendLine(line);
+            lines.add(line.toString());
+        });
+        return lines;
+    }
+
+    private static void emitSample(EventLog log) {
+        for (int i = 0; i < 50; i++) {
+            String key = "k" + (i % 5);
+            log.event("link-node-0-node-" + (i % 3), "deliver").str("desc", "put").num("delayMs", i)
+                    .meta("from", "node-0").meta("key", key).emit();
+            log.event("node-" + (i % 3), "put").str("key", key).str("value", null).emit();
+            log.event("client-1", "put-ok").str("key", key).num("id", i).emit();
+        }
+    }
+
+    @Test
+    void rendersSameTextAsEventLog() {
+        var text = new ByteArrayOutputStream();
+        emitSample(new EventLog(new PrintStream(text)));
+        try (EventLog log = EventLog.journal(new PrintStream(new ByteArrayOutputStream()), dir)) {
+            emitSample(log);
+        }
+        List<String> expected = new ArrayList<>();
+        for (String line : text.toString().split(System.lineSeparator())) {
+            expected.add(line.substring(line.indexOf(']')));
+        }
+        List<String> actual = new ArrayList<>();
+        for (String line : render(new JournalReader(dir), null, null, null)) {
+            actual.add(line.substring(line.indexOf(']'), line.length() - System.lineSeparator().length()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void filtersByActorKeyAndRequestId() {
+        try (EventLog log = EventLog.journal(new PrintStream(new ByteArrayOutputStream()), dir)) {
+            emitSample(log);
+        }
+        var reader = new JournalReader(dir);
+        assertEquals(50, render(reader, "client-1", null, null).size());
+        // k2 appears in every third iteration's deliver (meta), put and put-ok
+        assertEquals(30, render(reader, null, "k2", null).size());
+        assertEquals(10, render(reader, "client-1", "k2", null).size());
+        List<String> byId = render(reader, null, null, 7L);
+        assertEquals(1, byId.size());
+        assertTrue(byId.get(0).contains("event=put-ok key=k2 id=7"));
+        assertEquals(0, render(reader, "nobody", null, null).size());
+    }
+
+    @Test
+    void rollsAcrossSegments() {
+        // 56-byte records, 18 to a segment
+        try (var journal = new EventJournal(dir, EventJournal.MAX_RECORD_SIZE)) {
+            Event event = new Event(null);
+            for (int i = 0; i < 100; i++) {
+                event.begin("node-0", "get").str("key", "k").num("i", i);
+                event.timestamp(1_000L + i);
+                journal.append(event);
+            }
+        }
+        assertTrue(Files.exists(EventJournal.segmentPath(dir, 5)));
+        List<String> lines = render(new JournalReader(dir), "node-0", null, null);
+        assertEquals(100, lines.size());
+        assertTrue(lines.get(99).contains("i=99"));
+    }
+
+    @Test
+    void onlyActorsEventsAndFieldKeysAreInterned() throws IOException {
+        try (EventLog log = EventLog.journal(new PrintStream(new ByteArrayOutputStream()), dir)) {
+            for (int i = 0; i < 1_000; i++) {
+                log.event("client-1", "put-ok").str("key", "k" + i).str("value", "v" + i).emit();
+            }
+        }
+        // client-1, put-ok, key, value
+        assertEquals(4 * 4 + "client-1put-okkeyvalue".length(), Files.size(dir.resolve(EventJournal.STRINGS_FILE)));
+        List<String> lines = render(new JournalReader(dir), null, "k999", null);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("key=k999 value=v999"), lines.get(0));
+    }
+
+    @Test
+    void textTooLongForARecordIsCut() {
+        try (EventLog log = EventLog.journal(new PrintStream(new ByteArrayOutputStream()), dir)) {
+            log.event("node-0", "put").str("key", "k").str("value", "x".repeat(5_000)).emit();
+        }
+        List<String> lines = render(new JournalReader(dir), null, "k", null);
+        assertEquals(1, lines.size());
+        String value = lines.get(0).substring(lines.get(0).indexOf("value=") + "value=".length()).strip();
+        assertTrue(value.length() > 900 && value.length() < EventJournal.MAX_RECORD_SIZE, value);
+        assertEquals("x".repeat(value.length()), value);
+    }
+
+    @Test
+    void truncatedStringTableIsReportedRatherThanMisread() throws IOException {
+        try (EventLog log = EventLog.journal(new PrintStream(new ByteArrayOutputStream()), dir)) {
+            emitSample(log);
+        }
+        // as if the run died with the last interned string only half written
+        Path strings = dir.resolve(EventJournal.STRINGS_FILE);
+        try (FileChannel channel = FileChannel.open(strings, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(strings) - 2);
+        }
+        var reader = new JournalReader(dir);
+        List<String> rendered = new ArrayList<>();
+        var line = new StringBuilder();
+        IllegalStateException truncated = assertThrows(IllegalStateException.class, () -> reader.scan(null, null, null, event -> {
+            line.setLength(0);
+            event.appendLine(line);
+            rendered.add(line.toString());
+        }));
+        assertTrue(truncated.getMessage().contains("truncated"), truncated.getMessage());
+        assertTrue(rendered.size() > 0);
+    }
+}
@@ -0,0 +1,162 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class EventLogTest {
+    private static List<String> withoutTimestamps(ByteArrayOutputStream bytes) {
+        List<String> lines = new ArrayList<>();
+        for (String line : bytes.toString(StandardCharsets.UTF_8).split(System.lineSeparator())) {
+            lines.add(line.substring(line.indexOf(']') + 1));
+        }
+        return lines;
+    }
+
+    private static void emitSample(EventLog log) {
+        log.info("node-0", "put", MapBuilder.of("key", "k", "value", "v"));
+        log.info("link-0", "deliver", MapBuilder.of("desc", "put"), MapBuilder.of("from", "node-0", "to", "node-1"));
+        log.info("cluster", "empty", null, MapBuilder.of("key", "k"));
+        log.info("simulation", "finished", Map.of());
+    }
+
+    @Test
+    void syncFormatIsUnchanged() {
+        var bytes = new ByteArrayOutputStream();
+        emitSample(new EventLog(new PrintStream(bytes)));
+        assertEquals(List.of(
+                " actor=node-0 event=put key=k value=v",
+                " actor=link-0 event=deliver desc=put {from: node-0, to: node-1}",
+                " actor=cluster event=empty {key: k}",
+                " actor=simulation event=finished "), withoutTimestamps(bytes));
+    }
+
+    @Test
+    void asyncWritesSameLinesInOrderAfterClose() {
+        var syncBytes = new ByteArrayOutputStream();
+        emitSample(new EventLog(new PrintStream(syncBytes)));
+        var asyncBytes = new ByteArrayOutputStream();
+        try (EventLog log = EventLog.async(new PrintStream(asyncBytes), 2, EventLog.OverflowPolicy.BLOCK)) {
+            emitSample(log);
+        }
+        assertEquals(withoutTimestamps(syncBytes), withoutTimestamps(asyncBytes));
+    }
+
+    @Test
+    void blockPolicyKeepsEveryEventFromConcurrentProducers() throws InterruptedException {
+        var bytes = new ByteArrayOutputStream();
+        int threads = 4;
+        int perThread = 2_000;
+        try (EventLog log = EventLog.async(new PrintStream(bytes), 64, EventLog.OverflowPolicy.BLOCK)) {
+            var done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                String actor = "client-" + t;
+                new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        log.info(actor, "put-ok", MapBuilder.of("i", Integer.toString(i)));
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            assertEquals(0, log.dropped());
+        }
+        assertEquals(threads * perThread, withoutTimestamps(bytes).size());
+    }
+
+    @Test
+    void dropPolicyReportsDroppedEventsOnClose() {
+        var bytes = new ByteArrayOutputStream();
+        long dropped;
+        try (EventLog log = EventLog.async(new PrintStream(bytes), 2, EventLog.OverflowPolicy.DROP)) {
+            for (int i = 0; i < 10_000; i++) {
+                log.info("client-1", "get-ok", MapBuilder.of("i", Integer.toString(i)));
+            }
+            dropped = log.dropped();
+        }
+        List<String> lines = withoutTimestamps(bytes);
+        if (dropped > 0) {
+            assertTrue(lines.get(lines.size() - 1).startsWith(" actor=event-log event=dropped count="));
+            assertEquals(10_000 - dropped + 1, lines.size());
+        } else {
+            assertEquals(10_000, lines.size());
+        }
+    }
+
+    @Test
+    void blockingPublishAfterCloseIsWrittenInsteadOfWaitingForSpace() {
+        var bytes = new ByteArrayOutputStream();
+        var writer = new AsyncEventWriter(new PrintStream(bytes), 2, EventLog.OverflowPolicy.BLOCK, 1);
+        Event event = new Event(null);
+        event.begin("client-1", "put-ok").num("i", 0);
+        writer.publish(event);
+        writer.close();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            // more than the ring holds, with no writer thread left to free a slot
+            for (int i = 1; i < 5; i++) {
+                event.begin("client-1", "put-ok").num("i", i);
+                assertTrue(writer.publish(event));
+            }
+        });
+        List<String> lines = withoutTimestamps(bytes);
+        assertEquals(5, lines.size());
+        assertEquals(" actor=client-1 event=put-ok i=4", lines.get(4));
+    }
+
+    @Test
+    void typedEventsFormatLikeMaps() {
+        var typed = new ByteArrayOutputStream();
+        EventLog log = new EventLog(new PrintStream(typed));
+        log.event("node-0", "put").str("key", "k").str("value", "v").emit();
+        log.event("link-0", "deliver").str("desc", "put").num("delayMs", 7).meta("from", "node-0").meta("attempt", 2).emit();
+        log.event("simulation", "finished").emit();
+        assertEquals(List.of(
+                " actor=node-0 event=put key=k value=v",
+                " actor=link-0 event=deliver desc=put delayMs=7 {from: node-0, attempt: 2}",
+                " actor=simulation event=finished "), withoutTimestamps(typed));
+    }
+
+    @Test
+    void filteredEventsAreNotWritten() {
+        var bytes = new ByteArrayOutputStream();
+        EventLog log = new EventLog(new PrintStream(bytes), EventFilter.excluding("deliver", "node-1"));
+        assertFalse(log.isEnabled("link-0", "deliver"));
+        assertFalse(log.isEnabled("node-1", "put"));
+        assertTrue(log.isEnabled("node-0", "put"));
+        log.event("link-0", "deliver").str("desc", "put").emit();
+        log.info("node-1", "put", MapBuilder.of("key", "k"));
+        log.event("node-0", "put").str("key", "k").emit();
+        assertEquals(List.of(" actor=node-0 event=put key=k"), withoutTimestamps(bytes));
+    }
+
+    @Test
+    void disabledEventsDoNotAllocate() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        EventLog log = EventLog.off();
+        long id = Thread.currentThread().getId();
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long before = threads.getThreadAllocatedBytes(id);
+            for (int i = 0; i < 100_000; i++) {
+                log.event("node-0", "put").str("key", "k").num("delayMs", i).meta("id", i).emit();
+            }
+            long allocated = threads.getThreadAllocatedBytes(id) - before;
+            if (warmup == 2) {
+                assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class FaultModelTest {
+    private EventLog log() {
+        return new EventLog(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void addingDuplicatesAndReordersKeepsTheDropPattern() {
+        List<Boolean> plain = drops(FaultModel.drop(0.2));
+        List<Boolean> noisy = drops(FaultModel.of(0.2, 0.1, 0.1));
+        assertEquals(plain, noisy);
+    }
+
+    @Test
+    void partitionWindowDropsOnlyItsDeliveries() {
+        FaultModel model = FaultModel.none().withPartition(3, 5);
+        RandomGenerator random = new SplittableRandom(1);
+        for (long sequence = 0; sequence < 8; sequence++) {
+            FaultModel.Fault expected = sequence >= 3 && sequence < 5 ? FaultModel.Fault.PARTITIONED : FaultModel.Fault.DELIVER;
+            assertEquals(expected, model.sample(random, sequence));
+        }
+    }
+
+    @Test
+    void duplicateRunsTheActionTwiceButAnswersOnce() {
+        Link link = new Link("link", LatencyModel.fixed(0), FaultModel.of(0.0, 1.0, 0.0), new SplittableRandom(1), log(), new Metrics());
+        AtomicInteger runs = new AtomicInteger();
+        assertEquals(1, link.deliver("put", runs::incrementAndGet, null));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void reorderedDeliveryStillArrives() {
+        Metrics metrics = new Metrics();
+        Link link = new Link("link", LatencyModel.fixed(0), FaultModel.of(0.0, 0.0, 1.0), new SplittableRandom(1), log(), metrics);
+        assertEquals("ok", link.deliver("get", () -> "ok", null));
+        assertEquals(1L, metrics.counterSnapshot().get("link.link.reorders"));
+    }
+
+    @Test
+    void partitionedNodeLosesQuorumOnlyInsideTheWindow() {
+        EventLog log = log();
+        // node-0 cannot reach node-1 or node-2 for the first two deliveries on each link, i.e. two fan-outs
+        FaultModel cut = FaultModel.none().withPartition(0, 2);
+        Cluster cluster = Cluster.demo(3, new RandomStreams(1), log, new Metrics(), (from, to) ->
+                new Cluster.LinkSpec(LatencyModel.fixed(0), from == 0 && to != 0 ? cut : FaultModel.none()), Cluster.Options.DEFAULTS);
+        Link clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, new SplittableRandom(1), log);
+
+        assertThrows(QuorumException.class, () -> cluster.put("k", "v1", 0, clientLink, MapBuilder.of("key", "k")));
+        assertThrows(QuorumException.class, () -> cluster.put("k", "v2", 0, clientLink, MapBuilder.of("key", "k")));
+        cluster.put("k", "v3", 0, clientLink, MapBuilder.of("key", "k"));
+        assertEquals("v3", cluster.get("k", 1, clientLink, MapBuilder.of("key", "k")).orElseThrow());
+    }
+
+    @Test
+    void parseCombinesProbabilitiesAndWindows() {
+        FaultModel model = FaultModel.parse("drop=0,duplicate=0,reorder=0,partition=1-2,partition=4-5");
+        RandomGenerator random = new SplittableRandom(1);
+        List<FaultModel.Fault> faults = new ArrayList<>();
+        for (long sequence = 0; sequence < 6; sequence++) {
+            faults.add(model.sample(random, sequence));
+        }
+        assertEquals(List.of(FaultModel.Fault.DELIVER, FaultModel.Fault.PARTITIONED, FaultModel.Fault.DELIVER,
+                FaultModel.Fault.DELIVER, FaultModel.Fault.PARTITIONED, FaultModel.Fault.DELIVER), faults);
+        assertThrows(IllegalArgumentException.class, () -> FaultModel.parse("drop=0.6,duplicate=0.6"));
+        assertThrows(IllegalArgumentException.class, () -> FaultModel.parse("corrupt=0.1"));
+    }
+
+    private static List<Boolean> drops(FaultModel model) {
+        RandomGenerator random = new SplittableRandom(9);
+        List<Boolean> dropped = new ArrayList<>();
+        for (long sequence = 0; sequence < 64; sequence++) {
+            dropped.add(model.sample(random, sequence) == FaultModel.Fault.DROP);
+        }
+        assertTrue(dropped.contains(true));
+        return dropped;
+    }
+}
@@ -0,0 +1,102 @@
+package sim.quorum;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class FlightEventsTest {
+    @TempDir
+    Path dir;
+
+    private EventLog log() {
+        return new EventLog(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void noRecordingWithoutProperty() {
+        assertNull(FlightEvents.startRecording());
+    }
+
+    @Test
+    void quorumOperationsAreRecorded() throws Exception {
+        Path file = dir.resolve("run.jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(FlightEvents.QuorumWrite.class);
+            recording.enable(FlightEvents.QuorumRead.class);
+            recording.enable(FlightEvents.LinkDeliver.class);
+            recording.start();
+
+            Cluster cluster = Cluster.demo(3, new RandomStreams(1), log(), new Metrics(), (from, to) -> Cluster.LinkSpec.uniform(0.0),
+                    Cluster.Options.DEFAULTS);
+            Link clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log());
+            cluster.put("key", "v", 0, clientLink, null);
+            cluster.get("key", 1, clientLink, null);
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        RecordedEvent write = single(events, "sim.quorum.QuorumWrite");
+        assertEquals(3, write.getInt("acks"));
+        assertEquals(2, write.getInt("quorum"));
+        assertEquals(3, write.getInt("keyLength"));
+        assertTrue(write.getBoolean("committed"));
+        RecordedEvent read = single(events, "sim.quorum.QuorumRead");
+        assertEquals("node-1", read.getString("entry"));
+        assertEquals(1, read.getInt("versions"));
+        // 2 client deliveries plus 3 replica deliveries per operation
+        assertEquals(8, events.stream().filter(e -> e.getEventType().getName().equals("sim.quorum.LinkDeliver")).count());
+    }
+
+    @Test
+    void crashRestartAndRejoinAreRecorded() throws Exception {
+        Path file = dir.resolve("lifecycle.jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(FlightEvents.NodeLifecycle.class);
+            recording.start();
+
+            Cluster cluster = TestClusters.cluster(3, Cluster.Options.DEFAULTS.withRejoin(Rejoin.Settings.withBudget(Duration.ofHours(1))),
+                    (from, to) -> FaultModel.none(), new ArrayList<>(), new Metrics());
+            Link client = TestClusters.clientLink();
+            cluster.put("k", "v", 0, client, null);
+            cluster.crash(2, "test");
+            cluster.restart(2);
+            for (int i = 0; i < 5; i++) {
+                cluster.get("k", 0, client, null);
+            }
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("sim.quorum.NodeLifecycle")).toList();
+        }
+
+        List<String> transitions = events.stream().map(e -> e.getString("node") + " " + e.getString("transition")).toList();
+        assertEquals(List.of("node-2 crash", "node-2 restart", "node-2 rejoined"), transitions);
+        assertEquals("test", events.get(0).getString("reason"));
+        assertEquals(1, events.get(2).getLong("entries"));
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matches = events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+        assertEquals(1, matches.size(), name);
+        return matches.get(0);
+    }
+}
@@ -0,0 +1,150 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class HintedHandoffTest {
+    // the link from node-0 to node-2 is partitioned for its first `partitioned` deliveries
+    private Cluster cluster(int partitioned, HintedHandoff.Settings hints, List<Node> nodes, Metrics metrics) {
+        return TestClusters.cluster(3, Cluster.Options.DEFAULTS.withHints(hints),
+                (from, to) -> from == 0 && to == 2 ? FaultModel.none().withPartition(0, partitioned) : FaultModel.none(), nodes, metrics);
+    }
+
+    @Test
+    void missedWritesAreReplayedOnceTheLinkRecovers() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(2, new HintedHandoff.Settings(16, 16, Duration.ZERO), nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k1", "v1", 0, client, null);
+        cluster.put("k2", "v2", 0, client, null);
+        assertEquals(Optional.empty(), nodes.get(2).get("k1"));
+
+        // the third write gets through and the hints follow it in one batch
+        cluster.put("k3", "v3", 0, client, null);
+        cluster.awaitHintReplay();
+        assertEquals(Optional.of("v1"), nodes.get(2).get("k1"));
+        assertEquals(Optional.of("v2"), nodes.get(2).get("k2"));
+        assertEquals(Optional.of("v3"), nodes.get(2).get("k3"));
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(2, counters.get("cluster.hints.stored"));
+        assertEquals(2, counters.get("cluster.hints.replayed"));
+        assertEquals(1, counters.get("cluster.hints.replay-batches"));
+    }
+
+    @Test
+    void hintsAreCoalescedAndCancelledByNewerWrites() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(2, new HintedHandoff.Settings(16, 16, Duration.ZERO), nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v1", 0, client, null);
+        cluster.put("k", "v2", 0, client, null);
+        // reaches node-2 directly: the pending hint for v2 is moot
+        cluster.put("k", "v3", 0, client, null);
+        assertEquals(Optional.of("v3"), nodes.get(2).get("k"));
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(2, counters.get("cluster.hints.stored"));
+        assertEquals(0, counters.get("cluster.hints.replayed"));
+    }
+
+    @Test
+    void replayedHintNeverRollsAReplicaBack() {
+        EventLog log = TestClusters.log();
+        Node node = new Node("node-0", log);
+        assertEquals(true, node.put("k", "new", 5));
+        assertEquals(false, node.put("k", "old", 3));
+        assertEquals(Optional.of("new"), node.get("k"));
+    }
+
+    @Test
+    void fullStoreDropsHintsForFurtherKeys() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(3, new HintedHandoff.Settings(2, 16, Duration.ZERO), nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k1", "v1", 0, client, null);
+        cluster.put("k2", "v2", 0, client, null);
+        cluster.put("k3", "v3", 0, client, null);
+        cluster.put("k4", "v4", 0, client, null);
+        cluster.awaitHintReplay();
+        assertEquals(Optional.of("v1"), nodes.get(2).get("k1"));
+        assertEquals(Optional.of("v2"), nodes.get(2).get("k2"));
+        assertEquals(Optional.empty(), nodes.get(2).get("k3"), "left to read repair");
+        assertEquals(1, metrics.counterSnapshot().get("cluster.hints.dropped"));
+    }
+
+    @Test
+    void replayWaitsForTheInterval() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(2, new HintedHandoff.Settings(16, 1, Duration.ofHours(1)), nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k1", "v1", 0, client, null);
+        cluster.put("k2", "v2", 0, client, null);
+        cluster.put("k3", "v3", 0, client, null);
+        cluster.put("k4", "v4", 0, client, null);
+        cluster.awaitHintReplay();
+        assertEquals(Optional.of("v1"), nodes.get(2).get("k1"));
+        assertEquals(Optional.empty(), nodes.get(2).get("k2"), "one batch of one per interval");
+    }
+
+    @Test
+    void replayDoesNotSpendTheDeadlineOfTheRequestThatTriggersIt() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        // the slow link from node-0 to node-1 drops its first delivery, which leaves a hint behind
+        Cluster cluster = TestClusters.cluster(3, Cluster.Options.DEFAULTS.withHints(new HintedHandoff.Settings(16, 16, Duration.ZERO)),
+                nodes, metrics, (from, to) -> from == 0 && to == 1
+                        ? new Cluster.LinkSpec(LatencyModel.fixed(50), FaultModel.none().withPartition(0, 1))
+                        : new Cluster.LinkSpec(LatencyModel.fixed(0), FaultModel.none()));
+        Link client = TestClusters.clientLink();
+        cluster.put("k", "v", 0, client, null);
+
+        // replaying the hint on the read's time would take another 50 ms and leave node-2 unasked
+        assertEquals(Optional.of("v"), cluster.get("k", 0, client, null, Deadline.after(Duration.ofMillis(80))));
+        cluster.awaitHintReplay();
+        assertEquals(Optional.of("v"), nodes.get(1).get("k"));
+        assertEquals(1, metrics.counterSnapshot().get("cluster.hints.replayed"));
+    }
+
+    @Test
+    void writeThatRunsOutOfTimeHintsTheReplicasItDidNotReach() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        // the hop to node-1 outlasts the deadline; node-2 comes after it in the fan-out
+        Cluster cluster = TestClusters.cluster(3, Cluster.Options.DEFAULTS.withHints(new HintedHandoff.Settings(16, 16, Duration.ofHours(1))),
+                nodes, metrics, (from, to) -> new Cluster.LinkSpec(LatencyModel.fixed(to == 1 ? 5_000 : 0), FaultModel.none()));
+
+        assertThrows(DeadlineExceededException.class,
+                () -> cluster.put("k", "v", 0, TestClusters.clientLink(), null, Deadline.after(Duration.ofMillis(50))));
+        assertEquals(Optional.empty(), nodes.get(2).get("k"), "no replica is tried after the deadline");
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(2, counters.get("cluster.hints.stored"));
+        assertEquals(1, counters.get("cluster.write.quorum-failed"));
+        assertEquals(0, counters.get("cluster.write.quorum-ok"));
+        assertTrue(metrics.histogramSnapshot().stream().anyMatch(h -> h.name().equals("cluster.write.acks") && h.max() == 1));
+    }
+
+    @Test
+    void hintsNeedQuorumReplication() {
+        EventLog log = TestClusters.log();
+        Link[][] mesh = {{new Link("link-0-0", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log)}};
+        assertThrows(IllegalArgumentException.class, () -> new Cluster(List.of(new Node("node-0", log)), mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withReplication(Cluster.Replication.CHAIN).withHints(HintedHandoff.Settings.withCapacity(8))));
+    }
+}
@@ -0,0 +1,53 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class HistogramTest {
+    @Test
+    void smallValuesAreExact() {
+        Histogram histogram = new Histogram("h");
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+        assertEquals(50, histogram.count());
+        assertEquals(25, histogram.percentile(0.5));
+        assertEquals(50, histogram.percentile(1.0));
+    }
+
+    @Test
+    void percentilesStayWithinBucketPrecision() {
+        Histogram histogram = new Histogram("h");
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.min());
+        assertEquals(100_000, snapshot.max());
+        assertWithin(50_000, snapshot.p50());
+        assertWithin(99_000, snapshot.p99());
+        assertWithin(99_900, snapshot.p999());
+    }
+
+    @Test
+    void bucketsCoverTheWholeRange() {
+        for (long value : new long[]{0, 63, 64, 65, 1_000, 1L << 40, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(Histogram.upperBound(bucket) >= value, "upper bound below " + value);
+            assertTrue(bucket == 0 || Histogram.upperBound(bucket - 1) < value, "previous bucket covers " + value);
+        }
+    }
+
+    @Test
+    void emptyHistogramReportsZeros() {
+        Histogram.Snapshot snapshot = new Histogram("h").snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.p99());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.035, "expected ~" + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,60 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class KeyDistributionTest {
+    private static long[] histogram(KeyDistribution keys, int keyCount, int samples) {
+        long[] counts = new long[keyCount];
+        for (int i = 0; i < samples; i++) {
+            counts[(int) keys.next(keyCount)]++;
+        }
+        return counts;
+    }
+
+    @Test
+    void sameSeedProducesSameKeys() {
+        KeyDistribution first = KeyDistribution.scrambledZipfian(0.99, new Random(7));
+        KeyDistribution second = KeyDistribution.scrambledZipfian(0.99, new Random(7));
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(first.next(100), second.next(100));
+        }
+    }
+
+    @Test
+    void zipfianConcentratesOnLowRanks() {
+        long[] counts = histogram(KeyDistribution.zipfian(0.99, new Random(1)), 1_000, 100_000);
+        // rank 0 of a 1000-item Zipf(0.99) gets roughly 13% of draws; uniform would give 0.1%
+        assertTrue(counts[0] > 10_000, "hottest key drew " + counts[0]);
+        assertTrue(counts[0] > counts[10] * 5);
+    }
+
+    @Test
+    void latestFavoursNewestKeys() {
+        long[] counts = histogram(KeyDistribution.latest(0.99, new Random(1)), 100, 10_000);
+        assertTrue(counts[99] > counts[0] * 10);
+    }
+
+    @Test
+    void hotspotSendsConfiguredShareToHotSet() {
+        long[] counts = histogram(KeyDistribution.hotspot(0.1, 0.9, new Random(1)), 100, 100_000);
+        long hot = 0;
+        for (int i = 0; i < 10; i++) {
+            hot += counts[i];
+        }
+        assertEquals(0.9, hot / 100_000.0, 0.01);
+    }
+
+    @Test
+    void zipfianHandlesGrowingKeySpace() {
+        KeyDistribution keys = KeyDistribution.zipfian(0.5, new Random(3));
+        for (int n = 1; n < 500; n++) {
+            long k = keys.next(n);
+            assertTrue(k >= 0 && k < n);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class LatencyModelTest {
+    @Test
+    void uniformDrawsLikeTheOriginalLinkJitter() {
+        RandomGenerator expected = new SplittableRandom(5);
+        RandomGenerator actual = new SplittableRandom(5);
+        LatencyModel model = LatencyModel.uniform(Duration.ofMillis(5), Duration.ofMillis(40));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(5 + Math.abs(expected.nextLong()) % 36, model.sampleMillis(actual));
+        }
+    }
+
+    @Test
+    void samplesStayWithinTheirSupport() {
+        RandomGenerator random = new SplittableRandom(1);
+        LatencyModel exponential = LatencyModel.exponential(3, 10);
+        LatencyModel pareto = LatencyModel.pareto(2, 1.1, 500);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(exponential.sampleMillis(random) >= 3);
+            long sample = pareto.sampleMillis(random);
+            assertTrue(sample >= 2 && sample <= 500, "pareto sample " + sample);
+        }
+    }
+
+    @Test
+    void logNormalCentresOnItsMedian() {
+        RandomGenerator random = new SplittableRandom(2);
+        LatencyModel model = LatencyModel.logNormal(20, 0.5);
+        int below = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (model.sampleMillis(random) < 20) {
+                below++;
+            }
+        }
+        assertTrue(below > 4500 && below < 5500, "below median: " + below);
+    }
+
+    @Test
+    void gcPausesAreBimodal() {
+        RandomGenerator random = new SplittableRandom(3);
+        LatencyModel model = LatencyModel.gcPauses(LatencyModel.fixed(1), 0.1, LatencyModel.fixed(100));
+        int pauses = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long sample = model.sampleMillis(random);
+            assertTrue(sample == 1 || sample == 101, "sample " + sample);
+            if (sample == 101) {
+                pauses++;
+            }
+        }
+        assertTrue(pauses > 800 && pauses < 1200, "pauses: " + pauses);
+    }
+
+    @Test
+    void parseBuildsEveryModel() {
+        RandomGenerator random = new SplittableRandom(4);
+        assertEquals(7, LatencyModel.parse("fixed:7").sampleMillis(random));
+        for (String spec : new String[]{"uniform:1:5", "exponential:1:5", "lognormal:5:0.8", "pareto:5:1.5", "pareto:5:1.5:50",
+                "gc:1:5:0.01:100:200"}) {
+            assertTrue(LatencyModel.parse(spec).sampleMillis(random) >= 0, spec);
+        }
+        assertThrows(IllegalArgumentException.class, () -> LatencyModel.parse("normal:1:2"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyModel.parse("pareto:5"));
+    }
+
+    @Test
+    void samplingDoesNotAllocate() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        RandomGenerator random = new SplittableRandom(6);
+        LatencyModel model = LatencyModel.gcPauses(LatencyModel.logNormal(10, 0.8), 0.05, LatencyModel.pareto(50, 1.2));
+        long sink = 0;
+        for (int i = 0; i < 100_000; i++) {
+            sink += model.sampleMillis(random);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            sink += model.sampleMillis(random);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(sink > 0);
+        assertTrue(allocated < 100_000, "allocated " + allocated + " bytes for 100k samples");
+    }
+}
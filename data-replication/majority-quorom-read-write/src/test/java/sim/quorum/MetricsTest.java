@@ -0,0 +1,77 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class MetricsTest {
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private EventLog log() {
+        return new EventLog(new PrintStream(output));
+    }
+
+    @Test
+    void sameNameReturnsSameMetric() {
+        Metrics metrics = new Metrics();
+        assertSame(metrics.counter("c"), metrics.counter("c"));
+        assertSame(metrics.histogram("h"), metrics.histogram("h"));
+    }
+
+    @Test
+    void linkCountsDeliveriesAndDrops() {
+        Metrics metrics = new Metrics();
+        Link ok = new Link("ok", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log(), metrics);
+        Link bad = new Link("bad", Duration.ZERO, Duration.ZERO, 1.0, new Random(1), log(), metrics);
+        ok.deliver("d", () -> null, null);
+        ok.deliver("d", () -> null, null);
+        assertThrows(LinkFailureException.class, () -> bad.deliver("d", () -> null, null));
+
+        assertEquals(2L, metrics.counterSnapshot().get("link.ok.deliveries"));
+        assertEquals(1L, metrics.counterSnapshot().get("link.bad.drops"));
+        assertEquals(0L, metrics.counterSnapshot().get("link.bad.deliveries"));
+    }
+
+    @Test
+    void clusterRecordsQuorumOutcomesAndAcks() {
+        Metrics metrics = new Metrics();
+        Cluster cluster = Cluster.demo(3, new RandomStreams(1), log(), metrics, (from, to) -> Cluster.LinkSpec.uniform(0.0),
+                Cluster.Options.DEFAULTS);
+        Link clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log(), metrics);
+        Client client = new Client("c", cluster, new Link[]{clientLink, clientLink, clientLink}, new Random(1), log(), metrics,
+                Client.Options.DEFAULTS);
+
+        client.put("k", "v");
+        client.get("k");
+
+        assertEquals(1L, metrics.counterSnapshot().get("cluster.write.quorum-ok"));
+        assertEquals(1L, metrics.counterSnapshot().get("cluster.read.quorum-ok"));
+        assertEquals(3L, metrics.counterSnapshot().get("node.node-0.puts") + metrics.counterSnapshot().get("node.node-1.puts")
+                + metrics.counterSnapshot().get("node.node-2.puts"));
+        List<Histogram.Snapshot> histograms = metrics.histogramSnapshot();
+        Histogram.Snapshot writeAcks = histograms.stream().filter(h -> h.name().equals("cluster.write.acks")).findFirst().orElseThrow();
+        assertEquals(3, writeAcks.max());
+        assertTrue(histograms.stream().anyMatch(h -> h.name().equals("client.c.latency-us") && h.count() == 2));
+    }
+
+    @Test
+    void reportEmitsOneEventPerMetric() {
+        Metrics metrics = new Metrics();
+        metrics.counter("ops").add(5);
+        metrics.histogram("latency").record(7);
+        metrics.report(log());
+
+        String text = output.toString();
+        assertTrue(text.contains("actor=metrics event=metric name=ops value=5"), text);
+        assertTrue(text.contains("actor=metrics event=histogram name=latency count=1 min=7 p50=7"), text);
+    }
+}
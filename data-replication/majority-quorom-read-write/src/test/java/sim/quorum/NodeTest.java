@@ -4,8 +4,15 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 final class NodeTest {
@@ -20,4 +27,133 @@ final class NodeTest {
         assertTrue(node.get("k").isPresent());
         assertEquals("v", node.get("k").orElseThrow());
     }
+
+    @Test
+    void chainKeyIsDirtyUntilItsVersionCommits() {
+        Node node = new Node("node-1", log());
+        node.chainWrite("k", 1, "a");
+        node.chainCommit("k", 1);
+        node.chainWrite("k", 2, "b");
+        assertFalse(node.chainRead("k").clean());
+        assertEquals(Optional.of("a"), node.chainRead("k").committed());
+        assertEquals(Optional.of("b"), node.chainValue("k", 2));
+        assertEquals(1, node.chainCommittedVersion("k"));
+
+        node.chainCommit("k", 2);
+        assertTrue(node.chainRead("k").clean());
+        assertEquals(Optional.of("b"), node.chainRead("k").committed());
+        node.chainCommit("k", 1);
+        assertEquals(2, node.chainCommittedVersion("k"), "a late acknowledgement does not roll back");
+    }
+
+    @Test
+    void restartedNodeIsEmptyAndRefusesReadsUntilJoined() {
+        Node node = new Node("node-1", log());
+        node.put("k", "v", 3);
+        node.crash("test");
+        assertThrows(LinkFailureException.class, () -> node.put("k", "v", 4));
+
+        node.restart();
+        node.put("k", "newer", 5);
+        assertThrows(LinkFailureException.class, () -> node.get("k"));
+        assertEquals(1, node.install(List.of(new Node.Versioned("k", 3, "v"), new Node.Versioned("j", 2, "w"))),
+                "the snapshot's older k is ignored");
+        node.joined();
+        assertEquals(Optional.of("newer"), node.get("k"));
+        assertEquals(List.of(new Node.Versioned("j", 2, "w"), new Node.Versioned("k", 5, "newer")), node.snapshot());
+        assertEquals(List.of(new Node.Versioned("k", 5, "newer")), node.writtenSince(2));
+        assertEquals(5, node.highestVersion());
+    }
+
+    @Test
+    void writesRacingACrashDoNotSurviveIt() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            Node node = new Node("node-1", log());
+            int threads = 4;
+            var started = new CountDownLatch(threads);
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int writer = t;
+                Thread thread = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (long version = 1; ; version++) {
+                            node.put("k" + writer + "-" + version % 100, "v", version);
+                        }
+                    } catch (LinkFailureException e) {
+                        // the crash stops every writer
+                    }
+                });
+                thread.start();
+                writers.add(thread);
+            }
+            started.await();
+            node.crash("test");
+            for (Thread thread : writers) {
+                thread.join();
+            }
+
+            assertEquals(0, node.storedBytes());
+            assertEquals(0, node.highestVersion());
+            node.restart();
+            node.joined();
+            assertEquals(List.of(), node.snapshot());
+        }
+    }
+
+    @Test
+    void expiredKeysAreHiddenThenRemovedAndLeftOutOfSnapshots() {
+        AtomicLong now = new AtomicLong(1_000);
+        Metrics metrics = new Metrics();
+        Node node = new Node("node-1", log(), metrics, now::get);
+        node.put("k", "v", 1, 1_100);
+        node.put("j", "w", 2, 2_000);
+        node.put("p", "forever", 3);
+
+        now.set(1_100);
+        assertEquals(Optional.empty(), node.get("k"));
+        assertEquals(List.of(new Node.Versioned("j", 2, "w", 2_000), new Node.Versioned("p", 3, "forever")), node.snapshot());
+        assertEquals(1, metrics.counterSnapshot().get("node.node-1.expired"));
+        assertEquals(0, node.versionOf("k"), "removed, not just hidden");
+
+        node.put("j", "renewed", 4);
+        now.set(5_000);
+        assertEquals(Optional.of("renewed"), node.get("j"), "a put without expiry clears the old one");
+        assertFalse(node.put("q", "late", 5, 4_000), "already expired");
+        assertEquals(0, metrics.counterSnapshot().get("node.node-1.expiring-keys"));
+    }
+
+    @Test
+    void installedEntriesKeepTheirExpiry() {
+        AtomicLong now = new AtomicLong(0);
+        Node node = new Node("node-1", log(), new Metrics(), now::get);
+        node.install(List.of(new Node.Versioned("k", 1, "v", 50), new Node.Versioned("j", 2, "w", 10)));
+        assertEquals(Optional.of("v"), node.get("k"));
+
+        now.set(50);
+        assertEquals(Optional.empty(), node.get("k"));
+        assertEquals(List.of(), node.snapshot());
+    }
+
+    @Test
+    void scanReturnsLiveKeysOfTheRangeInOrder() {
+        AtomicLong now = new AtomicLong(0);
+        Node node = new Node("node-1", log(), new Metrics(), now::get);
+        node.put("b", "2", 2);
+        node.put("a", "1", 1);
+        node.put("c", "3", 3, 10);
+        node.put("d", "4", 4);
+        node.put("e", "5", 5);
+
+        assertEquals(List.of(new Node.Versioned("b", 2, "2"), new Node.Versioned("c", 3, "3", 10)), node.scan("b", null, 2));
+        now.set(10);
+        assertEquals(List.of(new Node.Versioned("b", 2, "2"), new Node.Versioned("d", 4, "4")), node.scan("b", "e", 5),
+                "expired keys are skipped and the end is exclusive");
+        assertEquals(List.of(), node.scan("f", null, 5));
+
+        node.crash("test");
+        node.restart();
+        node.joined();
+        assertEquals(List.of(), node.scan("a", null, 5));
+    }
 }
@@ -0,0 +1,69 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+final class RandomStreamsTest {
+    private EventLog log() {
+        return new EventLog(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void sameSeedAndNameGiveSameStream() {
+        assertEquals(draw(new RandomStreams(7).stream("link-a"), 8), draw(new RandomStreams(7).stream("link-a"), 8));
+    }
+
+    @Test
+    void namesAndSeedsGiveDifferentStreams() {
+        assertNotEquals(draw(new RandomStreams(7).stream("link-a"), 8), draw(new RandomStreams(7).stream("link-b"), 8));
+        assertNotEquals(draw(new RandomStreams(7).stream("link-a"), 8), draw(new RandomStreams(8).stream("link-a"), 8));
+    }
+
+    @Test
+    void linkOutcomesDoNotDependOnOtherLinks() {
+        List<Boolean> alone = drops(new RandomStreams(3), 0);
+        List<Boolean> interleaved = drops(new RandomStreams(3), 5);
+        assertEquals(alone, interleaved);
+    }
+
+    // Drop pattern of link "a" over 32 deliveries, with "noise" deliveries on link "b" in between.
+    private List<Boolean> drops(RandomStreams streams, int noise) {
+        EventLog log = log();
+        Link a = new Link("a", Duration.ZERO, Duration.ZERO, 0.5, streams.stream("a"), log);
+        Link b = new Link("b", Duration.ZERO, Duration.ZERO, 0.5, streams.stream("b"), log);
+        List<Boolean> dropped = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            for (int j = 0; j < noise; j++) {
+                deliver(b);
+            }
+            dropped.add(!deliver(a));
+        }
+        return dropped;
+    }
+
+    private static boolean deliver(Link link) {
+        try {
+            link.deliver("d", () -> null, null);
+            return true;
+        } catch (LinkFailureException e) {
+            return false;
+        }
+    }
+
+    private static List<Long> draw(RandomGenerator random, int count) {
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add(random.nextLong());
+        }
+        return values;
+    }
+}
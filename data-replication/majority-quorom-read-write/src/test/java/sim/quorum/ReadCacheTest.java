@@ -0,0 +1,140 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+final class ReadCacheTest {
+    private Cluster cluster(ReadCache.Settings cache, List<Node> nodes, Metrics metrics) {
+        return TestClusters.cluster(3, Cluster.Options.DEFAULTS.withCache(cache), (from, to) -> FaultModel.none(), nodes, metrics);
+    }
+
+    private static Optional<String> cachedGet(Cluster cluster, String key, int entryNode, Link client) {
+        return cluster.get(key, entryNode, client, null, Deadline.none(), Cluster.Consistency.CACHED);
+    }
+
+    private static ReadCache.Entry entry(String value) {
+        return new ReadCache.Entry(value, 0, 0, 0, System.nanoTime());
+    }
+
+    @Test
+    void hitSkipsTheQuorumAndALocalWriteInvalidates() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(new ReadCache.Settings(16, Duration.ofHours(1), ReadCache.Validation.VERSION), nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v1", 0, client, null);
+        assertEquals(Optional.of("v1"), cachedGet(cluster, "k", 0, client));
+        assertEquals(Optional.of("v1"), cachedGet(cluster, "k", 0, client));
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(1, counters.get("cluster.cache.hits"));
+        assertEquals(1, counters.get("node.node-1.gets"), "the hit asked no replica");
+
+        cluster.put("k", "v2", 0, client, null);
+        assertEquals(Optional.of("v2"), cachedGet(cluster, "k", 0, client));
+        assertEquals(1, metrics.counterSnapshot().get("cluster.cache.invalidations"));
+    }
+
+    @Test
+    void quorumReadsFanOutPastAWarmCache() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(new ReadCache.Settings(16, Duration.ofHours(1), ReadCache.Validation.LEASE), nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v1", 0, client, null);
+        assertEquals(Optional.of("v1"), cluster.get("k", 0, client, null));
+        cluster.put("k", "v2", 1, client, null);
+        assertEquals(Optional.of("v2"), cluster.get("k", 0, client, null, Deadline.none(), Cluster.Consistency.QUORUM),
+                "a quorum read sees the write the cached value missed");
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(0, counters.get("cluster.cache.hits"));
+        assertEquals(2, counters.get("node.node-1.gets"));
+
+        // the quorum read refreshed the cache, so a cached read now hits without asking a replica
+        assertEquals(Optional.of("v2"), cachedGet(cluster, "k", 0, client));
+        assertEquals(1, metrics.counterSnapshot().get("cluster.cache.hits"));
+        assertEquals(2, metrics.counterSnapshot().get("node.node-1.gets"));
+    }
+
+    @Test
+    void writeThroughAnotherEntryNodeIsCaughtByTheVersionCheckOnly() {
+        for (ReadCache.Validation validation : ReadCache.Validation.values()) {
+            Metrics metrics = new Metrics();
+            Cluster cluster = cluster(new ReadCache.Settings(16, Duration.ofHours(1), validation), new ArrayList<>(), metrics);
+            Link client = TestClusters.clientLink();
+
+            cluster.put("k", "v1", 0, client, null);
+            cachedGet(cluster, "k", 0, client);
+            cluster.put("k", "v2", 1, client, null);
+            Optional<String> read = cachedGet(cluster, "k", 0, client);
+            Map<String, Long> counters = metrics.counterSnapshot();
+            if (validation == ReadCache.Validation.VERSION) {
+                assertEquals(Optional.of("v2"), read);
+                assertEquals(0, counters.get("cluster.cache.stale-hits"));
+            } else {
+                assertEquals(Optional.of("v1"), read, "served until the lease runs out");
+                assertEquals(1, counters.get("cluster.cache.stale-hits"));
+            }
+        }
+    }
+
+    @Test
+    void expiredLeaseMisses() {
+        Metrics metrics = new Metrics();
+        Cluster cluster = cluster(new ReadCache.Settings(16, Duration.ZERO, ReadCache.Validation.LEASE), new ArrayList<>(), metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v", 0, client, null);
+        cachedGet(cluster, "k", 0, client);
+        cachedGet(cluster, "k", 0, client);
+        assertEquals(0, metrics.counterSnapshot().get("cluster.cache.hits"));
+        assertEquals(1, metrics.counterSnapshot().get("cluster.cache.expired"));
+    }
+
+    @Test
+    void keysReadOnceAreEvictedBeforeProtectedOnes() {
+        ReadCache cache = new ReadCache(1, new ReadCache.Settings(5, Duration.ofHours(1), ReadCache.Validation.LEASE), new Metrics());
+        cache.store(0, 0, "hot", entry("h"));
+        assertNotNull(cache.lookup(0, "hot", 0, 0));
+        for (int i = 0; i < 10; i++) {
+            cache.store(0, 0, "cold" + i, entry("c"));
+        }
+        assertNotNull(cache.lookup(0, "hot", 0, 0), "a scan does not flush a promoted key");
+        assertNull(cache.lookup(0, "cold0", 0, 0));
+        assertNotNull(cache.lookup(0, "cold9", 0, 0));
+    }
+
+    @Test
+    void readRacingAnInvalidationIsNotCached() {
+        ReadCache cache = new ReadCache(1, new ReadCache.Settings(4, Duration.ofHours(1), ReadCache.Validation.LEASE), new Metrics());
+        long token = cache.readStarted(0);
+        cache.invalidate(0, "k");
+        cache.store(0, token, "k", entry("old"));
+        assertNull(cache.lookup(0, "k", 0, 0));
+    }
+
+    @Test
+    void restartedEntryNodeHasLostItsCache() {
+        ReadCache cache = new ReadCache(1, new ReadCache.Settings(4, Duration.ofHours(1), ReadCache.Validation.LEASE), new Metrics());
+        cache.store(0, 0, "k", entry("v"));
+        assertNull(cache.lookup(0, "k", 0, 1));
+    }
+
+    @Test
+    void settingsParse() {
+        assertEquals(new ReadCache.Settings(256, Duration.ofSeconds(1), ReadCache.Validation.VERSION), ReadCache.Settings.parse("256"));
+        assertEquals(new ReadCache.Settings(8, Duration.ofMillis(50), ReadCache.Validation.LEASE), ReadCache.Settings.parse("8:50:lease"));
+        assertThrows(IllegalArgumentException.class, () -> ReadCache.Settings.parse("8:50:always"));
+    }
+}
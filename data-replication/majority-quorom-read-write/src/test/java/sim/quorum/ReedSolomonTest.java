@@ -0,0 +1,74 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+final class ReedSolomonTest {
+    @Test
+    void anyDataFragmentsRebuildTheValue() {
+        ReedSolomon codec = new ReedSolomon(3, 2);
+        byte[] value = new byte[1000];
+        new Random(1).nextBytes(value);
+        byte[][] fragments = codec.encode(value);
+        assertEquals(5, fragments.length);
+        assertEquals(334, fragments[0].length);
+        // every subset of exactly 3 out of 5 fragments
+        for (int mask = 0; mask < 32; mask++) {
+            if (Integer.bitCount(mask) != 3) {
+                continue;
+            }
+            byte[][] present = new byte[5][];
+            for (int i = 0; i < 5; i++) {
+                if ((mask & 1 << i) != 0) {
+                    present[i] = fragments[i];
+                }
+            }
+            assertArrayEquals(value, codec.decode(present, value.length), "fragments " + Integer.toBinaryString(mask));
+        }
+    }
+
+    @Test
+    void dataFragmentsAreSlicesOfTheValue() {
+        ReedSolomon codec = new ReedSolomon(2, 1);
+        byte[][] fragments = codec.encode(new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2}, fragments[0]);
+        assertArrayEquals(new byte[]{3, 0}, fragments[1]);
+    }
+
+    @Test
+    void emptyAndWideCodesRoundTrip() {
+        ReedSolomon small = new ReedSolomon(4, 2);
+        assertArrayEquals(new byte[0], small.decode(small.encode(new byte[0]), 0));
+
+        ReedSolomon wide = new ReedSolomon(10, 6);
+        byte[] value = new byte[4096];
+        new Random(2).nextBytes(value);
+        byte[][] fragments = wide.encode(value);
+        for (int i = 0; i < 6; i++) {
+            fragments[i * 2] = null;
+        }
+        assertArrayEquals(value, wide.decode(fragments, value.length));
+    }
+
+    @Test
+    void tooFewFragmentsFail() {
+        ReedSolomon codec = new ReedSolomon(3, 2);
+        byte[][] fragments = codec.encode(new byte[]{1, 2, 3, 4});
+        fragments[0] = null;
+        fragments[3] = null;
+        fragments[4] = null;
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(fragments, 4));
+    }
+
+    @Test
+    void fieldInverseUndoesMultiplication() {
+        for (int a = 1; a < 256; a++) {
+            assertEquals(1, ReedSolomon.multiply((byte) a, ReedSolomon.inverse((byte) a)) & 0xff, "a=" + a);
+        }
+    }
+}
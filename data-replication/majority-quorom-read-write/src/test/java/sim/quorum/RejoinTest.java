@@ -0,0 +1,134 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class RejoinTest {
+    // the link from node-1 to node-2 is partitioned for its first `partitioned` deliveries
+    private Cluster cluster(Rejoin.Settings rejoin, int partitioned, List<Node> nodes, Metrics metrics) {
+        return TestClusters.cluster(3, Cluster.Options.DEFAULTS.withRejoin(rejoin),
+                (from, to) -> from == 1 && to == 2 ? FaultModel.none().withPartition(0, partitioned) : FaultModel.none(), nodes, metrics);
+    }
+
+    @Test
+    void restartedNodeStreamsASnapshotAndCatchesUp() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        // one entry per chunk, no throttling
+        Cluster cluster = cluster(new Rejoin.Settings(1, Duration.ofHours(1)), 1, nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        cluster.crash(2, "test");
+        for (int i = 0; i < 5; i++) {
+            cluster.put("k" + i, "v" + i, 0, client, null);
+        }
+        assertThrows(LinkFailureException.class, () -> nodes.get(2).get("k0"));
+
+        cluster.restart(2);
+        // misses node-2 (partitioned), so only the transfer brings it
+        cluster.put("late", "x", 1, client, null);
+        assertThrows(LinkFailureException.class, () -> nodes.get(2).get("k0"), "no reads while rejoining");
+        for (int i = 0; i < 10; i++) {
+            cluster.get("k0", 0, client, null);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Optional.of("v" + i), nodes.get(2).get("k" + i));
+        }
+        assertEquals(Optional.of("x"), nodes.get(2).get("late"));
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertEquals(1, counters.get("cluster.rejoin.completed"));
+        assertEquals(6, counters.get("cluster.rejoin.chunks"));
+        assertTrue(counters.get("cluster.rejoin.bytes") > 0);
+    }
+
+    @Test
+    void writesDuringTheTransferAreNotRolledBack() {
+        List<Node> nodes = new ArrayList<>();
+        Cluster cluster = cluster(new Rejoin.Settings(1, Duration.ofHours(1)), 0, nodes, new Metrics());
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "old", 0, client, null);
+        cluster.crash(2, "test");
+        cluster.restart(2);
+        // the snapshot was taken with "old"; "new" reaches node-2 directly before the chunk does
+        cluster.put("k", "new", 0, client, null);
+        for (int i = 0; i < 5; i++) {
+            cluster.put("k", "new", 0, client, null);
+        }
+        assertEquals(Optional.of("new"), nodes.get(2).get("k"));
+    }
+
+    @Test
+    void slowRequestsThrottleTheTransfer() {
+        List<Node> nodes = new ArrayList<>();
+        Metrics metrics = new Metrics();
+        // every request is over budget, so the gap between chunks keeps growing
+        Cluster cluster = cluster(new Rejoin.Settings(1, Duration.ZERO), 0, nodes, metrics);
+        Link client = TestClusters.clientLink();
+
+        for (int i = 0; i < 20; i++) {
+            cluster.put("k" + i, "v", 0, client, null);
+        }
+        cluster.crash(2, "test");
+        cluster.restart(2);
+        for (int i = 0; i < 20; i++) {
+            cluster.get("k0", 0, client, null);
+        }
+        Map<String, Long> counters = metrics.counterSnapshot();
+        assertTrue(counters.get("cluster.rejoin.throttled") > 0);
+        assertTrue(counters.get("cluster.rejoin.chunks") < 20);
+        assertEquals(0, counters.get("cluster.rejoin.completed"));
+    }
+
+    @Test
+    void scheduledCrashCountsClusterRequests() {
+        List<Node> nodes = new ArrayList<>();
+        Cluster cluster = cluster(Rejoin.Settings.withBudget(Duration.ofHours(1)), 0, nodes, new Metrics());
+        cluster.schedule(Rejoin.Crash.parse("1:2:4"));
+        Link client = TestClusters.clientLink();
+
+        cluster.put("k", "v", 0, client, null);
+        assertTrue(nodes.get(1).isUp());
+        cluster.put("k", "v", 0, client, null);
+        assertFalse(nodes.get(1).isUp());
+        cluster.put("k", "v", 0, client, null);
+        cluster.put("k", "v", 0, client, null);
+        assertFalse(nodes.get(1).isServing());
+        // the snapshot goes with request 4, the catch-up (request 5's write) with request 5; request 6 finishes
+        cluster.put("k", "v", 0, client, null);
+        cluster.put("k", "v", 0, client, null);
+        assertTrue(nodes.get(1).isServing());
+        assertThrows(IllegalArgumentException.class, () -> Rejoin.Crash.parse("1:4:4"));
+    }
+
+    @Test
+    void downEntryNodeCannotCoordinate() {
+        List<Node> nodes = new ArrayList<>();
+        Cluster cluster = cluster(Rejoin.Settings.withBudget(Duration.ofHours(1)), 0, nodes, new Metrics());
+        cluster.crash(0, "test");
+        assertThrows(LinkFailureException.class, () -> cluster.put("k", "v", 0, TestClusters.clientLink(), null));
+    }
+
+    @Test
+    void rejoinNeedsReplicatedValues() {
+        EventLog log = TestClusters.log();
+        Link[][] mesh = {{new Link("link-0-0", Duration.ZERO, Duration.ZERO, 0.0, new Random(1), log)}};
+        assertThrows(IllegalArgumentException.class, () -> new Cluster(List.of(new Node("node-0", log)), mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withReplication(Cluster.Replication.CHAIN)
+                        .withRejoin(Rejoin.Settings.withBudget(Duration.ofMillis(100)))));
+        Cluster plain = new Cluster(List.of(new Node("node-0", log)), mesh, log, new Metrics(), Cluster.Options.DEFAULTS);
+        assertThrows(IllegalStateException.class, () -> plain.crash(0, "test"));
+    }
+}
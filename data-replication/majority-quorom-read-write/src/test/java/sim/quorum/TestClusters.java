@@ -0,0 +1,53 @@
+package sim.quorum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * Fixtures shared by the cluster tests: small clusters over zero-latency links, a client link and a log nobody reads.
+ */
+final class TestClusters {
+    private TestClusters() {
+    }
+
+    static EventLog log() {
+        return new EventLog(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    /**
+     * {@code n} nodes, also added to {@code nodes}, over a full mesh of zero-latency links; {@code faults} gives the
+     * link from node {@code from} to node {@code to} its faults. The links share one seeded random.
+     */
+    static Cluster cluster(int n, Cluster.Options options, BiFunction<Integer, Integer, FaultModel> faults, List<Node> nodes,
+                           Metrics metrics) {
+        return cluster(n, options, nodes, metrics, (from, to) -> new Cluster.LinkSpec(LatencyModel.fixed(0), faults.apply(from, to)));
+    }
+
+    /**
+     * As above, with {@code links} giving each link its latency as well.
+     */
+    static Cluster cluster(int n, Cluster.Options options, List<Node> nodes, Metrics metrics,
+                           BiFunction<Integer, Integer, Cluster.LinkSpec> links) {
+        EventLog log = log();
+        for (int i = 0; i < n; i++) {
+            nodes.add(new Node("node-" + i, log, metrics));
+        }
+        Link[][] mesh = new Link[n][n];
+        Random random = new Random(1);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                Cluster.LinkSpec spec = links.apply(i, j);
+                mesh[i][j] = new Link("link-" + i + "-" + j, spec.latency(), spec.faults(), random, log, metrics);
+            }
+        }
+        return new Cluster(nodes, mesh, log, metrics, options);
+    }
+
+    static Link clientLink() {
+        return new Link("client", Duration.ZERO, Duration.ZERO, 0.0, new Random(2), log());
+    }
+}
@@ -0,0 +1,70 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class TimingWheelTest {
+    @Test
+    void timersFireAtTheirDeadlineNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 1_000);
+        wheel.schedule("a", 1_025);
+        wheel.schedule("b", 1_005);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(1_019, fired::add);
+        assertEquals(List.of("b"), fired);
+        wheel.advance(1_029, fired::add);
+        assertEquals(List.of("b"), fired, "a's deadline is rounded up to the next tick");
+        wheel.advance(1_030, fired::add);
+        assertEquals(List.of("b", "a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void farDeadlinesCascadeThroughEveryLevel() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        // one deadline per level, and one beyond the coarsest wheel's 64^4 ticks
+        long[] deadlines = {50, 3_000, 200_000, 10_000_000, 20_000_000};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        List<Long> fired = new ArrayList<>();
+        for (long deadline : deadlines) {
+            wheel.advance(deadline - 1, fired::add);
+            assertFalse(fired.contains(deadline), "early: " + deadline);
+            wheel.advance(deadline, fired::add);
+            assertEquals(deadline, fired.get(fired.size() - 1));
+        }
+        assertEquals(deadlines.length, fired.size());
+    }
+
+    @Test
+    void cancelledTimersNeverFire() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        TimingWheel.Timer<String> timer = wheel.schedule("a", 100);
+        wheel.schedule("b", 100);
+
+        assertTrue(wheel.cancel(timer));
+        assertFalse(wheel.cancel(timer), "already cancelled");
+        List<String> fired = new ArrayList<>();
+        wheel.advance(100, fired::add);
+        assertEquals(List.of("b"), fired);
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 0);
+        wheel.advance(5_000, key -> {
+        });
+        wheel.schedule("late", 20);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(5_000, fired::add);
+        assertEquals(List.of("late"), fired);
+    }
+}
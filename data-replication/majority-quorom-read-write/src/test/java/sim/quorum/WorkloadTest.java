@@ -0,0 +1,67 @@
+package sim.quorum;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class WorkloadTest {
+    private EventLog log() {
+        return new EventLog(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    private Client client(EventLog log) {
+        int n = 3;
+        Cluster cluster = Cluster.demo(n, new RandomStreams(2), log, new Metrics(), (from, to) -> Cluster.LinkSpec.uniform(0.0),
+                Cluster.Options.DEFAULTS);
+        Link[] clientLinks = new Link[n];
+        for (int i = 0; i < n; i++) {
+            clientLinks[i] = new Link("client-" + i, Duration.ZERO, Duration.ZERO, 0.0, new Random(3 + i), log);
+        }
+        return new Client("client-1", cluster, clientLinks, new Random(4), log, new Metrics(), Client.Options.DEFAULTS);
+    }
+
+    @Test
+    void operationMixFollowsProfile() {
+        Workload workload = new Workload(WorkloadProfile.b(), 10, 11, log());
+        int reads = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (workload.nextOperation() == Workload.Operation.READ) {
+                reads++;
+            }
+        }
+        assertEquals(0.95, reads / 10_000.0, 0.01);
+    }
+
+    @Test
+    void sameSeedReplaysSameKeys() {
+        Workload first = new Workload(WorkloadProfile.a(), 1_000, 5, log());
+        Workload second = new Workload(WorkloadProfile.a(), 1_000, 5, log());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(first.nextKey(), second.nextKey());
+        }
+    }
+
+    @Test
+    void runsAgainstQuorumClient() {
+        EventLog log = log();
+        Workload workload = new Workload(WorkloadProfile.d(), 5, 9, log);
+        Client client = client(log);
+        workload.load(client);
+        Workload.Result result = workload.run(client, 20);
+        assertEquals(20, result.operations());
+        assertEquals(0, result.failures());
+        assertTrue(result.reads() > 0);
+    }
+
+    @Test
+    void rejectsUnknownProfile() {
+        assertThrows(IllegalArgumentException.class, () -> WorkloadProfile.named("z"));
+    }
+}
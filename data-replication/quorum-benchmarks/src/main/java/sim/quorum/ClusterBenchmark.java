@@ -0,0 +1,115 @@
+package sim.quorum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of quorum coordination in {@link Cluster}: every link has zero latency and never drops, so what is left is
+ * fan-out, vote counting, metadata and logging. All links deliberately share one {@link Random} (simulations give
+ * each link its own {@link RandomStreams} stream, which is not safe to share between threads) and all components one
+ * {@link EventLog}; the multi-threaded variants show the contention on both.
+ * Run with {@code -prof gc} for allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClusterBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"3", "5", "7", "9", "11", "13", "15"})
+    int nodes;
+
+    @Param({"off", "on"})
+    String logging;
+
+    private final String[] keys = new String[KEYS];
+    private Cluster cluster;
+    private Link clientLink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EventLog log = "on".equals(logging) ? new EventLog(new PrintStream(OutputStream.nullOutputStream())) : EventLog.off();
+        Random random = new Random(1);
+        List<Node> replicas = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            replicas.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[nodes][nodes];
+        for (int from = 0; from < nodes; from++) {
+            for (int to = 0; to < nodes; to++) {
+                mesh[from][to] = new Link("link-" + from + "-" + to, Duration.ZERO, Duration.ZERO, 0.0, random, log);
+            }
+        }
+        cluster = new Cluster(replicas, mesh, log, new Metrics(), Cluster.Options.DEFAULTS);
+        clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "k" + i;
+            cluster.put(keys[i], "v" + i, 0, clientLink, null);
+        }
+    }
+
+    /**
+     * Per-thread cursor over keys and entry nodes, so threads do not share a counter.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void put(Cursor cursor) {
+        write(cursor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<String> get(Cursor cursor) {
+        return read(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void put4Threads(Cursor cursor) {
+        write(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<String> get4Threads(Cursor cursor) {
+        return read(cursor);
+    }
+
+    private void write(Cursor cursor) {
+        int i = cursor.next++;
+        cluster.put(keys[i & (KEYS - 1)], "value", i % nodes, clientLink, null);
+    }
+
+    private Optional<String> read(Cursor cursor) {
+        int i = cursor.next++;
+        return cluster.get(keys[i & (KEYS - 1)], i % nodes, clientLink, null);
+    }
+}
@@ -0,0 +1,85 @@
+package sim.quorum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator CPU cost of erasure-coded writes and reads against full replication on five nodes, with the same
+ * zero-latency, lossless links as {@link ClusterBenchmark}. Coding trades encode/decode work for moving and storing
+ * about a third of the bytes at 3+2; the bytes themselves are counted by the {@code cluster.*.bytes} metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErasureCodingBenchmark {
+    private static final int NODES = 5;
+    private static final int KEYS = 256;
+
+    @Param({"replicate", "3+2", "4+1"})
+    String coding;
+
+    @Param({"64", "4096", "65536"})
+    int valueSize;
+
+    private final String[] keys = new String[KEYS];
+    private String value;
+    private Cluster cluster;
+    private Link clientLink;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EventLog log = EventLog.off();
+        Random random = new Random(1);
+        List<Node> replicas = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            replicas.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[NODES][NODES];
+        for (int from = 0; from < NODES; from++) {
+            for (int to = 0; to < NODES; to++) {
+                mesh[from][to] = new Link("link-" + from + "-" + to, Duration.ZERO, Duration.ZERO, 0.0, random, log);
+            }
+        }
+        cluster = new Cluster(replicas, mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withCoding("replicate".equals(coding) ? null : Cluster.ErasureCoding.parse(coding)));
+        clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        value = "v".repeat(valueSize);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "k" + i;
+            cluster.put(keys[i], value, 0, clientLink, null);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        int i = next++;
+        cluster.put(keys[i & (KEYS - 1)], value, i % NODES, clientLink, null);
+    }
+
+    @Benchmark
+    public Optional<String> get() {
+        int i = next++;
+        return cluster.get(keys[i & (KEYS - 1)], i % NODES, clientLink, null);
+    }
+}
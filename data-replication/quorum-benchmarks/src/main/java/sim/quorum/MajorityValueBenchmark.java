@@ -0,0 +1,73 @@
+package sim.quorum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Cluster#majorityValue} over vote maps shaped like real read outcomes:
+ * <ul>
+ *   <li>{@code unanimous}: every replica returned the same value</li>
+ *   <li>{@code staleMinority}: a bare majority has the new value, the rest an old one</li>
+ *   <li>{@code missingMinority}: a bare majority has the value, the rest have nothing (null votes)</li>
+ *   <li>{@code noMajority}: every replica returned a different value, so the whole map is scanned</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MajorityValueBenchmark {
+    @Param({"3", "7", "15"})
+    int nodes;
+
+    @Param({"unanimous", "staleMinority", "missingMinority", "noMajority"})
+    String distribution;
+
+    private Map<String, Integer> votes;
+    private int quorum;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        quorum = nodes / 2 + 1;
+        votes = new HashMap<>();
+        switch (distribution) {
+            case "unanimous" -> votes.put("v2", nodes);
+            case "staleMinority" -> {
+                votes.put("v2", quorum);
+                votes.put("v1", nodes - quorum);
+            }
+            case "missingMinority" -> {
+                votes.put("v2", quorum);
+                votes.put(null, nodes - quorum);
+            }
+            case "noMajority" -> {
+                for (int i = 0; i < nodes; i++) {
+                    votes.put("v" + i, 1);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+    }
+
+    @Benchmark
+    public Optional<String> majorityValue() {
+        return Cluster.majorityValue(votes, quorum);
+    }
+}
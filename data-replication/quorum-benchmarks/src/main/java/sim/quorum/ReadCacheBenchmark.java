@@ -0,0 +1,85 @@
+package sim.quorum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zipf-skewed {@link Cluster.Consistency#CACHED} reads through one entry node with and without a {@link ReadCache}, on
+ * the zero-latency, lossless mesh of {@link ClusterBenchmark}; {@code mixed} writes one request in twenty, which
+ * invalidates the key at that node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadCacheBenchmark {
+    private static final int NODES = 3;
+    private static final int KEYS = 4096;
+
+    @Param({"off", "256:1000:lease", "256:1000:version"})
+    String cache;
+
+    private final String[] keys = new String[KEYS];
+    private Cluster cluster;
+    private Link clientLink;
+    private KeyDistribution distribution;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EventLog log = EventLog.off();
+        Random random = new Random(1);
+        List<Node> replicas = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            replicas.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[NODES][NODES];
+        for (int from = 0; from < NODES; from++) {
+            for (int to = 0; to < NODES; to++) {
+                mesh[from][to] = new Link("link-" + from + "-" + to, Duration.ZERO, Duration.ZERO, 0.0, random, log);
+            }
+        }
+        cluster = new Cluster(replicas, mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withCache("off".equals(cache) ? null : ReadCache.Settings.parse(cache)));
+        clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        distribution = KeyDistribution.scrambledZipfian(0.99, new Random(2));
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "k" + i;
+            cluster.put(keys[i], "v" + i, 0, clientLink, null);
+        }
+    }
+
+    @Benchmark
+    public Optional<String> get() {
+        return cluster.get(keys[(int) distribution.next(KEYS)], 0, clientLink, null, Deadline.none(), Cluster.Consistency.CACHED);
+    }
+
+    @Benchmark
+    public Optional<String> mixed() {
+        String key = keys[(int) distribution.next(KEYS)];
+        if (++next % 20 == 0) {
+            cluster.put(key, "value", 0, clientLink, null);
+            return Optional.empty();
+        }
+        return cluster.get(key, 0, clientLink, null, Deadline.none(), Cluster.Consistency.CACHED);
+    }
+}
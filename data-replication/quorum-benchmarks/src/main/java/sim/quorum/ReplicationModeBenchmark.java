@@ -0,0 +1,88 @@
+package sim.quorum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quorum fan-out against chain replication and CRAQ on the zero-latency, lossless mesh of {@link ClusterBenchmark},
+ * four threads spreading requests over all entry nodes. A quorum read asks every node, a chain read one hop to the
+ * tail, and a CRAQ read of a clean key none; writes touch every node in all three modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ReplicationModeBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"quorum", "chain", "craq"})
+    String replication;
+
+    @Param({"3", "5"})
+    int nodes;
+
+    private final String[] keys = new String[KEYS];
+    private Cluster cluster;
+    private Link clientLink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EventLog log = EventLog.off();
+        Random random = new Random(1);
+        List<Node> replicas = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            replicas.add(new Node("node-" + i, log));
+        }
+        Link[][] mesh = new Link[nodes][nodes];
+        for (int from = 0; from < nodes; from++) {
+            for (int to = 0; to < nodes; to++) {
+                mesh[from][to] = new Link("link-" + from + "-" + to, Duration.ZERO, Duration.ZERO, 0.0, random, log);
+            }
+        }
+        cluster = new Cluster(replicas, mesh, log, new Metrics(),
+                Cluster.Options.DEFAULTS.withReplication(Cluster.Replication.named(replication)));
+        clientLink = new Link("client", Duration.ZERO, Duration.ZERO, 0.0, random, log);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "k" + i;
+            cluster.put(keys[i], "v" + i, 0, clientLink, null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        int i = cursor.next++;
+        cluster.put(keys[i & (KEYS - 1)], "value", i % nodes, clientLink, null);
+    }
+
+    @Benchmark
+    public Optional<String> get(Cursor cursor) {
+        int i = cursor.next++;
+        return cluster.get(keys[i & (KEYS - 1)], i % nodes, clientLink, null);
+    }
+}
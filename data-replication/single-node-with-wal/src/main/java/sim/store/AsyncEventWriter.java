@@ -0,0 +1,175 @@
+package sim.store;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-producer, single-consumer ring buffer behind {@link EventLog}'s async mode. Producers claim a sequence,
+ * copy their event into the preallocated slot and publish it; one background thread formats published slots in order and writes
+ * them to the stream in batches. Once {@link #close} has begun, events are written on the caller's thread instead.
+ */
+final class AsyncEventWriter {
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 100_000;
+    // what a blocking claim returns once the writer thread has exited and will never free a slot
+    private static final long STOPPED = -2;
+
+    private static final class Slot {
+        final Event event = new Event(null);
+        volatile long sequence = -1;
+    }
+
+    private final PrintStream out;
+    private final Slot[] slots;
+    private final int mask;
+    private final EventLog.OverflowPolicy policy;
+    private final int sampleEvery;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread consumer;
+    private volatile long consumed;
+    private volatile boolean closing;
+    private volatile boolean stopped;
+
+    AsyncEventWriter(PrintStream out, int capacity, EventLog.OverflowPolicy policy, int sampleEvery) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two >= 2");
+        }
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be >= 1");
+        }
+        this.out = out;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.policy = policy;
+        this.sampleEvery = sampleEvery;
+        this.consumer = new Thread(this::drainLoop, "event-log-writer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Returns false when the event was dropped by the overflow policy.
+     */
+    boolean publish(Event event) {
+        if (closing) {
+            return writeAfterClose(event);
+        }
+        long seq = claim();
+        if (seq == STOPPED) {
+            return writeAfterClose(event);
+        }
+        if (seq < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        Slot slot = slots[(int) (seq & mask)];
+        event.copyTo(slot.event);
+        slot.sequence = seq;
+        return true;
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until every claimed slot has been written, then stops the writer thread. An event that claimed a slot
+     * concurrently with close may be lost; one published after close began is written directly.
+     */
+    void close() {
+        closing = true;
+        LockSupport.unpark(consumer);
+        awaitConsumer();
+        out.flush();
+    }
+
+    // Lets the writer thread finish the buffered events first, so the direct write lands after them.
+    private boolean writeAfterClose(Event event) {
+        awaitConsumer();
+        var line = new StringBuilder(128);
+        event.appendLine(line);
+        out.print(line);
+        out.flush();
+        return true;
+    }
+
+    private void awaitConsumer() {
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long claim() {
+        return switch (policy) {
+            case BLOCK -> claimBlocking();
+            case DROP -> tryClaim();
+            case SAMPLE -> claimSampled();
+        };
+    }
+
+    private long claimSampled() {
+        long seq = tryClaim();
+        if (seq >= 0) {
+            return seq;
+        }
+        // Buffer is full: keep one in every sampleEvery overflowing events, drop the rest.
+        return overflowed.getAndIncrement() % sampleEvery == 0 ? claimBlocking() : -1;
+    }
+
+    private long claimBlocking() {
+        long seq = claimed.getAndIncrement();
+        while (seq - consumed >= slots.length) {
+            if (stopped) {
+                return STOPPED;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return seq;
+    }
+
+    private long tryClaim() {
+        while (true) {
+            long seq = claimed.get();
+            if (seq - consumed >= slots.length) {
+                return -1;
+            }
+            if (claimed.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        var batch = new StringBuilder(BATCH_SIZE * 128);
+        long next = 0;
+        while (true) {
+            int written = 0;
+            Slot slot = slots[(int) (next & mask)];
+            while (written < BATCH_SIZE && slot.sequence == next) {
+                slot.event.appendLine(batch);
+                slot.event.clear();
+                next++;
+                written++;
+                slot = slots[(int) (next & mask)];
+            }
+            if (written > 0) {
+                out.print(batch);
+                batch.setLength(0);
+                consumed = next;
+            } else if (closing && next == claimed.get()) {
+                stopped = true;
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package sim.store;
+
+public final class CircuitOpenException extends RuntimeException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
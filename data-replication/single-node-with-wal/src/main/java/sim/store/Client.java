@@ -1,5 +1,6 @@
 package sim.store;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -7,55 +8,180 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Simple client that routes requests to a single node over a simulated link.
+ * <p>
+ * Failed attempts are retried up to {@code maxRetries} times as the {@link RetryPolicy} allows: it spaces retries
+ * with backoff, caps them with a retry budget and fails fast with {@link CircuitOpenException} while the node's
+ * breaker is open. The default policy retries immediately. A {@link NodeBusyException} is retried like a dropped
+ * request, so backoff gives an overloaded node room to drain its queue.
  */
 public final class Client {
+    /**
+     * Told when a put starts and how it ended once retries are over; {@code acknowledged} is false when the put
+     * failed, in which case the value may or may not have been applied.
+     */
+    @FunctionalInterface
+    public interface WriteObserver {
+        default void started(String key, String value) {
+        }
+
+        void completed(String key, String value, boolean acknowledged);
+    }
+
+    /**
+     * How a client retries and whom it tells; start from {@link #DEFAULTS} (three immediate attempts, nobody told) and
+     * change what differs. {@code onNodeCrash} runs when an attempt finds the node crashed; a null {@code metrics}
+     * gives the client a registry of its own.
+     */
+    public record Options(int maxRetries, Runnable onNodeCrash, Metrics metrics, WriteObserver writeObserver,
+                          RetryPolicy retryPolicy) {
+        public static final Options DEFAULTS = new Options(3, () -> {}, null, (key, value, acknowledged) -> {},
+                RetryPolicy.immediate());
+
+        public Options {
+            if (maxRetries < 1) {
+                throw new IllegalArgumentException("maxRetries must be >= 1");
+            }
+            Objects.requireNonNull(onNodeCrash, "onNodeCrash");
+            Objects.requireNonNull(writeObserver, "writeObserver");
+            Objects.requireNonNull(retryPolicy, "retryPolicy");
+        }
+
+        public Options withMaxRetries(int maxRetries) {
+            return new Options(maxRetries, onNodeCrash, metrics, writeObserver, retryPolicy);
+        }
+
+        public Options withOnNodeCrash(Runnable onNodeCrash) {
+            return new Options(maxRetries, onNodeCrash, metrics, writeObserver, retryPolicy);
+        }
+
+        public Options withMetrics(Metrics metrics) {
+            return new Options(maxRetries, onNodeCrash, metrics, writeObserver, retryPolicy);
+        }
+
+        public Options withWriteObserver(WriteObserver writeObserver) {
+            return new Options(maxRetries, onNodeCrash, metrics, writeObserver, retryPolicy);
+        }
+
+        public Options withRetryPolicy(RetryPolicy retryPolicy) {
+            return new Options(maxRetries, onNodeCrash, metrics, writeObserver, retryPolicy);
+        }
+    }
+
     private final String id;
     private final Node node;
     private final Link link;
     private final EventLog log;
     private final int maxRetries;
     private final Runnable onNodeCrash;
+    private final WriteObserver writeObserver;
+    private final RetryPolicy retryPolicy;
     private final AtomicInteger requestSeq = new AtomicInteger();
+    private final Counter retries;
+    private final Counter retriesDenied;
+    private final Histogram backoffMillis;
+    private final Counter failures;
+    private final Histogram latencyMicros;
 
     public Client(String id, Node node, Link link, EventLog log) {
-        this(id, node, link, log, 3, () -> {});
+        this(id, node, link, log, Options.DEFAULTS);
     }
 
-    public Client(String id, Node node, Link link, EventLog log, int maxRetries, Runnable onNodeCrash) {
+    public Client(String id, Node node, Link link, EventLog log, Options options) {
         this.id = Objects.requireNonNull(id, "id");
         this.node = Objects.requireNonNull(node, "node");
         this.link = Objects.requireNonNull(link, "link");
         this.log = Objects.requireNonNull(log, "log");
-        if (maxRetries < 1) {
-            throw new IllegalArgumentException("maxRetries must be >= 1");
-        }
-        this.maxRetries = maxRetries;
-        this.onNodeCrash = Objects.requireNonNull(onNodeCrash, "onNodeCrash");
+        this.maxRetries = options.maxRetries();
+        this.onNodeCrash = options.onNodeCrash();
+        this.writeObserver = options.writeObserver();
+        this.retryPolicy = options.retryPolicy();
+        Metrics metrics = options.metrics() != null ? options.metrics() : new Metrics();
+        this.retries = metrics.counter("client." + id + ".retries");
+        this.retriesDenied = metrics.counter("client." + id + ".retries-denied");
+        this.backoffMillis = metrics.histogram("client." + id + ".backoff-ms");
+        metrics.gauge("client." + id + ".retry-tokens", retryPolicy.budget()::available);
+        this.failures = metrics.counter("client." + id + ".failures");
+        this.latencyMicros = metrics.histogram("client." + id + ".latency-us");
     }
 
     public void put(String key, String value) {
+        put(key, value, null);
+    }
+
+    /**
+     * Puts {@code value} to expire after {@code ttl}, or never if it is null.
+     */
+    public void put(String key, String value, Duration ttl) {
         int reqId = requestSeq.getAndIncrement();
-        runWithRetry("client-put", () -> {
-            node.put(key, value);
-            log.info(id, "put-ok", MapBuilder.of("key", key, "value", value, "id", Integer.toString(reqId)));
-            return null;
-        }, requestMetadata(reqId, key, value));
+        writeObserver.started(key, value);
+        try {
+            runWithRetry("client-put", () -> {
+                if (ttl == null) {
+                    node.put(key, value, id);
+                } else {
+                    node.put(key, value, ttl, id);
+                }
+                log.event(id, "put-ok").str("key", key).str("value", value).num("id", reqId).emit();
+                return null;
+            }, reqId, requestMetadata(reqId, key, value));
+        } catch (RuntimeException e) {
+            writeObserver.completed(key, value, false);
+            throw e;
+        }
+        writeObserver.completed(key, value, true);
     }
 
     public Optional<String> get(String key) {
         int reqId = requestSeq.getAndIncrement();
         return runWithRetry("client-get", () -> {
-            var value = node.get(key);
-            log.info(id, "get-ok", MapBuilder.of("key", key, "value", value.orElse("null"), "id", Integer.toString(reqId)));
+            var value = node.get(key, id);
+            log.event(id, "get-ok").str("key", key).str("value", value.orElse("null")).num("id", reqId).emit();
             return value;
-        }, requestMetadata(reqId, key, "?"));
+        }, reqId, requestMetadata(reqId, key, "?"));
     }
 
-    private <T> T runWithRetry(String desc, SupplierWithException<T> action, Map<String, String> metadata) {
+    /**
+     * One page of {@link Node#scan}: a single request however many keys it returns.
+     */
+    public ScanPage scan(String startKey, String endKey, int limit) {
+        int reqId = requestSeq.getAndIncrement();
+        return runWithRetry("client-scan", () -> {
+            ScanPage page = node.scan(startKey, endKey, limit, id);
+            log.event(id, "scan-ok").str("start", startKey).num("entries", page.entries().size()).num("id", reqId).emit();
+            return page;
+        }, reqId, requestMetadata(reqId, startKey, "?"));
+    }
+
+    private <T> T runWithRetry(String desc, SupplierWithException<T> action, int reqId, Map<String, String> metadata) {
+        long start = System.nanoTime();
+        RetryBudget budget = retryPolicy.budget();
+        CircuitBreaker breaker = retryPolicy.breaker();
         RuntimeException lastFailure = null;
+        long pauseMillis = 0;
+        budget.deposit();
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            if (attempt > 1) {
+                if (!budget.tryWithdraw()) {
+                    retriesDenied.increment();
+                    log.event(id, "retry-denied").str("desc", desc).num("attempt", attempt).num("id", reqId).emit();
+                    break;
+                }
+                retries.increment();
+                pauseMillis = retryPolicy.nextBackoffMillis(pauseMillis);
+                if (pauseMillis > 0) {
+                    backoffMillis.record(pauseMillis);
+                    log.event(id, "retry-backoff").str("desc", desc).num("attempt", attempt).num("delayMs", pauseMillis)
+                            .num("id", reqId).emit();
+                    retryPolicy.pause(pauseMillis);
+                }
+            }
+            if (!breaker.tryAcquire()) {
+                lastFailure = new CircuitOpenException("Circuit open for " + desc);
+                log.event(id, "breaker-rejected").str("desc", desc).num("attempt", attempt).num("id", reqId).emit();
+                break;
+            }
             try {
-                return link.deliver(desc, () -> {
+                T result = link.deliver(desc, () -> {
                     try {
                         return action.apply();
                     } catch (RuntimeException e) {
@@ -65,17 +191,30 @@ public final class Client {
                         throw new RuntimeException(e);
                     }
                 }, metadata);
+                breaker.onSuccess();
+                latencyMicros.record((System.nanoTime() - start) / 1_000);
+                return result;
             } catch (LinkFailureException e) {
+                breaker.onFailure();
                 lastFailure = e;
-                log.info(id, "link-retry", MapBuilder.of("desc", desc, "attempt", Integer.toString(attempt), "id", metadata.get("id")));
+                log.event(id, "link-retry").str("desc", desc).num("attempt", attempt).num("id", reqId).emit();
             } catch (NodeCrashedException e) {
+                breaker.onFailure();
                 lastFailure = e;
-                log.info(id, "op-timeout", MapBuilder.of("desc", desc, "attempt", Integer.toString(attempt), "id", metadata.get("id"), "reason", "node-crash"));
+                log.event(id, "op-timeout").str("desc", desc).num("attempt", attempt).num("id", reqId).str("reason", "node-crash").emit();
                 onNodeCrash.run();
+            } catch (NodeBusyException e) {
+                breaker.onFailure();
+                lastFailure = e;
+                log.event(id, "node-busy").str("desc", desc).num("attempt", attempt).num("id", reqId).emit();
+            } catch (RuntimeException e) {
+                breaker.onFailure();
+                throw e;
             }
         }
+        failures.increment();
         if (lastFailure != null) {
-            log.info(id, "op-failed", MapBuilder.of("desc", desc, "id", metadata.get("id"), "reason", lastFailure.getMessage()));
+            log.event(id, "op-failed").str("desc", desc).num("id", reqId).str("reason", lastFailure.getMessage()).emit();
             throw lastFailure;
         }
         throw new LinkFailureException("Retries exhausted for " + desc);
@@ -86,7 +225,11 @@ public final class Client {
         T apply() throws Exception;
     }
 
+    // Only built when the link would actually print it.
     private Map<String, String> requestMetadata(int id, String key, String value) {
+        if (!link.logsDeliveries()) {
+            return null;
+        }
         return MapBuilder.of("id", Integer.toString(id), "K", key, "V", value);
     }
 }
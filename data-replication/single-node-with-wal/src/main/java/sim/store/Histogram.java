@@ -0,0 +1,99 @@
+package sim.store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram (HDR style) for non-negative values such as latencies or sizes.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} are counted exactly; above that each power of two is split into
+ * {@value #SUB_BUCKETS}/2 linear buckets, so any reported percentile is within ~3% of the true value.
+ * Recording is a couple of shifts and one atomic increment.
+ */
+public final class Histogram {
+    private static final int PRECISION_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - PRECISION_BITS) * HALF;
+
+    public record Snapshot(String name, long count, long min, long max, double mean, long p50, long p90, long p99, long p999) {
+    }
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        total.increment();
+        sum.add(v);
+        min.accumulate(v);
+        max.accumulate(v);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code quantile} (0..1) value, capped at the recorded maximum;
+     * 0 when nothing has been recorded.
+     */
+    public long percentile(double quantile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public Snapshot snapshot() {
+        long count = total.sum();
+        if (count == 0) {
+            return new Snapshot(name, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+        return new Snapshot(name, count, min.get(), max.get(), (double) sum.sum() / count,
+                percentile(0.5), percentile(0.9), percentile(0.99), percentile(0.999));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - PRECISION_BITS + 1;
+        return SUB_BUCKETS + (msb - PRECISION_BITS) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int range = (bucket - SUB_BUCKETS) / HALF;
+        int offset = (bucket - SUB_BUCKETS) % HALF;
+        int shift = range + 1;
+        long lower = (long) (HALF + offset) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
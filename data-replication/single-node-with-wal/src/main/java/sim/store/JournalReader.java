@@ -0,0 +1,248 @@
+package sim.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Offline reader for an {@link EventJournal}: filters records by actor, key or request id and renders them in the
+ * same text format as {@link EventLog}.
+ * <p>
+ * The actor filter is resolved to a string id once and key and request id filters to their utf-8 bytes, so
+ * non-matching records are rejected by comparing ints and bytes in the mapped segment without decoding anything; only
+ * matches are turned back into text. A journal cut short (a segment or {@code strings.bin} from a run that did not
+ * close it) is rendered up to the first record it cannot decode, then reported with an {@link IllegalStateException}.
+ * <pre>
+ *   java -cp target/classes sim.store.JournalReader journal [--actor node-1] [--key k3] [--id 7]
+ * </pre>
+ */
+public final class JournalReader {
+    private static final int NO_MATCH = -2;
+
+    private final Path dir;
+    private final String[] strings;
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public JournalReader(Path dir) {
+        this.dir = dir;
+        this.strings = loadStrings(dir.resolve(EventJournal.STRINGS_FILE));
+        for (int i = 0; i < strings.length; i++) {
+            ids.put(strings[i], i);
+        }
+    }
+
+    public static void main(String[] args) {
+        // options come in pairs after the directory
+        if (args.length == 0 || args.length % 2 == 0) {
+            usage();
+        }
+        String actor = null;
+        String key = null;
+        Long requestId = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--actor" -> actor = args[i + 1];
+                case "--key" -> key = args[i + 1];
+                case "--id" -> requestId = Long.parseLong(args[i + 1]);
+                default -> usage();
+            }
+        }
+        var out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false, StandardCharsets.UTF_8);
+        var line = new StringBuilder(256);
+        try {
+            new JournalReader(Path.of(args[0])).scan(actor, key, requestId, event -> {
+                line.setLength(0);
+                event.appendLine(line);
+                out.append(line);
+            });
+        } catch (IllegalStateException e) {
+            out.flush();
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        out.flush();
+    }
+
+    private static void usage() {
+        System.err.println("usage: JournalReader <journal-dir> [--actor <actor>] [--key <key>] [--id <request id>]");
+        System.exit(2);
+    }
+
+    /**
+     * Streams matching events in journal order; {@code null} filters match everything. The {@link Event} passed to
+     * {@code sink} is reused for the next match.
+     */
+    public long scan(String actor, String key, Long requestId, Consumer<Event> sink) {
+        int actorId = actor == null ? -1 : ids.getOrDefault(actor, NO_MATCH);
+        byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        byte[] requestBytes = requestId == null ? null : requestId.toString().getBytes(StandardCharsets.UTF_8);
+        int keyFieldId = ids.getOrDefault("key", NO_MATCH);
+        int shortKeyFieldId = ids.getOrDefault("K", NO_MATCH);
+        int idFieldId = ids.getOrDefault("id", NO_MATCH);
+        if (actorId == NO_MATCH) {
+            return 0;
+        }
+        Event event = new Event(null);
+        long matches = 0;
+        for (int index = 0; Files.exists(EventJournal.segmentPath(dir, index)); index++) {
+            Path path = EventJournal.segmentPath(dir, index);
+            MappedByteBuffer segment = map(path);
+            for (int base = 0; base + EventJournal.HEADER_SIZE <= segment.limit(); ) {
+                long timestamp = segment.getLong(base);
+                if (timestamp == 0) {
+                    break;
+                }
+                int length = segment.getInt(base + 8);
+                int fields = segment.get(base + 20);
+                if (length < EventJournal.HEADER_SIZE + fields * EventJournal.FIELD_SIZE || length > segment.limit() - base) {
+                    throw truncated(path, base, "a record length of " + length);
+                }
+                if (actor != null && segment.getInt(base + 12) != actorId) {
+                    base += length;
+                    continue;
+                }
+                if (key != null && !hasText(segment, base, fields, keyFieldId, shortKeyFieldId, keyBytes)) {
+                    base += length;
+                    continue;
+                }
+                if (requestId != null && !hasText(segment, base, fields, idFieldId, idFieldId, requestBytes)
+                        && !hasNumber(segment, base, fields, idFieldId, requestId)) {
+                    base += length;
+                    continue;
+                }
+                decode(path, segment, base, fields, timestamp, event);
+                sink.accept(event);
+                matches++;
+                base += length;
+            }
+        }
+        return matches;
+    }
+
+    private static boolean hasText(MappedByteBuffer segment, int base, int fields, int keyId, int altKeyId, byte[] text) {
+        for (int i = 0; i < fields; i++) {
+            int offset = base + EventJournal.HEADER_SIZE + i * EventJournal.FIELD_SIZE;
+            int header = segment.getInt(offset);
+            int fieldKey = header & 0x3FFF_FFFF;
+            long value = segment.getLong(offset + 4);
+            if ((fieldKey == keyId || fieldKey == altKeyId) && ((header >>> 30) & 1) == 0 && value != EventJournal.NULL_TEXT
+                    && (int) value == text.length && equal(segment, base + (int) (value >>> 32), text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equal(MappedByteBuffer segment, int offset, byte[] text) {
+        for (int i = 0; i < text.length; i++) {
+            if (segment.get(offset + i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasNumber(MappedByteBuffer segment, int base, int fields, int keyId, long number) {
+        for (int i = 0; i < fields; i++) {
+            int offset = base + EventJournal.HEADER_SIZE + i * EventJournal.FIELD_SIZE;
+            int header = segment.getInt(offset);
+            if ((header & 0x3FFF_FFFF) == keyId && ((header >>> 30) & 1) == 1 && segment.getLong(offset + 4) == number) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void decode(Path path, MappedByteBuffer segment, int base, int fields, long timestamp, Event event) {
+        event.begin(string(path, base, segment.getInt(base + 12)), string(path, base, segment.getInt(base + 16)));
+        event.timestamp(timestamp);
+        int length = segment.getInt(base + 8);
+        for (int i = 0; i < fields; i++) {
+            int offset = base + EventJournal.HEADER_SIZE + i * EventJournal.FIELD_SIZE;
+            int header = segment.getInt(offset);
+            String fieldKey = string(path, base, header & 0x3FFF_FFFF);
+            long value = segment.getLong(offset + 4);
+            switch (header >>> 30) {
+                case EventJournal.KIND_TEXT -> event.str(fieldKey, text(path, segment, base, length, value));
+                case EventJournal.KIND_NUMBER -> event.num(fieldKey, value);
+                case EventJournal.KIND_META_TEXT -> event.meta(fieldKey, text(path, segment, base, length, value));
+                default -> event.meta(fieldKey, value);
+            }
+        }
+    }
+
+    private String string(Path path, int base, int id) {
+        if (id >= strings.length) {
+            throw truncated(path, base, "string id " + id + " but " + EventJournal.STRINGS_FILE + " holds " + strings.length);
+        }
+        return id < 0 ? null : strings[id];
+    }
+
+    private static String text(Path path, MappedByteBuffer segment, int base, int length, long value) {
+        if (value == EventJournal.NULL_TEXT) {
+            return null;
+        }
+        int offset = (int) (value >>> 32);
+        int size = (int) value;
+        if (offset < EventJournal.HEADER_SIZE || size < 0 || offset + size > length) {
+            throw truncated(path, base, "text at " + offset + " of " + size + " bytes");
+        }
+        byte[] bytes = new byte[size];
+        segment.get(base + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static IllegalStateException truncated(Path segment, int base, String found) {
+        return new IllegalStateException("Journal " + segment.getParent() + " is truncated: record at byte " + base + " of "
+                + segment.getFileName() + " has " + found);
+    }
+
+    private static MappedByteBuffer map(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map journal segment " + segment, e);
+        }
+    }
+
+    private static String[] loadStrings(Path file) {
+        List<String> strings = new ArrayList<>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] bytes = in.readNBytes(length);
+                if (bytes.length < length) {
+                    // cut off mid-string; records naming it are reported as truncated
+                    break;
+                }
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read journal strings " + file, e);
+        }
+        return strings.toArray(String[]::new);
+    }
+}
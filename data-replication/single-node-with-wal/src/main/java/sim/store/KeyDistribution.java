@@ -0,0 +1,72 @@
+package sim.store;
+
+import java.util.Random;
+
+/**
+ * Picks which existing record an operation touches. Implementations are seeded through the
+ * supplied {@link Random} so a workload replays identically for the same seed.
+ */
+@FunctionalInterface
+public interface KeyDistribution {
+    /**
+     * Returns a record index in {@code [0, keyCount)}; {@code keyCount} grows as the workload inserts.
+     */
+    long next(long keyCount);
+
+    static KeyDistribution uniform(Random random) {
+        return keyCount -> random.nextLong(keyCount);
+    }
+
+    /**
+     * Zipfian over record indexes: low indexes (the oldest records) are the hottest.
+     */
+    static KeyDistribution zipfian(double skew, Random random) {
+        var zipf = new ZipfianGenerator(skew, random);
+        return zipf::next;
+    }
+
+    /**
+     * Zipfian popularity with ranks hashed across the key space, so hot keys are not clustered (YCSB default).
+     */
+    static KeyDistribution scrambledZipfian(double skew, Random random) {
+        var zipf = new ZipfianGenerator(skew, random);
+        return keyCount -> Math.floorMod(fnv64(zipf.next(keyCount)), keyCount);
+    }
+
+    /**
+     * Zipfian skewed towards the most recently inserted records.
+     */
+    static KeyDistribution latest(double skew, Random random) {
+        var zipf = new ZipfianGenerator(skew, random);
+        return keyCount -> keyCount - 1 - zipf.next(keyCount);
+    }
+
+    /**
+     * {@code hotOpFraction} of operations go to the first {@code hotSetFraction} of records; the rest are uniform over the remainder.
+     */
+    static KeyDistribution hotspot(double hotSetFraction, double hotOpFraction, Random random) {
+        if (hotSetFraction <= 0 || hotSetFraction > 1) {
+            throw new IllegalArgumentException("hotSetFraction must be in (0, 1]");
+        }
+        if (hotOpFraction < 0 || hotOpFraction > 1) {
+            throw new IllegalArgumentException("hotOpFraction must be between 0 and 1");
+        }
+        return keyCount -> {
+            long hotSet = Math.max(1, (long) (keyCount * hotSetFraction));
+            if (hotSet >= keyCount || random.nextDouble() < hotOpFraction) {
+                return random.nextLong(hotSet);
+            }
+            return hotSet + random.nextLong(keyCount - hotSet);
+        };
+    }
+
+    private static long fnv64(long value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xFF;
+            hash *= 0x100000001B3L;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,148 @@
+package sim.store;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.random.RandomGenerator;
+
+/**
+ * Delay a {@link Link} injects per delivery, in milliseconds.
+ * <p>
+ * Models are built once and then sampled on every delivery, so sampling only does arithmetic on the caller's
+ * generator: no boxing, no objects. Heavy-tailed models are capped (see {@link #cappedAt}) so one unlucky draw cannot
+ * stall a run for minutes.
+ */
+@FunctionalInterface
+public interface LatencyModel {
+    /**
+     * Default upper bound for {@link #pareto} and {@link #parse}d heavy-tailed models.
+     */
+    long DEFAULT_CAP_MILLIS = 10_000;
+
+    long sampleMillis(RandomGenerator random);
+
+    static LatencyModel fixed(long millis) {
+        requireNonNegative(millis, "millis");
+        return random -> millis;
+    }
+
+    /**
+     * Uniform over {@code [min, max]} whole milliseconds; the draw sequence of the original {@link Link} jitter.
+     */
+    static LatencyModel uniform(Duration min, Duration max) {
+        long lo = Objects.requireNonNull(min, "min").toMillis();
+        long hi = Objects.requireNonNull(max, "max").toMillis();
+        if (hi < lo) {
+            throw new IllegalArgumentException("maxLatency must be >= minLatency");
+        }
+        requireNonNegative(lo, "min");
+        if (hi == lo) {
+            return fixed(lo);
+        }
+        long span = hi - lo + 1;
+        return random -> lo + Math.abs(random.nextLong()) % span;
+    }
+
+    /**
+     * {@code minMillis} plus an exponentially distributed wait with mean {@code meanMillis}: memoryless queueing delay.
+     */
+    static LatencyModel exponential(long minMillis, double meanMillis) {
+        requireNonNegative(minMillis, "minMillis");
+        requirePositive(meanMillis, "meanMillis");
+        return random -> minMillis + (long) (-meanMillis * Math.log(1.0 - random.nextDouble()));
+    }
+
+    /**
+     * Log-normal around {@code medianMillis}; {@code sigma} around 0.5-1 gives the long right tail of real RPC latencies.
+     */
+    static LatencyModel logNormal(double medianMillis, double sigma) {
+        requirePositive(medianMillis, "medianMillis");
+        requireNonNegative(sigma, "sigma");
+        return random -> (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    static LatencyModel pareto(double scaleMillis, double shape) {
+        return pareto(scaleMillis, shape, DEFAULT_CAP_MILLIS);
+    }
+
+    /**
+     * Pareto with minimum {@code scaleMillis} and tail index {@code shape} (the smaller, the heavier; below 2 the variance
+     * is infinite), capped at {@code capMillis}.
+     */
+    static LatencyModel pareto(double scaleMillis, double shape, long capMillis) {
+        requirePositive(scaleMillis, "scaleMillis");
+        requirePositive(shape, "shape");
+        double exponent = 1.0 / shape;
+        LatencyModel model = random -> (long) (scaleMillis / Math.pow(1.0 - random.nextDouble(), exponent));
+        return model.cappedAt(capMillis);
+    }
+
+    /**
+     * Bimodal: {@code base} on every delivery, plus a {@code pause} with probability {@code pauseProbability}, like a
+     * stop-the-world GC on the receiving side.
+     */
+    static LatencyModel gcPauses(LatencyModel base, double pauseProbability, LatencyModel pause) {
+        Objects.requireNonNull(base, "base");
+        Objects.requireNonNull(pause, "pause");
+        if (pauseProbability < 0 || pauseProbability > 1) {
+            throw new IllegalArgumentException("pauseProbability must be between 0 and 1");
+        }
+        return random -> {
+            long delay = base.sampleMillis(random);
+            return random.nextDouble() < pauseProbability ? delay + pause.sampleMillis(random) : delay;
+        };
+    }
+
+    default LatencyModel cappedAt(long maxMillis) {
+        requireNonNegative(maxMillis, "maxMillis");
+        return random -> Math.min(sampleMillis(random), maxMillis);
+    }
+
+    /**
+     * Parses {@code uniform:<min>:<max>}, {@code fixed:<ms>}, {@code exponential:<min>:<mean>},
+     * {@code lognormal:<median>:<sigma>}, {@code pareto:<scale>:<shape>[:<cap>]} or
+     * {@code gc:<min>:<max>:<probability>:<pauseMin>:<pauseMax>} (uniform base, uniform pause). Every model but
+     * {@code uniform} and {@code fixed} is capped at {@value #DEFAULT_CAP_MILLIS} ms.
+     */
+    static LatencyModel parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            return switch (parts[0].toLowerCase(Locale.ROOT)) {
+                case "fixed" -> fixed(Long.parseLong(parts[1]));
+                case "uniform" -> uniform(Duration.ofMillis(Long.parseLong(parts[1])), Duration.ofMillis(Long.parseLong(parts[2])));
+                case "exponential" -> exponential(Long.parseLong(parts[1]), Double.parseDouble(parts[2])).cappedAt(DEFAULT_CAP_MILLIS);
+                case "lognormal" -> logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2])).cappedAt(DEFAULT_CAP_MILLIS);
+                case "pareto" -> pareto(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                        parts.length > 3 ? Long.parseLong(parts[3]) : DEFAULT_CAP_MILLIS);
+                case "gc" -> gcPauses(uniform(Duration.ofMillis(Long.parseLong(parts[1])), Duration.ofMillis(Long.parseLong(parts[2]))),
+                        Double.parseDouble(parts[3]),
+                        uniform(Duration.ofMillis(Long.parseLong(parts[4])), Duration.ofMillis(Long.parseLong(parts[5]))))
+                        .cappedAt(DEFAULT_CAP_MILLIS);
+                default -> throw new IllegalArgumentException("Unknown latency model " + spec
+                        + " (expected fixed, uniform, exponential, lognormal, pareto or gc)");
+            };
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Missing parameters in latency model " + spec, e);
+        }
+    }
+
+    /**
+     * {@code -Dsim.link.latency=<spec>} (see {@link #parse}) when set, otherwise {@code fallback}.
+     */
+    static LatencyModel fromSystemProperties(LatencyModel fallback) {
+        String spec = System.getProperty("sim.link.latency", "");
+        return spec.isBlank() ? fallback : parse(spec);
+    }
+
+    private static void requireNonNegative(double value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must be >= 0");
+        }
+    }
+
+    private static void requirePositive(double value, String name) {
+        if (!(value > 0)) {
+            throw new IllegalArgumentException(name + " must be > 0");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package sim.store;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of named counters, gauges and histograms (e.g. {@code link.loopback.drops}, {@code wal.node-1.fsync-us}).
+ * <p>
+ * Components look their metrics up once, at construction, and keep the returned objects; the hot path then only
+ * touches a {@link Counter} or {@link Histogram}. Components built without a registry get a private one that nobody
+ * reports.
+ */
+public final class Metrics {
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    /**
+     * Registers a value read at snapshot time (queue depth, breaker state, ...); replaces an earlier gauge of the same name.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Point-in-time values of every counter and gauge, sorted by name.
+     */
+    public Map<String, Long> counterSnapshot() {
+        Map<String, Long> snapshot = new ConcurrentSkipListMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        return snapshot;
+    }
+
+    /**
+     * Snapshots of every histogram that has recorded at least one value, sorted by name.
+     */
+    public List<Histogram.Snapshot> histogramSnapshot() {
+        List<Histogram.Snapshot> snapshot = new ArrayList<>();
+        histograms.values().stream()
+                .filter(h -> h.count() > 0)
+                .map(Histogram::snapshot)
+                .sorted((a, b) -> a.name().compareTo(b.name()))
+                .forEach(snapshot::add);
+        return snapshot;
+    }
+
+    /**
+     * Emits one {@code metric} event per counter/gauge and one {@code histogram} event per histogram.
+     */
+    public void report(EventLog log) {
+        counterSnapshot().forEach((name, value) -> log.event("metrics", "metric").str("name", name).num("value", value).emit());
+        for (Histogram.Snapshot h : histogramSnapshot()) {
+            log.event("metrics", "histogram").str("name", h.name()).num("count", h.count()).num("min", h.min())
+                    .num("p50", h.p50()).num("p90", h.p90()).num("p99", h.p99()).num("p999", h.p999())
+                    .num("max", h.max()).emit();
+        }
+    }
+
+    /**
+     * Prints a plain table, independent of any event log configuration.
+     */
+    public void dump(PrintStream out) {
+        counterSnapshot().forEach((name, value) -> out.printf("%-48s %12d%n", name, value));
+        for (Histogram.Snapshot h : histogramSnapshot()) {
+            out.printf("%-48s count=%d min=%d p50=%d p90=%d p99=%d p999=%d max=%d mean=%.1f%n",
+                    h.name(), h.count(), h.min(), h.p50(), h.p90(), h.p99(), h.p999(), h.max(), h.mean());
+        }
+    }
+}
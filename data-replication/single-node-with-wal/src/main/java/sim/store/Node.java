@@ -1,55 +1,520 @@
 package sim.store;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Single-node in-memory key-value store with crash injection and observability.
+ * <p>
+ * Requests go through the node's {@link RequestQueue}; by default that runs them on the caller's thread, with a bounded
+ * queue they are admitted or turned away with {@link NodeBusyException}.
+ * <p>
+ * Keys are hashed to one or more shards, each with its own map and {@link WriteAheadLog}, so puts to different shards
+ * append and fsync in parallel instead of queueing on one log. Restarts replay the shards in parallel.
+ * <p>
+ * With {@link Restore#LAZY} a restart only indexes the WAL (key to offset of its latest record, mostly from the index
+ * saved by the last {@link #checkpointIndex}) and takes requests right away; a get for a key not loaded yet reads its
+ * record from the WAL, and a background thread loads the rest in one sequential pass, then saves a fresh index.
+ * <p>
+ * A put may carry a time to live. Its expiry (wall-clock milliseconds) is written to the WAL with the value and
+ * scheduled on the shard's {@link TimingWheel}; gets stop returning the key at its expiry, and the next put or get that
+ * finds the wheel due removes every expired key from memory, so keys written with a TTL do not pile up. Restarts drop
+ * keys that expired while the node was down. The WAL keeps their records until {@link #compact}.
+ * <p>
+ * Next to its hash map each shard keeps its keys in a skip list, so {@link #scan} returns a key range in order, a page
+ * per request, without touching keys outside it.
  */
 public final class Node {
+    private static final long WHEEL_TICK_MILLIS = 10;
+
+    public enum Restore {
+        /** Replay the whole WAL before taking requests. */
+        EAGER,
+        /** Index the WAL, take requests, load values on demand and in the background. */
+        LAZY
+    }
+
+    /**
+     * What a node runs with beyond its WALs; start from {@link #DEFAULTS} (eager restore, requests on the caller's
+     * thread) and change what differs. A null {@code metrics} or {@code queue} gives the node one of its own.
+     */
+    public record Options(Metrics metrics, RequestQueue queue, Restore restore) {
+        public static final Options DEFAULTS = new Options(null, null, Restore.EAGER);
+
+        public Options {
+            Objects.requireNonNull(restore, "restore");
+        }
+
+        public Options withMetrics(Metrics metrics) {
+            return new Options(metrics, queue, restore);
+        }
+
+        public Options withQueue(RequestQueue queue) {
+            return new Options(metrics, queue, restore);
+        }
+
+        public Options withRestore(Restore restore) {
+            return new Options(metrics, queue, restore);
+        }
+    }
+
     private final String id;
     private final EventLog log;
     private final CrashInjector crashInjector;
-    private final WriteAheadLog wal;
-    private final Map<String, String> data = new ConcurrentHashMap<>();
+    private final Shard[] shards;
+    private final RequestQueue queue;
+    private final Restore restore;
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile Thread warmer;
+    private final Counter puts;
+    private final Counter gets;
+    private final Counter scans;
+    private final Counter crashes;
+    private final Counter restarts;
+    private final Counter lazyLoads;
+    private final Counter expired;
+    private final Histogram restartMicros;
     private volatile boolean alive = true;
 
     public Node(String id, EventLog log, CrashInjector crashInjector, WriteAheadLog wal) {
+        this(id, log, crashInjector, List.of(wal), Options.DEFAULTS);
+    }
+
+    /**
+     * One shard per WAL (see {@link WriteAheadLog#sharded}); a key's shard depends on the number of WALs, so a WAL set
+     * must always be reopened with the same count.
+     */
+    public Node(String id, EventLog log, CrashInjector crashInjector, List<WriteAheadLog> shardWals, Options options) {
+        if (shardWals.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard WAL is required");
+        }
         this.id = Objects.requireNonNull(id, "id");
         this.log = Objects.requireNonNull(log, "log");
         this.crashInjector = Objects.requireNonNull(crashInjector, "crashInjector");
-        this.wal = Objects.requireNonNull(wal, "wal");
+        this.queue = options.queue() != null ? options.queue() : RequestQueue.inline();
+        this.restore = options.restore();
+        Metrics metrics = options.metrics() != null ? options.metrics() : new Metrics();
+        this.shards = shardWals.stream().map(Shard::new).toArray(Shard[]::new);
+        this.puts = metrics.counter("node." + id + ".puts");
+        this.gets = metrics.counter("node." + id + ".gets");
+        this.scans = metrics.counter("node." + id + ".scans");
+        this.crashes = metrics.counter("node." + id + ".crashes");
+        this.restarts = metrics.counter("node." + id + ".restarts");
+        this.lazyLoads = metrics.counter("node." + id + ".lazy-loads");
+        this.expired = metrics.counter("node." + id + ".expired");
+        metrics.gauge("node." + id + ".expiring-keys", this::expiring);
+        this.restartMicros = metrics.histogram("node." + id + ".restart-us");
         restoreFromWal();
+        startWarming();
     }
 
     public void put(String key, String value) {
-        ensureAlive();
-        wal.appendPut(key, value);
-        injectCrash("put");
-        data.put(key, value);
-        log.info(id, "put", MapBuilder.of("key", key, "value", value));
+        put(key, value, "local");
+    }
+
+    /**
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public void put(String key, String value, String clientId) {
+        queue.submit(clientId, "put", () -> {
+            applyPut(key, value, 0);
+            return null;
+        });
+    }
+
+    public void put(String key, String value, Duration ttl) {
+        put(key, value, ttl, "local");
+    }
+
+    /**
+     * Stores {@code value} until {@code ttl} from now; a later put of the key replaces the expiry, or clears it.
+     *
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public void put(String key, String value, Duration ttl, String clientId) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        queue.submit(clientId, "put", () -> {
+            applyPut(key, value, System.currentTimeMillis() + ttl.toMillis());
+            return null;
+        });
     }
 
     public Optional<String> get(String key) {
+        return get(key, "local");
+    }
+
+    /**
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public Optional<String> get(String key, String clientId) {
+        return queue.submit(clientId, "get", () -> applyGet(key));
+    }
+
+    public ScanPage scan(String startKey, String endKey, int limit) {
+        return scan(startKey, endKey, limit, "local");
+    }
+
+    /**
+     * Up to {@code limit} keys from {@code startKey} (inclusive) to {@code endKey} (exclusive; null for no bound) with
+     * their values, in key order. Pass the page's {@link ScanPage#next()} back as {@code startKey} for the next page.
+     * Each page is read as of no single moment: a put racing it may or may not show.
+     *
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public ScanPage scan(String startKey, String endKey, int limit, String clientId) {
+        Objects.requireNonNull(startKey, "startKey");
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be >= 1");
+        }
+        if (endKey != null && startKey.compareTo(endKey) > 0) {
+            throw new IllegalArgumentException("startKey must not be after endKey");
+        }
+        return queue.submit(clientId, "scan", () -> applyScan(startKey, endKey, limit));
+    }
+
+    // expiresAtMillis is 0 for a value that never expires
+    private void applyPut(String key, String value, long expiresAtMillis) {
+        var event = new FlightEvents.NodeOp();
+        event.begin();
+        ensureAlive();
+        Shard shard = shardFor(key);
+        // several workers may put the same key; holding the WAL's lock keeps memory in WAL order
+        synchronized (shard.wal) {
+            expireDue(shard, System.currentTimeMillis());
+            long offset = shard.wal.appendPut(key, value, expiresAtMillis);
+            injectCrash("put");
+            shard.data.put(key, value);
+            if (restore == Restore.LAZY) {
+                shard.offsets.put(key, offset);
+            }
+            shard.keys.add(key);
+            expireAt(shard, key, expiresAtMillis);
+        }
+        puts.increment();
+        log.event(id, "put").str("key", key).str("value", value).emit();
+        commit(event, "put", key, value);
+    }
+
+    private Optional<String> applyGet(String key) {
+        var event = new FlightEvents.NodeOp();
+        event.begin();
         ensureAlive();
         injectCrash("get");
-        String value = data.get(key);
-        log.info(id, "get", MapBuilder.of("key", key, "value", value));
+        Shard shard = shardFor(key);
+        String value = load(shard, key);
+        if (value != null && isExpired(shard, key, System.currentTimeMillis())) {
+            value = null;
+            synchronized (shard.wal) {
+                expireDue(shard, System.currentTimeMillis());
+            }
+        }
+        gets.increment();
+        log.event(id, "get").str("key", key).str("value", value).emit();
+        commit(event, "get", key, value);
         return Optional.ofNullable(value);
     }
 
+    // A key lives in one shard, and each shard offers its first `limit` keys of the range. Past the last key offered
+    // by a shard that had more, that shard's keys are unknown, so the page stops there at the latest.
+    private ScanPage applyScan(String startKey, String endKey, int limit) {
+        ensureAlive();
+        injectCrash("scan");
+        TreeMap<String, Shard> candidates = new TreeMap<>();
+        String bound = null;
+        for (Shard shard : shards) {
+            NavigableSet<String> range = endKey == null ? shard.keys.tailSet(startKey, true)
+                    : shard.keys.subSet(startKey, true, endKey, false);
+            Iterator<String> keys = range.iterator();
+            String offered = null;
+            for (int i = 0; i < limit && keys.hasNext(); i++) {
+                offered = keys.next();
+                candidates.put(offered, shard);
+            }
+            if (keys.hasNext() && (bound == null || offered.compareTo(bound) < 0)) {
+                bound = offered;
+            }
+        }
+        boolean truncated = bound != null;
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        String last = null;
+        for (Map.Entry<String, Shard> candidate : (bound == null ? candidates : candidates.headMap(bound, true)).entrySet()) {
+            if (entries.size() == limit) {
+                truncated = true;
+                break;
+            }
+            last = candidate.getKey();
+            Shard shard = candidate.getValue();
+            String value = isExpired(shard, last, now) ? null : load(shard, last);
+            if (value != null) {
+                entries.add(Map.entry(last, value));
+            }
+        }
+        ScanPage page = new ScanPage(entries, truncated ? ScanPage.after(last) : null);
+        scans.increment();
+        log.event(id, "scan").str("start", startKey).str("end", endKey).num("entries", entries.size())
+                .num("more", truncated ? 1 : 0).emit();
+        return page;
+    }
+
     public void crashAndLoseState(String reason) {
         alive = false;
-        data.clear();
+        epoch.incrementAndGet();
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        crashes.increment();
         log.info(id, "crashed", MapBuilder.of("reason", reason, "state", "lost"));
+        var event = new FlightEvents.NodeLifecycle();
+        event.node = id;
+        event.transition = "crash";
+        event.reason = reason;
+        event.commit();
     }
 
+    /**
+     * Restores from the WAL while no request is running, so a put admitted meanwhile is not wiped by the reload.
+     */
     public void restart() {
-        alive = true;
-        restoreFromWal();
-        log.info(id, "restart", MapBuilder.of("state", "from-wal", "entries", Integer.toString(data.size())));
+        queue.exclusive(() -> {
+            var event = new FlightEvents.NodeLifecycle();
+            event.begin();
+            long start = System.nanoTime();
+            // bumped on both sides of the restore, so a checkpoint overlapping it sees a change
+            epoch.incrementAndGet();
+            restoreFromWal();
+            epoch.incrementAndGet();
+            alive = true;
+            int entries = size();
+            restartMicros.record((System.nanoTime() - start) / 1_000);
+            restarts.increment();
+            log.info(id, "restart", MapBuilder.of("state", restore == Restore.LAZY ? "indexed" : "from-wal", "entries",
+                    Integer.toString(entries)));
+            event.node = id;
+            event.transition = "restart";
+            event.entries = entries;
+            event.commit();
+        });
+        startWarming();
+    }
+
+    /**
+     * In {@link Restore#LAZY} mode, saves each shard's key-to-offset index so the next restart only scans the records
+     * appended after it; does nothing if the node crashes meanwhile.
+     */
+    public void checkpointIndex() {
+        if (restore != Restore.LAZY) {
+            return;
+        }
+        long current = epoch.get();
+        for (Shard shard : shards) {
+            Map<String, Long> offsets;
+            Map<String, Long> expiries;
+            long length;
+            long generation;
+            synchronized (shard.wal) {
+                offsets = Map.copyOf(shard.offsets);
+                expiries = expiries(shard);
+                length = shard.wal.length();
+                generation = shard.wal.generation();
+            }
+            // crashes and restarts bump the epoch before touching the maps, so an unchanged epoch means the copy is whole
+            if (!alive || epoch.get() != current) {
+                return;
+            }
+            shard.wal.saveIndex(offsets, expiries, length, generation);
+        }
+    }
+
+    /**
+     * Rewrites each shard's WAL with only the latest record of every live key, dropping overwritten and expired records,
+     * while no request is running. The saved indexes are deleted, since their offsets no longer fit; in
+     * {@link Restore#LAZY} mode the background load starts over against the new logs.
+     */
+    public void compact() {
+        queue.exclusive(() -> {
+            ensureAlive();
+            long start = System.nanoTime();
+            // like a restore, compaction moves every offset: a checkpoint or warmer overlapping it must notice
+            epoch.incrementAndGet();
+            int entries = 0;
+            for (Shard shard : shards) {
+                synchronized (shard.wal) {
+                    long now = System.currentTimeMillis();
+                    expireDue(shard, now);
+                    Map<String, String> live = new HashMap<>();
+                    if (restore == Restore.EAGER) {
+                        live.putAll(shard.data);
+                    } else {
+                        shard.wal.scan((offset, key, value) -> {
+                            if (Objects.equals(shard.offsets.get(key), offset)) {
+                                live.put(key, value);
+                            }
+                            return true;
+                        });
+                    }
+                    // expired but not yet due on the wheel (a tick has not passed): drop them too
+                    live.keySet().removeIf(key -> isExpired(shard, key, now));
+                    Map<String, Long> offsets = shard.wal.compact(live, expiries(shard));
+                    if (restore == Restore.LAZY) {
+                        shard.offsets.keySet().retainAll(offsets.keySet());
+                        shard.offsets.putAll(offsets);
+                    }
+                    entries += live.size();
+                }
+            }
+            epoch.incrementAndGet();
+            log.info(id, "compacted", MapBuilder.of("entries", Integer.toString(entries), "elapsedMs",
+                    Long.toString((System.nanoTime() - start) / 1_000_000)));
+        });
+        startWarming();
+    }
+
+    private void commit(FlightEvents.NodeOp event, String op, String key, String value) {
+        if (event.shouldCommit()) {
+            event.node = id;
+            event.op = op;
+            event.keyLength = key.length();
+            event.valueLength = value == null ? 0 : value.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Copy of the in-memory state, bypassing crash injection and logging; for invariant checks.
+     */
+    Map<String, String> contents() {
+        Map<String, String> all = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (Shard shard : shards) {
+            if (restore == Restore.EAGER) {
+                all.putAll(shard.data);
+            } else {
+                for (String key : shard.offsets.keySet()) {
+                    String value = load(shard, key);
+                    if (value != null) {
+                        all.put(key, value);
+                    }
+                }
+            }
+            for (String key : shard.timers.keySet()) {
+                if (isExpired(shard, key, now)) {
+                    all.remove(key);
+                }
+            }
+        }
+        return Map.copyOf(all);
+    }
+
+    /**
+     * Waits for the background loads started by restarts, if any; for tests that remove the WAL afterwards.
+     */
+    void awaitWarm() {
+        Thread current = warmer;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long expiring() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.timers.size();
+        }
+        return total;
+    }
+
+    private int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += restore == Restore.LAZY ? shard.offsets.size() : shard.data.size();
+        }
+        return size;
+    }
+
+    // A miss goes through computeIfAbsent, which waits for a load of the same key already under way. A racing put stores
+    // its value before its offset, so it either finds the value loaded and overwrites it, or the load finds the value.
+    private String load(Shard shard, String key) {
+        String value = shard.data.get(key);
+        if (value != null || restore == Restore.EAGER) {
+            return value;
+        }
+        return shard.data.computeIfAbsent(key, k -> {
+            Long offset = shard.offsets.get(k);
+            if (offset == null) {
+                return null;
+            }
+            lazyLoads.increment();
+            return shard.wal.readValue(offset, k);
+        });
+    }
+
+    // Loads every value not loaded yet with one sequential pass over each WAL, then checkpoints the index; a crash or
+    // restart stops it. A record is only used if it is still its key's latest, so a pass that outlives a restart
+    // cannot bring back an old value.
+    private void startWarming() {
+        if (restore != Restore.LAZY) {
+            return;
+        }
+        long current = epoch.get();
+        Thread previous = warmer;
+        warmer = Thread.ofPlatform().daemon().name(id + "-warmer").start(() -> {
+            long start = System.nanoTime();
+            try {
+                // the previous warmer stops at its next record; waiting for it keeps its index save from landing last
+                if (previous != null) {
+                    previous.join();
+                }
+                for (Shard shard : shards) {
+                    shard.wal.scan((offset, key, value) -> {
+                        Long latest = shard.offsets.get(key);
+                        if (latest != null && latest == offset && !shard.data.containsKey(key)) {
+                            shard.data.computeIfAbsent(key, k -> Objects.equals(shard.offsets.get(k), offset) ? value : null);
+                        }
+                        return epoch.get() == current;
+                    });
+                }
+                if (epoch.get() != current) {
+                    return;
+                }
+                log.info(id, "warm-complete", MapBuilder.of("entries", Integer.toString(size()), "elapsedMs",
+                        Long.toString((System.nanoTime() - start) / 1_000_000)));
+                checkpointIndex();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // gets still load on demand; the next restart indexes from the last saved index
+                log.info(id, "warm-failed", MapBuilder.of("reason", String.valueOf(e.getMessage())));
+            }
+        });
+    }
+
+    // String caches its hash, so routing a key allocates nothing
+    private Shard shardFor(String key) {
+        if (shards.length == 1) {
+            return shards[0];
+        }
+        int h = key.hashCode();
+        return shards[Math.floorMod(h ^ (h >>> 16), shards.length)];
     }
 
     private void ensureAlive() {
@@ -68,8 +533,96 @@ public final class Node {
     }
 
     private void restoreFromWal() {
-        Map<String, String> restored = wal.replay();
-        data.clear();
-        data.putAll(restored);
+        if (shards.length == 1) {
+            restore(shards[0]);
+        } else {
+            Arrays.stream(shards).parallel().forEach(this::restore);
+        }
+    }
+
+    private void restore(Shard shard) {
+        Map<String, Long> expiries = new HashMap<>();
+        synchronized (shard.wal) {
+            shard.clear();
+            shard.wheel = new TimingWheel<>(WHEEL_TICK_MILLIS, System.currentTimeMillis());
+            if (restore == Restore.EAGER) {
+                shard.data.putAll(shard.wal.replay(expiries));
+            } else {
+                shard.wal.index(shard.offsets, expiries);
+            }
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Long> entry : expiries.entrySet()) {
+                if (entry.getValue() <= now) {
+                    // expired while the node was down, or before a crash that lost the removal: not counted again
+                    shard.data.remove(entry.getKey());
+                    shard.offsets.remove(entry.getKey());
+                } else {
+                    shard.timers.put(entry.getKey(), shard.wheel.schedule(entry.getKey(), entry.getValue()));
+                }
+            }
+            shard.keys.addAll(restore == Restore.EAGER ? shard.data.keySet() : shard.offsets.keySet());
+        }
+    }
+
+    // Caller holds the shard's WAL lock. Replaces the key's pending expiry, if any, with one at expiresAtMillis.
+    private void expireAt(Shard shard, String key, long expiresAtMillis) {
+        TimingWheel.Timer<String> previous = expiresAtMillis > 0
+                ? shard.timers.put(key, shard.wheel.schedule(key, expiresAtMillis))
+                : shard.timers.remove(key);
+        if (previous != null) {
+            shard.wheel.cancel(previous);
+        }
+    }
+
+    // Caller holds the shard's WAL lock. A fired timer is always its key's current one, since a put cancels the last.
+    private void expireDue(Shard shard, long nowMillis) {
+        shard.wheel.advance(nowMillis, key -> {
+            shard.timers.remove(key);
+            shard.data.remove(key);
+            shard.offsets.remove(key);
+            shard.keys.remove(key);
+            expired.increment();
+            log.event(id, "expired").str("key", key).emit();
+        });
+    }
+
+    private static boolean isExpired(Shard shard, String key, long nowMillis) {
+        TimingWheel.Timer<String> timer = shard.timers.get(key);
+        return timer != null && timer.deadlineMillis() <= nowMillis;
+    }
+
+    // Caller holds the shard's WAL lock.
+    private static Map<String, Long> expiries(Shard shard) {
+        Map<String, Long> expiries = new HashMap<>();
+        shard.timers.forEach((key, timer) -> expiries.put(key, timer.deadlineMillis()));
+        return expiries;
+    }
+
+    /**
+     * A slice of the key space. In lazy mode {@code offsets} locates every key's latest WAL record, whether or not its
+     * value is in {@code data} yet; puts update it under the WAL's lock, with the append. {@code timers} holds the
+     * pending expiry of every key that has one; it and the wheel change under the WAL's lock too, while gets read
+     * {@code timers} without it. {@code keys} orders every key {@code data} (or, in lazy mode, {@code offsets}) holds,
+     * for scans.
+     */
+    private static final class Shard {
+        private final WriteAheadLog wal;
+        private final Map<String, String> data = new ConcurrentHashMap<>();
+        private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+        private final Map<String, TimingWheel.Timer<String>> timers = new ConcurrentHashMap<>();
+        private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+        // replaced on every restore
+        private TimingWheel<String> wheel;
+
+        Shard(WriteAheadLog wal) {
+            this.wal = Objects.requireNonNull(wal, "wal");
+        }
+
+        void clear() {
+            data.clear();
+            offsets.clear();
+            timers.clear();
+            keys.clear();
+        }
     }
 }
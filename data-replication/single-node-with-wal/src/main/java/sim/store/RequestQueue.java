@@ -0,0 +1,295 @@
+package sim.store;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded inbound queue in front of a {@link Node}, drained by a fixed number of worker threads (1 makes it a
+ * single-threaded event loop). Callers block until their request has run, as with a direct call, but a node that
+ * falls behind answers {@link NodeBusyException} instead of piling up work.
+ * <p>
+ * The {@link Policy} decides who is turned away when the queue is full. {@link #exclusive} runs maintenance such as
+ * a restart with no request in progress; requests arriving meanwhile wait in the queue, and overflow is rejected.
+ * Queue operations synchronize on the queue: they are short next to the work they schedule.
+ * <p>
+ * {@link #inline()} runs every request on the caller's thread with no queue at all.
+ */
+public final class RequestQueue implements AutoCloseable {
+    public enum Policy {
+        /** First come, first served; a request arriving at a full queue is rejected. */
+        REJECT_WHEN_FULL,
+        /**
+         * First come, first served until the queue is half full, then newest first (their callers are the ones most
+         * likely still waiting); a full queue sheds its oldest request to admit the new one.
+         */
+        LIFO_UNDER_OVERLOAD,
+        /**
+         * One FIFO per client, served round-robin; a client may hold at most its fair share
+         * ({@code capacity / active clients}) of the queue, so one noisy client cannot starve the others. A full queue
+         * sheds the newest request of the client holding the most to admit one from a client below its share.
+         */
+        FAIR_SHARE;
+
+        public static Policy named(String name) {
+            return switch (name.toLowerCase(Locale.ROOT)) {
+                case "reject" -> REJECT_WHEN_FULL;
+                case "lifo" -> LIFO_UNDER_OVERLOAD;
+                case "fair" -> FAIR_SHARE;
+                default -> throw new IllegalArgumentException("Unknown admission policy " + name + " (expected reject, lifo or fair)");
+            };
+        }
+    }
+
+    private final String nodeId;
+    private final int capacity;
+    private final Policy policy;
+    private final EventLog log;
+    private final Map<String, Deque<Request<?>>> byClient = new LinkedHashMap<>();
+    private final Deque<Request<?>> fifo = new ArrayDeque<>();
+    private final ReadWriteLock running = new ReentrantReadWriteLock();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Counter rejected;
+    private final Counter shed;
+    private final Histogram waitMicros;
+    private final Deque<String> turns = new ArrayDeque<>();
+    private int size;
+    private boolean closed;
+
+    public RequestQueue(String nodeId, int capacity, int workers, Policy policy, EventLog log, Metrics metrics) {
+        if (capacity < 1 || workers < 1) {
+            throw new IllegalArgumentException("capacity and workers must be >= 1");
+        }
+        this.nodeId = Objects.requireNonNull(nodeId, "nodeId");
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.log = Objects.requireNonNull(log, "log");
+        this.rejected = metrics.counter("node." + nodeId + ".rejected");
+        this.shed = metrics.counter("node." + nodeId + ".shed");
+        this.waitMicros = metrics.histogram("node." + nodeId + ".queue-wait-us");
+        metrics.gauge("node." + nodeId + ".queue-depth", this::depth);
+        for (int i = 0; i < workers; i++) {
+            Thread worker = Thread.ofPlatform().daemon().name(nodeId + "-worker-" + i).start(this::drain);
+            this.workers.add(worker);
+        }
+    }
+
+    private RequestQueue() {
+        this.nodeId = null;
+        this.capacity = 0;
+        this.policy = Policy.REJECT_WHEN_FULL;
+        this.log = EventLog.off();
+        this.rejected = null;
+        this.shed = null;
+        this.waitMicros = null;
+    }
+
+    /**
+     * No queue: requests run on the caller's thread, as direct calls to the node always did.
+     */
+    public static RequestQueue inline() {
+        return new RequestQueue();
+    }
+
+    /**
+     * Runs {@code work} on a worker once admitted and returns its result; rethrows what it threw.
+     *
+     * @throws NodeBusyException if the request is rejected on arrival or shed while waiting
+     */
+    public <T> T submit(String clientId, String op, Supplier<T> work) {
+        if (workers.isEmpty()) {
+            return work.get();
+        }
+        Request<T> request = new Request<>(clientId, op, work);
+        synchronized (this) {
+            if (closed) {
+                throw new NodeBusyException("Node " + nodeId + " is shutting down");
+            }
+            admit(request);
+        }
+        try {
+            return request.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs {@code action} on the caller's thread once no request is running, holding off workers until it is done.
+     * Must not be called from inside a request.
+     */
+    public void exclusive(Runnable action) {
+        running.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            running.writeLock().unlock();
+        }
+    }
+
+    public synchronized int depth() {
+        return size;
+    }
+
+    /**
+     * Stops the workers once the queue is empty; later submissions are rejected.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void admit(Request<?> request) {
+        if (policy == Policy.FAIR_SHARE) {
+            Deque<Request<?>> own = byClient.get(request.clientId);
+            int share = Math.max(1, capacity / (byClient.size() + (own == null ? 1 : 0)));
+            if (own != null && own.size() >= share) {
+                reject(request, "fair-share");
+                return;
+            }
+            if (size >= capacity) {
+                shed(largestClient().pollLast());
+            }
+            if (own == null) {
+                own = new ArrayDeque<>();
+                byClient.put(request.clientId, own);
+                turns.addLast(request.clientId);
+            }
+            own.addLast(request);
+        } else {
+            if (size >= capacity) {
+                if (policy == Policy.REJECT_WHEN_FULL) {
+                    reject(request, "queue-full");
+                    return;
+                }
+                shed(fifo.pollFirst());
+            }
+            fifo.addLast(request);
+        }
+        size++;
+        notify();
+    }
+
+    private Deque<Request<?>> largestClient() {
+        Deque<Request<?>> largest = null;
+        for (Deque<Request<?>> queue : byClient.values()) {
+            if (largest == null || queue.size() > largest.size()) {
+                largest = queue;
+            }
+        }
+        return largest;
+    }
+
+    private void shed(Request<?> victim) {
+        size--;
+        if (policy == Policy.FAIR_SHARE && byClient.get(victim.clientId).isEmpty()) {
+            byClient.remove(victim.clientId);
+            turns.remove(victim.clientId);
+        }
+        shed.increment();
+        log.event(nodeId, "request-shed").str("client", victim.clientId).str("op", victim.op).num("depth", size).emit();
+        victim.result.completeExceptionally(new NodeBusyException("Node " + nodeId + " shed " + victim.op + " under overload"));
+    }
+
+    private void reject(Request<?> request, String reason) {
+        rejected.increment();
+        log.event(nodeId, "request-rejected").str("client", request.clientId).str("op", request.op).str("reason", reason)
+                .num("depth", size).emit();
+        throw new NodeBusyException("Node " + nodeId + " busy (" + reason + ", depth=" + size + ")");
+    }
+
+    private void drain() {
+        while (true) {
+            Request<?> request;
+            synchronized (this) {
+                while (size == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (size == 0) {
+                    return;
+                }
+                request = next();
+                size--;
+            }
+            waitMicros.record((System.nanoTime() - request.enqueuedAt) / 1_000);
+            running.readLock().lock();
+            try {
+                request.run();
+            } finally {
+                running.readLock().unlock();
+            }
+        }
+    }
+
+    private Request<?> next() {
+        return switch (policy) {
+            case REJECT_WHEN_FULL -> fifo.pollFirst();
+            case LIFO_UNDER_OVERLOAD -> size * 2 >= capacity ? fifo.pollLast() : fifo.pollFirst();
+            case FAIR_SHARE -> {
+                String client = turns.pollFirst();
+                Deque<Request<?>> queue = byClient.get(client);
+                Request<?> request = queue.pollFirst();
+                if (queue.isEmpty()) {
+                    byClient.remove(client);
+                } else {
+                    turns.addLast(client);
+                }
+                yield request;
+            }
+        };
+    }
+
+    private static final class Request<T> {
+        private final String clientId;
+        private final String op;
+        private final Supplier<T> work;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Request(String clientId, String op, Supplier<T> work) {
+            this.clientId = clientId;
+            this.op = op;
+            this.work = work;
+        }
+
+        // anything the work throws goes to its caller: an escaping Error would kill the worker and leave the caller waiting
+        void run() {
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
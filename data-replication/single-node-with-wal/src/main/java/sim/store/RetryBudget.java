@@ -0,0 +1,61 @@
+package sim.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that caps retries at a fraction of a client's traffic: every request deposits {@code ratio} tokens
+ * (up to {@code capacity}) and every retry takes one. While the node is healthy the bucket stays full; during an
+ * outage retries stop once the bucket is empty instead of multiplying the load.
+ * <p>
+ * Tokens refill with requests rather than with time, so a seed spends its budget the same way on every run.
+ * Kept in thousandths of a token in one atomic long.
+ */
+public final class RetryBudget {
+    private static final long SCALE = 1_000;
+
+    private final long capacity;
+    private final long deposit;
+    private final AtomicLong tokens;
+
+    public RetryBudget(int capacity, double ratio) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0");
+        }
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio must be >= 0");
+        }
+        this.capacity = capacity * SCALE;
+        this.deposit = Math.round(ratio * SCALE);
+        this.tokens = new AtomicLong(this.capacity);
+    }
+
+    /**
+     * A budget that never runs out.
+     */
+    public static RetryBudget unlimited() {
+        return new RetryBudget(Integer.MAX_VALUE, 0);
+    }
+
+    public void deposit() {
+        tokens.accumulateAndGet(deposit, (current, add) -> Math.min(capacity, current + add));
+    }
+
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whole tokens left.
+     */
+    public long available() {
+        return tokens.get() / SCALE;
+    }
+}
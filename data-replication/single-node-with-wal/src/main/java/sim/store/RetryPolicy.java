@@ -0,0 +1,69 @@
+package sim.store;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.random.RandomGenerator;
+
+/**
+ * How a {@link Client} retries: exponential backoff with decorrelated jitter between attempts, a {@link RetryBudget}
+ * that has to grant every retry, and a {@link CircuitBreaker} in front of the link.
+ * <p>
+ * Decorrelated jitter draws each pause uniformly from {@code [base, 3 * previous pause]}, capped at {@code maxBackoff}:
+ * pauses grow roughly exponentially, but clients that failed together do not retry in lockstep.
+ */
+public final class RetryPolicy {
+    private final long baseMillis;
+    private final long maxMillis;
+    private final RetryBudget budget;
+    private final CircuitBreaker breaker;
+    private final RandomGenerator random;
+
+    public RetryPolicy(Duration baseBackoff, Duration maxBackoff, RetryBudget budget, CircuitBreaker breaker,
+                       RandomGenerator random) {
+        if (maxBackoff.compareTo(baseBackoff) < 0 || baseBackoff.isNegative()) {
+            throw new IllegalArgumentException("backoff must satisfy 0 <= base <= max");
+        }
+        this.baseMillis = baseBackoff.toMillis();
+        this.maxMillis = maxBackoff.toMillis();
+        this.budget = Objects.requireNonNull(budget, "budget");
+        this.breaker = Objects.requireNonNull(breaker, "breaker");
+        this.random = Objects.requireNonNull(random, "random");
+    }
+
+    /**
+     * Retries at once, without budget or breaker; draws nothing.
+     */
+    public static RetryPolicy immediate() {
+        return new RetryPolicy(Duration.ZERO, Duration.ZERO, RetryBudget.unlimited(), CircuitBreaker.disabled(), () -> 0L);
+    }
+
+    /**
+     * Pause before the next retry, given the previous pause (0 before the first retry).
+     */
+    long nextBackoffMillis(long previousMillis) {
+        if (maxMillis == 0) {
+            return 0;
+        }
+        long upper = Math.min(maxMillis, Math.max(baseMillis, previousMillis * 3));
+        return upper <= baseMillis ? baseMillis : random.nextLong(baseMillis, upper + 1);
+    }
+
+    void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    RetryBudget budget() {
+        return budget;
+    }
+
+    CircuitBreaker breaker() {
+        return breaker;
+    }
+}
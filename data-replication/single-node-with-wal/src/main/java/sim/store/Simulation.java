@@ -1,8 +1,11 @@
 package sim.store;
 
+import jdk.jfr.Recording;
+
 import java.nio.file.Path;
 import java.time.Duration;
-import java.util.Random;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Small driver to demonstrate M1: single node with WAL, crashable, observable.
@@ -12,15 +15,42 @@ public final class Simulation {
         long seed = args.length > 0 ? Long.parseLong(args[0]) : 42L;
         double crashProbability = args.length > 1 ? Double.parseDouble(args[1]) : 0.25;
         double linkFailureProbability = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        String workload = args.length > 3 ? args[3] : null;
+
+        try (Recording recording = FlightEvents.startRecording();
+             EventLog log = EventLog.fromSystemProperties(System.out)) {
+            run(seed, crashProbability, linkFailureProbability, workload, log);
+        }
+    }
+
+    private static void run(long seed, double crashProbability, double linkFailureProbability, String workload, EventLog log) {
+        RandomStreams streams = new RandomStreams(seed);
+        Metrics metrics = new Metrics();
 
-        EventLog log = new EventLog(System.out);
-        Random random = new Random(seed);
+        CrashInjector crashInjector = new CrashInjector("node-1", log, streams.stream("node-1"), crashProbability);
+        List<WriteAheadLog> wals = WriteAheadLog.sharded("node-1", Path.of("wal"), Integer.getInteger("sim.node.shards", 1), log, metrics);
+        try (RequestQueue queue = requestQueue(log, metrics)) {
+            Node node = new Node("node-1", log, crashInjector, wals,
+                    Node.Options.DEFAULTS.withMetrics(metrics).withQueue(queue).withRestore(restoreMode()));
+            run(seed, crashProbability, linkFailureProbability, workload, node, streams, log, metrics);
+        }
+    }
+
+    private static void run(long seed, double crashProbability, double linkFailureProbability, String workload, Node node,
+                            RandomStreams streams, EventLog log, Metrics metrics) {
+        Link loopback = new Link("loopback", LatencyModel.fromSystemProperties(LatencyModel.uniform(Duration.ofMillis(5), Duration.ofMillis(50))),
+                FaultModel.fromSystemProperties(FaultModel.drop(linkFailureProbability)), streams.stream("loopback"), log, metrics);
+        Client client = new Client("client-1", node, loopback, log, Client.Options.DEFAULTS.withOnNodeCrash(node::restart)
+                .withMetrics(metrics).withRetryPolicy(retryPolicy(streams, log, metrics)));
 
-        CrashInjector crashInjector = new CrashInjector("node-1", log, random, crashProbability);
-        WriteAheadLog wal = new WriteAheadLog("node-1", Path.of("wal/node-1.log"), log);
-        Node node = new Node("node-1", log, crashInjector, wal);
-        Link loopback = new Link("loopback", Duration.ofMillis(5), Duration.ofMillis(50), random, log, linkFailureProbability);
-        Client client = new Client("client-1", node, loopback, log, 3, node::restart);
+        if (workload != null) {
+            runWorkload(WorkloadProfile.named(workload), seed, client, log);
+            if (Boolean.getBoolean("sim.node.compact")) {
+                node.compact();
+            }
+            metrics.report(log);
+            return;
+        }
 
         for (int i = 0; i < 8; i++) {
             String key = "k" + i;
@@ -30,6 +60,10 @@ public final class Simulation {
                 client.get(key);
             } catch (LinkFailureException e) {
                 log.info("simulation", "request-failed", MapBuilder.of("iteration", Integer.toString(i), "reason", "link-failure"));
+            } catch (CircuitOpenException e) {
+                log.info("simulation", "request-failed", MapBuilder.of("iteration", Integer.toString(i), "reason", "circuit-open"));
+            } catch (NodeBusyException e) {
+                log.info("simulation", "request-failed", MapBuilder.of("iteration", Integer.toString(i), "reason", "node-busy"));
             } catch (NodeCrashedException e) {
                 log.info("simulation", "node-down", MapBuilder.of("iteration", Integer.toString(i), "reason", e.getMessage()));
                 node.restart();
@@ -37,5 +71,50 @@ public final class Simulation {
         }
 
         log.info("simulation", "finished", MapBuilder.of("seed", Long.toString(seed), "crashProbability", Double.toString(crashProbability)));
+        metrics.report(log);
+    }
+
+    /**
+     * 10-200 ms decorrelated backoff, retries capped at 20% of requests (bursts of up to 10), and a breaker that opens
+     * for 500 ms after 5 consecutive failures.
+     */
+    static RetryPolicy retryPolicy(RandomStreams streams, EventLog log, Metrics metrics) {
+        CircuitBreaker breaker = new CircuitBreaker("breaker-node-1", 5, Duration.ofMillis(500), log, metrics);
+        return new RetryPolicy(Duration.ofMillis(10), Duration.ofMillis(200), new RetryBudget(10, 0.2), breaker,
+                streams.stream("client-1"));
+    }
+
+    /**
+     * With {@code -Dsim.node.admission=reject|lifo|fair}, a 64-request queue drained by one worker thread (an event loop);
+     * otherwise requests run on the caller's thread as before. {@code -Dsim.node.queue} and {@code -Dsim.node.workers}
+     * override the size.
+     */
+    static RequestQueue requestQueue(EventLog log, Metrics metrics) {
+        String policy = System.getProperty("sim.node.admission", "");
+        if (policy.isBlank()) {
+            return RequestQueue.inline();
+        }
+        return new RequestQueue("node-1", Integer.getInteger("sim.node.queue", 64), Integer.getInteger("sim.node.workers", 1),
+                RequestQueue.Policy.named(policy), log, metrics);
+    }
+
+    /**
+     * {@code -Dsim.node.restore=eager|lazy}, eager by default.
+     */
+    static Node.Restore restoreMode() {
+        return Node.Restore.valueOf(System.getProperty("sim.node.restore", "eager").toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * {@code -Dsim.workload.ttlMs} gives every write of the workload that time to live; {@code -Dsim.node.compact=true}
+     * compacts the WAL after the run.
+     */
+    private static void runWorkload(WorkloadProfile profile, long seed, Client client, EventLog log) {
+        Long ttlMillis = Long.getLong("sim.workload.ttlMs");
+        Workload workload = new Workload(profile, 50, seed, log, ttlMillis == null ? null : Duration.ofMillis(ttlMillis));
+        workload.load(client);
+        Workload.Result result = workload.run(client, 100);
+        log.info("simulation", "finished", MapBuilder.of("seed", Long.toString(seed), "workload", result.profile(),
+                "ops", Long.toString(result.operations()), "failures", Long.toString(result.failures())));
     }
 }
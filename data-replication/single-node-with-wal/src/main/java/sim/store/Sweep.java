@@ -0,0 +1,265 @@
+package sim.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Runs the {@link Simulation} scenario for a range of seeds in parallel and checks that no acknowledged write is lost
+ * across {@link Node#restart}. Every seed gets its own {@link RandomStreams}, WAL directory and (silent) {@link EventLog};
+ * links draw the same delays as a normal run but do not sleep them. Only failing seeds are reported, each with a
+ * command that replays it with full logging:
+ * <pre>
+ *   java -cp target/classes sim.store.Sweep &lt;firstSeed&gt; &lt;count&gt; [crashProbability] [linkFailureProbability] [workload]
+ * </pre>
+ * With {@code count} 1 the run is logged like a {@link Simulation} run. {@code -Dsim.sweep.parallelism} defaults to
+ * the number of cores; {@code -Dsim.node.shards} runs the node with that many WAL shards and
+ * {@code -Dsim.node.restore=lazy} restarts it lazily.
+ */
+public final class Sweep {
+    record Violation(long seed, String reason) {
+    }
+
+    private final double crashProbability;
+    private final double linkFailureProbability;
+    private final String workload;
+    private final int shards;
+    private final Node.Restore restore;
+    // applied to a seed's WAL directory before every restart; lets tests lose writes the WAL acknowledged
+    private final Consumer<Path> walFault;
+
+    Sweep(double crashProbability, double linkFailureProbability, String workload) {
+        this(crashProbability, linkFailureProbability, workload, 1, Node.Restore.EAGER);
+    }
+
+    Sweep(double crashProbability, double linkFailureProbability, String workload, int shards, Node.Restore restore) {
+        this(crashProbability, linkFailureProbability, workload, shards, restore, dir -> {});
+    }
+
+    private Sweep(double crashProbability, double linkFailureProbability, String workload, int shards, Node.Restore restore,
+                  Consumer<Path> walFault) {
+        this.crashProbability = crashProbability;
+        this.linkFailureProbability = linkFailureProbability;
+        this.workload = workload;
+        this.shards = shards;
+        this.restore = restore;
+        this.walFault = Objects.requireNonNull(walFault, "walFault");
+    }
+
+    /**
+     * The sweep for {@code main}'s arguments after the seed range ({@code [crashProbability] [linkFailureProbability]
+     * [workload]}) and the {@code sim.node.*} properties.
+     */
+    static Sweep fromArgs(List<String> args) {
+        double crashProbability = args.size() > 0 ? Double.parseDouble(args.get(0)) : 0.25;
+        double linkFailureProbability = args.size() > 1 ? Double.parseDouble(args.get(1)) : 0.1;
+        String workload = args.size() > 2 ? args.get(2) : null;
+        return new Sweep(crashProbability, linkFailureProbability, workload, Integer.getInteger("sim.node.shards", 1),
+                Simulation.restoreMode());
+    }
+
+    /**
+     * This sweep with {@code walFault} run on each seed's WAL directory before every restart of its node.
+     */
+    Sweep withWalFault(Consumer<Path> walFault) {
+        return new Sweep(crashProbability, linkFailureProbability, workload, shards, restore, walFault);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: Sweep <firstSeed> <count> [crashProbability=0.25] [linkFailureProbability=0.1] [workload]");
+            System.exit(2);
+        }
+        long firstSeed = Long.parseLong(args[0]);
+        int count = Integer.parseInt(args[1]);
+        int parallelism = Integer.getInteger("sim.sweep.parallelism", Runtime.getRuntime().availableProcessors());
+
+        Sweep sweep = fromArgs(Arrays.asList(args).subList(2, args.length));
+        List<Violation> violations;
+        try (EventLog log = EventLog.fromSystemProperties(System.out)) {
+            if (count == 1) {
+                Violation violation = sweep.runSeed(firstSeed, log);
+                violations = violation == null ? List.of() : List.of(violation);
+                violations.forEach(v -> sweep.report(v, log));
+            } else {
+                long start = System.nanoTime();
+                violations = sweep.run(firstSeed, count, parallelism);
+                violations.forEach(v -> sweep.report(v, log));
+                log.info("sweep", "finished", MapBuilder.of("seeds", Integer.toString(count), "violations",
+                        Integer.toString(violations.size()), "parallelism", Integer.toString(parallelism),
+                        "elapsedMs", Long.toString((System.nanoTime() - start) / 1_000_000)));
+            }
+        }
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Runs seeds {@code firstSeed .. firstSeed + count - 1} on a dedicated pool and returns the violations in seed order.
+     */
+    List<Violation> run(long firstSeed, int count, int parallelism) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> LongStream.range(firstSeed, firstSeed + count)
+                            .parallel()
+                            .mapToObj(seed -> runSeed(seed, EventLog.off()))
+                            .filter(Objects::nonNull)
+                            .sorted(Comparator.comparingLong(Violation::seed))
+                            .toList())
+                    .get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sweep failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs one seed in a fresh WAL directory; returns the first violated invariant, or null.
+     */
+    Violation runSeed(long seed, EventLog log) {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sweep-" + seed + "-");
+            return new Run(seed, dir, log).execute();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create WAL directory for seed " + seed, e);
+        } catch (RuntimeException e) {
+            return new Violation(seed, "unexpected " + e);
+        } finally {
+            deleteQuietly(dir);
+        }
+    }
+
+    private void report(Violation violation, EventLog log) {
+        log.info("sweep", "violation", MapBuilder.of("seed", Long.toString(violation.seed()), "reason", violation.reason(),
+                "repro", repro(violation.seed())));
+    }
+
+    String repro(long seed) {
+        return "java " + (shards == 1 ? "" : "-Dsim.node.shards=" + shards + " ")
+                + (restore == Node.Restore.EAGER ? "" : "-Dsim.node.restore=lazy ") + "-cp target/classes sim.store.Sweep "
+                + seed + " 1 " + crashProbability + " " + linkFailureProbability + (workload == null ? "" : " " + workload);
+    }
+
+    /**
+     * One seeded scenario: the same wiring and operations as {@link Simulation}, plus a model of what the client was
+     * told. After every restart the node must hold, for each key, the last acknowledged value or the value of a put
+     * started after it (a failed or in-flight put may already be in the WAL).
+     */
+    private final class Run {
+        private final long seed;
+        private final Path walDir;
+        private final EventLog log;
+        private final Node node;
+        private final Client client;
+        private final Map<String, String> acknowledged = new HashMap<>();
+        // values of puts started after the last acknowledgement of the key (in flight or failed)
+        private final Map<String, Set<String>> possible = new HashMap<>();
+        private String violation;
+
+        Run(long seed, Path walDir, EventLog log) {
+            this.seed = seed;
+            this.walDir = walDir;
+            this.log = log;
+            RandomStreams streams = new RandomStreams(seed);
+            CrashInjector crashInjector = new CrashInjector("node-1", log, streams.stream("node-1"), crashProbability);
+            List<WriteAheadLog> wals = WriteAheadLog.sharded("node-1", walDir, shards, log, new Metrics());
+            this.node = new Node("node-1", log, crashInjector, wals, Node.Options.DEFAULTS.withRestore(restore));
+            Link loopback = new Link("loopback", Duration.ofMillis(5), Duration.ofMillis(50), streams.stream("loopback"), log,
+                    linkFailureProbability).withoutSleeping();
+            Client.WriteObserver tracker = new Client.WriteObserver() {
+                @Override
+                public void started(String key, String value) {
+                    possible.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+                }
+
+                @Override
+                public void completed(String key, String value, boolean ack) {
+                    if (ack) {
+                        acknowledged.put(key, value);
+                        possible.remove(key);
+                    }
+                }
+            };
+            // immediate retries: the breaker's wall-clock cooldown would make the outcome depend on timing
+            this.client = new Client("client-1", node, loopback, log,
+                    Client.Options.DEFAULTS.withOnNodeCrash(this::restart).withWriteObserver(tracker));
+        }
+
+        Violation execute() {
+            if (workload != null) {
+                Workload driver = new Workload(WorkloadProfile.named(workload), 50, seed, log);
+                driver.load(client);
+                driver.run(client, 100);
+            } else {
+                for (int i = 0; i < 8 && violation == null; i++) {
+                    try {
+                        client.put("k" + i, "v" + i);
+                        client.get("k" + i);
+                    } catch (LinkFailureException e) {
+                        // counted as a failed put by the observer
+                    } catch (NodeCrashedException e) {
+                        restart();
+                    }
+                }
+            }
+            if (violation == null) {
+                node.crashAndLoseState("sweep-check");
+                restart();
+            }
+            node.awaitWarm();
+            return violation == null ? null : new Violation(seed, violation);
+        }
+
+        private void restart() {
+            walFault.accept(walDir);
+            node.restart();
+            if (violation != null) {
+                return;
+            }
+            Map<String, String> state = node.contents();
+            for (Map.Entry<String, String> entry : acknowledged.entrySet()) {
+                String restored = state.get(entry.getKey());
+                Set<String> later = possible.get(entry.getKey());
+                if (!entry.getValue().equals(restored) && (later == null || !later.contains(restored))) {
+                    violation = "acknowledged write lost after restart: key=" + entry.getKey() + " acked="
+                            + entry.getValue() + " restored=" + restored;
+                    log.info("sweep", "violation", MapBuilder.of("seed", Long.toString(seed), "key", entry.getKey(),
+                            "acked", entry.getValue(), "restored", String.valueOf(restored)));
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> all = new ArrayList<>(paths.toList());
+            all.sort(Comparator.reverseOrder());
+            for (Path path : all) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // best effort: a leftover temp directory does not affect other seeds
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package sim.store;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Operation mix, key distribution and value sizes for a {@link Workload}. The built-in profiles mirror YCSB core
+ * workloads A-F; use the {@code with*} methods to tweak skew, distribution or value sizes.
+ */
+public final class WorkloadProfile {
+    public enum Distribution { UNIFORM, ZIPFIAN, SCRAMBLED_ZIPFIAN, LATEST, HOTSPOT }
+
+    public enum ValueSizes { CONSTANT, UNIFORM, ZIPFIAN }
+
+    private final String name;
+    private final double readProportion;
+    private final double updateProportion;
+    private final double insertProportion;
+    private final double scanProportion;
+    private final double readModifyWriteProportion;
+    private final Distribution distribution;
+    private final double skew;
+    private final double hotSetFraction;
+    private final double hotOpFraction;
+    private final ValueSizes valueSizes;
+    private final int minValueSize;
+    private final int maxValueSize;
+    private final int maxScanLength;
+
+    public WorkloadProfile(String name, double readProportion, double updateProportion, double insertProportion,
+                           double scanProportion, double readModifyWriteProportion, Distribution distribution,
+                           double skew, double hotSetFraction, double hotOpFraction,
+                           ValueSizes valueSizes, int minValueSize, int maxValueSize, int maxScanLength) {
+        double total = readProportion + updateProportion + insertProportion + scanProportion + readModifyWriteProportion;
+        if (Math.abs(total - 1.0) > 1e-9) {
+            throw new IllegalArgumentException("operation proportions must add up to 1 (got " + total + ")");
+        }
+        if (maxScanLength < 1) {
+            throw new IllegalArgumentException("maxScanLength must be >= 1");
+        }
+        this.name = name;
+        this.readProportion = readProportion;
+        this.updateProportion = updateProportion;
+        this.insertProportion = insertProportion;
+        this.scanProportion = scanProportion;
+        this.readModifyWriteProportion = readModifyWriteProportion;
+        this.distribution = distribution;
+        this.skew = skew;
+        this.hotSetFraction = hotSetFraction;
+        this.hotOpFraction = hotOpFraction;
+        this.valueSizes = valueSizes;
+        this.minValueSize = minValueSize;
+        this.maxValueSize = maxValueSize;
+        this.maxScanLength = maxScanLength;
+    }
+
+    /** Update heavy: 50% reads, 50% updates. */
+    public static WorkloadProfile a() {
+        return mix("a", 0.5, 0.5, 0, 0, 0, Distribution.SCRAMBLED_ZIPFIAN);
+    }
+
+    /** Read mostly: 95% reads, 5% updates. */
+    public static WorkloadProfile b() {
+        return mix("b", 0.95, 0.05, 0, 0, 0, Distribution.SCRAMBLED_ZIPFIAN);
+    }
+
+    /** Read only. */
+    public static WorkloadProfile c() {
+        return mix("c", 1.0, 0, 0, 0, 0, Distribution.SCRAMBLED_ZIPFIAN);
+    }
+
+    /** Read latest: 95% reads skewed to recent inserts, 5% inserts. */
+    public static WorkloadProfile d() {
+        return mix("d", 0.95, 0, 0.05, 0, 0, Distribution.LATEST);
+    }
+
+    /** Short ranges: 95% scans, 5% inserts. */
+    public static WorkloadProfile e() {
+        return mix("e", 0, 0, 0.05, 0.95, 0, Distribution.ZIPFIAN);
+    }
+
+    /** Read-modify-write: 50% reads, 50% read-modify-writes. */
+    public static WorkloadProfile f() {
+        return mix("f", 0.5, 0, 0, 0, 0.5, Distribution.SCRAMBLED_ZIPFIAN);
+    }
+
+    public static WorkloadProfile named(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "a" -> a();
+            case "b" -> b();
+            case "c" -> c();
+            case "d" -> d();
+            case "e" -> e();
+            case "f" -> f();
+            default -> throw new IllegalArgumentException("Unknown workload " + name + " (expected a-f)");
+        };
+    }
+
+    private static WorkloadProfile mix(String name, double read, double update, double insert, double scan, double rmw,
+                                       Distribution distribution) {
+        return new WorkloadProfile(name, read, update, insert, scan, rmw, distribution,
+                0.99, 0.2, 0.8, ValueSizes.UNIFORM, 8, 64, 20);
+    }
+
+    public WorkloadProfile withDistribution(Distribution distribution) {
+        return new WorkloadProfile(name, readProportion, updateProportion, insertProportion, scanProportion,
+                readModifyWriteProportion, distribution, skew, hotSetFraction, hotOpFraction,
+                valueSizes, minValueSize, maxValueSize, maxScanLength);
+    }
+
+    public WorkloadProfile withSkew(double skew) {
+        return new WorkloadProfile(name, readProportion, updateProportion, insertProportion, scanProportion,
+                readModifyWriteProportion, distribution, skew, hotSetFraction, hotOpFraction,
+                valueSizes, minValueSize, maxValueSize, maxScanLength);
+    }
+
+    public WorkloadProfile withHotspot(double hotSetFraction, double hotOpFraction) {
+        return new WorkloadProfile(name, readProportion, updateProportion, insertProportion, scanProportion,
+                readModifyWriteProportion, Distribution.HOTSPOT, skew, hotSetFraction, hotOpFraction,
+                valueSizes, minValueSize, maxValueSize, maxScanLength);
+    }
+
+    public WorkloadProfile withValueSizes(ValueSizes valueSizes, int minValueSize, int maxValueSize) {
+        return new WorkloadProfile(name, readProportion, updateProportion, insertProportion, scanProportion,
+                readModifyWriteProportion, distribution, skew, hotSetFraction, hotOpFraction,
+                valueSizes, minValueSize, maxValueSize, maxScanLength);
+    }
+
+    public KeyDistribution keyDistribution(Random random) {
+        return switch (distribution) {
+            case UNIFORM -> KeyDistribution.uniform(random);
+            case ZIPFIAN -> KeyDistribution.zipfian(skew, random);
+            case SCRAMBLED_ZIPFIAN -> KeyDistribution.scrambledZipfian(skew, random);
+            case LATEST -> KeyDistribution.latest(skew, random);
+            case HOTSPOT -> KeyDistribution.hotspot(hotSetFraction, hotOpFraction, random);
+        };
+    }
+
+    public ValueSizeDistribution valueSizeDistribution(Random random) {
+        return switch (valueSizes) {
+            case CONSTANT -> ValueSizeDistribution.constant(maxValueSize);
+            case UNIFORM -> ValueSizeDistribution.uniform(minValueSize, maxValueSize, random);
+            case ZIPFIAN -> ValueSizeDistribution.zipfian(minValueSize, maxValueSize, skew, random);
+        };
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public double readProportion() {
+        return readProportion;
+    }
+
+    public double updateProportion() {
+        return updateProportion;
+    }
+
+    public double insertProportion() {
+        return insertProportion;
+    }
+
+    public double scanProportion() {
+        return scanProportion;
+    }
+
+    public double readModifyWriteProportion() {
+        return readModifyWriteProportion;
+    }
+
+    public Distribution distribution() {
+        return distribution;
+    }
+
+    public int maxScanLength() {
+        return maxScanLength;
+    }
+}
@@ -1,20 +1,36 @@
 package sim.store;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Minimal append-only write-ahead log for key/value puts.
+ * <p>
+ * Besides a full {@link #replay}, the log can be {@link #index}ed: a scan that decodes only keys and records the byte
+ * offset of each key's latest record, so values can be {@link #readValue read} one at a time later. An index can be
+ * saved next to the log ({@code <file>.idx}) and loaded on the next start, after which only the records appended since
+ * need scanning.
+ * <p>
+ * A record may carry an expiry (epoch milliseconds) after its value; records without one are read as never expiring.
+ * {@link #compact} rewrites the log with one record per live key and deletes the saved index, whose offsets it
+ * invalidates.
  */
 public final class WriteAheadLog {
     private static final Base64.Encoder ENC = Base64.getUrlEncoder().withoutPadding();
@@ -22,12 +38,32 @@ public final class WriteAheadLog {
 
     private final String nodeId;
     private final Path file;
+    private final Path indexFile;
     private final EventLog log;
+    private final Counter appends;
+    private final Counter bytes;
+    private final Histogram fsyncMicros;
+    private final Histogram replayMicros;
+    private final Histogram indexMicros;
+    private final Counter compactions;
+    // bumped by every compaction; an index copied before one must not be saved after it. Guarded by the instance.
+    private long generation;
 
     public WriteAheadLog(String nodeId, Path file, EventLog log) {
+        this(nodeId, file, log, new Metrics());
+    }
+
+    public WriteAheadLog(String nodeId, Path file, EventLog log, Metrics metrics) {
         this.nodeId = nodeId;
         this.file = file;
+        this.indexFile = file.resolveSibling(file.getFileName() + ".idx");
         this.log = log;
+        this.appends = metrics.counter("wal." + nodeId + ".appends");
+        this.bytes = metrics.counter("wal." + nodeId + ".bytes");
+        this.fsyncMicros = metrics.histogram("wal." + nodeId + ".fsync-us");
+        this.replayMicros = metrics.histogram("wal." + nodeId + ".replay-us");
+        this.indexMicros = metrics.histogram("wal." + nodeId + ".index-us");
+        this.compactions = metrics.counter("wal." + nodeId + ".compactions");
         try {
             Files.createDirectories(file.getParent());
             if (!Files.exists(file)) {
@@ -38,29 +74,87 @@ public final class WriteAheadLog {
         }
     }
 
-    public synchronized void appendPut(String key, String value) {
-        String line = "PUT " + encode(key) + " " + encode(value) + "\n";
+    /**
+     * WALs for a node split into {@code shards} shards: {@code <dir>/<nodeId>.log} when there is one, otherwise
+     * {@code <dir>/<nodeId>-shard-<i>.log}, each reporting metrics and events as {@code <nodeId>-shard-<i>}.
+     */
+    public static List<WriteAheadLog> sharded(String nodeId, Path dir, int shards, EventLog log, Metrics metrics) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be >= 1");
+        }
+        if (shards == 1) {
+            return List.of(new WriteAheadLog(nodeId, dir.resolve(nodeId + ".log"), log, metrics));
+        }
+        List<WriteAheadLog> wals = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            String shardId = nodeId + "-shard-" + i;
+            wals.add(new WriteAheadLog(shardId, dir.resolve(shardId + ".log"), log, metrics));
+        }
+        return List.copyOf(wals);
+    }
+
+    /**
+     * Appends and fsyncs one record; returns its byte offset in the log.
+     */
+    public long appendPut(String key, String value) {
+        return appendPut(key, value, 0);
+    }
+
+    /**
+     * As {@link #appendPut(String, String)}, for a value that expires at {@code expiresAtMillis} (0 for never).
+     */
+    public synchronized long appendPut(String key, String value, long expiresAtMillis) {
+        var event = new FlightEvents.WalAppend();
+        event.begin();
+        String line = record(key, value, expiresAtMillis);
         ByteBuffer buffer = StandardCharsets.UTF_8.encode(line);
+        int size = buffer.remaining();
+        long offset;
         try (FileChannel channel = FileChannel.open(
                 file,
                 StandardOpenOption.CREATE,
                 StandardOpenOption.WRITE,
                 StandardOpenOption.APPEND)) {
+            offset = channel.size();
             while (buffer.hasRemaining()) {
                 channel.write(buffer);
             }
+            var force = new FlightEvents.WalForce();
+            force.begin();
+            long fsyncStart = System.nanoTime();
             channel.force(true);
+            fsyncMicros.record((System.nanoTime() - fsyncStart) / 1_000);
+            force.node = nodeId;
+            force.bytes = size;
+            force.commit();
         } catch (IOException e) {
             throw new UncheckedIOException("Failed to append to WAL " + file, e);
         }
-        log.info(nodeId, "wal-append", MapBuilder.of("key", key, "value", value));
+        appends.increment();
+        bytes.add(size);
+        event.node = nodeId;
+        event.keyLength = key.length();
+        event.recordBytes = size;
+        event.commit();
+        log.event(nodeId, "wal-append").str("key", key).str("value", value).emit();
+        return offset;
+    }
+
+    public Map<String, String> replay() {
+        return replay(new HashMap<>());
     }
 
-    public synchronized Map<String, String> replay() {
+    /**
+     * Latest value of every key, filling {@code expiries} with the expiry of each key whose latest record has one.
+     */
+    public synchronized Map<String, String> replay(Map<String, Long> expiries) {
         Map<String, String> data = new LinkedHashMap<>();
         if (!Files.exists(file)) {
             return data;
         }
+        var event = new FlightEvents.WalReplay();
+        event.begin();
+        long start = System.nanoTime();
         int lines = 0;
         try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
             String line;
@@ -69,22 +163,290 @@ public final class WriteAheadLog {
                 if (line.isBlank()) {
                     continue;
                 }
-                String[] parts = line.split(" ", 3);
-                if (parts.length != 3 || !"PUT".equals(parts[0])) {
+                String[] parts = line.split(" ");
+                if (parts.length != 3 && parts.length != 4 || !"PUT".equals(parts[0])) {
                     log.info(nodeId, "wal-skip", MapBuilder.of("line", Integer.toString(lines), "reason", "bad-format"));
                     continue;
                 }
                 String key = decode(parts[1]);
                 String value = decode(parts[2]);
                 data.put(key, value);
+                if (parts.length == 4) {
+                    expiries.put(key, Long.parseLong(parts[3]));
+                } else {
+                    expiries.remove(key);
+                }
             }
         } catch (IOException e) {
             throw new UncheckedIOException("Failed to replay WAL " + file, e);
         }
+        replayMicros.record((System.nanoTime() - start) / 1_000);
+        event.node = nodeId;
+        event.lines = lines;
+        event.entries = data.size();
+        event.commit();
         log.info(nodeId, "wal-replay", MapBuilder.of("entries", Integer.toString(data.size()), "lines", Integer.toString(lines)));
         return data;
     }
 
+    /**
+     * Fills the empty {@code offsets} with the offset of each key's latest record: from the saved index, if there is one
+     * that fits this log, then by scanning the records after it. Returns how many bytes the saved index covered.
+     */
+    public long index(Map<String, Long> offsets) {
+        return index(offsets, new HashMap<>());
+    }
+
+    /**
+     * As {@link #index(Map)}, also filling the empty {@code expiries} with the expiry of each key whose latest record
+     * has one.
+     */
+    public synchronized long index(Map<String, Long> offsets, Map<String, Long> expiries) {
+        var event = new FlightEvents.WalReplay();
+        event.begin();
+        long start = System.nanoTime();
+        long indexed = loadIndex(offsets, expiries);
+        int lines = scan(indexed, false, (offset, key, value, expiresAtMillis) -> {
+            offsets.put(key, offset);
+            if (expiresAtMillis > 0) {
+                expiries.put(key, expiresAtMillis);
+            } else {
+                expiries.remove(key);
+            }
+            return true;
+        });
+        indexMicros.record((System.nanoTime() - start) / 1_000);
+        event.node = nodeId;
+        event.lines = lines;
+        event.entries = offsets.size();
+        event.commit();
+        log.info(nodeId, "wal-index", MapBuilder.of("entries", Integer.toString(offsets.size()), "indexedBytes",
+                Long.toString(indexed), "scannedLines", Integer.toString(lines)));
+        return indexed;
+    }
+
+    /**
+     * Receives the records of a {@link #scan}; returns false to stop it.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        boolean visit(long offset, String key, String value);
+    }
+
+    /**
+     * Visits every complete record in log order, with its offset, without blocking appends; records appended during
+     * the scan may or may not be visited.
+     */
+    public void scan(RecordVisitor visitor) {
+        scan(0, true, (offset, key, value, expiresAtMillis) -> visitor.visit(offset, key, value));
+    }
+
+    // a RecordVisitor that also sees each record's expiry, 0 for none
+    @FunctionalInterface
+    private interface ExpiringVisitor {
+        boolean visit(long offset, String key, String value, long expiresAtMillis);
+    }
+
+    // values are only decoded when asked for (null otherwise); returns the number of lines read
+    private int scan(long from, boolean values, ExpiringVisitor visitor) {
+        int lines = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            channel.position(from);
+            // records are ASCII, so a line's length in chars is its length in bytes
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.US_ASCII));
+            long offset = from;
+            String line;
+            // a last line without its newline is a torn append, not a record
+            while ((line = reader.readLine()) != null && offset + line.length() < length) {
+                lines++;
+                int keyEnd = line.indexOf(' ', 4);
+                if (line.startsWith("PUT ") && keyEnd > 4) {
+                    int valueEnd = line.indexOf(' ', keyEnd + 1);
+                    String value = values ? decode(line.substring(keyEnd + 1, valueEnd < 0 ? line.length() : valueEnd)) : null;
+                    long expiresAtMillis = valueEnd < 0 ? 0 : Long.parseLong(line.substring(valueEnd + 1));
+                    if (!visitor.visit(offset, decode(line.substring(4, keyEnd)), value, expiresAtMillis)) {
+                        break;
+                    }
+                } else if (!line.isBlank()) {
+                    log.info(nodeId, "wal-skip", MapBuilder.of("offset", Long.toString(offset), "reason", "bad-format"));
+                }
+                offset += line.length() + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan WAL " + file, e);
+        }
+        return lines;
+    }
+
+    public synchronized long length() {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to stat WAL " + file, e);
+        }
+    }
+
+    /**
+     * Value of the record at {@code offset}, which must be a record for {@code key} (as found by {@link #index}).
+     * Reads only that record and does not block appends.
+     */
+    public String readValue(long offset, String key) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            int end;
+            while ((end = lineEnd(buffer)) < 0) {
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    end = buffer.position();
+                    break;
+                }
+            }
+            String line = new String(buffer.array(), 0, end, StandardCharsets.US_ASCII);
+            String prefix = "PUT " + encode(key) + " ";
+            if (!line.startsWith(prefix)) {
+                throw new IllegalStateException("WAL " + file + " has no record for " + key + " at offset " + offset);
+            }
+            int valueEnd = line.indexOf(' ', prefix.length());
+            return decode(line.substring(prefix.length(), valueEnd < 0 ? line.length() : valueEnd));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read WAL " + file + " at offset " + offset, e);
+        }
+    }
+
+    /**
+     * Saves {@code offsets}, which must describe the first {@code length} bytes of the log, for the next {@link #index}.
+     * The index is only a shortcut: it is replaced atomically and ignored if it no longer fits the log.
+     */
+    public void saveIndex(Map<String, Long> offsets, long length) {
+        saveIndex(offsets, Map.of(), length, generation());
+    }
+
+    /**
+     * As {@link #saveIndex(Map, long)} with the expiries of the keys that have one, unless the log has been compacted
+     * since {@code generation} (see {@link #generation()}) was read along with {@code offsets}.
+     */
+    public void saveIndex(Map<String, Long> offsets, Map<String, Long> expiries, long length, long generation) {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.US_ASCII)) {
+            writer.write("INDEX " + length + " " + offsets.size() + "\n");
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                Long expiresAtMillis = expiries.get(entry.getKey());
+                writer.write(encode(entry.getKey()) + " " + entry.getValue() + (expiresAtMillis == null ? "" : " " + expiresAtMillis) + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write WAL index " + indexFile, e);
+        }
+        synchronized (this) {
+            if (generation != this.generation) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to delete WAL index " + tmp, e);
+                }
+                log.info(nodeId, "wal-index-ignored", MapBuilder.of("reason", "compacted"));
+                return;
+            }
+            try {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to replace WAL index " + indexFile, e);
+            }
+        }
+        log.info(nodeId, "wal-index-saved", MapBuilder.of("entries", Integer.toString(offsets.size()), "length", Long.toString(length)));
+    }
+
+    /**
+     * Number of compactions so far; offsets read under the same lock as it stay valid until it changes.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Replaces the log with one record per key of {@code values}, carrying its expiry from {@code expiries} if any, and
+     * deletes the saved index. The new log is fsynced before it atomically replaces the old one, so a crash leaves one
+     * or the other. Returns the offset of each key's record in the new log.
+     */
+    public synchronized Map<String, Long> compact(Map<String, String> values, Map<String, Long> expiries) {
+        long before = length();
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        Map<String, Long> offsets = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = 0;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode(record(entry.getKey(), entry.getValue(),
+                        expiries.getOrDefault(entry.getKey(), 0L)));
+                offsets.put(entry.getKey(), offset);
+                offset += buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write compacted WAL " + tmp, e);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(indexFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace WAL " + file, e);
+        }
+        generation++;
+        compactions.increment();
+        long after = length();
+        log.info(nodeId, "wal-compacted", MapBuilder.of("entries", Integer.toString(values.size()), "bytesBefore",
+                Long.toString(before), "bytesAfter", Long.toString(after)));
+        return offsets;
+    }
+
+    // offsets (and expiries) from the saved index into the maps; the log length they cover, or 0 without a usable index
+    private long loadIndex(Map<String, Long> offsets, Map<String, Long> expiries) {
+        if (!Files.exists(indexFile)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.US_ASCII)) {
+            String[] header = String.valueOf(reader.readLine()).split(" ");
+            if (header.length != 3 || !"INDEX".equals(header[0]) || Long.parseLong(header[1]) > Files.size(file)) {
+                log.info(nodeId, "wal-index-ignored", MapBuilder.of("reason", "stale"));
+                return 0;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                String key = decode(fields[0]);
+                offsets.put(key, Long.parseLong(fields[1]));
+                if (fields.length > 2) {
+                    expiries.put(key, Long.parseLong(fields[2]));
+                }
+            }
+            return Long.parseLong(header[1]);
+        } catch (IOException | RuntimeException e) {
+            offsets.clear();
+            expiries.clear();
+            log.info(nodeId, "wal-index-ignored", MapBuilder.of("reason", "unreadable"));
+            return 0;
+        }
+    }
+
+    private String record(String key, String value, long expiresAtMillis) {
+        return "PUT " + encode(key) + " " + encode(value) + (expiresAtMillis > 0 ? " " + expiresAtMillis : "") + "\n";
+    }
+
+    private static int lineEnd(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < buffer.position(); i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private String encode(String value) {
         return ENC.encodeToString(value.getBytes(StandardCharsets.UTF_8));
     }
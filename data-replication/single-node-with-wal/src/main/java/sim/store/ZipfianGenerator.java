@@ -0,0 +1,63 @@
+package sim.store;
+
+import java.util.Random;
+
+/**
+ * Zipfian rank generator (Gray et al., "Quickly Generating Billion-Record Synthetic Databases"),
+ * the same algorithm YCSB uses. Rank 0 is the most popular item.
+ */
+final class ZipfianGenerator {
+    private final double theta;
+    private final double alpha;
+    private final double zeta2;
+    private final Random random;
+    private long items;
+    private double zetaN;
+    private double eta;
+
+    ZipfianGenerator(double theta, Random random) {
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("theta must be between 0 and 1 (exclusive)");
+        }
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zeta2 = zeta(0, 2, theta, 0);
+        this.random = random;
+    }
+
+    /**
+     * Returns a rank in {@code [0, items)}; the item count may grow between calls (zeta is extended incrementally).
+     */
+    long next(long items) {
+        if (items < 1) {
+            throw new IllegalArgumentException("items must be >= 1");
+        }
+        if (items != this.items) {
+            resize(items);
+        }
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, items - 1);
+        }
+        long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, items - 1);
+    }
+
+    private void resize(long newItems) {
+        zetaN = newItems > items ? zeta(items, newItems, theta, zetaN) : zeta(0, newItems, theta, 0);
+        items = newItems;
+        eta = items < 2 ? 0 : (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    private static double zeta(long from, long to, double theta, double initial) {
+        double sum = initial;
+        for (long i = from; i < to; i++) {
+            sum += 1 / Math.pow(i + 1, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,215 @@
+package sim.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class NodeTest {
+    @TempDir
+    Path dir;
+
+    private static Node node(Path walDir, int shards, Node.Restore restore, Metrics metrics) {
+        EventLog log = EventLog.off();
+        return new Node("node-1", log, new CrashInjector("node-1", log, new Random(1), 0.0),
+                WriteAheadLog.sharded("node-1", walDir, shards, log, metrics), Node.Options.DEFAULTS.withMetrics(metrics).withRestore(restore));
+    }
+
+    @Test
+    void everyAcknowledgedWriteAcrossShardsSurvivesACrashAndAReopen() {
+        for (Node.Restore restore : Node.Restore.values()) {
+            Path walDir = dir.resolve(restore.name());
+            Node node = node(walDir, 4, restore, new Metrics());
+            Map<String, String> acknowledged = new ConcurrentHashMap<>();
+            // four concurrent writers, each overwriting its own keys; a put counts once it returns
+            IntStream.range(0, 4).parallel().forEach(writer -> {
+                for (int i = 0; i < 300; i++) {
+                    String key = "k" + (i % 100 * 4 + writer);
+                    String value = writer + "-" + i;
+                    node.put(key, value);
+                    acknowledged.put(key, value);
+                }
+            });
+
+            node.crashAndLoseState("test");
+            node.restart();
+            node.awaitWarm();
+            assertEquals(acknowledged, node.contents(), restore + " after restart");
+            assertEquals(Optional.of(acknowledged.get("k42")), node.get("k42"));
+
+            Node reopened = node(walDir, 4, restore, new Metrics());
+            reopened.awaitWarm();
+            assertEquals(acknowledged, reopened.contents(), restore + " after reopening the logs");
+        }
+    }
+
+    @Test
+    void eachShardAppendsToItsOwnLog() throws IOException {
+        Node node = node(dir, 4, Node.Restore.EAGER, new Metrics());
+        for (int i = 0; i < 200; i++) {
+            node.put("k" + i, "v" + i);
+        }
+        List<Long> records = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            try (var lines = Files.lines(dir.resolve("node-1-shard-" + i + ".log"))) {
+                records.add(lines.count());
+            }
+        }
+        assertEquals(200, records.stream().mapToLong(Long::longValue).sum());
+        assertTrue(records.stream().allMatch(count -> count > 20), "keys spread over the shards: " + records);
+    }
+
+    @Test
+    void readsDuringALazyRestoreReturnTheLastAcknowledgedValue() {
+        Metrics metrics = new Metrics();
+        Node node = node(dir, 1, Node.Restore.LAZY, metrics);
+        Map<String, String> acknowledged = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            node.put("k" + i % 2_000, "v" + i);
+            acknowledged.put("k" + i % 2_000, "v" + i);
+        }
+        node.awaitWarm();
+        node.checkpointIndex();
+        // after the saved index: found by scanning the tail of the log
+        node.put("k7", "after-checkpoint");
+        node.put("new", "key");
+        acknowledged.put("k7", "after-checkpoint");
+        acknowledged.put("new", "key");
+
+        node.crashAndLoseState("test");
+        node.restart();
+        // the background load scans in log order, so the last records are still unloaded
+        assertEquals(Optional.of("key"), node.get("new"));
+        assertEquals(Optional.of("after-checkpoint"), node.get("k7"));
+        assertEquals(Optional.of("v4999"), node.get("k999"));
+        assertTrue(metrics.counterSnapshot().get("node.node-1.lazy-loads") > 0);
+        node.awaitWarm();
+        assertEquals(acknowledged, node.contents());
+    }
+
+    @Test
+    void lazyRestoreWithAStaleOrMissingIndexReplaysTheWholeLog() throws IOException {
+        Node node = node(dir, 1, Node.Restore.LAZY, new Metrics());
+        Map<String, String> acknowledged = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            node.put("k" + i % 100, "v" + i);
+            acknowledged.put("k" + i % 100, "v" + i);
+        }
+        node.awaitWarm();
+        node.checkpointIndex();
+        Path index = dir.resolve("node-1.log.idx");
+        assertTrue(Files.exists(index));
+
+        // an index claiming more of the log than there is was saved for some other log
+        Files.writeString(index, "INDEX " + (Files.size(dir.resolve("node-1.log")) + 1) + " 1\nazA 0\n");
+        node.crashAndLoseState("test");
+        node.restart();
+        assertEquals(Optional.of("v299"), node.get("k99"));
+        node.awaitWarm();
+        assertEquals(acknowledged, node.contents());
+
+        Files.deleteIfExists(index);
+        node.crashAndLoseState("test");
+        node.restart();
+        assertEquals(Optional.of("v250"), node.get("k50"));
+        node.awaitWarm();
+        assertEquals(acknowledged, node.contents());
+    }
+
+    @Test
+    void compactionKeepsWritesThatRaceIt() throws InterruptedException {
+        for (Node.Restore restore : Node.Restore.values()) {
+            Path walDir = dir.resolve(restore.name());
+            Node node = node(walDir, 2, restore, new Metrics());
+            Map<String, String> acknowledged = new ConcurrentHashMap<>();
+            Thread writer = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    node.put("k" + i % 150, "v" + i);
+                    acknowledged.put("k" + i % 150, "v" + i);
+                }
+            });
+            while (writer.isAlive()) {
+                node.compact();
+            }
+            writer.join();
+            node.compact();
+            assertEquals(acknowledged, node.contents(), restore.toString());
+
+            node.crashAndLoseState("test");
+            node.restart();
+            node.awaitWarm();
+            assertEquals(acknowledged, node.contents(), restore + " after restart");
+        }
+    }
+
+    @Test
+    void anExpiredKeyIsRemovedOnceTheWheelAdvancesPastIt() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        Node node = node(dir, 1, Node.Restore.EAGER, metrics);
+        node.put("short", "v", Duration.ofMillis(30));
+        node.put("long", "v", Duration.ofHours(1));
+        node.put("plain", "v");
+
+        Thread.sleep(60);
+        // a put to the shard advances its wheel: the key is gone without ever being read
+        node.put("other", "v");
+        assertEquals(Map.of("long", "v", "plain", "v", "other", "v"), node.contents());
+        assertEquals(Optional.empty(), node.get("short"));
+        assertEquals(1L, metrics.counterSnapshot().get("node.node-1.expired"));
+    }
+
+    @Test
+    void keysThatExpireWhileTheNodeIsDownAreNotRestored() throws InterruptedException {
+        for (Node.Restore restore : Node.Restore.values()) {
+            Path walDir = dir.resolve(restore.name());
+            Node node = node(walDir, 2, restore, new Metrics());
+            node.put("short", "v", Duration.ofMillis(30));
+            node.put("long", "v", Duration.ofHours(1));
+            node.put("plain", "v");
+            node.put("cleared", "v", Duration.ofMillis(30));
+            node.put("cleared", "forever");
+
+            node.crashAndLoseState("test");
+            Thread.sleep(60);
+            node.restart();
+            assertEquals(Optional.empty(), node.get("short"), restore.toString());
+            node.awaitWarm();
+            Map<String, String> live = Map.of("long", "v", "plain", "v", "cleared", "forever");
+            assertEquals(live, node.contents(), restore + " after restart");
+
+            Node reopened = node(walDir, 2, restore, new Metrics());
+            reopened.awaitWarm();
+            assertEquals(live, reopened.contents(), restore + " after reopening the logs");
+        }
+    }
+
+    @Test
+    void anExpiryIsWrittenToTheLogWithItsValue() {
+        Node node = node(dir, 1, Node.Restore.EAGER, new Metrics());
+        long before = System.currentTimeMillis();
+        node.put("ttl", "v", Duration.ofHours(1));
+        node.put("plain", "v");
+
+        Map<String, Long> expiries = new HashMap<>();
+        Map<String, String> values = new WriteAheadLog("node-1", dir.resolve("node-1.log"), EventLog.off())
+                .replay(expiries);
+        assertEquals(Map.of("ttl", "v", "plain", "v"), values);
+        assertEquals(Set.of("ttl"), expiries.keySet());
+        assertTrue(expiries.get("ttl") >= before + Duration.ofHours(1).toMillis());
+    }
+}
@@ -0,0 +1,69 @@
+package sim.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class RetryBudgetTest {
+    @Test
+    void startsFullAndRunsOutAfterCapacityRetries() {
+        RetryBudget budget = new RetryBudget(3, 0.1);
+        assertEquals(3, budget.available());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+        assertEquals(0, budget.available());
+    }
+
+    @Test
+    void requestsRefillItByTheRatioUpToCapacity() {
+        RetryBudget budget = new RetryBudget(2, 0.1);
+        budget.tryWithdraw();
+        budget.tryWithdraw();
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw(), "nine requests earn 0.9 of a retry");
+        budget.deposit();
+        assertTrue(budget.tryWithdraw(), "the tenth completes a token");
+
+        for (int i = 0; i < 1_000; i++) {
+            budget.deposit();
+        }
+        assertEquals(2, budget.available());
+    }
+
+    @Test
+    void concurrentRetriesNeverOverdrawIt() throws InterruptedException {
+        RetryBudget budget = new RetryBudget(1_000, 0);
+        AtomicInteger granted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (budget.tryWithdraw()) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1_000, granted.get());
+        assertEquals(0, budget.available());
+    }
+
+    @Test
+    void rejectsANegativeCapacityOrRatio() {
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(-1, 0.1));
+        assertThrows(IllegalArgumentException.class, () -> new RetryBudget(1, -0.1));
+    }
+}
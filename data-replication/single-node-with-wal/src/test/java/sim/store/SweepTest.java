@@ -0,0 +1,67 @@
+package sim.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class SweepTest {
+    // as if the disk lost the WAL's last record after it was fsynced and acknowledged
+    private static final Consumer<Path> DROP_LAST_RECORD = dir -> {
+        Path file = dir.resolve("node-1.log");
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            int end = bytes.length - 1;
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(Math.max(end, 0));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    };
+
+    @Test
+    void seedsRunInParallelWithoutViolations() throws InterruptedException {
+        assertEquals(List.of(), new Sweep(0.25, 0.1, null).run(1, 8, 4));
+    }
+
+    @Test
+    void aSeedRunsTheSameEveryTime() {
+        Sweep sweep = new Sweep(0.25, 0.1, null).withWalFault(DROP_LAST_RECORD);
+        Sweep.Violation first = sweep.runSeed(3, EventLog.off());
+        assertNotNull(first);
+        assertEquals(first, sweep.runSeed(3, EventLog.off()));
+    }
+
+    @Test
+    void lostAcknowledgedWriteIsReportedWithAReproThatReplaysIt() throws InterruptedException {
+        Sweep sweep = new Sweep(0.0, 0.0, null).withWalFault(DROP_LAST_RECORD);
+        List<Sweep.Violation> violations = sweep.run(7, 1, 1);
+        assertEquals(1, violations.size());
+        Sweep.Violation violation = violations.get(0);
+        assertEquals(7, violation.seed());
+        assertEquals("acknowledged write lost after restart: key=k7 acked=v7 restored=null", violation.reason());
+
+        String repro = sweep.repro(violation.seed());
+        String prefix = "java -cp target/classes sim.store.Sweep ";
+        assertTrue(repro.startsWith(prefix), repro);
+        List<String> args = Arrays.asList(repro.substring(prefix.length()).split(" "));
+        assertEquals(List.of("7", "1"), args.subList(0, 2));
+        Sweep replay = Sweep.fromArgs(args.subList(2, args.size())).withWalFault(DROP_LAST_RECORD);
+        assertEquals(violation, replay.runSeed(Long.parseLong(args.get(0)), EventLog.off()));
+    }
+}
@@ -0,0 +1,115 @@
+package sim.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    private WriteAheadLog wal() {
+        return new WriteAheadLog("node-1", dir.resolve("node-1.log"), EventLog.off());
+    }
+
+    // the offsets a full scan finds, checked against the values a replay finds
+    private static Map<String, Long> indexed(WriteAheadLog wal, long expectedCovered) {
+        Map<String, Long> offsets = new HashMap<>();
+        assertEquals(expectedCovered, wal.index(offsets));
+        Map<String, String> values = wal.replay();
+        assertEquals(values.keySet(), offsets.keySet());
+        offsets.forEach((key, offset) -> assertEquals(values.get(key), wal.readValue(offset, key), key));
+        return offsets;
+    }
+
+    @Test
+    void indexLocatesTheLatestRecordOfEveryKey() {
+        WriteAheadLog wal = wal();
+        wal.appendPut("a", "1");
+        wal.appendPut("b", "2");
+        wal.appendPut("a", "3");
+        wal.appendPut("c", "x".repeat(1_000));
+
+        Map<String, Long> offsets = indexed(wal, 0);
+        assertEquals("3", wal.readValue(offsets.get("a"), "a"));
+    }
+
+    @Test
+    void savedIndexIsUsedAndOnlyLaterRecordsAreScanned() {
+        WriteAheadLog wal = wal();
+        wal.appendPut("a", "1");
+        wal.appendPut("b", "2");
+        Map<String, Long> offsets = indexed(wal, 0);
+        long length = wal.length();
+        wal.saveIndex(offsets, length);
+        wal.appendPut("a", "3");
+        wal.appendPut("d", "4");
+
+        Map<String, Long> reindexed = indexed(wal, length);
+        assertEquals(offsets.get("b"), reindexed.get("b"));
+        assertEquals("3", wal.readValue(reindexed.get("a"), "a"));
+    }
+
+    @Test
+    void missingStaleOrUnreadableIndexFallsBackToAFullScan() throws IOException {
+        WriteAheadLog wal = wal();
+        for (int i = 0; i < 20; i++) {
+            wal.appendPut("k" + i % 7, "v" + i);
+        }
+        Path index = dir.resolve("node-1.log.idx");
+        Map<String, Long> expected = indexed(wal, 0);
+
+        // covers more bytes than the log holds: saved for another log
+        Files.writeString(index, "INDEX " + (wal.length() + 100) + " 1\nazA 0\n");
+        assertEquals(expected, indexed(wal, 0));
+        Files.writeString(index, "INDEX 10 1\nnot-an-offset\n");
+        assertEquals(expected, indexed(wal, 0));
+        Files.delete(index);
+        assertEquals(expected, indexed(wal, 0));
+    }
+
+    @Test
+    void compactionKeepsLiveValuesWithTheirExpiriesAndDeletesTheIndex() {
+        WriteAheadLog wal = wal();
+        wal.appendPut("a", "1");
+        wal.appendPut("a", "2");
+        wal.appendPut("b", "3", 5_000);
+        wal.saveIndex(indexed(wal, 0), wal.length());
+        long before = wal.length();
+        Map<String, String> live = new LinkedHashMap<>(Map.of("a", "2", "b", "3"));
+
+        Map<String, Long> offsets = wal.compact(live, Map.of("b", 5_000L));
+        Map<String, Long> expiries = new HashMap<>();
+        assertEquals(live, wal.replay(expiries));
+        assertEquals(Map.of("b", 5_000L), expiries);
+        assertEquals(offsets, indexed(wal, 0));
+        assertFalse(Files.exists(dir.resolve("node-1.log.idx")));
+        assertEquals(1, wal.generation());
+        assertTrue(wal.length() < before);
+    }
+
+    @Test
+    void indexCopiedBeforeACompactionIsNotSaved() {
+        WriteAheadLog wal = wal();
+        wal.appendPut("a", "1");
+        wal.appendPut("a", "2");
+        Map<String, Long> offsets = indexed(wal, 0);
+        long length = wal.length();
+        long generation = wal.generation();
+
+        wal.compact(Map.of("a", "2"), Map.of());
+        wal.saveIndex(offsets, Map.of(), length, generation);
+        assertFalse(Files.exists(dir.resolve("node-1.log.idx")), "its offsets point into the old log");
+        assertEquals(Map.of("a", "2"), wal.replay());
+    }
+}
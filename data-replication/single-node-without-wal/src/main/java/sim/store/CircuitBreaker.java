@@ -0,0 +1,105 @@
+package sim.store;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Per node/link circuit breaker. After {@code failureThreshold} consecutive failures it opens and rejects requests
+ * without touching the link; once {@code openDuration} has passed it lets a single probe through (half-open), which
+ * closes it on success or reopens it on failure.
+ * <p>
+ * Exposes {@code breaker.<name>.state} (0 closed, 1 half-open, 2 open) as a gauge and counts {@code opened} and
+ * {@code rejected}. State changes are rare, so the methods simply synchronize.
+ */
+public final class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final EventLog log;
+    private final Counter opened;
+    private final Counter rejected;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, EventLog log, Metrics metrics) {
+        this(name, failureThreshold, openDuration, log, metrics, System::nanoTime);
+    }
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, EventLog log, Metrics metrics,
+                          LongSupplier nanoClock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be >= 1");
+        }
+        this.name = Objects.requireNonNull(name, "name");
+        this.failureThreshold = failureThreshold;
+        this.openNanos = Objects.requireNonNull(openDuration, "openDuration").toNanos();
+        this.log = Objects.requireNonNull(log, "log");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+        this.opened = metrics.counter("breaker." + name + ".opened");
+        this.rejected = metrics.counter("breaker." + name + ".rejected");
+        metrics.gauge("breaker." + name + ".state", () -> state().ordinal());
+    }
+
+    /**
+     * A breaker that never opens; registers no metrics.
+     */
+    public static CircuitBreaker disabled() {
+        return new CircuitBreaker("disabled", Integer.MAX_VALUE, Duration.ZERO, EventLog.off(), new Metrics());
+    }
+
+    /**
+     * Whether a request may go out now. A true result from a half-open breaker is the probe and must be followed by
+     * {@link #onSuccess} or {@link #onFailure}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            log.event(name, "breaker-half-open").emit();
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            log.event(name, "breaker-closed").emit();
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                opened.increment();
+                log.event(name, "breaker-open").num("failures", consecutiveFailures).emit();
+            }
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+}
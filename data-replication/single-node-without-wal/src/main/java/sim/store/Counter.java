@@ -0,0 +1,31 @@
+package sim.store;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free monotonically increasing count, striped across threads so hot-path increments do not contend.
+ */
+public final class Counter {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long delta) {
+        count.add(delta);
+    }
+
+    public long sum() {
+        return count.sum();
+    }
+
+    public String name() {
+        return name;
+    }
+}
@@ -1,7 +1,7 @@
 package sim.store;
 
 import java.util.Objects;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 import static sim.store.MapBuilder.of;
 
@@ -11,10 +11,10 @@ import static sim.store.MapBuilder.of;
 public final class CrashInjector {
     private final String nodeId;
     private final EventLog log;
-    private final Random random;
+    private final RandomGenerator random;
     private final double crashProbability;
 
-    public CrashInjector(String nodeId, EventLog log, Random random, double crashProbability) {
+    public CrashInjector(String nodeId, EventLog log, RandomGenerator random, double crashProbability) {
         if (crashProbability < 0 || crashProbability > 1) {
             throw new IllegalArgumentException("crashProbability must be between 0 and 1");
         }
@@ -0,0 +1,211 @@
+package sim.store;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reusable, preallocated event record for {@link EventLog#event}. Fields are kept as strings or primitive longs and
+ * are only turned into text when the event is written, so building an event allocates nothing.
+ * <p>
+ * An instance belongs to one thread and is reused for its next event: build and {@link #emit} it in one expression.
+ */
+public final class Event {
+    static final int MAX_FIELDS = 12;
+    static final Event DISABLED = new Event(null);
+
+    private static final byte TEXT = 0;
+    private static final byte NUMBER = 1;
+    private static final byte META_TEXT = 2;
+    private static final byte META_NUMBER = 3;
+
+    private final EventLog owner;
+    private final String[] keys = new String[MAX_FIELDS];
+    private final String[] texts = new String[MAX_FIELDS];
+    private final long[] numbers = new long[MAX_FIELDS];
+    private final byte[] kinds = new byte[MAX_FIELDS];
+    private String actor;
+    private String name;
+    private long epochSecond;
+    private int nanos;
+    private int size;
+
+    Event(EventLog owner) {
+        this.owner = owner;
+    }
+
+    Event begin(String actor, String name) {
+        this.actor = actor;
+        this.name = name;
+        this.size = 0;
+        return this;
+    }
+
+    /** Adds a {@code key=value} detail. */
+    public Event str(String key, String value) {
+        return add(TEXT, key, value, 0);
+    }
+
+    /** Adds a numeric {@code key=value} detail without boxing or string conversion. */
+    public Event num(String key, long value) {
+        return add(NUMBER, key, null, value);
+    }
+
+    /** Adds an entry to the braced metadata block ({@code {key: value, ...}}). */
+    public Event meta(String key, String value) {
+        return add(META_TEXT, key, value, 0);
+    }
+
+    public Event meta(String key, long value) {
+        return add(META_NUMBER, key, null, value);
+    }
+
+    public Event details(Map<String, String> details) {
+        if (this != DISABLED && details != null) {
+            details.forEach(this::str);
+        }
+        return this;
+    }
+
+    public Event meta(Map<String, String> metadata) {
+        if (this != DISABLED && metadata != null) {
+            metadata.forEach(this::meta);
+        }
+        return this;
+    }
+
+    /** Hands the event to its log; a no-op for disabled events and for events rebuilt from a journal. */
+    public void emit() {
+        if (owner != null) {
+            Instant now = Instant.now();
+            epochSecond = now.getEpochSecond();
+            nanos = now.getNano();
+            owner.write(this);
+        }
+    }
+
+    private Event add(byte kind, String key, String text, long number) {
+        if (this == DISABLED) {
+            return this;
+        }
+        if (size == MAX_FIELDS) {
+            throw new IllegalStateException("Event " + name + " has more than " + MAX_FIELDS + " fields");
+        }
+        kinds[size] = kind;
+        keys[size] = key;
+        texts[size] = text;
+        numbers[size] = number;
+        size++;
+        return this;
+    }
+
+    String actor() {
+        return actor;
+    }
+
+    String name() {
+        return name;
+    }
+
+    long epochNanos() {
+        return epochSecond * 1_000_000_000L + nanos;
+    }
+
+    void timestamp(long epochNanos) {
+        epochSecond = Math.floorDiv(epochNanos, 1_000_000_000L);
+        nanos = (int) Math.floorMod(epochNanos, 1_000_000_000L);
+    }
+
+    int size() {
+        return size;
+    }
+
+    String key(int i) {
+        return keys[i];
+    }
+
+    boolean isMeta(int i) {
+        return kinds[i] >= META_TEXT;
+    }
+
+    boolean isNumber(int i) {
+        return kinds[i] == NUMBER || kinds[i] == META_NUMBER;
+    }
+
+    String text(int i) {
+        return texts[i];
+    }
+
+    long number(int i) {
+        return numbers[i];
+    }
+
+    void copyTo(Event target) {
+        target.actor = actor;
+        target.name = name;
+        target.epochSecond = epochSecond;
+        target.nanos = nanos;
+        target.size = size;
+        System.arraycopy(kinds, 0, target.kinds, 0, size);
+        System.arraycopy(keys, 0, target.keys, 0, size);
+        System.arraycopy(texts, 0, target.texts, 0, size);
+        System.arraycopy(numbers, 0, target.numbers, 0, size);
+    }
+
+    /** Drops string references so a recycled slot does not pin values in memory. */
+    void clear() {
+        Arrays.fill(texts, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Appends {@code [ts] actor=.. event=.. k=v ... {mk: mv, ...}} and a line separator.
+     */
+    void appendLine(StringBuilder line) {
+        line.append('[');
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochSecond(epochSecond, nanos), line);
+        line.append("] actor=").append(actor).append(" event=").append(name).append(' ');
+        int start = line.length();
+        boolean hasMeta = false;
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] >= META_TEXT) {
+                hasMeta = true;
+                continue;
+            }
+            if (line.length() > start) {
+                line.append(' ');
+            }
+            line.append(keys[i]).append('=');
+            appendValue(line, i);
+        }
+        if (hasMeta) {
+            if (line.length() > start) {
+                line.append(' ');
+            }
+            line.append('{');
+            boolean first = true;
+            for (int i = 0; i < size; i++) {
+                if (kinds[i] < META_TEXT) {
+                    continue;
+                }
+                if (!first) {
+                    line.append(", ");
+                }
+                first = false;
+                line.append(keys[i]).append(": ");
+                appendValue(line, i);
+            }
+            line.append('}');
+        }
+        line.append(System.lineSeparator());
+    }
+
+    private void appendValue(StringBuilder line, int i) {
+        if (kinds[i] == TEXT || kinds[i] == META_TEXT) {
+            line.append(texts[i]);
+        } else {
+            line.append(numbers[i]);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package sim.store;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder events for the link and node hot paths; view them in JMC under "Simulation".
+ * <p>
+ * Call sites create an event, {@code begin()} it, do the work and {@code commit()}. While no recording enables the
+ * events the JIT reduces that to a disabled check, so they stay in place in normal runs. Start a recording with
+ * {@code -Dsim.jfr=<file>} (see {@link #startRecording}) or the usual {@code -XX:StartFlightRecording}.
+ */
+public final class FlightEvents {
+    private static final List<Class<? extends jdk.jfr.Event>> EVENTS = List.of(
+            LinkDeliver.class, NodeOp.class, NodeLifecycle.class);
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Starts a recording with the JDK's {@code default} settings plus every simulation event when {@code -Dsim.jfr=<file>}
+     * is set, or returns null. Closing the recording writes it to the file.
+     */
+    public static Recording startRecording() {
+        String file = System.getProperty("sim.jfr", "");
+        if (file.isBlank()) {
+            return null;
+        }
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration("default"));
+            for (Class<? extends jdk.jfr.Event> event : EVENTS) {
+                recording.enable(event).withoutThreshold();
+            }
+            recording.setName("simulation");
+            recording.setDestination(Path.of(file));
+            recording.start();
+            return recording;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start flight recording to " + file, e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JFR configuration", e);
+        }
+    }
+
+    @Name("sim.store.LinkDeliver")
+    @Label("Link Deliver")
+    @Category({"Simulation", "Link"})
+    @Description("Injected delay plus the delivered action; dropped deliveries end at the drop")
+    static final class LinkDeliver extends jdk.jfr.Event {
+        @Label("Link")
+        String link;
+        @Label("Description")
+        String desc;
+        @Label("Injected Delay")
+        @Timespan(Timespan.MILLISECONDS)
+        long delay;
+        @Label("Dropped")
+        boolean dropped;
+    }
+
+    @Name("sim.store.NodeOp")
+    @Label("Node Operation")
+    @Category({"Simulation", "Node"})
+    static final class NodeOp extends jdk.jfr.Event {
+        @Label("Node")
+        String node;
+        @Label("Operation")
+        String op;
+        @Label("Key Length")
+        int keyLength;
+        @Label("Value Length")
+        int valueLength;
+    }
+
+    @Name("sim.store.NodeLifecycle")
+    @Label("Node Crash/Restart")
+    @Category({"Simulation", "Node"})
+    static final class NodeLifecycle extends jdk.jfr.Event {
+        @Label("Node")
+        String node;
+        @Label("Transition")
+        String transition;
+        @Label("Reason")
+        String reason;
+        @Label("Entries")
+        int entries;
+    }
+}
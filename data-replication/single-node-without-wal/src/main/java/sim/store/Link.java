@@ -3,38 +3,58 @@ package sim.store;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 /**
  * Simulated network link with random latency; used even in single-node runs
  * to keep the abstraction consistent for later milestones.
+ * <p>
+ * Delays come from a {@link LatencyModel} and failures from a {@link FaultModel}; the duration/probability
+ * constructors are uniform latency with plain drops.
  */
 public final class Link {
     private final String id;
-    private final Duration minLatency;
-    private final Duration maxLatency;
-    private final Random random;
+    private final LatencyModel latency;
+    private final FaultModel faults;
+    private final RandomGenerator random;
     private final EventLog log;
-    private final double failureProbability;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter deliveries;
+    private final Counter drops;
+    private final Counter duplicates;
+    private final Counter reorders;
+    private final Histogram delays;
 
-    public Link(String id, Duration minLatency, Duration maxLatency, Random random, EventLog log) {
+    public Link(String id, Duration minLatency, Duration maxLatency, RandomGenerator random, EventLog log) {
         this(id, minLatency, maxLatency, random, log, 0.0);
     }
 
-    public Link(String id, Duration minLatency, Duration maxLatency, Random random, EventLog log, double failureProbability) {
-        if (maxLatency.compareTo(minLatency) < 0) {
-            throw new IllegalArgumentException("maxLatency must be >= minLatency");
-        }
-        if (failureProbability < 0 || failureProbability > 1) {
-            throw new IllegalArgumentException("failureProbability must be between 0 and 1");
-        }
+    public Link(String id, Duration minLatency, Duration maxLatency, RandomGenerator random, EventLog log, double failureProbability) {
+        this(id, minLatency, maxLatency, random, log, failureProbability, new Metrics());
+    }
+
+    public Link(String id, Duration minLatency, Duration maxLatency, RandomGenerator random, EventLog log, double failureProbability,
+                Metrics metrics) {
+        this(id, LatencyModel.uniform(minLatency, maxLatency), failureModel(failureProbability), random, log, metrics);
+    }
+
+    /**
+     * A link whose delays come from {@code latency} and whose drops, duplicates, reorders and partitions come from
+     * {@code faults}, both sampled from {@code random}.
+     */
+    public Link(String id, LatencyModel latency, FaultModel faults, RandomGenerator random, EventLog log, Metrics metrics) {
         this.id = Objects.requireNonNull(id, "id");
-        this.minLatency = Objects.requireNonNull(minLatency, "minLatency");
-        this.maxLatency = Objects.requireNonNull(maxLatency, "maxLatency");
+        this.latency = Objects.requireNonNull(latency, "latency");
+        this.faults = Objects.requireNonNull(faults, "faults");
         this.random = Objects.requireNonNull(random, "random");
         this.log = Objects.requireNonNull(log, "log");
-        this.failureProbability = failureProbability;
+        this.deliveries = metrics.counter("link." + id + ".deliveries");
+        this.drops = metrics.counter("link." + id + ".drops");
+        this.duplicates = metrics.counter("link." + id + ".duplicates");
+        this.reorders = metrics.counter("link." + id + ".reorders");
+        this.delays = metrics.histogram("link." + id + ".delay-ms");
     }
 
     public void deliver(String description, Runnable action) {
@@ -49,20 +69,48 @@ public final class Link {
     }
 
     public <T> T deliver(String description, Supplier<T> action, Map<String, String> metadata) {
-        long jitterMillis = jitterMillis();
-        log.info(id, "deliver", MapBuilder.of("desc", description, "delayMs", Long.toString(jitterMillis)), metadata);
-        sleepQuietly(jitterMillis);
-        maybeFail(description, metadata);
-        return action.get();
+        long jitterMillis = latency.sampleMillis(random);
+        log.event(id, "deliver").str("desc", description).num("delayMs", jitterMillis).meta(metadata).emit();
+        delays.record(jitterMillis);
+        var event = new FlightEvents.LinkDeliver();
+        event.begin();
+        event.link = id;
+        event.desc = description;
+        event.delay = jitterMillis;
+        try {
+            sleepQuietly(jitterMillis);
+            FaultModel.Fault fault = faults.sample(random, sequence.getAndIncrement());
+            switch (fault) {
+                case DROP -> fail(description, metadata, event, "link-drop");
+                case PARTITIONED -> fail(description, metadata, event, "partition");
+                case REORDER -> holdBack(description, metadata, event);
+                default -> {
+                }
+            }
+            deliveries.increment();
+            T result = action.get();
+            if (fault == FaultModel.Fault.DUPLICATE) {
+                deliverDuplicate(description, action, metadata);
+            }
+            return result;
+        } finally {
+            event.commit();
+        }
     }
 
-    private long jitterMillis() {
-        long min = minLatency.toMillis();
-        long max = maxLatency.toMillis();
-        if (max == min) {
-            return min;
+    /**
+     * Whether delivery events on this link pass the log filter, i.e. whether callers need to build metadata.
+     */
+    boolean logsDeliveries() {
+        return log.isEnabled(id, "deliver") || log.isEnabled(id, "deliver-failed")
+                || log.isEnabled(id, "deliver-duplicate") || log.isEnabled(id, "deliver-reordered");
+    }
+
+    private static FaultModel failureModel(double failureProbability) {
+        if (failureProbability < 0 || failureProbability > 1) {
+            throw new IllegalArgumentException("failureProbability must be between 0 and 1");
         }
-        return min + Math.abs(random.nextLong()) % (max - min + 1);
+        return FaultModel.drop(failureProbability);
     }
 
     private void sleepQuietly(long millis) {
@@ -73,10 +121,29 @@ public final class Link {
         }
     }
 
-    private void maybeFail(String description, Map<String, String> metadata) {
-        if (random.nextDouble() <= failureProbability) {
-            log.info(id, "deliver-failed", MapBuilder.of("desc", description, "reason", "link-drop"), metadata);
-            throw new LinkFailureException("Link " + id + " dropped " + description);
+    private void fail(String description, Map<String, String> metadata, FlightEvents.LinkDeliver event, String reason) {
+        drops.increment();
+        event.dropped = true;
+        log.event(id, "deliver-failed").str("desc", description).str("reason", reason).meta(metadata).emit();
+        throw new LinkFailureException("Link " + id + " dropped " + description);
+    }
+
+    private void holdBack(String description, Map<String, String> metadata, FlightEvents.LinkDeliver event) {
+        long extraMillis = latency.sampleMillis(random);
+        reorders.increment();
+        event.delay += extraMillis;
+        log.event(id, "deliver-reordered").str("desc", description).num("extraDelayMs", extraMillis).meta(metadata).emit();
+        sleepQuietly(extraMillis);
+    }
+
+    // The sender already has its response; whatever the copy returns or throws never reaches it.
+    private <T> void deliverDuplicate(String description, Supplier<T> action, Map<String, String> metadata) {
+        duplicates.increment();
+        log.event(id, "deliver-duplicate").str("desc", description).meta(metadata).emit();
+        try {
+            action.get();
+        } catch (RuntimeException e) {
+            log.event(id, "duplicate-failed").str("desc", description).str("reason", e.getClass().getSimpleName()).meta(metadata).emit();
         }
     }
 }
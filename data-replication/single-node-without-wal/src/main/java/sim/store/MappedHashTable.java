@@ -0,0 +1,325 @@
+package sim.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Fixed-layout, open-addressing hash table in a memory-mapped file: an alternative to the heap map of {@link Node}.
+ * <p>
+ * A put is a handful of memory stores into the page cache, not a syscall; the page cache outlives the process, so
+ * after a crash {@link #remap} finds every completed put without replaying anything. Only {@link #checkpoint} (an
+ * msync, also run every {@code checkpointEvery} puts) makes them survive losing the machine. Layout (little endian):
+ * <pre>
+ *   header, {@value #HEADER_SIZE} bytes: int magic, int version, int slots, int keyBytes, int valueBytes, int count,
+ *                                        long checkpoints
+ *   slot i at HEADER_SIZE + i * slotSize:
+ *     0  int   key hash
+ *     4  byte  state (0 empty, 1 used)
+ *     6  short key length
+ *     8  short value length
+ *    10  key bytes (keyBytes), then value bytes (valueBytes), padded to 8
+ * </pre>
+ * Slots are probed linearly from {@code hash & (slots - 1)}; there are no deletes, so no tombstones. A new entry is
+ * written key and value first and marked used last, as {@link EventJournal} does with its timestamp. Overwrites go in
+ * place, so a machine crash in the middle of one, before the next checkpoint, may leave that value torn: the price of
+ * a fixed layout without a log. The table never grows; a put into a table at {@value #MAX_LOAD_PERCENT}% load fails.
+ * Operations synchronize on the table.
+ */
+public final class MappedHashTable implements AutoCloseable {
+    static final int MAGIC = 0x534D4854;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SLOT_HEADER_SIZE = 10;
+    static final int MAX_LOAD_PERCENT = 75;
+    private static final int USED = 1;
+
+    private final String id;
+    private final Path file;
+    private final int slots;
+    private final int keyBytes;
+    private final int valueBytes;
+    private final int slotSize;
+    private final int checkpointEvery;
+    private final EventLog log;
+    private final Counter checkpoints;
+    private final Histogram msyncMicros;
+    private final Histogram remapMicros;
+    private MappedByteBuffer table;
+    private int count;
+    private int dirtyPuts;
+
+    /**
+     * Maps {@code file}, creating it with the given geometry, or reusing its contents when it already holds a table
+     * of that geometry. {@code slots} must be a power of two; {@code checkpointEvery} 0 checkpoints only on request.
+     */
+    public MappedHashTable(String id, Path file, int slots, int keyBytes, int valueBytes, int checkpointEvery,
+                           EventLog log, Metrics metrics) {
+        if (slots < 2 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("slots must be a power of two >= 2");
+        }
+        if (keyBytes < 1 || keyBytes > Short.MAX_VALUE || valueBytes < 0 || valueBytes > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("keyBytes must be 1.." + Short.MAX_VALUE + " and valueBytes 0.." + Short.MAX_VALUE);
+        }
+        if (checkpointEvery < 0) {
+            throw new IllegalArgumentException("checkpointEvery must be >= 0");
+        }
+        this.id = Objects.requireNonNull(id, "id");
+        this.file = Objects.requireNonNull(file, "file");
+        this.log = Objects.requireNonNull(log, "log");
+        this.slots = slots;
+        this.keyBytes = keyBytes;
+        this.valueBytes = valueBytes;
+        this.slotSize = (SLOT_HEADER_SIZE + keyBytes + valueBytes + 7) & ~7;
+        if ((long) slots * slotSize + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("table must stay below 2 GiB");
+        }
+        this.checkpointEvery = checkpointEvery;
+        this.checkpoints = metrics.counter("table." + id + ".checkpoints");
+        this.msyncMicros = metrics.histogram("table." + id + ".msync-us");
+        this.remapMicros = metrics.histogram("table." + id + ".remap-us");
+        metrics.gauge("table." + id + ".entries", this::size);
+        remap();
+    }
+
+    /**
+     * Like the constructor, but starts from an empty table whatever {@code file} held.
+     */
+    public static MappedHashTable create(String id, Path file, int slots, int keyBytes, int valueBytes, int checkpointEvery,
+                                         EventLog log, Metrics metrics) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to reset table " + file, e);
+        }
+        return new MappedHashTable(id, file, slots, keyBytes, valueBytes, checkpointEvery, log, metrics);
+    }
+
+    /**
+     * Maps the file again, as a restarted process would, and returns the number of entries found. Costs a page-table
+     * setup and a pass over the slot states to recount the entries, not a replay: keys and values are read from the
+     * page cache when first looked up. The count in the header is only a hint, since a crash between marking a slot
+     * used and storing the count leaves it one short.
+     */
+    public synchronized int remap() {
+        long start = System.nanoTime();
+        long length = HEADER_SIZE + (long) slots * slotSize;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                long existing = channel.size();
+                if (existing != 0 && existing != length) {
+                    throw new IllegalStateException("Table " + file + " is " + existing + " bytes, expected " + length);
+                }
+                table = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                table.order(ByteOrder.LITTLE_ENDIAN);
+                if (existing == 0) {
+                    writeHeader();
+                } else {
+                    checkHeader();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map table " + file, e);
+        }
+        count = countUsed();
+        table.putInt(20, count);
+        remapMicros.record((System.nanoTime() - start) / 1_000);
+        return count;
+    }
+
+    /**
+     * Drops the mapping without flushing it, as a crashing process does; what was stored stays in the page cache.
+     * Until {@link #remap} every operation fails.
+     */
+    public synchronized void unmap() {
+        table = null;
+        count = 0;
+        dirtyPuts = 0;
+    }
+
+    public synchronized String get(String key) {
+        byte[] encoded = encodeKey(key);
+        int slot = find(encoded, hash(encoded));
+        if (slot < 0) {
+            return null;
+        }
+        int base = offset(slot);
+        byte[] value = new byte[table.getShort(base + 8)];
+        table.get(base + SLOT_HEADER_SIZE + keyBytes, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    public synchronized void put(String key, String value) {
+        byte[] encodedKey = encodeKey(key);
+        byte[] encodedValue = value.getBytes(StandardCharsets.UTF_8);
+        if (encodedValue.length > valueBytes) {
+            throw new IllegalArgumentException("Value for " + key + " is " + encodedValue.length + " bytes, table "
+                    + id + " holds at most " + valueBytes);
+        }
+        int hash = hash(encodedKey);
+        int slot = find(encodedKey, hash);
+        if (slot >= 0) {
+            int base = offset(slot);
+            table.put(base + SLOT_HEADER_SIZE + keyBytes, encodedValue);
+            table.putShort(base + 8, (short) encodedValue.length);
+        } else {
+            if ((count + 1) * 100L > (long) slots * MAX_LOAD_PERCENT) {
+                throw new IllegalStateException("Table " + id + " is full (" + count + " of " + slots + " slots)");
+            }
+            int base = offset(-slot - 1);
+            table.putInt(base, hash);
+            table.putShort(base + 6, (short) encodedKey.length);
+            table.putShort(base + 8, (short) encodedValue.length);
+            table.put(base + SLOT_HEADER_SIZE, encodedKey);
+            table.put(base + SLOT_HEADER_SIZE + keyBytes, encodedValue);
+            table.put(base + 4, (byte) USED);
+            table.putInt(20, ++count);
+        }
+        if (checkpointEvery > 0 && ++dirtyPuts >= checkpointEvery) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Flushes every dirty page to the file (msync) and returns how long that took in microseconds.
+     */
+    public synchronized long checkpoint() {
+        ensureMapped();
+        long start = System.nanoTime();
+        table.putLong(24, table.getLong(24) + 1);
+        table.force();
+        long micros = (System.nanoTime() - start) / 1_000;
+        msyncMicros.record(micros);
+        checkpoints.increment();
+        log.event(id, "table-checkpoint").num("entries", count).num("dirtyPuts", dirtyPuts).num("msyncUs", micros).emit();
+        dirtyPuts = 0;
+        return micros;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Every entry, read slot by slot; for checks and tests, not the request path.
+     */
+    public synchronized Map<String, String> contents() {
+        ensureMapped();
+        Map<String, String> contents = new HashMap<>();
+        for (int slot = 0; slot < slots; slot++) {
+            int base = offset(slot);
+            if (table.get(base + 4) == USED) {
+                byte[] key = new byte[table.getShort(base + 6)];
+                byte[] value = new byte[table.getShort(base + 8)];
+                table.get(base + SLOT_HEADER_SIZE, key);
+                table.get(base + SLOT_HEADER_SIZE + keyBytes, value);
+                contents.put(new String(key, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+            }
+        }
+        return contents;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (table != null) {
+            checkpoint();
+            table = null;
+        }
+    }
+
+    // Returns the slot holding the key, or -(first empty slot) - 1.
+    private int find(byte[] key, int hash) {
+        ensureMapped();
+        int mask = slots - 1;
+        for (int slot = hash & mask, probes = 0; probes < slots; slot = (slot + 1) & mask, probes++) {
+            int base = offset(slot);
+            if (table.get(base + 4) != USED) {
+                return -slot - 1;
+            }
+            if (table.getInt(base) == hash && table.getShort(base + 6) == key.length && keyEquals(base, key)) {
+                return slot;
+            }
+        }
+        throw new IllegalStateException("Table " + id + " has no free slot");
+    }
+
+    private boolean keyEquals(int base, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (table.get(base + SLOT_HEADER_SIZE + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] encodeKey(String key) {
+        byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > keyBytes) {
+            throw new IllegalArgumentException("Key " + key + " is " + encoded.length + " bytes, table " + id
+                    + " holds at most " + keyBytes);
+        }
+        return encoded;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 1;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private int countUsed() {
+        int used = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (table.get(offset(slot) + 4) == USED) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    private void writeHeader() {
+        table.putInt(0, MAGIC);
+        table.putInt(4, VERSION);
+        table.putInt(8, slots);
+        table.putInt(12, keyBytes);
+        table.putInt(16, valueBytes);
+        table.putInt(20, 0);
+        table.putLong(24, 0);
+    }
+
+    private void checkHeader() {
+        if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION) {
+            throw new IllegalStateException("File " + file + " is not a version " + VERSION + " table");
+        }
+        if (table.getInt(8) != slots || table.getInt(12) != keyBytes || table.getInt(16) != valueBytes) {
+            throw new IllegalStateException("Table " + file + " was created with " + table.getInt(8) + " slots of "
+                    + table.getInt(12) + "+" + table.getInt(16) + " bytes, not " + slots + " of " + keyBytes + "+" + valueBytes);
+        }
+    }
+
+    private void ensureMapped() {
+        if (table == null) {
+            throw new IllegalStateException("Table " + id + " is not mapped");
+        }
+    }
+}
@@ -1,50 +1,304 @@
 package sim.store;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * Single-node in-memory key-value store with crash injection and observability.
+ * <p>
+ * Requests go through the node's {@link RequestQueue}; by default that runs them on the caller's thread, with a bounded
+ * queue they are admitted or turned away with {@link NodeBusyException}.
+ * <p>
+ * State lives in a heap map that a crash wipes, or, given a {@link MappedHashTable}, in a memory-mapped file: a crash
+ * then only drops the mapping and a restart remaps it, warm and without replay.
+ * <p>
+ * In the heap map a put may carry a time to live: its expiry is scheduled on a {@link TimingWheel}, gets stop
+ * returning the key at its expiry, and the next put or get that finds the wheel due removes every expired key. The
+ * mapped table has no room for an expiry, so it takes no TTL puts.
+ * <p>
+ * Either way the node keeps its keys in a skip list as well, so {@link #scan} returns a key range in order, a page per
+ * request. A restart of a mapped node rebuilds the list from the table.
  */
 public final class Node {
+    private static final long WHEEL_TICK_MILLIS = 10;
+
+    /**
+     * What a node runs with; start from {@link #DEFAULTS} (heap map, requests on the caller's thread) and change what
+     * differs. A null {@code metrics} or {@code queue} gives the node one of its own; a {@code table} keeps the node's
+     * state in it, and the node does not close it.
+     */
+    public record Options(Metrics metrics, RequestQueue queue, MappedHashTable table) {
+        public static final Options DEFAULTS = new Options(null, null, null);
+
+        public Options withMetrics(Metrics metrics) {
+            return new Options(metrics, queue, table);
+        }
+
+        public Options withQueue(RequestQueue queue) {
+            return new Options(metrics, queue, table);
+        }
+
+        public Options withTable(MappedHashTable table) {
+            return new Options(metrics, queue, table);
+        }
+    }
+
     private final String id;
     private final EventLog log;
     private final CrashInjector crashInjector;
+    private final RequestQueue queue;
     private final Map<String, String> data = new ConcurrentHashMap<>();
+    // null: state lives only in data
+    private final MappedHashTable table;
+    // expiry of every heap key that has one; it and the wheel change under expiryLock, gets read it without
+    private final Map<String, TimingWheel.Timer<String>> timers = new ConcurrentHashMap<>();
+    private final Object expiryLock = new Object();
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    private TimingWheel<String> wheel = new TimingWheel<>(WHEEL_TICK_MILLIS, System.currentTimeMillis());
+    private final Counter puts;
+    private final Counter gets;
+    private final Counter scans;
+    private final Counter crashes;
+    private final Counter restarts;
+    private final Counter expired;
     private volatile boolean alive = true;
 
     public Node(String id, EventLog log, CrashInjector crashInjector) {
+        this(id, log, crashInjector, Options.DEFAULTS);
+    }
+
+    public Node(String id, EventLog log, CrashInjector crashInjector, Options options) {
         this.id = Objects.requireNonNull(id, "id");
         this.log = Objects.requireNonNull(log, "log");
         this.crashInjector = Objects.requireNonNull(crashInjector, "crashInjector");
+        this.queue = options.queue() != null ? options.queue() : RequestQueue.inline();
+        this.table = options.table();
+        Metrics metrics = options.metrics() != null ? options.metrics() : new Metrics();
+        this.puts = metrics.counter("node." + id + ".puts");
+        this.gets = metrics.counter("node." + id + ".gets");
+        this.scans = metrics.counter("node." + id + ".scans");
+        this.crashes = metrics.counter("node." + id + ".crashes");
+        this.restarts = metrics.counter("node." + id + ".restarts");
+        this.expired = metrics.counter("node." + id + ".expired");
+        metrics.gauge("node." + id + ".expiring-keys", timers::size);
     }
 
     public void put(String key, String value) {
+        put(key, value, "local");
+    }
+
+    /**
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public void put(String key, String value, String clientId) {
+        queue.submit(clientId, "put", () -> {
+            applyPut(key, value, 0);
+            return null;
+        });
+    }
+
+    public void put(String key, String value, Duration ttl) {
+        put(key, value, ttl, "local");
+    }
+
+    /**
+     * Stores {@code value} until {@code ttl} from now; a later put of the key replaces the expiry, or clears it.
+     *
+     * @throws IllegalStateException if the node keeps its state in a mapped table
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public void put(String key, String value, Duration ttl, String clientId) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        if (table != null) {
+            throw new IllegalStateException("Node " + id + " keeps a mapped table, which stores no expiry");
+        }
+        queue.submit(clientId, "put", () -> {
+            applyPut(key, value, System.currentTimeMillis() + ttl.toMillis());
+            return null;
+        });
+    }
+
+    public Optional<String> get(String key) {
+        return get(key, "local");
+    }
+
+    /**
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public Optional<String> get(String key, String clientId) {
+        return queue.submit(clientId, "get", () -> applyGet(key));
+    }
+
+    public ScanPage scan(String startKey, String endKey, int limit) {
+        return scan(startKey, endKey, limit, "local");
+    }
+
+    /**
+     * Up to {@code limit} keys from {@code startKey} (inclusive) to {@code endKey} (exclusive; null for no bound) with
+     * their values, in key order. Pass the page's {@link ScanPage#next()} back as {@code startKey} for the next page.
+     * Each page is read as of no single moment: a put racing it may or may not show.
+     *
+     * @throws NodeBusyException if the node's queue turns the request away
+     */
+    public ScanPage scan(String startKey, String endKey, int limit, String clientId) {
+        Objects.requireNonNull(startKey, "startKey");
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be >= 1");
+        }
+        if (endKey != null && startKey.compareTo(endKey) > 0) {
+            throw new IllegalArgumentException("startKey must not be after endKey");
+        }
+        return queue.submit(clientId, "scan", () -> applyScan(startKey, endKey, limit));
+    }
+
+    // expiresAtMillis is 0 for a value that never expires
+    private void applyPut(String key, String value, long expiresAtMillis) {
+        var event = new FlightEvents.NodeOp();
+        event.begin();
         ensureAlive();
         injectCrash("put");
-        data.put(key, value);
-        log.info(id, "put", MapBuilder.of("key", key, "value", value));
+        if (table == null) {
+            // holding the lock keeps a key's value and expiry from two racing puts together
+            synchronized (expiryLock) {
+                expireDue(System.currentTimeMillis());
+                data.put(key, value);
+                keys.add(key);
+                TimingWheel.Timer<String> previous = expiresAtMillis > 0
+                        ? timers.put(key, wheel.schedule(key, expiresAtMillis))
+                        : timers.remove(key);
+                if (previous != null) {
+                    wheel.cancel(previous);
+                }
+            }
+        } else {
+            table.put(key, value);
+            keys.add(key);
+        }
+        puts.increment();
+        log.event(id, "put").str("key", key).str("value", value).emit();
+        commit(event, "put", key, value);
     }
 
-    public Optional<String> get(String key) {
+    private Optional<String> applyGet(String key) {
+        var event = new FlightEvents.NodeOp();
+        event.begin();
         ensureAlive();
         injectCrash("get");
-        String value = data.get(key);
-        log.info(id, "get", MapBuilder.of("key", key, "value", value));
+        String value = table == null ? data.get(key) : table.get(key);
+        TimingWheel.Timer<String> timer = value == null ? null : timers.get(key);
+        if (timer != null && timer.deadlineMillis() <= System.currentTimeMillis()) {
+            value = null;
+            synchronized (expiryLock) {
+                expireDue(System.currentTimeMillis());
+            }
+        }
+        gets.increment();
+        log.event(id, "get").str("key", key).str("value", value).emit();
+        commit(event, "get", key, value);
         return Optional.ofNullable(value);
     }
 
+    private ScanPage applyScan(String startKey, String endKey, int limit) {
+        ensureAlive();
+        injectCrash("scan");
+        NavigableSet<String> range = endKey == null ? keys.tailSet(startKey, true) : keys.subSet(startKey, true, endKey, false);
+        Iterator<String> candidates = range.iterator();
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        String last = null;
+        while (candidates.hasNext() && entries.size() < limit) {
+            last = candidates.next();
+            String value = table == null ? data.get(last) : table.get(last);
+            TimingWheel.Timer<String> timer = timers.get(last);
+            if (value != null && (timer == null || timer.deadlineMillis() > now)) {
+                entries.add(Map.entry(last, value));
+            }
+        }
+        boolean more = candidates.hasNext();
+        scans.increment();
+        log.event(id, "scan").str("start", startKey).str("end", endKey).num("entries", entries.size())
+                .num("more", more ? 1 : 0).emit();
+        return new ScanPage(entries, more ? ScanPage.after(last) : null);
+    }
+
     public void crashAndLoseState(String reason) {
         alive = false;
-        data.clear();
-        log.info(id, "crashed", MapBuilder.of("reason", reason, "state", "lost"));
+        synchronized (expiryLock) {
+            data.clear();
+            keys.clear();
+            timers.clear();
+            wheel = new TimingWheel<>(WHEEL_TICK_MILLIS, System.currentTimeMillis());
+        }
+        if (table != null) {
+            table.unmap();
+        }
+        crashes.increment();
+        log.info(id, "crashed", MapBuilder.of("reason", reason, "state", table == null ? "lost" : "mapped"));
+        var event = new FlightEvents.NodeLifecycle();
+        event.node = id;
+        event.transition = "crash";
+        event.reason = reason;
+        event.commit();
     }
 
     public void restart() {
-        alive = true;
-        log.info(id, "restart", MapBuilder.of("state", "empty"));
+        if (table == null) {
+            alive = true;
+            restarts.increment();
+            log.info(id, "restart", MapBuilder.of("state", "empty"));
+        } else {
+            long start = System.nanoTime();
+            int entries = table.remap();
+            keys.addAll(table.contents().keySet());
+            alive = true;
+            restarts.increment();
+            log.event(id, "restart").str("state", "mapped").num("entries", entries)
+                    .num("remapUs", (System.nanoTime() - start) / 1_000).emit();
+        }
+        var event = new FlightEvents.NodeLifecycle();
+        event.node = id;
+        event.transition = "restart";
+        event.commit();
+    }
+
+    /**
+     * Flushes a mapped table to disk (no-op for the heap map); see {@link MappedHashTable#checkpoint}.
+     */
+    public void checkpoint() {
+        if (table != null && alive) {
+            table.checkpoint();
+        }
+    }
+
+    private void commit(FlightEvents.NodeOp event, String op, String key, String value) {
+        if (event.shouldCommit()) {
+            event.node = id;
+            event.op = op;
+            event.keyLength = key.length();
+            event.valueLength = value == null ? 0 : value.length();
+            event.commit();
+        }
+    }
+
+    // Caller holds expiryLock. A fired timer is always its key's current one, since a put cancels the last.
+    private void expireDue(long nowMillis) {
+        wheel.advance(nowMillis, key -> {
+            timers.remove(key);
+            data.remove(key);
+            keys.remove(key);
+            expired.increment();
+            log.event(id, "expired").str("key", key).emit();
+        });
     }
 
     private void ensureAlive() {
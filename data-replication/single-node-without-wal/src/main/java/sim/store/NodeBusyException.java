@@ -0,0 +1,10 @@
+package sim.store;
+
+/**
+ * The node's request queue turned the request away; the node is up but overloaded, so retrying later may succeed.
+ */
+public final class NodeBusyException extends RuntimeException {
+    public NodeBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,39 @@
+package sim.store;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One page of a range scan: entries in key order and, if the range may hold more, the start key of the next page.
+ * <p>
+ * {@code next} is the smallest key after the last one the page covered, so passing it back as the start key of the
+ * same scan picks up exactly where this page stopped. It is null once the range is exhausted.
+ */
+public record ScanPage(List<Map.Entry<String, String>> entries, String next) {
+    public ScanPage {
+        entries = List.copyOf(Objects.requireNonNull(entries, "entries"));
+    }
+
+    public boolean hasMore() {
+        return next != null;
+    }
+
+    /**
+     * The smallest key greater than {@code key}.
+     */
+    public static String after(String key) {
+        return key + '\0';
+    }
+
+    /**
+     * Exclusive end key of the range of keys starting with {@code prefix}, or null if that range has no upper bound.
+     */
+    public static String prefixEnd(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        return end == 0 ? null : prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+}
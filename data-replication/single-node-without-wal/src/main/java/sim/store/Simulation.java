@@ -1,7 +1,9 @@
 package sim.store;
 
+import jdk.jfr.Recording;
+
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.Random;
 
 /**
  * Small driver to demonstrate M0: single node, crashable, observable (no WAL).
@@ -11,14 +13,39 @@ public final class Simulation {
         long seed = args.length > 0 ? Long.parseLong(args[0]) : 42L;
         double crashProbability = args.length > 1 ? Double.parseDouble(args[1]) : 0.25;
         double linkFailureProbability = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        String workload = args.length > 3 ? args[3] : null;
 
-        EventLog log = new EventLog(System.out);
-        Random random = new Random(seed);
+        try (Recording recording = FlightEvents.startRecording();
+             EventLog log = EventLog.fromSystemProperties(System.out)) {
+            run(seed, crashProbability, linkFailureProbability, workload, log);
+        }
+    }
 
-        CrashInjector crashInjector = new CrashInjector("node-1", log, random, crashProbability);
-        Node node = new Node("node-1", log, crashInjector);
-        Link loopback = new Link("loopback", Duration.ofMillis(5), Duration.ofMillis(50), random, log, linkFailureProbability);
-        Client client = new Client("client-1", node, loopback, log, 3, node::restart);
+    private static void run(long seed, double crashProbability, double linkFailureProbability, String workload, EventLog log) {
+        RandomStreams streams = new RandomStreams(seed);
+        Metrics metrics = new Metrics();
+
+        CrashInjector crashInjector = new CrashInjector("node-1", log, streams.stream("node-1"), crashProbability);
+        try (RequestQueue queue = requestQueue(log, metrics);
+             MappedHashTable table = table(log, metrics)) {
+            Node node = new Node("node-1", log, crashInjector,
+                    Node.Options.DEFAULTS.withMetrics(metrics).withQueue(queue).withTable(table));
+            run(seed, crashProbability, linkFailureProbability, workload, node, streams, log, metrics);
+        }
+    }
+
+    private static void run(long seed, double crashProbability, double linkFailureProbability, String workload, Node node,
+                            RandomStreams streams, EventLog log, Metrics metrics) {
+        Link loopback = new Link("loopback", LatencyModel.fromSystemProperties(LatencyModel.uniform(Duration.ofMillis(5), Duration.ofMillis(50))),
+                FaultModel.fromSystemProperties(FaultModel.drop(linkFailureProbability)), streams.stream("loopback"), log, metrics);
+        Client client = new Client("client-1", node, loopback, log, Client.Options.DEFAULTS.withOnNodeCrash(node::restart)
+                .withMetrics(metrics).withRetryPolicy(retryPolicy(streams, log, metrics)));
+
+        if (workload != null) {
+            runWorkload(WorkloadProfile.named(workload), seed, client, log);
+            metrics.report(log);
+            return;
+        }
 
         for (int i = 0; i < 8; i++) {
             String key = "k" + i;
@@ -28,6 +55,10 @@ public final class Simulation {
                 client.get(key);
             } catch (LinkFailureException e) {
                 log.info("simulation", "request-failed", MapBuilder.of("iteration", Integer.toString(i), "reason", "link-failure"));
+            } catch (CircuitOpenException e) {
+                log.info("simulation", "request-failed", MapBuilder.of("iteration", Integer.toString(i), "reason", "circuit-open"));
+            } catch (NodeBusyException e) {
+                log.info("simulation", "request-failed", MapBuilder.of("iteration", Integer.toString(i), "reason", "node-busy"));
             } catch (NodeCrashedException e) {
                 log.info("simulation", "node-down", MapBuilder.of("iteration", Integer.toString(i), "reason", e.getMessage()));
                 node.restart();
@@ -35,5 +66,57 @@ public final class Simulation {
         }
 
         log.info("simulation", "finished", MapBuilder.of("seed", Long.toString(seed), "crashProbability", Double.toString(crashProbability)));
+        metrics.report(log);
+    }
+
+    /**
+     * 10-200 ms decorrelated backoff, retries capped at 20% of requests (bursts of up to 10), and a breaker that opens
+     * for 500 ms after 5 consecutive failures.
+     */
+    static RetryPolicy retryPolicy(RandomStreams streams, EventLog log, Metrics metrics) {
+        CircuitBreaker breaker = new CircuitBreaker("breaker-node-1", 5, Duration.ofMillis(500), log, metrics);
+        return new RetryPolicy(Duration.ofMillis(10), Duration.ofMillis(200), new RetryBudget(10, 0.2), breaker,
+                streams.stream("client-1"));
+    }
+
+    /**
+     * With {@code -Dsim.node.admission=reject|lifo|fair}, a 64-request queue drained by one worker thread (an event loop);
+     * otherwise requests run on the caller's thread as before. {@code -Dsim.node.queue} and {@code -Dsim.node.workers}
+     * override the size.
+     */
+    static RequestQueue requestQueue(EventLog log, Metrics metrics) {
+        String policy = System.getProperty("sim.node.admission", "");
+        if (policy.isBlank()) {
+            return RequestQueue.inline();
+        }
+        return new RequestQueue("node-1", Integer.getInteger("sim.node.queue", 64), Integer.getInteger("sim.node.workers", 1),
+                RequestQueue.Policy.named(policy), log, metrics);
+    }
+
+    /**
+     * With {@code -Dsim.node.storage=mapped}, a fresh 4096-slot {@link MappedHashTable} in {@code table/node-1.table}
+     * ({@code -Dsim.node.table}) for 64-byte keys and 256-byte values, checkpointed every 64 puts
+     * ({@code -Dsim.node.checkpointEvery}); otherwise null and the node keeps its state on the heap.
+     */
+    static MappedHashTable table(EventLog log, Metrics metrics) {
+        String storage = System.getProperty("sim.node.storage", "heap");
+        return switch (storage) {
+            case "heap" -> null;
+            case "mapped" -> MappedHashTable.create("node-1", Path.of(System.getProperty("sim.node.table", "table/node-1.table")),
+                    4096, 64, 256, Integer.getInteger("sim.node.checkpointEvery", 64), log, metrics);
+            default -> throw new IllegalArgumentException("Unknown storage " + storage + " (expected heap or mapped)");
+        };
+    }
+
+    /**
+     * {@code -Dsim.workload.ttlMs} gives every write of the workload that time to live (heap storage only).
+     */
+    private static void runWorkload(WorkloadProfile profile, long seed, Client client, EventLog log) {
+        Long ttlMillis = Long.getLong("sim.workload.ttlMs");
+        Workload workload = new Workload(profile, 50, seed, log, ttlMillis == null ? null : Duration.ofMillis(ttlMillis));
+        workload.load(client);
+        Workload.Result result = workload.run(client, 100);
+        log.info("simulation", "finished", MapBuilder.of("seed", Long.toString(seed), "workload", result.profile(),
+                "ops", Long.toString(result.operations()), "failures", Long.toString(result.failures())));
     }
 }
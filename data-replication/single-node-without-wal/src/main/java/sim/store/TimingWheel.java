@@ -0,0 +1,189 @@
+package sim.store;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for key expiry: scheduling and cancelling a timer are O(1) however many are pending, and
+ * firing costs O(1) per timer plus a slot check per elapsed tick.
+ * <p>
+ * Four wheels of 64 slots each cover 64, 64², 64³ and 64⁴ ticks ahead. A timer goes into the finest wheel whose range
+ * holds its deadline; when a coarser slot comes due its timers cascade into finer wheels, so each timer moves at most
+ * three times. Deadlines beyond the coarsest wheel wait in its farthest slot and are placed again when it cascades.
+ * A timer fires at the first {@link #advance} at or after its deadline, never before.
+ * <p>
+ * Not thread-safe: callers guard a wheel with their own lock.
+ */
+public final class TimingWheel<K> {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    // one more list after the wheels' slots, for timers whose tick has already been processed
+    private static final int OVERDUE = LEVELS * SLOTS;
+
+    /**
+     * A scheduled expiry; also the node of its slot's doubly linked list, so cancelling needs no search.
+     */
+    public static final class Timer<K> {
+        private final K key;
+        private final long deadlineMillis;
+        private final long tick;
+        private Timer<K> prev;
+        private Timer<K> next;
+        // index into the slot heads, -1 once fired or cancelled
+        private int slot = -1;
+
+        private Timer(K key, long deadlineMillis, long tick) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+            this.tick = tick;
+        }
+
+        public K key() {
+            return key;
+        }
+
+        public long deadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timer<K>[] heads = newHeads(LEVELS * SLOTS + 1);
+    // the next tick to process; every tick before it has fired
+    private long currentTick;
+    private int size;
+
+    /**
+     * A wheel whose clock starts at {@code nowMillis} and moves in steps of {@code tickMillis}.
+     */
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis must be >= 1");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public Timer<K> schedule(K key, long deadlineMillis) {
+        Objects.requireNonNull(key, "key");
+        // rounded up, so a timer never fires before its deadline
+        Timer<K> timer = new Timer<>(key, deadlineMillis, Math.ceilDiv(deadlineMillis, tickMillis));
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Removes {@code timer} if it has neither fired nor been cancelled; returns whether it was pending.
+     */
+    public boolean cancel(Timer<K> timer) {
+        if (timer.slot < 0) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Fires every timer whose deadline is at or before {@code nowMillis}, oldest tick first.
+     */
+    public void advance(long nowMillis, Consumer<K> expired) {
+        long target = nowMillis / tickMillis;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, target + 1);
+            return;
+        }
+        fire(OVERDUE, expired);
+        while (currentTick <= target && size > 0) {
+            long tick = currentTick;
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((tick >>> (SLOT_BITS * level)) & MASK));
+                }
+            }
+            fire((int) (tick & MASK), expired);
+            currentTick++;
+        }
+        currentTick = Math.max(currentTick, target + 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Java cannot create a Timer<K>[] directly; the array is private and only ever holds Timer<K>, so the cast is safe.
+    @SuppressWarnings("unchecked")
+    private static <K> Timer<K>[] newHeads(int length) {
+        return (Timer<K>[]) new Timer<?>[length];
+    }
+
+    private void fire(int slot, Consumer<K> expired) {
+        Timer<K> timer = heads[slot];
+        while (timer != null) {
+            Timer<K> next = timer.next;
+            unlink(timer);
+            size--;
+            expired.accept(timer.key);
+            timer = next;
+        }
+    }
+
+    private void cascade(int level, int index) {
+        int slot = level * SLOTS + index;
+        Timer<K> timer = heads[slot];
+        heads[slot] = null;
+        while (timer != null) {
+            Timer<K> next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.slot = -1;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    private void place(Timer<K> timer) {
+        if (timer.tick < currentTick) {
+            link(timer, OVERDUE);
+            return;
+        }
+        long tick = timer.tick;
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        if (level == LEVELS - 1 && delta >= 1L << (SLOT_BITS * LEVELS)) {
+            // beyond the coarsest wheel: park in its farthest slot and place again when that cascades
+            tick = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+        }
+        link(timer, level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & MASK));
+    }
+
+    private void link(Timer<K> timer, int slot) {
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = heads[slot];
+        if (heads[slot] != null) {
+            heads[slot].prev = timer;
+        }
+        heads[slot] = timer;
+    }
+
+    private void unlink(Timer<K> timer) {
+        if (timer.prev == null) {
+            heads[timer.slot] = timer.next;
+        } else {
+            timer.prev.next = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.slot = -1;
+    }
+}
@@ -0,0 +1,83 @@
+package sim.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class CircuitBreakerTest {
+    private final AtomicLong nanos = new AtomicLong();
+    private final Metrics metrics = new Metrics();
+    private final CircuitBreaker breaker = new CircuitBreaker("link", 3, Duration.ofMillis(100), EventLog.off(), metrics,
+            nanos::get);
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRejectsUntilTheOpenDurationPasses() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state(), "a success resets the run of failures");
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        nanos.addAndGet(Duration.ofMillis(99).toNanos());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1L, metrics.counterSnapshot().get("breaker.link.opened"));
+        assertEquals(2L, metrics.counterSnapshot().get("breaker.link.rejected"));
+        assertEquals(2L, metrics.counterSnapshot().get("breaker.link.state"));
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughAndClosesOnItsSuccess() {
+        open();
+        nanos.addAndGet(Duration.ofMillis(100).toNanos());
+
+        assertTrue(breaker.tryAcquire(), "the probe");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire(), "a second request while the probe is out");
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void aFailedProbeReopensForAnotherFullOpenDuration() {
+        open();
+        nanos.addAndGet(Duration.ofMillis(100).toNanos());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(2L, metrics.counterSnapshot().get("breaker.link.opened"), "reopened from half-open");
+        nanos.addAndGet(Duration.ofMillis(50).toNanos());
+        assertFalse(breaker.tryAcquire());
+        nanos.addAndGet(Duration.ofMillis(50).toNanos());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void aDisabledBreakerNeverOpens() {
+        CircuitBreaker disabled = CircuitBreaker.disabled();
+        for (int i = 0; i < 1_000; i++) {
+            disabled.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, disabled.state());
+        assertTrue(disabled.tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+}
@@ -0,0 +1,99 @@
+package sim.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class MappedHashTableTest {
+    @TempDir
+    Path dir;
+
+    private MappedHashTable table(int slots) {
+        return new MappedHashTable("t", dir.resolve("t.table"), slots, 16, 16, 0, EventLog.off(), new Metrics());
+    }
+
+    @Test
+    void remapFindsEveryPutWithoutACheckpoint() {
+        MappedHashTable table = table(64);
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            table.put("k" + i, "v" + i);
+            expected.put("k" + i, "v" + i);
+        }
+
+        table.unmap();
+        assertThrows(IllegalStateException.class, () -> table.get("k1"));
+        assertEquals(40, table.remap());
+        assertEquals(40, table.size());
+        assertEquals(expected, table.contents());
+        assertEquals("v17", table.get("k17"));
+        assertNull(table.get("missing"));
+    }
+
+    @Test
+    void overwritesGoInPlace() {
+        MappedHashTable table = table(8);
+        table.put("k", "a longer value");
+        table.put("k", "short");
+        assertEquals("short", table.get("k"));
+        assertEquals(1, table.size());
+        assertEquals(Map.of("k", "short"), table.contents());
+
+        table.unmap();
+        assertEquals(1, table.remap());
+        assertEquals("short", table.get("k"));
+    }
+
+    @Test
+    void putsFailOnceTheTableIsThreeQuartersFull() {
+        MappedHashTable table = table(8);
+        for (int i = 0; i < 6; i++) {
+            table.put("k" + i, "v");
+        }
+        IllegalStateException full = assertThrows(IllegalStateException.class, () -> table.put("k6", "v"));
+        assertTrue(full.getMessage().contains("full"), full.getMessage());
+        // overwriting a key needs no new slot
+        table.put("k0", "w");
+        assertEquals("w", table.get("k0"));
+    }
+
+    @Test
+    void reopeningWithAnotherGeometryFails() {
+        table(64).close();
+        assertThrows(IllegalStateException.class, () -> new MappedHashTable("t", dir.resolve("t.table"), 64, 16, 32, 0,
+                EventLog.off(), new Metrics()));
+        assertThrows(IllegalStateException.class, () -> table(128));
+    }
+
+    @Test
+    void remapRecountsEntriesWhenTheStoredCountIsShort() throws IOException {
+        MappedHashTable table = table(16);
+        table.put("a", "1");
+        table.put("b", "2");
+        table.put("c", "3");
+        table.unmap();
+        // as if the process died after marking c's slot used but before storing the count
+        try (FileChannel channel = FileChannel.open(dir.resolve("t.table"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 2), 20);
+        }
+
+        assertEquals(3, table.remap());
+        table.put("d", "4");
+        assertEquals(4, table.size());
+        table.unmap();
+        assertEquals(4, table.remap());
+    }
+}
@@ -0,0 +1,177 @@
+package sim.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class RequestQueueTest {
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final List<String> served = new ArrayList<>();
+    private RequestQueue queue;
+
+    @AfterEach
+    void release() {
+        gate.countDown();
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    // one worker, held inside a request until the gate opens, so everything submitted meanwhile waits in the queue
+    private RequestQueue blocked(int capacity, RequestQueue.Policy policy) throws InterruptedException {
+        queue = new RequestQueue("node-1", capacity, 1, policy, EventLog.off(), new Metrics());
+        CountDownLatch started = new CountDownLatch(1);
+        submit("blocker", "blocker", () -> {
+            started.countDown();
+            await(gate);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return queue;
+    }
+
+    // submits on its own thread, as callers block until their request has run; waits until it is queued
+    private CompletableFuture<String> enqueue(String client, String name) {
+        int depth = queue.depth();
+        CompletableFuture<String> answer = submit(client, name, () -> {
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.depth() == depth && !answer.isDone()) {
+            assertTrue(System.nanoTime() < deadline, "request " + name + " never queued");
+            Thread.onSpinWait();
+        }
+        return answer;
+    }
+
+    private CompletableFuture<String> submit(String client, String name, Runnable work) {
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                answer.complete(queue.submit(client, name, () -> {
+                    work.run();
+                    synchronized (served) {
+                        served.add(name);
+                    }
+                    return name;
+                }));
+            } catch (Throwable e) {
+                answer.completeExceptionally(e);
+            }
+        });
+        return answer;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Throwable failure(CompletableFuture<String> answer) {
+        CompletionException e = assertThrows(CompletionException.class, answer::join);
+        return e.getCause();
+    }
+
+    @Test
+    void rejectWhenFullTurnsAwayArrivalsAndServesInOrder() throws InterruptedException {
+        blocked(2, RequestQueue.Policy.REJECT_WHEN_FULL);
+        CompletableFuture<String> a = enqueue("c1", "a");
+        CompletableFuture<String> b = enqueue("c1", "b");
+
+        assertThrows(NodeBusyException.class, () -> queue.submit("c2", "c", () -> "c"));
+        gate.countDown();
+        assertEquals("a", a.join());
+        assertEquals("b", b.join());
+        assertEquals(List.of("blocker", "a", "b"), served);
+    }
+
+    @Test
+    void lifoServesNewestFirstOnceHalfFull() throws InterruptedException {
+        blocked(6, RequestQueue.Policy.LIFO_UNDER_OVERLOAD);
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (String name : List.of("a", "b", "c", "d")) {
+            answers.add(enqueue("c1", name));
+        }
+
+        gate.countDown();
+        answers.forEach(CompletableFuture::join);
+        // 4 and 3 queued are at least half of 6: newest first; at 2 and 1 back to oldest first
+        assertEquals(List.of("blocker", "d", "c", "a", "b"), served);
+    }
+
+    @Test
+    void lifoShedsTheOldestWhenFull() throws InterruptedException {
+        blocked(2, RequestQueue.Policy.LIFO_UNDER_OVERLOAD);
+        CompletableFuture<String> a = enqueue("c1", "a");
+        CompletableFuture<String> b = enqueue("c1", "b");
+        CompletableFuture<String> c = submit("c1", "c", () -> {
+        });
+
+        assertInstanceOf(NodeBusyException.class, failure(a));
+        gate.countDown();
+        assertEquals("b", b.join());
+        assertEquals("c", c.join());
+    }
+
+    @Test
+    void fairShareRejectsANoisyClientAndShedsTheLargestClientsNewest() throws InterruptedException {
+        blocked(4, RequestQueue.Policy.FAIR_SHARE);
+        CompletableFuture<String> quiet = enqueue("quiet", "q1");
+        CompletableFuture<String> noisy1 = enqueue("noisy", "n1");
+        CompletableFuture<String> noisy2 = enqueue("noisy", "n2");
+
+        // two clients: a share is 4 / 2, which noisy already holds
+        assertThrows(NodeBusyException.class, () -> queue.submit("noisy", "n3", () -> "n3"));
+        CompletableFuture<String> third = enqueue("third", "t1");
+        assertEquals(4, queue.depth());
+        // the queue is full: a fourth client gets in at the expense of noisy's newest request
+        CompletableFuture<String> fourth = submit("fourth", "f1", () -> {
+        });
+
+        assertInstanceOf(NodeBusyException.class, failure(noisy2));
+        gate.countDown();
+        assertEquals("q1", quiet.join());
+        assertEquals("n1", noisy1.join());
+        assertEquals("t1", third.join());
+        assertEquals("f1", fourth.join());
+        // round-robin over the clients in arrival order
+        assertEquals(List.of("blocker", "q1", "n1", "t1", "f1"), served);
+    }
+
+    @Test
+    void closeDrainsTheQueueThenRejects() throws InterruptedException {
+        blocked(4, RequestQueue.Policy.REJECT_WHEN_FULL);
+        CompletableFuture<String> a = enqueue("c1", "a");
+        CompletableFuture<String> b = enqueue("c1", "b");
+        Thread closer = Thread.ofPlatform().start(queue::close);
+
+        gate.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(5));
+        assertEquals("a", a.join());
+        assertEquals("b", b.join());
+        assertEquals(0, queue.depth());
+        assertThrows(NodeBusyException.class, () -> queue.submit("c1", "c", () -> "c"));
+    }
+
+    @Test
+    void anErrorReachesTheCallerAndTheWorkerSurvives() {
+        queue = new RequestQueue("node-1", 4, 1, RequestQueue.Policy.REJECT_WHEN_FULL, EventLog.off(), new Metrics());
+
+        assertThrows(AssertionError.class, () -> queue.submit("c1", "boom", () -> {
+            throw new AssertionError("boom");
+        }));
+        assertEquals("next", queue.submit("c1", "next", () -> "next"));
+    }
+}
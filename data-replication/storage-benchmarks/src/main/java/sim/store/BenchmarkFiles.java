@@ -0,0 +1,66 @@
+package sim.store;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Temp directories and prebuilt WAL files for benchmark fixtures.
+ */
+final class BenchmarkFiles {
+    private static final Base64.Encoder ENC = Base64.getUrlEncoder().withoutPadding();
+
+    private BenchmarkFiles() {
+    }
+
+    static Path tempDir(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create temp dir", e);
+        }
+    }
+
+    /**
+     * Writes {@code records} PUT lines in {@link WriteAheadLog}'s format without fsyncing each one; keys cycle through
+     * {@code keys} distinct values so later records overwrite earlier ones, as in a long-running node.
+     */
+    static Path writeWal(Path file, long records, int keys, int valueSize) {
+        String value = ENC.encodeToString("x".repeat(valueSize).getBytes(StandardCharsets.UTF_8));
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < records; i++) {
+                writer.write("PUT ");
+                writer.write(ENC.encodeToString(("k" + (i % keys)).getBytes(StandardCharsets.UTF_8)));
+                writer.write(' ');
+                writer.write(value);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write WAL fixture " + file, e);
+        }
+        return file;
+    }
+
+    static void delete(Path dir) {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to delete " + path, e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to delete " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package sim.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Node#put} (WAL append plus map update) and {@link Node#get} with the event log off and with every event
+ * formatted into a discarding stream, to show what logging costs on each path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"off", "on"})
+    String logging;
+
+    private final String[] keys = new String[KEYS];
+    private Path dir;
+    private Node node;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchmarkFiles.tempDir("node");
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "k" + i;
+        }
+        EventLog log = "on".equals(logging) ? new EventLog(new PrintStream(OutputStream.nullOutputStream())) : EventLog.off();
+        Path file = BenchmarkFiles.writeWal(dir.resolve("node.log"), KEYS, KEYS, 32);
+        WriteAheadLog wal = new WriteAheadLog("bench", file, log);
+        node = new Node("bench", log, new CrashInjector("bench", log, new Random(1), 0.0), wal);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public void put() {
+        node.put(keys[next++ & (KEYS - 1)], "value");
+    }
+
+    @Benchmark
+    public Optional<String> get() {
+        return node.get(keys[next++ & (KEYS - 1)]);
+    }
+}
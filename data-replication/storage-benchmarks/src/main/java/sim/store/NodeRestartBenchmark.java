@@ -0,0 +1,69 @@
+package sim.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovery time of {@link Node#restart} after a crash, i.e. how long until the node takes requests again: WAL replay
+ * plus repopulating the in-memory map when eager, loading the saved key index when lazy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NodeRestartBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int entries;
+
+    @Param({"eager", "lazy"})
+    String restore;
+
+    private Path dir;
+    private Node node;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchmarkFiles.tempDir("node-restart");
+        EventLog log = EventLog.off();
+        Path file = BenchmarkFiles.writeWal(dir.resolve("node.log"), entries, entries, 32);
+        WriteAheadLog wal = new WriteAheadLog("bench", file, log);
+        Metrics metrics = new Metrics();
+        node = new Node("bench", log, new CrashInjector("bench", log, new Random(1), 0.0), List.of(wal),
+                Node.Options.DEFAULTS.withMetrics(metrics).withRestore(Node.Restore.valueOf(restore.toUpperCase(Locale.ROOT))));
+        node.checkpointIndex();
+    }
+
+    @Setup(Level.Iteration)
+    public void crash() {
+        node.crashAndLoseState("benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public void restart() {
+        node.restart();
+    }
+}
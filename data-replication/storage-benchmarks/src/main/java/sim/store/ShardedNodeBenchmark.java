@@ -0,0 +1,78 @@
+package sim.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Node#put} and {@link Node#get} throughput from one thread per core against a node split into
+ * {@code shards} WAL shards. With one shard every put queues on the same log; more shards let the fsyncs overlap, until
+ * the disk rather than the lock is the limit. Run it on the machine whose core count you care about, or pin the
+ * threads with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ShardedNodeBenchmark {
+    private static final int KEYS = 4096;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    int shards;
+
+    private final String[] keys = new String[KEYS];
+    private Path dir;
+    private Node node;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = ThreadLocalRandom.current().nextInt(KEYS);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchmarkFiles.tempDir("sharded-node");
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "k" + i;
+        }
+        EventLog log = EventLog.off();
+        Metrics metrics = new Metrics();
+        node = new Node("bench", log, new CrashInjector("bench", log, new Random(1), 0.0),
+                WriteAheadLog.sharded("bench", dir, shards, log, metrics), Node.Options.DEFAULTS.withMetrics(metrics));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        node.put(keys[cursor.next++ & (KEYS - 1)], "value");
+    }
+
+    @Benchmark
+    public Optional<String> get(Cursor cursor) {
+        return node.get(keys[cursor.next++ & (KEYS - 1)]);
+    }
+}
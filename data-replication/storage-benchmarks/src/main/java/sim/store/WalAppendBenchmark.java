@@ -0,0 +1,70 @@
+package sim.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link WriteAheadLog#appendPut} (open, write, fsync per call) by value size, single-threaded and with writers
+ * contending for the log's monitor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalAppendBenchmark {
+    @Param({"16", "256", "4096"})
+    int valueSize;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private Path dir;
+    private WriteAheadLog wal;
+    private String value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchmarkFiles.tempDir("wal-append");
+        wal = new WriteAheadLog("bench", dir.resolve("node.log"), EventLog.off());
+        value = "v".repeat(valueSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void append() {
+        wal.appendPut("k" + (sequence.getAndIncrement() & 1023), value);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void append4Threads() {
+        wal.appendPut("k" + (sequence.getAndIncrement() & 1023), value);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void append16Threads() {
+        wal.appendPut("k" + (sequence.getAndIncrement() & 1023), value);
+    }
+}
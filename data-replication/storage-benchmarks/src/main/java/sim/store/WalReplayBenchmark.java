@@ -0,0 +1,56 @@
+package sim.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WriteAheadLog#replay} of a prebuilt log; keys repeat after 1M records, so the largest log also measures
+ * overwrites rather than only map growth. The 10M-record fixture is ~600 MB and needs a few GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WalReplayBenchmark {
+    private static final int MAX_KEYS = 1_000_000;
+
+    @Param({"10000", "1000000", "10000000"})
+    long records;
+
+    private Path dir;
+    private WriteAheadLog wal;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dir = BenchmarkFiles.tempDir("wal-replay");
+        Path file = BenchmarkFiles.writeWal(dir.resolve("node.log"), records, (int) Math.min(records, MAX_KEYS), 32);
+        wal = new WriteAheadLog("bench", file, EventLog.off());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public Map<String, String> replay() {
+        return wal.replay();
+    }
+}